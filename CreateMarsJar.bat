@@ -1 +1,3 @@
-jar cmf mainclass.txt Mars.jar PseudoOps.txt Config.properties Syscall.properties Settings.properties MARSlicense.txt mainclass.txt MipsXRayOpcode.xml registerDatapath.xml controlDatapath.xml ALUcontrolDatapath.xml CreateMarsJar.bat Mars.java Mars.class docs help images mars themeengine screenshots
\ No newline at end of file
+java -cp . mars.util.FilenameFinder mars/mips/instructions/syscalls mars/mips/dump mars/tools
+jar cmf mainclass.txt Mars.jar PseudoOps.txt Config.properties Syscall.properties Settings.properties MARSlicense.txt mainclass.txt MipsXRayOpcode.xml registerDatapath.xml controlDatapath.xml ALUcontrolDatapath.xml CreateMarsJar.bat Mars.java Mars.class docs help images mars themeengine screenshots
+java -XX:ArchiveClassesAtExit=Mars.jsa -jar Mars.jar h
\ No newline at end of file
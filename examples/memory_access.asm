@@ -0,0 +1,126 @@
+# Byte, halfword and word loads and stores on both sides of memory boundaries.
+#
+# Memory keeps each segment in 4K pages and has separate paths for naturally
+# aligned accesses (lb, lbu, lh, lhu, lw, sb, sh, sw) and for the others (the
+# unaligned ulw and ulh below, and big-endian memory).  This program puts bytes
+# on both sides of page boundaries, segment boundaries and the stack limit and
+# reads them back every way, so that the paths can be checked against each
+# other.  Its output, with the default memory configuration, is in
+# memory_access.txt next to it:
+#
+#	java Mars nc examples/memory_access.asm > out.txt
+#	diff out.txt examples/memory_access.txt
+
+	.macro	show (%reg)
+	move	$a0, %reg
+	li	$v0, 34			# print integer in hexadecimal
+	syscall
+	li	$a0, '\n'
+	li	$v0, 11			# print character
+	syscall
+	.end_macro
+
+	.data
+extern:	.asciiz	"extern/data segment boundary\n"
+page:	.asciiz	"data page boundary\n"
+heap:	.asciiz	"data/heap boundary\n"
+top:	.asciiz	"end of data segment\n"
+stack:	.asciiz	"stack page boundary\n"
+limit:	.asciiz	"stack limit\n"
+kdata:	.asciiz	"kernel data page boundary\n"
+
+	.text
+main:	la	$a0, extern
+	li	$a1, 0x10010000		# .extern ends and .data begins
+	jal	probe
+	la	$a0, page
+	li	$a1, 0x10011000
+	jal	probe
+	la	$a0, heap
+	li	$a1, 0x10040000
+	jal	probe
+	la	$a0, top
+	li	$a1, 0x103ffffc		# last word of the data segment
+	jal	probe
+	la	$a0, stack
+	li	$a1, 0x7ffff000		# stack pages count down from 0x7ffffffc
+	jal	probe
+	la	$a0, limit
+	li	$a1, 0x7fc00004		# lowest stack word is 0x7fc00000
+	jal	probe
+	la	$a0, kdata
+	li	$a1, 0x90001000
+	jal	probe
+	li	$v0, 10			# exit
+	syscall
+
+# Print the name at $a0, then exercise the eight bytes around the boundary at
+# $a1: four below it, four from it up.
+probe:	move	$s0, $a1
+	li	$v0, 4			# print string
+	syscall
+
+	li	$t0, 0x01		# one byte at a time, some with the sign bit set
+	sb	$t0, -4($s0)
+	li	$t0, 0x82
+	sb	$t0, -3($s0)
+	li	$t0, 0x23
+	sb	$t0, -2($s0)
+	li	$t0, 0xf4
+	sb	$t0, -1($s0)
+	li	$t0, 0x45
+	sb	$t0, 0($s0)
+	li	$t0, 0x96
+	sb	$t0, 1($s0)
+	li	$t0, 0x67
+	sb	$t0, 2($s0)
+	li	$t0, 0xd8
+	sb	$t0, 3($s0)
+	lw	$t1, -4($s0)
+	show	($t1)
+	lw	$t1, 0($s0)
+	show	($t1)
+	lh	$t1, -2($s0)
+	show	($t1)
+	lhu	$t1, -2($s0)
+	show	($t1)
+	lh	$t1, 0($s0)
+	show	($t1)
+	lhu	$t1, 2($s0)
+	show	($t1)
+	lb	$t1, -1($s0)
+	show	($t1)
+	lbu	$t1, -1($s0)
+	show	($t1)
+	lb	$t1, 0($s0)
+	show	($t1)
+	lbu	$t1, 1($s0)
+	show	($t1)
+	ulw	$t1, -2($s0)		# straddles the boundary
+	show	($t1)
+	ulh	$t1, -1($s0)
+	show	($t1)
+
+	li	$t0, 0xbeef		# halfwords on either side
+	sh	$t0, -2($s0)
+	li	$t0, 0x8001
+	sh	$t0, 0($s0)
+	lw	$t1, -4($s0)
+	show	($t1)
+	lw	$t1, 0($s0)
+	show	($t1)
+
+	li	$t0, 0xcafef00d		# a word, read back by bytes
+	sw	$t0, 0($s0)
+	sw	$t0, -4($s0)
+	lbu	$t1, -1($s0)
+	show	($t1)
+	lbu	$t1, 0($s0)
+	show	($t1)
+	lb	$t1, 1($s0)
+	show	($t1)
+	lhu	$t1, 2($s0)
+	show	($t1)
+	lh	$t1, -4($s0)
+	show	($t1)
+	jr	$ra
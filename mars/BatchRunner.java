@@ -0,0 +1,337 @@
+package mars;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Runs the programs listed in a manifest file, for the "batch" command line
+ * option. Each line of the manifest names a program and optionally a file to
+ * use as its standard input and a file holding its expected output, separated
+ * by tabs. Use "-" to skip the input file. Relative paths are relative to the
+ * manifest. Empty lines and lines starting with # are ignored.
+ * <p>
+ * The programs are shared out among worker processes, each a MARS running in
+ * "batchworker" mode with the other command line options, so a program that
+ * brings down its MARS costs only its own result. A worker initializes MARS
+ * once and then assembles and runs one program after another, resetting the
+ * machine in between. A worker whose program runs out of time is stopped and
+ * replaced. The time limit starts once the worker has reported that it is ready,
+ * so starting a worker does not count against its first program. The results file gets one line per program, in manifest order: a
+ * JSON object with its status (passed, failed, completed, assembly-error,
+ * runtime-error, step-limit, timeout or crashed), exit code, running time and
+ * what it and MARS displayed.
+ */
+class BatchRunner {
+
+	private static final String WORKER_SWITCH = "batchworker";
+	private static final String NO_FILE = "-";
+	private static final String READY = "ready"; // sent by a worker once it has started
+
+	private final List<String[]> jobs = new ArrayList<>();
+	private final String[] results;
+	private final AtomicInteger nextJob = new AtomicInteger();
+	private final List<String> workerCommand = new ArrayList<>();
+	private long timeoutMillis; // time each program may take, 0 for no limit
+
+	/**
+	 * Reads the manifest and prepares to run its programs.
+	 *
+	 * @param manifest    the manifest file
+	 * @param workerArgs  MARS command line options for the workers
+	 * @throws IOException if the manifest cannot be read
+	 */
+	BatchRunner(final File manifest, final List<String> workerArgs) throws IOException {
+		final File directory = manifest.getAbsoluteFile().getParentFile();
+		for (final String line : Files.readAllLines(manifest.toPath())) {
+			if (line.trim().length() == 0 || line.startsWith("#")) { continue; }
+			final String[] fields = line.split("\t");
+			final String[] job = new String[3];
+			for (int i = 0; i < job.length; i++) {
+				final String name = i < fields.length ? fields[i].trim() : "";
+				job[i] = name.length() == 0 || name.equals(NO_FILE) ? "" : resolve(directory, name);
+			}
+			jobs.add(job);
+		}
+		results = new String[jobs.size()];
+		workerCommand.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		for (final String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			// Workers must not overwrite the class data sharing archive being created.
+			if (!option.startsWith("-XX:ArchiveClassesAtExit")) { workerCommand.add(option); }
+		}
+		workerCommand.add("-cp");
+		workerCommand.add(System.getProperty("java.class.path"));
+		workerCommand.add("Mars");
+		workerCommand.add("nc");
+		workerCommand.addAll(workerArgs);
+		workerCommand.add(WORKER_SWITCH);
+	}
+
+	private static String resolve(final File directory, final String name) {
+		final File file = new File(name);
+		return (file.isAbsolute() ? file : new File(directory, name)).getPath();
+	}
+
+	/**
+	 * Runs all programs of the manifest and writes the results file.
+	 *
+	 * @param resultsFile where to write the results
+	 * @param workers     maximum number of worker processes
+	 * @param timeout     seconds each program may take, 0 for no limit
+	 * @param out         stream for the summary
+	 * @throws IOException if the results file cannot be written
+	 */
+	void run(final File resultsFile, final int workers, final int timeout, final PrintStream out)
+			throws IOException {
+		timeoutMillis = timeout * 1000L;
+		final Thread[] threads = new Thread[Math.max(1, Math.min(workers, jobs.size()))];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(this::feedWorker, "MARS batch worker " + i);
+			threads[i].start();
+		}
+		for (final Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		int passed = 0, failed = 0, other = 0;
+		try (PrintStream resultsOut = new PrintStream(resultsFile, "UTF-8")) {
+			for (final String result : results) {
+				resultsOut.println(result);
+				if (result.contains("\"status\":\"passed\"") || result.contains("\"status\":\"completed\"")) {
+					passed++;
+				} else if (result.contains("\"status\":\"failed\"")) {
+					failed++;
+				} else {
+					other++;
+				}
+			}
+		}
+		out.println(jobs.size() + " programs: " + passed + " passed or completed, " + failed + " failed, " + other
+				+ " did not complete.");
+	}
+
+	// Keep one worker process busy until no jobs are left, replacing it if it dies
+	// or is stopped because its program ran out of time.
+	private void feedWorker() {
+		Process worker = null;
+		PrintStream toWorker = null;
+		BufferedReader fromWorker = null;
+		final AtomicBoolean timedOut = new AtomicBoolean();
+		int job;
+		while ((job = nextJob.getAndIncrement()) < jobs.size()) {
+			final String[] files = jobs.get(job);
+			try {
+				if (worker == null) {
+					worker = new ProcessBuilder(workerCommand).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+					toWorker = new PrintStream(worker.getOutputStream(), true, "UTF-8");
+					fromWorker = new BufferedReader(new InputStreamReader(worker.getInputStream(), "UTF-8"));
+					timedOut.set(false);
+					if (!READY.equals(fromWorker.readLine())) { throw new IOException("worker did not start"); }
+				}
+				toWorker.println(String.join("\t", files));
+				final String result = readResult(worker, fromWorker, timedOut);
+				if (result != null) {
+					results[job] = result;
+					if (timedOut.get()) { // stopped just as the result came
+						reap(worker);
+						worker = null;
+					}
+					continue;
+				}
+			} catch (final IOException e) {
+				// handled as a crash below
+			}
+			results[job] = "{\"program\":" + quote(files[0]) + ",\"status\":\"" + (timedOut.get() ? "timeout"
+					: "crashed") + "\"}";
+			if (worker != null) { reap(worker); }
+			worker = null;
+		}
+		if (worker != null) {
+			toWorker.close();
+			try {
+				worker.waitFor();
+			} catch (final InterruptedException e) {
+				worker.destroy();
+			}
+		}
+	}
+
+	// Stop the worker, if it has not stopped already, and wait until it is gone.
+	private static void reap(final Process worker) {
+		worker.destroyForcibly();
+		boolean interrupted = false;
+		while (true) {
+			try {
+				worker.waitFor();
+				break;
+			} catch (final InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) { Thread.currentThread().interrupt(); }
+	}
+
+	// Wait for the worker's result, stopping the worker if it takes too long.  Then
+	// the result is null and timedOut is set.
+	private String readResult(final Process worker, final BufferedReader fromWorker, final AtomicBoolean timedOut)
+			throws IOException {
+		timedOut.set(false);
+		if (timeoutMillis <= 0) { return fromWorker.readLine(); }
+		final Thread watchdog = new Thread(() -> {
+			try {
+				Thread.sleep(timeoutMillis);
+				timedOut.set(true);
+				worker.destroyForcibly();
+			} catch (final InterruptedException e) {
+				// the result came in time
+			}
+		}, "MARS batch watchdog");
+		watchdog.setDaemon(true);
+		watchdog.start();
+		try {
+			return fromWorker.readLine();
+		} finally {
+			watchdog.interrupt();
+			try {
+				watchdog.join();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Runs programs as the coordinating MARS sends them, until it closes standard
+	 * input. It first reports that it is ready. Then for each program it reads a
+	 * line holding the program, input and expected output file names, and answers
+	 * with a line holding the result.
+	 *
+	 * @param launch the command line options, which run each program
+	 */
+	static void work(final MarsLaunch launch) {
+		final PrintStream toCoordinator = System.out;
+		final BufferedReader fromCoordinator = new BufferedReader(new InputStreamReader(System.in));
+		final InputStream noInput = new ByteArrayInputStream(new byte[0]);
+		String line;
+		toCoordinator.println(READY);
+		toCoordinator.flush();
+		try {
+			while ((line = fromCoordinator.readLine()) != null) {
+				final String[] files = line.split("\t", -1);
+				final ByteArrayOutputStream output = new ByteArrayOutputStream();
+				final ByteArrayOutputStream messages = new ByteArrayOutputStream();
+				String status;
+				final long start = System.nanoTime();
+				try (InputStream input = files[1].length() == 0 ? noInput : new FileInputStream(files[1]);
+						PrintStream programOut = new PrintStream(output, true, "UTF-8");
+						PrintStream messagesOut = new PrintStream(messages, true, "UTF-8")) {
+					System.setIn(input);
+					System.setOut(programOut);
+					MachineContext.getDefault().reset(); // assembly clears memory
+					status = launch.runBatchJob(files[0], messagesOut);
+				} catch (final FileNotFoundException e) {
+					messages.write(("Input file " + files[1] + " not found.").getBytes("UTF-8"));
+					status = "runtime-error";
+				} finally {
+					System.setOut(System.err); // stray output must not reach the coordinator
+				}
+				final long millis = (System.nanoTime() - start) / 1000000;
+				final String actual = output.toString("UTF-8");
+				if (status.equals("completed") && files[2].length() > 0) {
+					String expected = null;
+					try {
+						expected = new String(Files.readAllBytes(new File(files[2]).toPath()), "UTF-8");
+					} catch (final IOException e) {
+						messages.write(("Expected output file " + files[2] + " could not be read.").getBytes("UTF-8"));
+					}
+					status = expected != null && normalize(actual).equals(normalize(expected)) ? "passed" : "failed";
+				}
+				toCoordinator.println("{\"program\":" + quote(files[0]) + ",\"status\":\"" + status
+						+ "\",\"exitCode\":" + Globals.exitCode + ",\"millis\":" + millis + ",\"output\":" + quote(
+								actual) + ",\"messages\":" + quote(messages.toString("UTF-8")) + "}");
+				toCoordinator.flush();
+			}
+		} catch (final IOException e) {
+			System.err.println("MARS batch worker stopped: " + e);
+		}
+	}
+
+	private static String normalize(final String text) {
+		return text.replace("\r\n", "\n");
+	}
+
+	static String quote(final String text) {
+		final StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			switch (c) {
+			case '"':
+				quoted.append("\\\"");
+				break;
+			case '\\':
+				quoted.append("\\\\");
+				break;
+			case '\n':
+				quoted.append("\\n");
+				break;
+			case '\r':
+				quoted.append("\\r");
+				break;
+			case '\t':
+				quoted.append("\\t");
+				break;
+			default:
+				if (c < ' ') {
+					quoted.append(String.format("\\u%04x", (int) c));
+				} else {
+					quoted.append(c);
+				}
+			}
+		}
+		return quoted.append('"').toString();
+	}
+}
@@ -57,9 +57,9 @@ public class Globals {
 	 * the program currently being worked with. Used by GUI only, not command line.
 	 **/
 	public static MIPSprogram program;
-	/** Symbol table for file currently being assembled. **/
+	/** Symbol table for file currently being assembled, on the default machine. **/
 	public static SymbolTable symbolTable;
-	/** Simulated MIPS memory component. **/
+	/** Simulated MIPS memory component of the default machine (see MachineContext). **/
 	public static Memory memory;
 	/**
 	 * Lock variable used at head of synchronized block to guard MIPS memory and
@@ -101,6 +101,10 @@ public class Globals {
 	public static final int maximumErrorMessages = getErrorLimit();
 	/** Maximum number of back-step operations to buffer */
 	public static final int maximumBacksteps = getBackstepLimit();
+	/** Number of instructions between checkpoints of the execution history, 0 if none */
+	public static final int checkpointInterval = getCheckpointInterval();
+	/** Backing store for simulated MIPS memory, as described in Config.properties */
+	public static final String memoryBackend = getMemoryBackend();
 	/** MARS copyright years */
 	public static final String copyrightYears = getCopyrightYears();
 	/** MARS copyright holders */
@@ -126,7 +130,13 @@ public class Globals {
 
 	public static void setGui(final VenusUI g) { gui = g; }
 
-	public static VenusUI getGui() { return gui; }
+	/**
+	 * Returns the GUI, which shows the default machine only. Threads running
+	 * another machine (see MachineContext) behave as on the command line.
+	 *
+	 * @return the GUI, or null if there is none for the calling thread
+	 */
+	public static VenusUI getGui() { return gui != null && MachineContext.current().isDefault() ? gui : null; }
 
 	public static Settings getSettings() { return settings; }
 
@@ -137,10 +147,10 @@ public class Globals {
 
 	public static void initialize(final boolean gui) {
 		if (!initialized) {
-			memory = Memory.getInstance();  //clients can use Memory.getInstance instead of Globals.memory
+			memory = MachineContext.getDefault().getMemory();  //clients can use Memory.getInstance instead of Globals.memory
 			instructionSet = new InstructionSet();
 			instructionSet.populate();
-			symbolTable = new SymbolTable("global");
+			symbolTable = MachineContext.getDefault().getSymbolTable();
 			settings = new Settings(gui);
 			initialized = true;
 			debug = false;
@@ -157,6 +167,17 @@ public class Globals {
 	// Read backstep limit (number of operations to buffer) from properties file.
 	private static int getBackstepLimit() { return getIntegerProperty(configPropertiesFile, "BackstepLimit", 1000); }
 
+	// Read checkpoint interval of the execution history from properties file.
+	private static int getCheckpointInterval() {
+		return getIntegerProperty(configPropertiesFile, "CheckpointInterval", 100000);
+	}
+
+	// Read choice of backing store for MIPS memory from properties file.
+	private static String getMemoryBackend() {
+		final String backend = getPropertyEntry(configPropertiesFile, "MemoryBackend");
+		return backend == null ? "heap" : backend;
+	}
+
 	// Read ASCII default display character for non-printing characters, from properties file.
 	public static String getAsciiNonPrint() {
 		final String anp = getPropertyEntry(configPropertiesFile, "AsciiNonPrint");
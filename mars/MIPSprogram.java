@@ -3,6 +3,7 @@ package mars;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.util.ArrayList;
+import java.util.stream.IntStream;
 
 import javax.swing.AbstractAction;
 
@@ -249,7 +250,10 @@ public class MIPSprogram {
 
 	/**
 	 * Prepares the given list of files for assembly. This involves reading and
-	 * tokenizing all the source files. There may be only one.
+	 * tokenizing all the source files. There may be only one. Several files are
+	 * read and tokenized in parallel, on the common fork-join pool; if any fail,
+	 * the errors of the first of them in list order are thrown, as if the files
+	 * had been prepared one after the other.
 	 *
 	 * @param filenames        ArrayList containing the source file name(s) in no
 	 *                         particular order
@@ -277,11 +281,24 @@ public class MIPSprogram {
 			filenames.add(0, exceptionHandler);
 			leadFilePosition = 1;
 		}
-		for (int i = 0; i < filenames.size(); i++) {
-			final String filename = (String) filenames.get(i);
-			final MIPSprogram preparee = filename.equals(leadFilename) ? this : new MIPSprogram();
-			preparee.readSource(filename);
-			preparee.tokenize();
+		final MIPSprogram[] preparees = new MIPSprogram[filenames.size()];
+		final ProcessingException[] failures = new ProcessingException[preparees.length];
+		for (int i = 0; i < preparees.length; i++) {
+			preparees[i] = filenames.get(i).equals(leadFilename) ? this : new MIPSprogram();
+		}
+		final MachineContext context = MachineContext.current();
+		IntStream.range(0, preparees.length).parallel().forEach(i -> context.run(() -> {
+			try {
+				preparees[i].readSource((String) filenames.get(i));
+				preparees[i].tokenize();
+			} catch (final ProcessingException e) {
+				failures[i] = e;
+			}
+		}));
+		context.getTokenCache().retain(filenames);
+		for (int i = 0; i < preparees.length; i++) {
+			if (failures[i] != null) { throw failures[i]; }
+			final MIPSprogram preparee = preparees[i];
 			// I want "this" MIPSprogram to be the first in the list...except for exception handler
 			if (preparee == this && MIPSprogramsToAssemble.size() > 0) {
 				MIPSprogramsToAssemble.add(leadFilePosition, preparee);
@@ -343,6 +360,28 @@ public class MIPSprogram {
 		return asm.getErrorList();
 	}
 
+	/**
+	 * Takes the place of reading, tokenizing and assembling a source file whose
+	 * assembled program was loaded by the ObjectCache. Its source and tokens are
+	 * not available.
+	 *
+	 * @param file             name of the source file
+	 * @param localSymbolTable the file's local symbols
+	 * @param machineList      the assembled statements, for the program assembled
+	 *                         by this object, or null for the others
+	 */
+	void restoreAssembled(final String file, final SymbolTable localSymbolTable, final ArrayList machineList) {
+		filename = file;
+		sourceList = tokenList = parsedList = null;
+		sourceLineList = null;
+		tokenizer = null;
+		this.localSymbolTable = localSymbolTable;
+		if (machineList != null) {
+			this.machineList = machineList;
+			backStepper = new BackStepper();
+		}
+	}
+
 	/**
 	 * Simulates execution of the MIPS program. Program must have already been
 	 * assembled. Begins simulation at beginning of text segment and continues to
@@ -0,0 +1,247 @@
+package mars;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+
+import mars.assembler.SymbolTable;
+import mars.assembler.TokenCache;
+import mars.mips.hardware.Coprocessor0;
+import mars.mips.hardware.Coprocessor1;
+import mars.mips.hardware.Memory;
+import mars.mips.hardware.RegisterFile;
+import mars.simulator.DelayedBranch;
+import mars.simulator.Simulator;
+import mars.util.SystemIO;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * One simulated MIPS machine: its memory, register files, coprocessors,
+ * delayed branch state, open files, symbol table, simulator and exit code.
+ * The static methods of Memory, RegisterFile, Coprocessor0, Coprocessor1,
+ * DelayedBranch, SystemIO and Simulator work on the machine of the calling
+ * thread, so the instruction set, syscalls and tools need not know which
+ * machine they serve.
+ * <p>
+ * Threads use the default machine, which the IDE and command line work with,
+ * unless they run inside another one: threads created by
+ * {@link #newThread(Runnable, String)} (the simulator's thread is created this
+ * way) and code called through {@link #run(Runnable)}. Many machines can
+ * therefore assemble and simulate programs in parallel threads. Settings,
+ * memory configuration and the instruction set are shared by all of them, and
+ * backstepping is available only on the default machine.
+ */
+public class MachineContext {
+
+	private static final ThreadLocal<MachineContext> boundContexts = new ThreadLocal<>();
+	private static volatile boolean anyBound = false; // skip the thread local until it is used
+	private static final MachineContext defaultContext = new MachineContext(true);
+
+	private final boolean isDefault;
+	private final Memory memory;
+	private final RegisterFile.State registerFile = new RegisterFile.State();
+	private final Coprocessor0.State coprocessor0 = new Coprocessor0.State();
+	private final Coprocessor1.State coprocessor1 = new Coprocessor1.State();
+	private final DelayedBranch.State delayedBranch = new DelayedBranch.State();
+	private final SystemIO.State files = new SystemIO.State();
+	private final SymbolTable symbolTable = new SymbolTable("global");
+	private final TokenCache tokenCache = new TokenCache();
+	private Simulator simulator;
+	private int exitCode = 0;
+
+	/**
+	 * Creates a new machine, in its reset state. Its program output goes to
+	 * System.out and its input comes from System.in, unless set otherwise.
+	 */
+	public MachineContext() { this(false); }
+
+	private MachineContext(final boolean isDefault) {
+		this.isDefault = isDefault;
+		memory = Memory.newInstance(isDefault);
+	}
+
+	/**
+	 * Returns the machine of the calling thread.
+	 *
+	 * @return the machine the thread runs in, or the default machine
+	 */
+	public static MachineContext current() {
+		final Thread thread = Thread.currentThread();
+		if (thread instanceof MachineThread) { return ((MachineThread) thread).context; }
+		if (anyBound) {
+			final MachineContext bound = boundContexts.get();
+			if (bound != null) { return bound; }
+		}
+		return defaultContext;
+	}
+
+	/**
+	 * Returns the default machine, used by the IDE, the command line and all
+	 * threads not running inside another machine.
+	 *
+	 * @return the default machine
+	 */
+	public static MachineContext getDefault() { return defaultContext; }
+
+	/**
+	 * Tells whether this is the default machine.
+	 *
+	 * @return true for the default machine
+	 */
+	public boolean isDefault() { return isDefault; }
+
+	/**
+	 * Runs the given code on the calling thread, inside this machine.
+	 *
+	 * @param task the code to run, for example assembling and simulating a program
+	 */
+	public void run(final Runnable task) {
+		if (current() == this) {
+			task.run();
+			return;
+		}
+		if (Thread.currentThread() instanceof MachineThread) {
+			throw new IllegalStateException("a machine's own thread cannot enter another machine");
+		}
+		anyBound = true;
+		final MachineContext previous = boundContexts.get();
+		boundContexts.set(this);
+		try {
+			task.run();
+		} finally {
+			if (previous == null) {
+				boundContexts.remove();
+			} else {
+				boundContexts.set(previous);
+			}
+		}
+	}
+
+	/**
+	 * Creates a thread that runs inside this machine.
+	 *
+	 * @param task the code for the thread to run
+	 * @param name the thread's name
+	 * @return the new, unstarted thread
+	 */
+	public Thread newThread(final Runnable task, final String name) {
+		return new MachineThread(this, task, name);
+	}
+
+	/**
+	 * Sets where the program's standard input comes from and its standard output
+	 * goes to. Takes effect at the next reset of its files, as done when a program
+	 * is assembled.
+	 *
+	 * @param in  standard input, or null for System.in
+	 * @param out standard output, or null for System.out
+	 */
+	public void setStandardIO(final InputStream in, final PrintStream out) {
+		files.setStandardIO(in, out);
+	}
+
+	/**
+	 * Puts this machine back in its initial state, except for memory, which
+	 * assembling a program clears: resets the registers, closes the program's
+	 * files, removes memory observers, breakpoints and watchpoints and clears the
+	 * exit code.
+	 */
+	public void reset() {
+		run(() -> {
+			RegisterFile.resetRegisters();
+			Coprocessor1.resetRegisters();
+			Coprocessor0.resetRegisters();
+			memory.deleteObservers();
+			SystemIO.resetFiles();
+		});
+		getSimulator().getBreakpoints().clear();
+		setExitCode(0);
+	}
+
+	/** @return this machine's memory */
+	public Memory getMemory() { return memory; }
+
+	/** @return this machine's general purpose registers, for RegisterFile */
+	public RegisterFile.State getRegisterFile() { return registerFile; }
+
+	/** @return this machine's coprocessor 0 registers, for Coprocessor0 */
+	public Coprocessor0.State getCoprocessor0() { return coprocessor0; }
+
+	/** @return this machine's floating point registers, for Coprocessor1 */
+	public Coprocessor1.State getCoprocessor1() { return coprocessor1; }
+
+	/** @return this machine's pending delayed branch, for DelayedBranch */
+	public DelayedBranch.State getDelayedBranch() { return delayedBranch; }
+
+	/** @return this machine's open files, for SystemIO */
+	public SystemIO.State getFiles() { return files; }
+
+	/** @return the symbol table of the program assembled into this machine */
+	public SymbolTable getSymbolTable() { return symbolTable; }
+
+	/** @return the token lists of the source files last assembled on this machine */
+	public TokenCache getTokenCache() { return tokenCache; }
+
+	/**
+	 * Returns the exit code set by the last program run on this machine with
+	 * syscall 17. That of the default machine is Globals.exitCode.
+	 *
+	 * @return the exit code, 0 unless set
+	 */
+	public int getExitCode() { return isDefault ? Globals.exitCode : exitCode; }
+
+	/**
+	 * Sets this machine's exit code.
+	 *
+	 * @param code the new exit code
+	 */
+	public void setExitCode(final int code) {
+		if (isDefault) {
+			Globals.exitCode = code;
+		} else {
+			exitCode = code;
+		}
+	}
+
+	/** @return the simulator running programs on this machine */
+	public synchronized Simulator getSimulator() {
+		// Created on first use, see Simulator.getInstance().
+		if (simulator == null) { simulator = Simulator.newInstance(); }
+		return simulator;
+	}
+
+	private static final class MachineThread extends Thread {
+
+		private final MachineContext context;
+
+		private MachineThread(final MachineContext context, final Runnable task, final String name) {
+			super(task, name);
+			this.context = context;
+		}
+	}
+}
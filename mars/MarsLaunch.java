@@ -6,23 +6,20 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Observable;
-import java.util.Observer;
 
 import javax.swing.SwingUtilities;
 
 import mars.mips.dump.DumpFormat;
 import mars.mips.dump.DumpFormatLoader;
-import mars.mips.hardware.AccessNotice;
 import mars.mips.hardware.AddressErrorException;
 import mars.mips.hardware.Coprocessor1;
 import mars.mips.hardware.InvalidRegisterAccessException;
 import mars.mips.hardware.Memory;
-import mars.mips.hardware.MemoryAccessNotice;
 import mars.mips.hardware.MemoryConfiguration;
 import mars.mips.hardware.MemoryConfigurations;
 import mars.mips.hardware.RegisterFile;
 import mars.simulator.ProgramArgumentList;
+import mars.simulator.Simulator;
 import mars.util.Binary;
 import mars.util.FilenameFinder;
 import mars.util.MemoryDump;
@@ -133,10 +130,12 @@ public class MarsLaunch {
 	private boolean warningsAreErrors; // Whether assembler warnings should be considered errors.
 	private boolean startAtMain; // Whether to start execution at statement labeled 'main' 
 	private boolean countInstructions; // Whether to count and report number of instructions executed 
+	private boolean reportProfile; // Whether to report the execution profile
 	private boolean selfModifyingCode; // Whether to allow self-modifying code (e.g. write to text segment)
 	private static final String rangeSeparator = "-";
 	private static final int splashDuration = 2000; // time in MS to show splash screen
 	private static final int memoryWordsPerLine = 4; // display 4 memory words, tab separated, per line
+	private static final int profileStatements = 20; // most executed statements listed in profile
 	private static final int DECIMAL = 0; // memory and register display format
 	private static final int HEXADECIMAL = 1;// memory and register display format
 	private static final int ASCII = 2;// memory and register display format
@@ -145,12 +144,19 @@ public class MarsLaunch {
 	private ArrayList filenameList;
 	private MIPSprogram code;
 	private int maxSteps;
-	private int instructionCount;
 	private PrintStream out; // stream for display of command line output
 	private ArrayList dumpTriples = null; // each element holds 3 arguments for dump option
 	private ArrayList programArgumentList; // optional program args for MIPS program (becomes argc, argv)
 	private int assembleErrorExitCode;  // MARS command exit code to return if assemble error occurs
 	private int simulateErrorExitCode;// MARS command exit code to return if simulation error occurs
+	private String batchManifest; // manifest of programs to run for batch option, null if none
+	private String batchResults; // file to write their results to
+	private int batchWorkers = Runtime.getRuntime().availableProcessors(); // number of processes to run them in
+	private int batchTimeout = 60; // seconds each batch program or server run may take, 0 for no limit
+	private boolean batchWorker; // this MARS runs programs for another one running a batch
+	private String runOutcome; // how the last run ended, reported for batch jobs
+	private int serverPort = -1; // port to serve simulation requests on for server option, -1 if none
+	private ObjectCache objectCache; // assembled programs kept on disk for cache option, null if none
 
 	public MarsLaunch(final String[] args) {
 		final boolean gui = args.length == 0;
@@ -169,8 +175,8 @@ public class MarsLaunch {
 			warningsAreErrors = false;
 			startAtMain = false;
 			countInstructions = false;
+			reportProfile = false;
 			selfModifyingCode = false;
-			instructionCount = 0;
 			assembleErrorExitCode = 0;
 			simulateErrorExitCode = 0;
 			registerDisplayList = new ArrayList();
@@ -182,12 +188,20 @@ public class MarsLaunch {
 			maxSteps = -1;
 			out = System.out;
 			if (parseCommandArgs(args)) {
-				if (runCommand()) {
-					displayMiscellaneousPostMortem();
-					displayRegistersPostMortem();
-					displayMemoryPostMortem();
+				if (batchWorker) {
+					BatchRunner.work(this);
+				} else if (batchManifest != null) {
+					runBatch(args);
+				} else if (serverPort >= 0) {
+					runServer();
+				} else {
+					if (runCommand()) {
+						displayMiscellaneousPostMortem();
+						displayRegistersPostMortem();
+						displayMemoryPostMortem();
+					}
+					dumpSegments();
 				}
-				dumpSegments();
 			}
 			System.exit(Globals.exitCode);
 		}
@@ -230,7 +244,7 @@ public class MarsLaunch {
 				continue;
 			}
 			try {
-				final int highAddress = Globals.memory.getAddressOfFirstNull(segInfo[0], segInfo[1])
+				final int highAddress = Memory.getInstance().getAddressOfFirstNull(segInfo[0], segInfo[1])
 						- Memory.WORD_LENGTH_BYTES;
 				if (highAddress < segInfo[0].intValue()) {
 					out.println("This segment has not been written to, there is nothing to dump.");
@@ -251,6 +265,65 @@ public class MarsLaunch {
 		}
 	}
 
+	/////////////////////////////////////////////////////////////
+	// Run the programs of the batch option's manifest.  See BatchRunner.
+
+	private void runBatch(final String[] args) {
+		// The workers get all other options.
+		final ArrayList workerArgs = new ArrayList();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].toLowerCase().equals("batch")) {
+				i += 2;
+			} else if (args[i].toLowerCase().indexOf("w") == 0 && args[i].substring(1).matches("\\d+")
+					|| args[i].toLowerCase().indexOf("bt") == 0 && args[i].substring(2).matches("\\d+")) {
+				continue;
+			} else if (!args[i].toLowerCase().equals("nc")) {
+				workerArgs.add(args[i]);
+			}
+		}
+		try {
+			new BatchRunner(new File(batchManifest), workerArgs).run(new File(batchResults), batchWorkers,
+					batchTimeout, out);
+		} catch (final IOException e) {
+			out.println("Error while running batch " + batchManifest + ": " + e);
+			Globals.exitCode = 1;
+		}
+	}
+
+	/////////////////////////////////////////////////////////////
+	// Serve simulation requests on the server option's port.  See SimulationServer.
+
+	private void runServer() {
+		Globals.getSettings().setBooleanSettingNonPersistent(Settings.DELAYED_BRANCHING_ENABLED, delayedBranching);
+		Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, selfModifyingCode);
+		try {
+			new SimulationServer(pseudo, warningsAreErrors, startAtMain, maxSteps, batchTimeout, programArgumentList).serve(
+					serverPort, out);
+		} catch (final IOException e) {
+			out.println("Error while serving on port " + serverPort + ": " + e);
+			Globals.exitCode = 1;
+		}
+	}
+
+	/////////////////////////////////////////////////////////////
+	// Assemble and run one program of a batch with the options given on the
+	// command line, displaying MARS messages and results on the given stream.
+	// Returns the outcome: completed, step-limit, assembly-error or runtime-error.
+	// The outcome of assembling only (option a) is completed.
+
+	String runBatchJob(final String program, final PrintStream messages) {
+		out = messages;
+		filenameList = new ArrayList();
+		filenameList.add(program);
+		code = new MIPSprogram();
+		if (runCommand()) {
+			displayMiscellaneousPostMortem();
+			displayRegistersPostMortem();
+			displayMemoryPostMortem();
+		}
+		return runOutcome;
+	}
+
 	/////////////////////////////////////////////////////////////////
 	// There are no command arguments, so run in interactive mode by
 	// launching the GUI-fronted integrated development environment.
@@ -319,6 +392,43 @@ public class MarsLaunch {
 				}
 				continue;
 			}
+			if (args[i].toLowerCase().equals("batch")) {
+				if (args.length <= i + 2) {
+					out.println("Batch command line argument requires a manifest and a results file name.");
+					argsOK = false;
+				} else {
+					batchManifest = args[++i];
+					batchResults = args[++i];
+				}
+				continue;
+			}
+			if (args[i].toLowerCase().equals("cache")) {
+				if (args.length <= i + 1) {
+					out.println("Cache command line argument requires a directory name.");
+					argsOK = false;
+				} else {
+					objectCache = new ObjectCache(new File(args[++i]));
+				}
+				continue;
+			}
+			if (args[i].toLowerCase().equals("server")) {
+				if (args.length <= i + 1) {
+					out.println("Server command line argument requires a port number.");
+					argsOK = false;
+				} else {
+					try {
+						serverPort = Integer.decode(args[++i]);
+					} catch (final NumberFormatException nfe) {
+						out.println("Invalid server port: " + args[i]);
+						argsOK = false;
+					}
+				}
+				continue;
+			}
+			if (args[i].toLowerCase().equals("batchworker")) {
+				batchWorker = true;
+				continue;
+			}
 			if (args[i].toLowerCase().equals("mc")) {
 				final String configName = args[++i];
 				final MemoryConfiguration config = MemoryConfigurations.getConfigurationByName(configName);
@@ -350,6 +460,24 @@ public class MarsLaunch {
 					// Let it fall thru and get handled by catch-all
 				}
 			}
+			// Set number of worker processes for batch
+			if (args[i].toLowerCase().indexOf("w") == 0) {
+				try {
+					batchWorkers = Integer.decode(args[i].substring(1));
+					continue;
+				} catch (final NumberFormatException nfe) {
+					// Let it fall thru and get handled by catch-all
+				}
+			}
+			// Set time limit of each batch program
+			if (args[i].toLowerCase().indexOf("bt") == 0) {
+				try {
+					batchTimeout = Integer.decode(args[i].substring(2));
+					continue;
+				} catch (final NumberFormatException nfe) {
+					// Let it fall thru and get handled by catch-all
+				}
+			}
 			if (args[i].toLowerCase().equals("d")) {
 				Globals.debug = true;
 				continue;
@@ -407,6 +535,10 @@ public class MarsLaunch {
 				countInstructions = true;
 				continue;
 			}
+			if (args[i].toLowerCase().equals("prof")) {
+				reportProfile = true;
+				continue;
+			}
 
 			if (args[i].indexOf("$") == 0) {
 				if (RegisterFile.getUserRegister(args[i]) == null && Coprocessor1.getRegister(args[i]) == null) {
@@ -457,6 +589,7 @@ public class MarsLaunch {
 
 	private boolean runCommand() {
 		boolean programRan = false;
+		runOutcome = "completed";
 		if (filenameList.size() == 0) { return programRan; }
 		try {
 			Globals.getSettings().setBooleanSettingNonPersistent(Settings.DELAYED_BRANCHING_ENABLED, delayedBranching);
@@ -488,26 +621,42 @@ public class MarsLaunch {
 				filesToAssemble = FilenameFinder.getFilenameList(filenameList, FilenameFinder.MATCH_ALL_EXTENSIONS);
 			}
 			if (Globals.debug) { out.println("--------  TOKENIZING BEGINS  -----------"); }
-			final ArrayList MIPSprogramsToAssemble = code.prepareFilesForAssembly(filesToAssemble, mainFile
-					.getAbsolutePath(), null);
-			if (Globals.debug) { out.println("--------  ASSEMBLY BEGINS  -----------"); }
-			// Added logic to check for warnings and print if any. DPS 11/28/06
-			final ErrorList warnings = code.assemble(MIPSprogramsToAssemble, pseudo, warningsAreErrors);
+			final ErrorList warnings;
+			if (objectCache != null) {
+				// Tokenizes and assembles only if not found in the cache.
+				warnings = objectCache.assemble(code, filesToAssemble, mainFile.getAbsolutePath(), pseudo,
+						warningsAreErrors);
+			} else {
+				final ArrayList MIPSprogramsToAssemble = code.prepareFilesForAssembly(filesToAssemble, mainFile
+						.getAbsolutePath(), null);
+				if (Globals.debug) { out.println("--------  ASSEMBLY BEGINS  -----------"); }
+				// Added logic to check for warnings and print if any. DPS 11/28/06
+				warnings = code.assemble(MIPSprogramsToAssemble, pseudo, warningsAreErrors);
+			}
 			if (warnings != null && warnings.warningsOccurred()) { out.println(warnings.generateWarningReport()); }
 			RegisterFile.initializeProgramCounter(startAtMain); // DPS 3/9/09
 			if (simulate) {
 				// store program args (if any) in MIPS memory
 				new ProgramArgumentList(programArgumentList).storeProgramArguments();
-				// establish observer if specified
-				establishObserver();
+				// start counting instructions if specified
+				establishProfiling();
 				if (Globals.debug) { out.println("--------  SIMULATION BEGINS  -----------"); }
 				programRan = true;
 				final boolean done = code.simulate(maxSteps);
-				if (!done) { out.println("\nProgram terminated when maximum step limit " + maxSteps + " reached."); }
+				if (!done && maxSteps > 0) {
+					out.println("\nProgram terminated when maximum step limit " + maxSteps + " reached.");
+					runOutcome = "step-limit";
+				} else if (!done) {
+					// No step limit, so the simulation itself failed (e.g. an exception in a syscall).
+					out.println("\nProgram terminated unexpectedly.");
+					Globals.exitCode = simulateErrorExitCode;
+					runOutcome = "runtime-error";
+				}
 			}
 			if (Globals.debug) { out.println("\n--------  ALL PROCESSING COMPLETE  -----------"); }
 		} catch (final ProcessingException e) {
 			Globals.exitCode = programRan ? simulateErrorExitCode : assembleErrorExitCode;
+			runOutcome = programRan ? "runtime-error" : "assembly-error";
 			out.println(e.errors().generateErrorAndWarningReport());
 			out.println("Processing terminated due to errors.");
 		}
@@ -539,32 +688,12 @@ public class MarsLaunch {
 
 	/////////////////////////////////////////////////////////////////
 	// Required for counting instructions executed, if that option is specified.
-	// DPS 19 July 2012
-	private void establishObserver() {
-		if (countInstructions) {
-			final Observer instructionCounter = new Observer() {
-
-				private int lastAddress = 0;
-
-				@Override
-				public void update(final Observable o, final Object obj) {
-					if (obj instanceof AccessNotice) {
-						final AccessNotice notice = (AccessNotice) obj;
-						if (!notice.accessIsFromMIPS()) { return; }
-						if (notice.getAccessType() != AccessNotice.READ) { return; }
-						final MemoryAccessNotice m = (MemoryAccessNotice) notice;
-						final int a = m.getAddress();
-						if (a == lastAddress) { return; }
-						lastAddress = a;
-						instructionCount++;
-					}
-				}
-			};
-			try {
-				Globals.memory.addObserver(instructionCounter, Memory.textBaseAddress, Memory.textLimitAddress);
-			} catch (final AddressErrorException aee) {
-				out.println("Internal error: MarsLaunch uses incorrect text segment address for instruction observer");
-			}
+	// DPS 19 July 2012.  The simulator counts them itself, in its execution
+	// profile, rather than a memory observer, which would slow it down.
+	private void establishProfiling() {
+		if (countInstructions || reportProfile) {
+			Simulator.getInstance().getProfile().reset();
+			Simulator.getInstance().setProfiling(true);
 		}
 	}
 
@@ -572,7 +701,8 @@ public class MarsLaunch {
 	// Displays any specified runtime properties. Initially just instruction count
 	// DPS 19 July 2012
 	private void displayMiscellaneousPostMortem() {
-		if (countInstructions) { out.println("\n" + instructionCount); }
+		if (countInstructions) { out.println("\n" + Simulator.getInstance().getProfile().getUserTextTotal()); }
+		if (reportProfile) { out.print("\n" + Simulator.getInstance().getProfile().report(profileStatements)); }
 	}
 
 	//////////////////////////////////////////////////////////////////////
@@ -677,10 +807,10 @@ public class MarsLaunch {
 				try {
 					// Allow display of binary text segment (machine code) DPS 14-July-2008
 					if (Memory.inTextSegment(addr) || Memory.inKernelTextSegment(addr)) {
-						final Integer iValue = Globals.memory.getRawWordOrNull(addr);
+						final Integer iValue = Memory.getInstance().getRawWordOrNull(addr);
 						value = iValue == null ? 0 : iValue;
 					} else {
-						value = Globals.memory.getWord(addr);
+						value = Memory.getInstance().getWord(addr);
 					}
 					out.print(formatIntForDisplay(value) + "\t");
 				} catch (final AddressErrorException aee) {
@@ -738,6 +868,16 @@ public class MarsLaunch {
 		out.println("  ae<n>  -- terminate MARS with integer exit code <n> if an assemble error occurs.");
 		out.println("  ascii  -- display memory or register contents interpreted as ASCII codes.");
 		out.println("      b  -- brief - do not display register/memory address along with contents");
+		out.println("  batch <manifest> <results>  -- run every program listed in <manifest>, each line");
+		out.println("            holding a program file, then optionally its input file and expected");
+		out.println("            output file, separated by tabs.  Writes one JSON result per program to");
+		out.println("            <results>.  The other options apply to every program.");
+		out.println("  bt<n>  -- stop a batch program, or a server run or step, after <n> seconds.");
+		out.println("            Default is 60, 0 for no limit.");
+		out.println("  cache <dir>  -- keep assembled programs in directory <dir> and load them from there");
+		out.println("            instead of assembling the same files again with the same options.");
+		out.println("            Keeps the files they include apart too, so that programs including");
+		out.println("            the same file tokenize it only once.  Programs are not kept with smc.");
 		out.println("      d  -- display MARS debugging statements");
 		out.println("     db  -- MIPS delayed branching is enabled");
 		out.println("    dec  -- display memory or register contents in decimal.");
@@ -760,9 +900,15 @@ public class MarsLaunch {
 		out.println("     nc  -- do not display copyright notice (for cleaner redirected/piped output).");
 		out.println("     np  -- use of pseudo instructions and formats not permitted");
 		out.println("      p  -- Project mode - assemble all files in the same directory as given file.");
+		out.println("   prof  -- display execution profile: count of MIPS basic instructions 'executed'");
+		out.println("            by format, by label and for the most executed statements");
 		out.println("  se<n>  -- terminate MARS with integer exit code <n> if a simulation (run) error occurs.");
 		out.println("     sm  -- start execution at statement with global label main, if defined");
+		out.println("  server <port>  -- serve assemble, run, step and inspect requests from programs on");
+		out.println("            this computer on TCP port <port>, giving each connection a machine of its");
+		out.println("            own.  The other options apply to every program.  See SimulationServer.");
 		out.println("    smc  -- Self Modifying Code - Program can write and branch to either text or data segment");
+		out.println("   w<n>  -- run batch programs in <n> processes.  Default is one per processor.");
 		out.println("    <n>  -- where <n> is an integer maximum count of steps to simulate.");
 		out.println("            If 0, negative or not specified, there is no maximum.");
 		out.println(" $<reg>  -- where <reg> is number or name (e.g. 5, t3, f10) of register whose ");
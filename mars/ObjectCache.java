@@ -0,0 +1,377 @@
+package mars;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+import mars.assembler.Symbol;
+import mars.assembler.SymbolTable;
+import mars.assembler.Token;
+import mars.assembler.TokenTypes;
+import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Memory;
+import mars.mips.hardware.MemoryConfigurations;
+import mars.mips.instructions.BasicInstruction;
+import mars.mips.instructions.ExtendedInstruction;
+import mars.mips.instructions.Instruction;
+import mars.util.SystemIO;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Keeps assembled programs in a directory, for the "cache" command line option,
+ * so that assembling the same source files again with the same settings only
+ * loads the result. An object file holds the assembled statements, the initial
+ * contents of the data segments and the symbol tables of a whole program. It is
+ * named after a hash of the source files, their names, the instruction set and
+ * the settings that change what the assembler produces, and lists the included
+ * files with hashes of their contents, which must still match.
+ * <p>
+ * The source files of a program cannot be kept separately: each is assembled at
+ * the addresses the files before it leave free and refers to the labels of the
+ * others. Files they include are inserted before any of that, so the cache keeps
+ * their tokens apart in the same directory (see TokenCache), and programs that
+ * include the same file tokenize it only once even if they differ otherwise.
+ * Programs assembled with warnings are not kept, so the warnings are shown
+ * every time, nor are programs assembled with self-modifying code enabled, as
+ * their data in the text segment is not among the assembled statements.
+ */
+class ObjectCache {
+
+	private static final int MAGIC = 0x4D4F424A; // "MOBJ"
+	private static final int FORMAT = 1;
+	private static final String EXTENSION = ".obj";
+
+	private final File directory;
+
+	/**
+	 * Creates a cache keeping its object files in the given directory, which is
+	 * created when first needed.
+	 *
+	 * @param directory the directory
+	 */
+	ObjectCache(final File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Assembles the given files into the given program, as prepareFilesForAssembly()
+	 * followed by assemble() do, unless an object file of the same program is in
+	 * the cache. Then the program is loaded from it instead. A program assembled
+	 * without warnings is added to the cache. Object files that cannot be read or
+	 * written are treated as absent.
+	 *
+	 * @param program                  the program to assemble, for the lead file
+	 * @param filenames                the source files
+	 * @param leadFilename             the source file to assemble first
+	 * @param extendedAssemblerEnabled true if pseudo instructions are permitted
+	 * @param warningsAreErrors        true if warnings terminate the assembly
+	 * @return the warnings of the assembly, none if the program was loaded
+	 * @throws ProcessingException if there were errors assembling
+	 */
+	ErrorList assemble(final MIPSprogram program, final ArrayList filenames, final String leadFilename,
+			final boolean extendedAssemblerEnabled, final boolean warningsAreErrors) throws ProcessingException {
+		MachineContext.current().getTokenCache().keepIncludesIn(directory);
+		if (Globals.getSettings().getBooleanSetting(Settings.SELF_MODIFYING_CODE_ENABLED)) {
+			return program.assemble(program.prepareFilesForAssembly(filenames, leadFilename, null),
+					extendedAssemblerEnabled, warningsAreErrors);
+		}
+		byte[] key = null;
+		File objectFile = null;
+		try {
+			key = key(filenames, leadFilename, extendedAssemblerEnabled);
+			objectFile = new File(directory, toHex(key) + EXTENSION);
+			if (objectFile.isFile() && load(objectFile, key, program, leadFilename)) { return new ErrorList(); }
+		} catch (final IOException e) {
+			// assemble it, the error shows up there if a source file cannot be read
+		}
+		final ArrayList programs = program.prepareFilesForAssembly(filenames, leadFilename, null);
+		final ErrorList warnings = program.assemble(programs, extendedAssemblerEnabled, warningsAreErrors);
+		if (objectFile != null && !warnings.warningsOccurred()) {
+			try {
+				save(objectFile, key, programs, program.getMachineList());
+			} catch (final IOException e) {
+				// not kept, assembled again next time
+			}
+		}
+		return warnings;
+	}
+
+	// The hash naming the object file of the given program.
+	private static byte[] key(final ArrayList filenames, final String leadFilename,
+			final boolean extendedAssemblerEnabled) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(FORMAT);
+			out.writeUTF(Globals.version);
+			out.writeBoolean(extendedAssemblerEnabled);
+			out.writeBoolean(Globals.getSettings().getDelayedBranchingEnabled());
+			out.writeBoolean(Globals.getSettings().getBareMachineEnabled());
+			out.writeUTF(MemoryConfigurations.getCurrentConfiguration().getConfigurationIdentifier());
+			writeInstructionSet(out);
+			out.writeUTF(leadFilename);
+			out.writeInt(filenames.size());
+			for (final Object filename : filenames) {
+				final byte[] contents = Files.readAllBytes(new File((String) filename).toPath());
+				out.writeUTF((String) filename);
+				out.writeInt(contents.length);
+				out.write(contents);
+			}
+		}
+		return newDigest().digest(bytes.toByteArray());
+	}
+
+	// Statements refer to their instructions by position in the instruction set,
+	// and an instruction added, removed or changed (such as by a MarsTool or a new
+	// release) changes how the same source assembles.
+	private static void writeInstructionSet(final DataOutputStream out) throws IOException {
+		final ArrayList instructions = Globals.instructionSet.getInstructionList();
+		out.writeInt(instructions.size());
+		for (final Object element : instructions) {
+			final Instruction instruction = (Instruction) element;
+			out.writeUTF(instruction.getName());
+			out.writeUTF(instruction.getExampleFormat());
+			if (instruction instanceof BasicInstruction) {
+				out.writeUTF(((BasicInstruction) instruction).getOperationMask());
+			} else {
+				writeTemplates(out, ((ExtendedInstruction) instruction).getBasicIntructionTemplateList());
+				writeTemplates(out, ((ExtendedInstruction) instruction).getCompactBasicIntructionTemplateList());
+			}
+		}
+	}
+
+	private static void writeTemplates(final DataOutputStream out, final ArrayList templates) throws IOException {
+		if (templates == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(templates.size());
+		for (final Object template : templates) {
+			out.writeUTF((String) template);
+		}
+	}
+
+	private static byte[] hash(final String filename) throws IOException {
+		return newDigest().digest(Files.readAllBytes(new File(filename).toPath()));
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // every Java platform has SHA-256
+		}
+	}
+
+	private static String toHex(final byte[] bytes) {
+		final StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (final byte b : bytes) {
+			hex.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	// Write the object file of the program just assembled.  It is written under
+	// another name first, so that no one reads it half written.
+	private void save(final File objectFile, final byte[] key, final ArrayList programs, final ArrayList machineList)
+			throws IOException {
+		final LinkedHashSet<String> includes = new LinkedHashSet<>();
+		final IdentityHashMap<MIPSprogram, Integer> programNumbers = new IdentityHashMap<>();
+		for (int i = 0; i < programs.size(); i++) {
+			final MIPSprogram program = (MIPSprogram) programs.get(i);
+			includes.addAll(program.getTokenizer().getIncludedFilenames());
+			programNumbers.put(program, i);
+		}
+		final IdentityHashMap<Object, Integer> instructionNumbers = new IdentityHashMap<>();
+		final ArrayList instructions = Globals.instructionSet.getInstructionList();
+		for (int i = 0; i < instructions.size(); i++) {
+			instructionNumbers.put(instructions.get(i), i);
+		}
+		final Map<Integer, int[]> pages = new TreeMap<>();
+		Memory.getInstance().collectAllocatedPages(pages);
+		directory.mkdirs();
+		final File partial = File.createTempFile(objectFile.getName(), ".tmp", directory);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+					partial)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT);
+				out.write(key);
+				out.writeInt(includes.size());
+				for (final String include : includes) {
+					out.writeUTF(include);
+					out.write(hash(include));
+				}
+				out.writeInt(programs.size());
+				for (final Object program : programs) {
+					out.writeUTF(((MIPSprogram) program).getFilename());
+					writeSymbols(out, ((MIPSprogram) program).getLocalSymbolTable());
+				}
+				writeSymbols(out, MachineContext.current().getSymbolTable());
+				out.writeInt(machineList.size());
+				for (final Object element : machineList) {
+					final ProgramStatement statement = (ProgramStatement) element;
+					statement.write(out, programNumbers.get(statement.getSourceMIPSprogram()), instructionNumbers.get(
+							statement.getInstruction()));
+				}
+				out.writeInt(pages.size());
+				for (final Map.Entry<Integer, int[]> page : pages.entrySet()) {
+					out.writeInt(page.getKey());
+					out.writeInt(page.getValue().length);
+					for (final int word : page.getValue()) {
+						out.writeInt(word);
+					}
+				}
+			}
+			Files.move(partial.toPath(), objectFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			partial.delete();
+		}
+	}
+
+	private static void writeSymbols(final DataOutputStream out, final SymbolTable symbols) throws IOException {
+		final ArrayList all = symbols.getAllSymbols();
+		out.writeInt(all.size());
+		for (final Object element : all) {
+			final Symbol symbol = (Symbol) element;
+			out.writeUTF(symbol.getName());
+			out.writeInt(symbol.getAddress());
+			out.writeBoolean(symbol.getType());
+		}
+	}
+
+	// Load the program from its object file, as if it had been assembled.  Returns
+	// false before changing anything if the file is not the program's or an
+	// included file has changed.
+	private static boolean load(final File objectFile, final byte[] key, final MIPSprogram lead,
+			final String leadFilename) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(objectFile)))) {
+			final byte[] storedKey = new byte[key.length];
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT) { return false; }
+			in.readFully(storedKey);
+			if (!Arrays.equals(storedKey, key)) { return false; }
+			for (int includes = in.readInt(); includes > 0; includes--) {
+				final String include = in.readUTF();
+				final byte[] storedHash = new byte[key.length];
+				in.readFully(storedHash);
+				try {
+					if (!Arrays.equals(storedHash, hash(include))) { return false; }
+				} catch (final IOException e) {
+					return false; // gone, assembling reports it
+				}
+			}
+			final MIPSprogram[] programs = new MIPSprogram[in.readInt()];
+			SymbolTable leadSymbolTable = new SymbolTable(leadFilename);
+			for (int i = 0; i < programs.length; i++) {
+				final String filename = in.readUTF();
+				final SymbolTable localSymbolTable = new SymbolTable(filename);
+				programs[i] = filename.equals(leadFilename) ? lead : new MIPSprogram();
+				readSymbols(in, localSymbolTable, programs[i]);
+				if (programs[i] == lead) {
+					leadSymbolTable = localSymbolTable;
+				} else {
+					programs[i].restoreAssembled(filename, localSymbolTable, null);
+				}
+			}
+			final SymbolTable globalSymbolTable = MachineContext.current().getSymbolTable();
+			globalSymbolTable.clear();
+			readSymbols(in, globalSymbolTable, lead);
+			final ArrayList instructions = Globals.instructionSet.getInstructionList();
+			final ArrayList machineList = new ArrayList();
+			final Memory memory = Memory.getInstance();
+			memory.clear();
+			for (int statements = in.readInt(); statements > 0; statements--) {
+				final ProgramStatement statement = ProgramStatement.read(in, programs, instructions);
+				machineList.add(statement);
+				memory.setStatement(statement.getAddress(), statement);
+			}
+			for (int pages = in.readInt(); pages > 0; pages--) {
+				final int page = in.readInt();
+				final int[] words = new int[in.readInt()];
+				for (int i = 0; i < words.length; i++) {
+					words[i] = in.readInt();
+				}
+				memory.restorePage(page, words);
+			}
+			lead.restoreAssembled(leadFilename, leadSymbolTable, machineList);
+			SystemIO.resetFiles();
+			return true;
+		} catch (final AddressErrorException | RuntimeException e) {
+			throw new IOException("damaged object file " + objectFile, e);
+		}
+	}
+
+	private static void readSymbols(final DataInputStream in, final SymbolTable symbols, final MIPSprogram program)
+			throws IOException {
+		final ErrorList errors = new ErrorList();
+		for (int count = in.readInt(); count > 0; count--) {
+			final Token name = new Token(TokenTypes.IDENTIFIER, in.readUTF(), program, 0, 0);
+			symbols.addSymbol(name, in.readInt(), in.readBoolean(), errors);
+		}
+	}
+
+	/**
+	 * Writes a string that may be null, for readString().
+	 *
+	 * @param out    where to write
+	 * @param string the string, or null
+	 * @throws IOException if it cannot be written
+	 */
+	static void writeString(final DataOutputStream out, final String string) throws IOException {
+		out.writeBoolean(string != null);
+		if (string != null) { out.writeUTF(string); }
+	}
+
+	/**
+	 * Reads a string written by writeString().
+	 *
+	 * @param in where to read
+	 * @return the string, or null
+	 * @throws IOException if it cannot be read
+	 */
+	static String readString(final DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
@@ -1,5 +1,8 @@
 package mars;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 
 import mars.assembler.SymbolTable;
@@ -155,6 +158,90 @@ public class ProgramStatement {
 		basicStatementList = buildBasicStatementListFromBinaryCode(binaryStatement, instr, operands, numOperands);
 	}
 
+	//////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Constructor for ProgramStatement read back from an object file by
+	 * read(). There are no tokens to refer back to.
+	 **/
+	private ProgramStatement(final MIPSprogram sourceMIPSprogram, final int textAddress) {
+		this.sourceMIPSprogram = sourceMIPSprogram;
+		this.textAddress = textAddress;
+		originalTokenList = strippedTokenList = null;
+		basicStatementList = new BasicStatementList();
+		altered = false;
+	}
+
+	/**
+	 * Writes this assembled statement to an object file of the ObjectCache: all
+	 * the simulator and the execution profile need, but not its tokens.
+	 *
+	 * @param out         where to write
+	 * @param program     number of the source file the statement is in, as
+	 *                    passed to read()
+	 * @param instruction position of its instruction in the instruction list
+	 * @throws IOException if the statement cannot be written
+	 */
+	void write(final DataOutputStream out, final int program, final int instruction) throws IOException {
+		out.writeInt(program);
+		out.writeInt(textAddress);
+		out.writeInt(instruction);
+		out.writeInt(binaryStatement);
+		out.writeInt(sourceLine);
+		ObjectCache.writeString(out, source);
+		ObjectCache.writeString(out, basicAssemblyStatement);
+		ObjectCache.writeString(out, machineStatement);
+		out.writeInt(numOperands);
+		for (final int operand : operands) {
+			out.writeInt(operand);
+		}
+		out.writeInt(basicStatementList.list.size());
+		for (final Object element : basicStatementList.list) {
+			final BasicStatementList.ListElement e = (BasicStatementList.ListElement) element;
+			out.writeByte(e.type);
+			if (e.type == 0) {
+				out.writeUTF(e.sValue);
+			} else {
+				out.writeInt(e.iValue);
+			}
+		}
+	}
+
+	/**
+	 * Reads a statement written by write().
+	 *
+	 * @param in           where to read
+	 * @param programs     the source files, numbered as when written
+	 * @param instructions the instruction list
+	 * @return the statement
+	 * @throws IOException if the statement cannot be read
+	 */
+	static ProgramStatement read(final DataInputStream in, final MIPSprogram[] programs, final ArrayList instructions)
+			throws IOException {
+		final ProgramStatement statement = new ProgramStatement(programs[in.readInt()], in.readInt());
+		statement.instruction = (Instruction) instructions.get(in.readInt());
+		statement.binaryStatement = in.readInt();
+		statement.sourceLine = in.readInt();
+		statement.source = ObjectCache.readString(in);
+		statement.basicAssemblyStatement = ObjectCache.readString(in);
+		statement.machineStatement = ObjectCache.readString(in);
+		statement.numOperands = in.readInt();
+		statement.operands = new int[4];
+		for (int i = 0; i < statement.operands.length; i++) {
+			statement.operands[i] = in.readInt();
+		}
+		for (int elements = in.readInt(); elements > 0; elements--) {
+			final int type = in.readByte();
+			if (type == 0) {
+				statement.basicStatementList.addString(in.readUTF());
+			} else if (type == 1) {
+				statement.basicStatementList.addAddress(in.readInt());
+			} else {
+				statement.basicStatementList.addValue(in.readInt());
+			}
+		}
+		return statement;
+	}
+
 	/////////////////////////////////////////////////////////////////////////////
 	/**
 	 * Given specification of BasicInstruction for this operator, build the
@@ -323,7 +323,7 @@ public class Settings extends Observable {
 	 */
 	public boolean getBackSteppingEnabled() {
 		return Globals.program != null && Globals.program.getBackStepper() != null && Globals.program.getBackStepper()
-			.enabled();
+			.enabled() && MachineContext.current().isDefault();
 	}
 
 	/**
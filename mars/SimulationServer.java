@@ -0,0 +1,529 @@
+package mars;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import mars.assembler.SymbolTable;
+import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Coprocessor0;
+import mars.mips.hardware.Coprocessor1;
+import mars.mips.hardware.Memory;
+import mars.mips.hardware.Register;
+import mars.mips.hardware.RegisterFile;
+import mars.simulator.Breakpoints;
+import mars.simulator.ProgramArgumentList;
+import mars.simulator.Simulator;
+import mars.util.Binary;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Serves MIPS assembly and simulation to other programs on this computer, for
+ * the "server" command line option. MARS is initialized once. Each connection
+ * gets a machine of its own (see MachineContext), reused from earlier
+ * connections when possible, so connections are served at the same time and a
+ * request costs about as much as its program.
+ * <p>
+ * A request is a line of tab-separated words, some followed by a body of as
+ * many bytes of UTF-8 text as the request gives. Each request is answered by a
+ * line holding a JSON object with a "status" and, on error, "messages".
+ * <ul>
+ * <li><tt>assemble &lt;length&gt;</tt> followed by the program source: assemble
+ * it and reset the machine. Status assembled or assembly-error.</li>
+ * <li><tt>input &lt;length&gt;</tt> followed by text: add the text to the
+ * program's standard input, which ends where the text given so far ends. Status
+ * ok.</li>
+ * <li><tt>run [&lt;steps&gt;]</tt>: simulate from the program counter until
+ * the program ends, runs the given number of steps or stops at a breakpoint or
+ * watchpoint. Until then, what the program writes to standard output arrives as
+ * lines holding a JSON object with its "output". Status completed, step-limit,
+ * breakpoint or runtime-error, also giving the "exitCode" and "pc", and for a
+ * breakpoint what "stop"ped it.</li>
+ * <li><tt>step [&lt;steps&gt;]</tt>: the same, one step unless told
+ * otherwise.</li>
+ * <li><tt>stop</tt>: stop the run or step in progress, if any, which then
+ * answers with status stopped. Read while the program runs, unlike the other
+ * requests, and not answered itself. A run that exceeds the server's time
+ * limit is stopped the same way, with status timeout.</li>
+ * <li><tt>inspect registers</tt>: status ok, with the "registers" and their
+ * values.</li>
+ * <li><tt>inspect memory &lt;address&gt; &lt;count&gt;</tt>: status ok, with
+ * the "words" of memory starting at the address.</li>
+ * <li><tt>break &lt;address&gt; [&lt;condition&gt;]</tt>: stop before the
+ * statement at the address (a number or label), if the condition holds. See
+ * Breakpoints for conditions. Status ok.</li>
+ * <li><tt>watch &lt;address&gt; [read|write|access]</tt>: stop after a
+ * statement that writes (by default) or reads the word at the address. Status
+ * ok.</li>
+ * <li><tt>clear</tt>: remove all breakpoints and watchpoints, as assembling a
+ * program does. Status ok.</li>
+ * <li><tt>quit</tt>: close the connection, stopping the program if it runs.</li>
+ * </ul>
+ */
+class SimulationServer {
+
+	private static final int MAXIMUM_IDLE_MACHINES = 64;
+	private static final int MAXIMUM_BODY_LENGTH = 16 * 1024 * 1024;
+	private static final int MAXIMUM_INSPECTED_WORDS = 65536;
+
+	private final boolean extendedAssemblerEnabled;
+	private final boolean warningsAreErrors;
+	private final boolean startAtMain;
+	private final int maxSteps;
+	private final long timeoutMillis;
+	private final ArrayList programArguments;
+	private final ConcurrentLinkedQueue<MachineContext> idleMachines = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Prepares to serve requests with the given command line options.
+	 *
+	 * @param extendedAssemblerEnabled whether pseudo instructions are allowed
+	 * @param warningsAreErrors        whether assembler warnings are errors
+	 * @param startAtMain              whether programs start at label main
+	 * @param maxSteps                 step limit of run requests that give none,
+	 *                                 0 or less for none
+	 * @param timeout                  seconds a run or step request may take, 0
+	 *                                 for no limit
+	 * @param programArguments         program arguments, or null if none
+	 */
+	SimulationServer(final boolean extendedAssemblerEnabled, final boolean warningsAreErrors,
+			final boolean startAtMain, final int maxSteps, final int timeout, final ArrayList programArguments) {
+		this.extendedAssemblerEnabled = extendedAssemblerEnabled;
+		this.warningsAreErrors = warningsAreErrors;
+		this.startAtMain = startAtMain;
+		this.maxSteps = maxSteps;
+		timeoutMillis = timeout * 1000L;
+		this.programArguments = programArguments;
+	}
+
+	/**
+	 * Accepts connections from this computer and serves their requests, until
+	 * MARS is stopped.
+	 *
+	 * @param port the TCP port to listen on, 0 for any free one
+	 * @param out  stream for the address actually listened on
+	 * @throws IOException if the port cannot be listened on
+	 */
+	void serve(final int port, final PrintStream out) throws IOException {
+		final ExecutorService connections = Executors.newCachedThreadPool();
+		try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			out.println("MARS serving on " + server.getLocalSocketAddress());
+			out.flush();
+			while (true) {
+				final Socket socket = server.accept();
+				connections.execute(() -> serveConnection(socket));
+			}
+		}
+	}
+
+	private void serveConnection(final Socket socket) {
+		MachineContext machine = idleMachines.poll();
+		if (machine == null) { machine = new MachineContext(); }
+		try (Socket connection = socket) {
+			machine.run(new Connection(machine, connection));
+		} catch (final IOException e) {
+			// nothing left to do with it
+		}
+		machine.setStandardIO(null, null);
+		machine.reset();
+		if (idleMachines.size() < MAXIMUM_IDLE_MACHINES) { idleMachines.offer(machine); }
+	}
+
+	// A request line split into words, with its body if it has one.  The body is
+	// null if the request should have one but gives no valid length.
+	private static class Request {
+
+		private final String[] words;
+		private final byte[] body;
+
+		Request(final String[] words, final byte[] body) {
+			this.words = words;
+			this.body = body;
+		}
+	}
+
+	private static final Request END = new Request(new String[] { "quit" }, null);
+
+	// The requests of one connection, served inside the connection's machine.  A
+	// thread of its own reads them, so that a stop request is seen while a program
+	// runs.
+	private class Connection implements Runnable {
+
+		private final MachineContext machine;
+		private final DataInputStream from;
+		private final PrintStream to;
+		private final ProgramInput input = new ProgramInput();
+		private final PrintStream output;
+		private File directory; // holds the source of the program, once there is one
+		private MIPSprogram code; // null until a program is assembled
+		private final LinkedBlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+		private volatile Simulator simulator; // the machine's, for the reading thread
+		private volatile Object currentRun; // identifies the run or step in progress, null if none
+		private volatile String stopReason; // why the current run was stopped, null if it was not
+
+		Connection(final MachineContext machine, final Socket socket) throws IOException {
+			this.machine = machine;
+			from = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			to = new PrintStream(socket.getOutputStream(), false, "UTF-8");
+			output = new PrintStream(new ProgramOutput(), true, "UTF-8");
+		}
+
+		@Override
+		public void run() {
+			simulator = Simulator.getInstance();
+			final Thread reader = new Thread(this::readRequests, "MARS server connection");
+			reader.setDaemon(true);
+			try {
+				machine.setStandardIO(input, output);
+				machine.reset();
+				reader.start();
+				Request request;
+				while (!(request = requests.take()).words[0].equals("quit")) {
+					final String response = serve(request);
+					synchronized (to) {
+						to.println(response);
+						to.flush();
+					}
+				}
+			} catch (final IOException e) {
+				// the connection is gone
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				if (directory != null) {
+					new File(directory, "program.asm").delete();
+					directory.delete();
+				}
+			}
+		}
+
+		// Read requests and queue them for run(), until the connection ends.  A stop
+		// request, quit and the end of the connection stop the program at once.
+		private void readRequests() {
+			try {
+				String line;
+				while ((line = readLine()) != null) {
+					final String[] words = line.split("\t");
+					if (words[0].equals("stop") || words[0].equals("quit")) { stopRun("stopped"); }
+					if (words[0].equals("stop")) { continue; }
+					byte[] body = null;
+					if (words[0].equals("assemble") || words[0].equals("input")) {
+						try {
+							body = readBody(words);
+						} catch (final NumberFormatException e) {
+							// answered as an invalid number
+						}
+					}
+					requests.add(new Request(words, body));
+				}
+			} catch (final IOException e) {
+				// the connection is gone
+			}
+			stopRun("stopped"); // no one is left to wait for it
+			requests.add(END);
+		}
+
+		// Stop the run in progress, if any, giving the reason as its status.
+		private void stopRun(final String reason) {
+			final Object run = currentRun;
+			if (run == null) { return; }
+			synchronized (this) {
+				if (stopReason == null) { stopReason = reason; }
+			}
+			// Stopping has no effect until the simulation has started, so keep trying.
+			while (currentRun == run) {
+				simulator.stopExecution(null);
+				try {
+					Thread.sleep(10);
+				} catch (final InterruptedException e) {
+					return;
+				}
+			}
+		}
+
+		private String serve(final Request request) throws IOException {
+			final String[] words = request.words;
+			try {
+				switch (words[0]) {
+				case "assemble":
+					return assemble(new String(body(request), "UTF-8"));
+				case "input":
+					input.add(body(request));
+					return "{\"status\":\"ok\"}";
+				case "run":
+					return simulate(words.length > 1 ? Integer.decode(words[1]) : maxSteps);
+				case "step":
+					return simulate(words.length > 1 ? Integer.decode(words[1]) : 1);
+				case "break":
+					if (words.length < 2 || words.length > 3) {
+						return error("break takes an address and optionally a condition");
+					}
+					breakpoints().setBreakpoint(Breakpoints.parseAddress(words[1], labels()), words.length > 2 ? words[2]
+							: null, labels());
+					return "{\"status\":\"ok\"}";
+				case "watch":
+					if (words.length < 2 || words.length > 3) {
+						return error("watch takes an address and optionally an access");
+					}
+					final int access = words.length == 2 || words[2].equals("write") ? Memory.WATCH_WRITE
+							: words[2].equals("read") ? Memory.WATCH_READ : words[2].equals("access") ? Memory.WATCH_READ
+									| Memory.WATCH_WRITE : 0;
+					if (access == 0) { return error("watch access must be read, write or access"); }
+					breakpoints().setWatchpoint(Breakpoints.parseAddress(words[1], labels()), access);
+					return "{\"status\":\"ok\"}";
+				case "clear":
+					breakpoints().clear();
+					return "{\"status\":\"ok\"}";
+				case "inspect":
+					if (words.length == 2 && words[1].equals("registers")) { return inspectRegisters(); }
+					if (words.length == 4 && words[1].equals("memory")) {
+						return inspectMemory(Binary.stringToInt(words[2]), Binary.stringToInt(words[3]));
+					}
+					return error("inspect takes registers, or memory with an address and a count of words");
+				default:
+					return error("unknown request " + words[0]);
+				}
+			} catch (final NumberFormatException e) {
+				return error("invalid number in request " + words[0]);
+			} catch (final IllegalArgumentException e) {
+				return error(e.getMessage());
+			}
+		}
+
+		private byte[] body(final Request request) {
+			if (request.body == null) { throw new NumberFormatException(); } // reported as an invalid number
+			return request.body;
+		}
+
+		private Breakpoints breakpoints() { return Simulator.getInstance().getBreakpoints(); }
+
+		// Labels of the program assembled, if any.
+		private SymbolTable labels() { return code == null ? null : code.getLocalSymbolTable(); }
+
+		private String assemble(final String source) throws IOException {
+			if (directory == null) { directory = Files.createTempDirectory("mars").toFile(); }
+			final File file = new File(directory, "program.asm");
+			Files.write(file.toPath(), source.getBytes("UTF-8"));
+			machine.reset();
+			code = new MIPSprogram();
+			final ArrayList files = new ArrayList();
+			files.add(file.getPath());
+			try {
+				final ErrorList warnings = code.assemble(code.prepareFilesForAssembly(files, file.getPath(), null),
+						extendedAssemblerEnabled, warningsAreErrors);
+				RegisterFile.initializeProgramCounter(startAtMain);
+				new ProgramArgumentList(programArguments).storeProgramArguments();
+				return "{\"status\":\"assembled\",\"messages\":" + BatchRunner.quote(warnings == null ? ""
+						: warnings.generateWarningReport()) + "}";
+			} catch (final ProcessingException e) {
+				code = null;
+				return "{\"status\":\"assembly-error\",\"messages\":" + BatchRunner.quote(e.errors()
+						.generateErrorAndWarningReport()) + "}";
+			}
+		}
+
+		private String simulate(final int steps) {
+			if (code == null) { return error("no program has been assembled"); }
+			String status, messages = "";
+			String stop = null;
+			final Object run = new Object();
+			stopReason = null;
+			currentRun = run;
+			Thread watchdog = null;
+			if (timeoutMillis > 0) {
+				watchdog = new Thread(() -> {
+					try {
+						Thread.sleep(timeoutMillis);
+						stopRun("timeout");
+					} catch (final InterruptedException e) {
+						// the run ended in time
+					}
+				}, "MARS server watchdog");
+				watchdog.setDaemon(true);
+				watchdog.start();
+			}
+			try {
+				status = code.simulate(steps) ? "completed" : "step-limit";
+				stop = breakpoints().getLastStop();
+				if (stop != null) {
+					status = "breakpoint";
+				} else if (status.equals("step-limit") && stopReason != null) {
+					status = stopReason;
+				}
+			} catch (final ProcessingException e) {
+				status = "runtime-error";
+				messages = e.errors().generateErrorAndWarningReport();
+			} finally {
+				currentRun = null;
+				if (watchdog != null) { watchdog.interrupt(); }
+			}
+			output.flush(); // the rest of what the program wrote comes before the response
+			return "{\"status\":\"" + status + "\",\"exitCode\":" + machine.getExitCode() + ",\"pc\":" + RegisterFile
+					.getProgramCounter() + (stop == null ? "" : ",\"stop\":" + BatchRunner.quote(stop))
+					+ ",\"messages\":" + BatchRunner.quote(messages) + "}";
+		}
+
+		private String inspectRegisters() {
+			final StringBuilder json = new StringBuilder("{\"status\":\"ok\",\"registers\":{");
+			for (final Register register : RegisterFile.getRegisters()) {
+				json.append(BatchRunner.quote(register.getName())).append(':').append(register.getValueNoNotify())
+						.append(',');
+			}
+			json.append("\"pc\":").append(RegisterFile.getProgramCounter());
+			json.append(",\"hi\":").append(RegisterFile.getValueNoNotify(33));
+			json.append(",\"lo\":").append(RegisterFile.getValueNoNotify(34));
+			for (final Register register : Coprocessor1.getRegisters()) {
+				json.append(',').append(BatchRunner.quote(register.getName())).append(':').append(register
+						.getValueNoNotify());
+			}
+			for (final Register register : Coprocessor0.getRegisters()) {
+				json.append(',').append(BatchRunner.quote(register.getName())).append(':').append(register
+						.getValueNoNotify());
+			}
+			return json.append("}}").toString();
+		}
+
+		private String inspectMemory(final int address, final int count) {
+			if (count < 0 || count > MAXIMUM_INSPECTED_WORDS) {
+				return error("count of words must be 0 to " + MAXIMUM_INSPECTED_WORDS);
+			}
+			final StringBuilder json = new StringBuilder("{\"status\":\"ok\",\"words\":[");
+			try {
+				for (int i = 0; i < count; i++) {
+					final int word = address + i * Memory.WORD_LENGTH_BYTES;
+					if (i > 0) { json.append(','); }
+					// The text segment holds machine code, which is read raw.
+					if (Memory.inTextSegment(word) || Memory.inKernelTextSegment(word)) {
+						final Integer value = Memory.getInstance().getRawWordOrNull(word);
+						json.append(value == null ? 0 : value);
+					} else {
+						json.append(Memory.getInstance().getWordNoNotify(word));
+					}
+				}
+			} catch (final AddressErrorException e) {
+				return error(e.getMessage());
+			}
+			return json.append("]}").toString();
+		}
+
+		private String error(final String message) {
+			return "{\"status\":\"error\",\"messages\":" + BatchRunner.quote(message) + "}";
+		}
+
+		// Read a request line, without its end, or null at end of connection.
+		private String readLine() throws IOException {
+			final ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int b;
+			while ((b = from.read()) != '\n') {
+				if (b < 0) { return line.size() == 0 ? null : line.toString("UTF-8"); }
+				if (b != '\r') { line.write(b); }
+			}
+			return line.toString("UTF-8");
+		}
+
+		// Read the body following a request that gives its length.
+		private byte[] readBody(final String[] words) throws IOException {
+			final int length = words.length > 1 ? Integer.decode(words[1]) : -1;
+			if (length < 0 || length > MAXIMUM_BODY_LENGTH) {
+				throw new NumberFormatException(); // reported as an invalid number
+			}
+			final byte[] body = new byte[length];
+			from.readFully(body);
+			return body;
+		}
+
+		// Standard output of the program, sent to the client whenever flushed.
+		private class ProgramOutput extends OutputStream {
+
+			private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+			@Override
+			public void write(final int b) { pending.write(b); }
+
+			@Override
+			public void write(final byte[] b, final int off, final int len) { pending.write(b, off, len); }
+
+			@Override
+			public void flush() throws IOException {
+				if (pending.size() == 0) { return; }
+				final String output = pending.toString("UTF-8");
+				pending.reset();
+				synchronized (to) {
+					to.println("{\"output\":" + BatchRunner.quote(output) + "}");
+					to.flush();
+				}
+			}
+		}
+	}
+
+	// Standard input of a program: the text of the input requests so far, then end of file.
+	private static class ProgramInput extends InputStream {
+
+		private byte[] data = new byte[0];
+		private int position = 0;
+
+		synchronized void add(final byte[] more) {
+			final byte[] joined = new byte[data.length - position + more.length];
+			System.arraycopy(data, position, joined, 0, data.length - position);
+			System.arraycopy(more, 0, joined, data.length - position, more.length);
+			data = joined;
+			position = 0;
+		}
+
+		@Override
+		public synchronized int read() { return position < data.length ? data[position++] & 0xff : -1; }
+
+		@Override
+		public synchronized int read(final byte[] b, final int off, final int len) {
+			if (len == 0) { return 0; }
+			if (position >= data.length) { return -1; }
+			final int count = Math.min(len, data.length - position);
+			System.arraycopy(data, position, b, off, count);
+			position += count;
+			return count;
+		}
+
+		@Override
+		public synchronized int available() { return data.length - position; }
+	}
+}
@@ -7,6 +7,7 @@ import java.util.Comparator;
 import mars.ErrorList;
 import mars.ErrorMessage;
 import mars.Globals;
+import mars.MachineContext;
 import mars.MIPSprogram;
 import mars.ProcessingException;
 import mars.ProgramStatement;
@@ -176,8 +177,8 @@ public class Assembler {
 		externAddress = Memory.externBaseAddress;
 		currentFileDataSegmentForwardReferences = new DataSegmentForwardReferences();
 		accumulatedDataSegmentForwardReferences = new DataSegmentForwardReferences();
-		Globals.symbolTable.clear();
-		Globals.memory.clear();
+		MachineContext.current().getSymbolTable().clear();
+		Memory.getInstance().clear();
 		machineList = new ArrayList();
 		errors = new ErrorList();
 		if (Globals.debug) { System.out.println("Assembler first pass begins:"); }
@@ -242,7 +243,7 @@ public class Assembler {
 		// Have processed all source files. Attempt to resolve any remaining forward label
 		// references from global symbol table. Those that remain unresolved are undefined
 		// and require error message.
-		accumulatedDataSegmentForwardReferences.resolve(Globals.symbolTable);
+		accumulatedDataSegmentForwardReferences.resolve(MachineContext.current().getSymbolTable());
 		accumulatedDataSegmentForwardReferences.generateErrorMessages(errors);
 
 		// Throw collection of errors accumulated through the first pass.
@@ -342,7 +343,7 @@ public class Assembler {
 			statement.buildMachineStatementFromBasicStatement(errors);
 			if (Globals.debug) { System.out.println(statement); }
 			try {
-				Globals.memory.setStatement(statement.getAddress(), statement);
+				Memory.getInstance().setStatement(statement.getAddress(), statement);
 			} catch (final AddressErrorException e) {
 				final Token t = statement.getOriginalTokenList().get(0);
 				errors.add(new ErrorMessage(t.getSourceMIPSprogram(), t.getSourceLine(), t.getStartPos(),
@@ -561,7 +562,7 @@ public class Assembler {
 	// memory model and the instruction has to have defined an
 	// alternate compact translation.
 	private boolean compactTranslationCanBeApplied(final ProgramStatement statement) {
-		return statement.getInstruction() instanceof ExtendedInstruction && Globals.memory
+		return statement.getInstruction() instanceof ExtendedInstruction && Memory.getInstance()
 				.usingCompactMemoryConfiguration() && ((ExtendedInstruction) statement.getInstruction())
 						.hasCompactTranslation();
 	}
@@ -753,8 +754,8 @@ public class Assembler {
 					}
 					final int size = Binary.stringToInt(tokens.get(2).getValue());
 					// If label already in global symtab, do nothing. If not, add it right now.
-					if (Globals.symbolTable.getAddress(tokens.get(1).getValue()) == SymbolTable.NOT_FOUND) {
-						Globals.symbolTable.addSymbol(tokens.get(1), externAddress, Symbol.DATA_SYMBOL, errors);
+					if (MachineContext.current().getSymbolTable().getAddress(tokens.get(1).getValue()) == SymbolTable.NOT_FOUND) {
+						MachineContext.current().getSymbolTable().addSymbol(tokens.get(1), externAddress, Symbol.DATA_SYMBOL, errors);
 						externAddress += size;
 					}
 				} else if (direct == Directives.SET) {
@@ -800,12 +801,12 @@ public class Assembler {
 				errors.add(new ErrorMessage(fileCurrentlyBeingAssembled, label.getSourceLine(), label.getStartPos(),
 						"\"" + label.getValue() + "\" declared global label but not defined."));
 			} else {
-				if (Globals.symbolTable.getAddress(label.getValue()) != SymbolTable.NOT_FOUND) {
+				if (MachineContext.current().getSymbolTable().getAddress(label.getValue()) != SymbolTable.NOT_FOUND) {
 					errors.add(new ErrorMessage(fileCurrentlyBeingAssembled, label.getSourceLine(), label.getStartPos(),
 							"\"" + label.getValue() + "\" already defined as global in a different file."));
 				} else {
 					fileCurrentlyBeingAssembled.getLocalSymbolTable().removeSymbol(label);
-					Globals.symbolTable.addSymbol(label, symtabEntry.getAddress(), symtabEntry.getType(), errors);
+					MachineContext.current().getSymbolTable().addSymbol(label, symtabEntry.getAddress(), symtabEntry.getType(), errors);
 				}
 			}
 		}
@@ -904,7 +905,7 @@ public class Assembler {
 			 * the future adds capability of writing to the text segment (e.g. ability to
 			 * de-assemble a binary value into its corresponding MIPS instruction) else { //
 			 * not in data segment...which we assume to mean in text segment. try { for (int
-			 * i=0; i < repetitions; i++) { Globals.memory.set(this.textAddress.get(),
+			 * i=0; i < repetitions; i++) { Memory.getInstance().set(this.textAddress.get(),
 			 * Binary.stringToInt(valueToken.getValue()), lengthInBytes);
 			 * this.textAddress.increment(lengthInBytes); } } catch (AddressErrorException
 			 * e) { errors.add(new ErrorMessage(token.getSourceMIPSprogram(),
@@ -959,7 +960,7 @@ public class Assembler {
 			 ********/
 			else {
 				try {
-					Globals.memory.set(textAddress.get(), value, lengthInBytes);
+					Memory.getInstance().set(textAddress.get(), value, lengthInBytes);
 				} catch (final AddressErrorException e) {
 					errors.add(new ErrorMessage(token.getSourceMIPSprogram(), token.getSourceLine(), token
 							.getStartPos(), "\"" + textAddress.get() + "\" is not a valid text segment address"));
@@ -1084,7 +1085,7 @@ public class Assembler {
 						}
 					}
 					try {
-						Globals.memory.set(dataAddress.get(), theChar, DataTypes.CHAR_SIZE);
+						Memory.getInstance().set(dataAddress.get(), theChar, DataTypes.CHAR_SIZE);
 					} catch (final AddressErrorException e) {
 						errors.add(new ErrorMessage(token.getSourceMIPSprogram(), token.getSourceLine(), token
 								.getStartPos(), "\"" + dataAddress.get() + "\" is not a valid data segment address"));
@@ -1093,7 +1094,7 @@ public class Assembler {
 				}
 				if (direct == Directives.ASCIIZ) {
 					try {
-						Globals.memory.set(dataAddress.get(), 0, DataTypes.CHAR_SIZE);
+						Memory.getInstance().set(dataAddress.get(), 0, DataTypes.CHAR_SIZE);
 					} catch (final AddressErrorException e) {
 						errors.add(new ErrorMessage(token.getSourceMIPSprogram(), token.getSourceLine(), token
 								.getStartPos(), "\"" + dataAddress.get() + "\" is not a valid data segment address"));
@@ -1124,7 +1125,7 @@ public class Assembler {
 			final ErrorList errors) {
 		if (autoAlign) { dataAddress.set(alignToBoundary(dataAddress.get(), lengthInBytes)); }
 		try {
-			Globals.memory.set(dataAddress.get(), value, lengthInBytes);
+			Memory.getInstance().set(dataAddress.get(), value, lengthInBytes);
 		} catch (final AddressErrorException e) {
 			errors.add(new ErrorMessage(token.getSourceMIPSprogram(), token.getSourceLine(), token.getStartPos(), "\""
 					+ dataAddress.get() + "\" is not a valid data segment address"));
@@ -1144,7 +1145,7 @@ public class Assembler {
 		final int lengthInBytes = DataTypes.DOUBLE_SIZE;
 		if (autoAlign) { dataAddress.set(alignToBoundary(dataAddress.get(), lengthInBytes)); }
 		try {
-			Globals.memory.setDouble(dataAddress.get(), value);
+			Memory.getInstance().setDouble(dataAddress.get(), value);
 		} catch (final AddressErrorException e) {
 			errors.add(new ErrorMessage(token.getSourceMIPSprogram(), token.getSourceLine(), token.getStartPos(), "\""
 					+ dataAddress.get() + "\" is not a valid data segment address"));
@@ -1297,19 +1298,22 @@ public class Assembler {
 			int count = 0;
 			int labelAddress;
 			DataSegmentForwardReference entry;
+			// unresolved entries are moved down over the resolved ones, in one pass
+			int remaining = 0;
 			for (int i = 0; i < forwardReferenceList.size(); i++) {
 				entry = (DataSegmentForwardReference) forwardReferenceList.get(i);
 				labelAddress = localSymtab.getAddressLocalOrGlobal(entry.token.getValue());
 				if (labelAddress != SymbolTable.NOT_FOUND) {
 					// patch address has to be valid b/c we already stored there...
 					try {
-						Globals.memory.set(entry.patchAddress, labelAddress, entry.length);
+						Memory.getInstance().set(entry.patchAddress, labelAddress, entry.length);
 					} catch (final AddressErrorException aee) {}
-					forwardReferenceList.remove(i);
-					i--; // needed because removal shifted the remaining list indices down
 					count++;
+				} else {
+					forwardReferenceList.set(remaining++, entry);
 				}
 			}
+			forwardReferenceList.subList(remaining, forwardReferenceList.size()).clear();
 			return count;
 		}
 
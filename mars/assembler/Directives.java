@@ -1,6 +1,8 @@
 package mars.assembler;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
 
 /*
  * Copyright (c) 2003-2012, Pete Sanderson and Kenneth Vollmar
@@ -42,6 +44,8 @@ import java.util.ArrayList;
 public final class Directives {
 
 	private static ArrayList directiveList = new ArrayList();
+	// directives by lower case name, for matchDirective
+	private static HashMap<String, Directives> directiveIndex = new HashMap<>();
 	public static final Directives DATA = new Directives(".data",
 			"Subsequent items stored in Data segment at next available address");
 	public static final Directives TEXT = new Directives(".text",
@@ -97,6 +101,7 @@ public final class Directives {
 		descriptor = name;
 		this.description = description;
 		directiveList.add(this);
+		directiveIndex.putIfAbsent(name.toLowerCase(Locale.ROOT), this);
 	}
 
 	/**
@@ -108,6 +113,13 @@ public final class Directives {
 	 **/
 
 	public static Directives matchDirective(final String str) {
+		// Plain ASCII names are looked up, others compared to each directive so that
+		// case folding stays that of equalsIgnoreCase.
+		boolean ascii = true;
+		for (int i = 0; ascii && i < str.length(); i++) {
+			ascii = str.charAt(i) < 128;
+		}
+		if (ascii) { return directiveIndex.get(str.toLowerCase(Locale.ROOT)); }
 		Directives match;
 		for (int i = 0; i < directiveList.size(); i++) {
 			match = (Directives) directiveList.get(i);
@@ -1,10 +1,13 @@
 package mars.assembler;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
 
 import mars.ErrorList;
 import mars.ErrorMessage;
 import mars.Globals;
+import mars.MachineContext;
 
 /*
  * Copyright (c) 2003-2006, Pete Sanderson and Kenneth Vollmar
@@ -44,7 +47,11 @@ public class SymbolTable {
 
 	private static String startLabel = "main";
 	private final String filename;
-	private ArrayList table;
+	// symbols by name, in the order they were added
+	private LinkedHashMap<String, Symbol> table;
+	// symbols by address, those sharing one in the order they were added; kept
+	// up to date by fixSymbolTableAddress, the only place addresses change
+	private TreeMap<Integer, ArrayList<Symbol>> addressIndex;
 	// Note -1 is legal 32 bit address (0xFFFFFFFF) but it is the high address in
 	// kernel address space so highly unlikely that any symbol will have this as
 	// its associated address!
@@ -59,7 +66,8 @@ public class SymbolTable {
 	 */
 	public SymbolTable(final String filename) {
 		this.filename = filename;
-		table = new ArrayList();
+		table = new LinkedHashMap<>();
+		addressIndex = new TreeMap<>();
 	}
 
 	/**
@@ -78,7 +86,8 @@ public class SymbolTable {
 					"label \"" + label + "\" already defined"));
 		} else {
 			final Symbol s = new Symbol(label, address, b);
-			table.add(s);
+			table.put(label, s);
+			addressIndex.computeIfAbsent(address, k -> new ArrayList<>(1)).add(s);
 			if (Globals.debug) {
 				System.out.println("The symbol " + label + " with address " + address + " has been added to the "
 						+ filename + " symbol table.");
@@ -96,14 +105,14 @@ public class SymbolTable {
 
 	public void removeSymbol(final Token token) {
 		final String label = token.getValue();
-		for (int i = 0; i < table.size(); i++) {
-			if (((Symbol) table.get(i)).getName().equals(label)) {
-				table.remove(i);
-				if (Globals.debug) {
-					System.out.println("The symbol " + label + " has been removed from the " + filename
-							+ " symbol table.");
-				}
-				break;
+		final Symbol symbol = table.remove(label);
+		if (symbol != null) {
+			final ArrayList<Symbol> atAddress = addressIndex.get(symbol.getAddress());
+			atAddress.remove(symbol);
+			if (atAddress.isEmpty()) { addressIndex.remove(symbol.getAddress()); }
+			if (Globals.debug) {
+				System.out.println("The symbol " + label + " has been removed from the " + filename
+						+ " symbol table.");
 			}
 		}
 		return;
@@ -117,10 +126,8 @@ public class SymbolTable {
 	 *         symbol table.
 	 **/
 	public int getAddress(final String s) {
-		for (int i = 0; i < table.size(); i++) {
-			if (((Symbol) table.get(i)).getName().equals(s)) { return ((Symbol) table.get(i)).getAddress(); }
-		}
-		return NOT_FOUND;
+		final Symbol symbol = table.get(s);
+		return symbol == null ? NOT_FOUND : symbol.getAddress();
 	}
 
 	/**
@@ -134,7 +141,7 @@ public class SymbolTable {
 	 **/
 	public int getAddressLocalOrGlobal(final String s) {
 		final int address = getAddress(s);
-		return address == NOT_FOUND ? Globals.symbolTable.getAddress(s) : address;
+		return address == NOT_FOUND ? MachineContext.current().getSymbolTable().getAddress(s) : address;
 	}
 
 	/**
@@ -146,10 +153,7 @@ public class SymbolTable {
 	 **/
 
 	public Symbol getSymbol(final String s) {
-		for (int i = 0; i < table.size(); i++) {
-			if (((Symbol) table.get(i)).getName().equals(s)) { return (Symbol) table.get(i); }
-		}
-		return null;
+		return table.get(s);
 	}
 
 	/**
@@ -167,10 +171,21 @@ public class SymbolTable {
 		} catch (final NumberFormatException e) {
 			return null;
 		}
-		for (int i = 0; i < table.size(); i++) {
-			if (((Symbol) table.get(i)).getAddress() == address) { return (Symbol) table.get(i); }
-		}
-		return null;
+		return getSymbolGivenAddress(address);
+	}
+
+	/**
+	 * Produce Symbol object from symbol table that has the given address. If
+	 * several do, the one added first.
+	 *
+	 * @param address the address
+	 * @return Symbol object having requested address, null if address not found in
+	 *         symbol table.
+	 **/
+
+	public Symbol getSymbolGivenAddress(final int address) {
+		final ArrayList<Symbol> atAddress = addressIndex.get(address);
+		return atAddress == null ? null : atAddress.get(0);
 	}
 
 	/**
@@ -183,7 +198,7 @@ public class SymbolTable {
 	 **/
 	public Symbol getSymbolGivenAddressLocalOrGlobal(final String s) {
 		final Symbol sym = getSymbolGivenAddress(s);
-		return sym == null ? Globals.symbolTable.getSymbolGivenAddress(s) : sym;
+		return sym == null ? MachineContext.current().getSymbolTable().getSymbolGivenAddress(s) : sym;
 	}
 
 	/**
@@ -194,8 +209,8 @@ public class SymbolTable {
 
 	public ArrayList getDataSymbols() {
 		final ArrayList list = new ArrayList();
-		for (int i = 0; i < table.size(); i++) {
-			if (((Symbol) table.get(i)).getType()) { list.add(table.get(i)); }
+		for (final Symbol symbol : table.values()) {
+			if (symbol.getType()) { list.add(symbol); }
 		}
 		return list;
 	}
@@ -208,8 +223,8 @@ public class SymbolTable {
 
 	public ArrayList getTextSymbols() {
 		final ArrayList list = new ArrayList();
-		for (int i = 0; i < table.size(); i++) {
-			if (!((Symbol) table.get(i)).getType()) { list.add(table.get(i)); }
+		for (final Symbol symbol : table.values()) {
+			if (!symbol.getType()) { list.add(symbol); }
 		}
 		return list;
 	}
@@ -221,11 +236,7 @@ public class SymbolTable {
 	 **/
 
 	public ArrayList getAllSymbols() {
-		final ArrayList list = new ArrayList();
-		for (int i = 0; i < table.size(); i++) {
-			list.add(table.get(i));
-		}
-		return list;
+		return new ArrayList(table.values());
 	}
 
 	/**
@@ -241,7 +252,8 @@ public class SymbolTable {
 	 **/
 
 	public void clear() {
-		table = new ArrayList();
+		table = new LinkedHashMap<>();
+		addressIndex = new TreeMap<>();
 	}
 
 	/**
@@ -256,10 +268,21 @@ public class SymbolTable {
 	 */
 
 	public void fixSymbolTableAddress(final int originalAddress, final int replacementAddress) {
-		Symbol label = getSymbolGivenAddress(Integer.toString(originalAddress));
-		while (label != null) {
+		if (originalAddress == replacementAddress) { return; }
+		final ArrayList<Symbol> moved = addressIndex.remove(originalAddress);
+		if (moved == null) { return; }
+		for (final Symbol label : moved) {
 			label.setAddress(replacementAddress);
-			label = getSymbolGivenAddress(Integer.toString(originalAddress));
+		}
+		final ArrayList<Symbol> atReplacement = addressIndex.get(replacementAddress);
+		if (atReplacement == null) {
+			addressIndex.put(replacementAddress, moved);
+		} else {
+			// keep them in the order they were added, as found in the table
+			atReplacement.clear();
+			for (final Symbol symbol : table.values()) {
+				if (symbol.getAddress() == replacementAddress) { atReplacement.add(symbol); }
+			}
 		}
 		return;
 	}
@@ -42,7 +42,7 @@ public class Token {
 
 	private TokenTypes type;
 	private final String value;
-	private final MIPSprogram sourceMIPSprogram;
+	private MIPSprogram sourceMIPSprogram;
 	private final int sourceLine, sourcePos;
 	// original program and line will differ from the above if token was defined in an included file
 	private MIPSprogram originalMIPSprogram;
@@ -87,6 +87,12 @@ public class Token {
 		originalSourceLine = origSourceLine;
 	}
 
+	// Moves the token from one program to another, for TokenCache.
+	void rebind(final MIPSprogram from, final MIPSprogram to) {
+		if (sourceMIPSprogram == from) { sourceMIPSprogram = to; }
+		if (originalMIPSprogram == from) { originalMIPSprogram = to; }
+	}
+
 	/**
 	 * Produces original program containing this token.
 	 *
@@ -0,0 +1,304 @@
+package mars.assembler;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import mars.Globals;
+import mars.MIPSprogram;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * The token lists of the source files last assembled on a machine, so that
+ * assembling them again tokenizes only what changed. A file whose source, and
+ * that of the files it includes, is unchanged gets its previous token lists
+ * back. One that kept its number of lines and has no .include or .eqv
+ * directives gets them back for its unchanged lines. The tokens are handed over
+ * to the MIPSprogram of the new assembly, so an entry is taken out while it is
+ * in use. Used by Tokenizer.tokenize(); each MachineContext has one.
+ * <p>
+ * Given a directory, for the "cache" command line option, it also keeps there
+ * the tokens of included files that include no files themselves, so that
+ * programs including the same file, such as a library shared by many
+ * submissions, tokenize it only once. Included files are inserted into the
+ * including file before anything is assembled, so their tokens do not depend on
+ * where they end up. They are kept under a hash of the file's lines and the .eqv
+ * symbols defined before it, which are all that can change them. Files that
+ * cannot be read or written are treated as absent.
+ */
+public class TokenCache {
+
+	private static final int MAGIC = 0x4D544F4B; // "MTOK"
+	private static final int FORMAT = 1;
+	private static final String EXTENSION = ".tok";
+	private static final String PLAIN_EXTENSION = ".inc";
+	private static final int NOT_IN_LINE = 0xFFFF; // length of a token value kept as is
+	// The token types by their number in token files.
+	private static final TokenTypes[] TYPES = { TokenTypes.COMMENT, TokenTypes.DIRECTIVE, TokenTypes.OPERATOR,
+			TokenTypes.DELIMITER, TokenTypes.REGISTER_NAME, TokenTypes.REGISTER_NUMBER, TokenTypes.FP_REGISTER_NAME,
+			TokenTypes.IDENTIFIER, TokenTypes.LEFT_PAREN, TokenTypes.RIGHT_PAREN, TokenTypes.INTEGER_5,
+			TokenTypes.INTEGER_16, TokenTypes.INTEGER_16U, TokenTypes.INTEGER_32, TokenTypes.REAL_NUMBER,
+			TokenTypes.QUOTED_STRING, TokenTypes.PLUS, TokenTypes.MINUS, TokenTypes.COLON, TokenTypes.ERROR,
+			TokenTypes.MACRO_PARAMETER };
+
+	private final HashMap<String, Entry> entries = new HashMap<>();
+	private volatile File directory; // where the tokens of included files are kept, null if nowhere
+
+	// Removes and returns the entry for the file, null if there is none.
+	synchronized Entry take(final String filename) {
+		return entries.remove(filename);
+	}
+
+	synchronized void put(final String filename, final Entry entry) {
+		entries.put(filename, entry);
+	}
+
+	/**
+	 * Forgets all files but the given ones, such as those just assembled.
+	 *
+	 * @param filenames names of the files to keep
+	 */
+	public synchronized void retain(final Collection<?> filenames) {
+		entries.keySet().retainAll(filenames);
+	}
+
+	/**
+	 * Forgets all files.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Keeps the tokens of included files in the given directory too, which is
+	 * created when first needed.
+	 *
+	 * @param directory the directory, or null to keep them in memory only
+	 */
+	public void keepIncludesIn(final File directory) {
+		this.directory = directory;
+	}
+
+	// A hash of the lines of an included file, naming the file's kept tokens
+	// together with the .eqv symbols defined before it.  Null if the tokens of
+	// included files are not kept.
+	byte[] hashLines(final ArrayList lines) {
+		if (directory == null) { return null; }
+		final MessageDigest digest = newDigest();
+		digest.update((FORMAT + " " + Globals.version + "\n").getBytes(StandardCharsets.UTF_8));
+		for (final Object line : lines) {
+			digest.update(((String) line).getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) '\n'); // no line holds one
+		}
+		return digest.digest();
+	}
+
+	// Whether the included file with the hashed lines is known to include no files
+	// and to tokenize without errors.
+	boolean isPlainInclude(final byte[] linesHash) {
+		return linesHash != null && new File(directory, toHex(linesHash) + PLAIN_EXTENSION).isFile();
+	}
+
+	// The key of the tokens of the included file with the hashed lines, tokenized
+	// with the given .eqv symbols defined.
+	private static byte[] includeKey(final byte[] linesHash, final Map<String, String> equivalents) {
+		final MessageDigest digest = newDigest();
+		digest.update(linesHash);
+		for (final Map.Entry<String, String> equivalent : new TreeMap<>(equivalents).entrySet()) {
+			digest.update((equivalent.getKey() + "\n" + equivalent.getValue() + "\n").getBytes(
+					StandardCharsets.UTF_8));
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // every Java platform has SHA-256
+		}
+	}
+
+	private static String toHex(final byte[] bytes) {
+		final StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (final byte b : bytes) {
+			hex.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	// The text a line's tokens were taken from: the line after .eqv substitution,
+	// unless it defines a symbol.
+	private static String tokenized(final String line, final TokenList tokens) {
+		return tokens.getProcessedLine().isEmpty() ? line : tokens.getProcessedLine();
+	}
+
+	// Returns the kept tokens of the included file with the hashed lines, as
+	// tokenizing them as lines firstLine on of the program would, and defines its
+	// .eqv symbols.  Returns null, changing nothing, if they are not kept.
+	ArrayList loadInclude(final byte[] linesHash, final ArrayList lines, final MIPSprogram program,
+			final int firstLine, final HashMap<String, String> equivalents) {
+		final byte[] key = includeKey(linesHash, equivalents);
+		final File tokenFile = new File(directory, toHex(key) + EXTENSION);
+		if (!tokenFile.isFile()) { return null; }
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(tokenFile
+				.toPath())))) {
+			final byte[] storedKey = new byte[key.length];
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT) { return null; }
+			in.readFully(storedKey);
+			if (!Arrays.equals(storedKey, key) || in.readInt() != lines.size()) { return null; }
+			final ArrayList tokens = new ArrayList(lines.size());
+			for (int i = 0; i < lines.size(); i++) {
+				final TokenList line = new TokenList();
+				// The tokenizer tells substitutions by the processed line being another object.
+				line.setProcessedLine(in.readBoolean() ? in.readUTF() : (String) lines.get(i));
+				final String text = tokenized((String) lines.get(i), line);
+				for (int count = in.readUnsignedShort(); count > 0; count--) {
+					final TokenTypes type = TYPES[in.readByte()];
+					final int start = in.readUnsignedShort();
+					final int length = in.readUnsignedShort();
+					final String value = length == NOT_IN_LINE ? in.readUTF()
+							: text.substring(start - 1, start - 1 + length);
+					line.add(new Token(type, value, program, firstLine + i, start));
+				}
+				tokens.add(line);
+			}
+			final HashMap<String, String> defined = new HashMap<>();
+			for (int count = in.readInt(); count > 0; count--) {
+				defined.put(in.readUTF(), in.readUTF());
+			}
+			equivalents.clear();
+			equivalents.putAll(defined);
+			return tokens;
+		} catch (final IOException | RuntimeException e) {
+			return null; // damaged, tokenized again
+		}
+	}
+
+	// Keeps the tokens that the included file with the hashed lines, which has no
+	// errors and includes no files, was just tokenized to from the given .eqv
+	// symbols, followed by the symbols defined after it.
+	void saveInclude(final byte[] linesHash, final Map<String, String> equivalentsBefore, final ArrayList lines,
+			final List tokens, final Map<String, String> equivalents) {
+		final byte[] key = includeKey(linesHash, equivalentsBefore);
+		try {
+			directory.mkdirs();
+			final File tokenFile = new File(directory, toHex(key) + EXTENSION);
+			final File partial = File.createTempFile(tokenFile.getName(), ".tmp", directory);
+			try {
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+						partial)))) {
+					out.writeInt(MAGIC);
+					out.writeInt(FORMAT);
+					out.write(key);
+					out.writeInt(lines.size());
+					for (int i = 0; i < lines.size(); i++) {
+						writeLine(out, (String) lines.get(i), (TokenList) tokens.get(i));
+					}
+					out.writeInt(equivalents.size());
+					for (final Map.Entry<String, String> equivalent : equivalents.entrySet()) {
+						out.writeUTF(equivalent.getKey());
+						out.writeUTF(equivalent.getValue());
+					}
+				}
+				Files.move(partial.toPath(), tokenFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				partial.delete();
+			}
+			new File(directory, toHex(linesHash) + PLAIN_EXTENSION).createNewFile();
+		} catch (final IOException e) {
+			// not kept, tokenized again next time
+		}
+	}
+
+	// Values are mostly stored as where in the line they are, which is quicker to read.
+	private static void writeLine(final DataOutputStream out, final String line, final TokenList tokens)
+			throws IOException {
+		final boolean processed = tokens.getProcessedLine() != line;
+		out.writeBoolean(processed);
+		if (processed) { out.writeUTF(tokens.getProcessedLine()); }
+		final String text = tokenized(line, tokens);
+		if (tokens.size() > 0xFFFF) { throw new IOException("line too long to keep"); }
+		out.writeShort(tokens.size());
+		for (int j = 0; j < tokens.size(); j++) {
+			final Token token = tokens.get(j);
+			final int type = Arrays.asList(TYPES).indexOf(token.getType());
+			final int start = token.getStartPos();
+			final int end = start - 1 + token.getValue().length();
+			if (type < 0 || start < 1 || start > 0xFFFF) { throw new IOException("token cannot be kept"); }
+			out.writeByte(type);
+			out.writeShort(start);
+			if (end <= text.length() && token.getValue().length() < NOT_IN_LINE && text.startsWith(token.getValue(),
+					start - 1)) {
+				out.writeShort(token.getValue().length());
+			} else {
+				out.writeShort(NOT_IN_LINE);
+				out.writeUTF(token.getValue());
+			}
+		}
+	}
+
+	// What tokenizing one file produced.
+	static final class Entry {
+
+		final MIPSprogram program;
+		final ArrayList source;
+		final ArrayList<SourceLine> sourceLines;
+		final ArrayList tokens;
+		final HashMap<String, String> equivalents;
+		final ArrayList<MIPSprogram> includes;
+
+		Entry(final MIPSprogram program, final ArrayList tokens, final HashMap<String, String> equivalents,
+				final ArrayList<MIPSprogram> includes) {
+			this.program = program;
+			source = program.getSourceList();
+			sourceLines = program.getSourceLineList();
+			this.tokens = tokens;
+			this.equivalents = equivalents;
+			this.includes = includes;
+		}
+	}
+}
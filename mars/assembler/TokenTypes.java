@@ -1,5 +1,7 @@
 package mars.assembler;
 
+import java.util.HashSet;
+
 import mars.Globals;
 import mars.mips.hardware.Coprocessor1;
 import mars.mips.hardware.Register;
@@ -128,87 +130,80 @@ public final class TokenTypes {
 			}
 		}
 
+		// A quoted string can be nothing else, so spare it the other tests
+		if (value.charAt(0) == '"') { return TokenTypes.QUOTED_STRING; }
+
 		// See if it is a macro parameter
 		if (Macro.tokenIsMacroParameter(value, false)) { return TokenTypes.MACRO_PARAMETER; }
 
-		// See if it is a register
-		Register reg = RegisterFile.getUserRegister(value);
-		if (reg != null) {
-			if (reg.getName().equals(value)) {
-				return TokenTypes.REGISTER_NAME;
-			} else {
-				return TokenTypes.REGISTER_NUMBER;
+		// Tokens made of printable ASCII characters only, nearly all of them, are
+		// classified by scanning their characters.  Others go through the library
+		// parsers, which also accept digits of other scripts and surrounding blanks.
+		final boolean plain = isPlainAscii(value);
+
+		// See if it is a register or floating point register
+		if (value.charAt(0) == '$') {
+			if (RegisterNames.NAMES.contains(value)) { return TokenTypes.REGISTER_NAME; }
+			long number = integerValue(value, 1, plain);
+			if (number >= 0 && number < RegisterNames.USER_REGISTERS) { return TokenTypes.REGISTER_NUMBER; }
+			if (value.length() > 1 && value.charAt(1) == 'f') {
+				number = integerValue(value, 2, plain);
+				if (number >= 0 && number < RegisterNames.FP_REGISTERS) { return TokenTypes.FP_REGISTER_NAME; }
 			}
 		}
 
-		// See if it is a floating point register
-
-		reg = Coprocessor1.getRegister(value);
-		if (reg != null) { return TokenTypes.FP_REGISTER_NAME; }
-
 		// See if it is an immediate (constant) integer value
 		// Classify based on # bits needed to represent in binary
 		// This is needed because most immediate operands limited to 16 bits
 		// others limited to 5 bits unsigned (shift amounts) others 32 bits.
-		try {
-
-			final int i = Binary.stringToInt(value);   // KENV 1/6/05
-
-			/***************************************************************************
-			 * MODIFICATION AND COMMENT, DPS 3-July-2008 The modifications of January 2005
-			 * documented below are being rescinded. All hexadecimal immediate values are
-			 * considered 32 bits in length and their classification as INTEGER_5,
-			 * INTEGER_16, INTEGER_16U (new) or INTEGER_32 depends on their 32 bit value. So
-			 * 0xFFFF will be equivalent to 0x0000FFFF instead of 0xFFFFFFFF. This change,
-			 * along with the introduction of INTEGER_16U (adopted from Greg Gibeling of
-			 * Berkeley), required extensive changes to instruction templates especially for
-			 * pseudo-instructions. This modification also appears
-			 * inbuildBasicStatementFromBasicInstruction() in mars.ProgramStatement. /////
-			 * Begin modification 1/4/05 KENV /////////////////////////////////////////// //
-			 * We have decided to interpret non-signed (no + or -) 16-bit hexadecimal
-			 * immediate // operands as signed values in the range -32768 to 32767. So
-			 * 0xffff will represent // -1, not 65535 (bit 15 as sign bit), 0x8000 will
-			 * represent -32768 not 32768. // NOTE: 32-bit hexadecimal immediate operands
-			 * whose values fall into this range // will be likewise affected, but they are
-			 * used only in pseudo-instructions. The // code in ExtendedInstruction.java to
-			 * split this number into upper 16 bits for "lui" // and lower 16 bits for "ori"
-			 * works with the original source code token, so it is // not affected by this
-			 * tweak. 32-bit immediates in data segment directives // are also processed
-			 * elsewhere so are not affected either.
-			 * ////////////////////////////////////////////////////////////////////////////////
-			 * if ( Binary.isHex(value) && (i >= 32768) && (i <= 65535) ) // Range 0x8000
-			 * ... 0xffff { // Subtract the 0xffff bias, because strings in the // range
-			 * "0x8000" ... "0xffff" are used to represent // 16-bit negative numbers, not
-			 * positive numbers. i = i - 65536; } // ------------- END KENV 1/4/05
-			 * MODIFICATIONS -------------- END DPS 3-July-2008 COMMENTS
-			 *******************************/
+		final long i = integerValue(value, 0, plain);
+		if (i != NOT_AN_INTEGER) {
+
+		/***************************************************************************
+		 * MODIFICATION AND COMMENT, DPS 3-July-2008 The modifications of January 2005
+		 * documented below are being rescinded. All hexadecimal immediate values are
+		 * considered 32 bits in length and their classification as INTEGER_5,
+		 * INTEGER_16, INTEGER_16U (new) or INTEGER_32 depends on their 32 bit value. So
+		 * 0xFFFF will be equivalent to 0x0000FFFF instead of 0xFFFFFFFF. This change,
+		 * along with the introduction of INTEGER_16U (adopted from Greg Gibeling of
+		 * Berkeley), required extensive changes to instruction templates especially for
+		 * pseudo-instructions. This modification also appears
+		 * inbuildBasicStatementFromBasicInstruction() in mars.ProgramStatement. /////
+		 * Begin modification 1/4/05 KENV /////////////////////////////////////////// //
+		 * We have decided to interpret non-signed (no + or -) 16-bit hexadecimal
+		 * immediate // operands as signed values in the range -32768 to 32767. So
+		 * 0xffff will represent // -1, not 65535 (bit 15 as sign bit), 0x8000 will
+		 * represent -32768 not 32768. // NOTE: 32-bit hexadecimal immediate operands
+		 * whose values fall into this range // will be likewise affected, but they are
+		 * used only in pseudo-instructions. The // code in ExtendedInstruction.java to
+		 * split this number into upper 16 bits for "lui" // and lower 16 bits for "ori"
+		 * works with the original source code token, so it is // not affected by this
+		 * tweak. 32-bit immediates in data segment directives // are also processed
+		 * elsewhere so are not affected either.
+		 * ////////////////////////////////////////////////////////////////////////////////
+		 * if ( Binary.isHex(value) && (i >= 32768) && (i <= 65535) ) // Range 0x8000
+		 * ... 0xffff { // Subtract the 0xffff bias, because strings in the // range
+		 * "0x8000" ... "0xffff" are used to represent // 16-bit negative numbers, not
+		 * positive numbers. i = i - 65536; } // ------------- END KENV 1/4/05
+		 * MODIFICATIONS -------------- END DPS 3-July-2008 COMMENTS
+		 *******************************/
 			// shift operands must be in range 0-31
 			if (i >= 0 && i <= 31) { return TokenTypes.INTEGER_5; }
 			if (i >= DataTypes.MIN_UHALF_VALUE && i <= DataTypes.MAX_UHALF_VALUE) { return TokenTypes.INTEGER_16U; }
 			if (i >= DataTypes.MIN_HALF_VALUE && i <= DataTypes.MAX_HALF_VALUE) { return TokenTypes.INTEGER_16; }
 			return TokenTypes.INTEGER_32;  // default when no other type is applicable
-		} catch (final NumberFormatException e) {
-			// NO ACTION -- exception suppressed
 		}
 
 		// See if it is a real (fixed or floating point) number.  Note that parseDouble()
 		// accepts integer values but if it were an integer literal we wouldn't get this far.
-		try {
-			Double.parseDouble(value);
-			return TokenTypes.REAL_NUMBER;
-		} catch (final NumberFormatException e) {
-			// NO ACTION -- exception suppressed
-		}
+		if (isRealNumber(value, plain)) { return TokenTypes.REAL_NUMBER; }
 
 		// See if it is an instruction operator
-		if (Globals.instructionSet.matchOperator(value) != null) { return TokenTypes.OPERATOR; }
+		if (Globals.instructionSet.isOperator(value)) { return TokenTypes.OPERATOR; }
 
 		// See if it is a directive
 		if (value.charAt(0) == '.' && Directives.matchDirective(value) != null) { return TokenTypes.DIRECTIVE; }
 
-		// See if it is a quoted string
-		if (value.charAt(0) == '"') { return TokenTypes.QUOTED_STRING; }
-
 		// Test for identifier goes last because I have defined tokens for various
 		// MIPS constructs (such as operators and directives) that also could fit
 		// the lexical specifications of an identifier, and those need to be
@@ -219,6 +214,153 @@ public final class TokenTypes {
 		return TokenTypes.ERROR;
 	}
 
+	// Names of the general purpose registers, the same on every machine, and the
+	// number of general purpose and floating point registers.
+	private static final class RegisterNames {
+
+		private static final HashSet<String> NAMES = new HashSet<>();
+		private static final int USER_REGISTERS = RegisterFile.getRegisters().length;
+		private static final int FP_REGISTERS = Coprocessor1.getRegisters().length;
+
+		static {
+			for (final Register register : RegisterFile.getRegisters()) {
+				NAMES.add(register.getName());
+			}
+		}
+	}
+
+	private static final long NOT_AN_INTEGER = Long.MIN_VALUE;
+
+	private static boolean isPlainAscii(final String value) {
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c <= ' ' || c > '~') { return false; }
+		}
+		return true;
+	}
+
+	/*
+	 * The value Binary.stringToInt() gives the token from the given index on, or
+	 * NOT_AN_INTEGER where it would throw NumberFormatException.  Plain tokens are
+	 * scanned here: first as Integer.decode() would, then as the two's complement
+	 * hex and unsigned decimal values stringToInt() also accepts.
+	 */
+	private static long integerValue(final String value, final int from, final boolean plain) {
+		if (!plain) {
+			try {
+				return Binary.stringToInt(value.substring(from));
+			} catch (final NumberFormatException e) {
+				return NOT_AN_INTEGER;
+			}
+		}
+		final long decoded = decodedValue(value, from);
+		return decoded != NOT_AN_INTEGER ? decoded : unsignedValue(value, from);
+	}
+
+	// Optional sign, then 0x, 0X or # for hex, 0 for octal or else decimal.
+	private static long decodedValue(final String value, final int from) {
+		final int end = value.length();
+		int index = from;
+		if (index == end) { return NOT_AN_INTEGER; }
+		final boolean negative = value.charAt(index) == '-';
+		if (negative || value.charAt(index) == '+') { index++; }
+		int radix = 10;
+		if (value.startsWith("0x", index) || value.startsWith("0X", index)) {
+			radix = 16;
+			index += 2;
+		} else if (value.startsWith("#", index)) {
+			radix = 16;
+			index++;
+		} else if (value.startsWith("0", index) && end > index + 1) {
+			radix = 8;
+			index++;
+		}
+		if (index == end) { return NOT_AN_INTEGER; }
+		long magnitude = 0;
+		for (; index < end; index++) {
+			final int digit = Character.digit(value.charAt(index), radix);
+			if (digit < 0) { return NOT_AN_INTEGER; }
+			magnitude = magnitude * radix + digit;
+			if (magnitude > -(long) Integer.MIN_VALUE) { return NOT_AN_INTEGER; }
+		}
+		if (negative) { return -magnitude; }
+		return magnitude > Integer.MAX_VALUE ? NOT_AN_INTEGER : magnitude;
+	}
+
+	// Exactly 8 hex digits after 0x, or decimal digits only, taken modulo 2^32.
+	private static long unsignedValue(final String value, final int from) {
+		int result = 0;
+		if (value.startsWith("0x", from) || value.startsWith("0X", from)) {
+			if (value.length() - from != 10) { return NOT_AN_INTEGER; }
+			for (int index = from + 2; index < value.length(); index++) {
+				final int digit = Character.digit(value.charAt(index), 16);
+				if (digit < 0) { return NOT_AN_INTEGER; }
+				result = result << 4 | digit;
+			}
+			return result;
+		}
+		for (int index = from; index < value.length(); index++) {
+			final char c = value.charAt(index);
+			if (c < '0' || c > '9') { return NOT_AN_INTEGER; }
+			result = result * 10 + c - '0';
+		}
+		return result;
+	}
+
+	/*
+	 * Whether Double.parseDouble() accepts the token.  Plain tokens are scanned
+	 * here: an optional sign, then NaN, Infinity, a hex floating point number or
+	 * a decimal one with optional exponent, the last two with an optional type
+	 * suffix (f, F, d or D).
+	 */
+	private static boolean isRealNumber(final String value, final boolean plain) {
+		if (!plain) {
+			try {
+				Double.parseDouble(value);
+				return true;
+			} catch (final NumberFormatException e) {
+				return false;
+			}
+		}
+		final int end = value.length();
+		int index = 0;
+		if (value.charAt(0) == '+' || value.charAt(0) == '-') { index++; }
+		if (value.startsWith("NaN", index)) { return index + 3 == end; }
+		if (value.startsWith("Infinity", index)) { return index + 8 == end; }
+		final boolean hex = value.startsWith("0x", index) || value.startsWith("0X", index);
+		if (hex) { index += 2; }
+		// digits with at most one point among them
+		int digits = 0;
+		boolean point = false;
+		for (; index < end; index++) {
+			final char c = value.charAt(index);
+			if (Character.digit(c, hex ? 16 : 10) >= 0) {
+				digits++;
+			} else if (c == '.' && !point) {
+				point = true;
+			} else {
+				break;
+			}
+		}
+		if (digits == 0) { return false; }
+		// exponent, binary one required for hex
+		if (index < end && (hex ? value.charAt(index) == 'p' || value.charAt(index) == 'P'
+				: value.charAt(index) == 'e' || value.charAt(index) == 'E')) {
+			index++;
+			if (index < end && (value.charAt(index) == '+' || value.charAt(index) == '-')) { index++; }
+			final int exponent = index;
+			while (index < end && value.charAt(index) >= '0' && value.charAt(index) <= '9') {
+				index++;
+			}
+			if (index == exponent) { return false; }
+		} else if (hex) { return false; }
+		if (index == end - 1) {
+			final char c = value.charAt(index);
+			return c == 'f' || c == 'F' || c == 'd' || c == 'D';
+		}
+		return index == end;
+	}
+
 	/**
 	 * Lets you know if given tokentype is for integers (INTGER_5, INTEGER_16,
 	 * INTEGER_32).
@@ -3,12 +3,14 @@ package mars.assembler;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import mars.ErrorList;
 import mars.ErrorMessage;
 import mars.Globals;
 import mars.MIPSprogram;
+import mars.MachineContext;
 import mars.ProcessingException;
 
 /*
@@ -62,6 +64,8 @@ public class Tokenizer {
 	private ErrorList errors;
 	private MIPSprogram sourceMIPSprogram;
 	private HashMap<String, String> equivalents; // DPS 11-July-2012
+	private ArrayList<MIPSprogram> includes; // files included by the program tokenized
+	private IdentityHashMap<MIPSprogram, byte[]> includeHashes; // hashes of their lines, if the cache keeps them
 	// The 8 escaped characters are: single quote, double quote, backslash, newline (linefeed),
 	// tab, backspace, return, form feed.  The characters and their corresponding decimal codes:
 	private static final String escapedCharacters = "'\"\\ntbrf0";
@@ -88,7 +92,8 @@ public class Tokenizer {
 
 	/**
 	 * Will tokenize a complete MIPS program. MIPS is line oriented (not free
-	 * format), so we will be line-oriented too.
+	 * format), so we will be line-oriented too. What is unchanged since the file
+	 * was last tokenized on the current machine is taken from its TokenCache.
 	 *
 	 * @param p The MIPSprogram to be tokenized.
 	 * @return An ArrayList representing the tokenized program. Each list member is
@@ -99,30 +104,174 @@ public class Tokenizer {
 	public ArrayList tokenize(final MIPSprogram p) throws ProcessingException {
 		sourceMIPSprogram = p;
 		equivalents = new HashMap<>(); // DPS 11-July-2012
-		final ArrayList tokenList = new ArrayList();
-		//ArrayList source = p.getSourceList();
-		final ArrayList<SourceLine> source = processIncludes(p, new HashMap<String, String>()); // DPS 9-Jan-2013
-		p.setSourceLineList(source);
-		TokenList currentLineTokens;
-		String sourceLine;
-		for (int i = 0; i < source.size(); i++) {
-			sourceLine = source.get(i).getSource();
-			currentLineTokens = this.tokenizeLine(i + 1, sourceLine);
-			tokenList.add(currentLineTokens);
-			// DPS 03-Jan-2013. Related to 11-July-2012. If source code substitution was made
-			// based on .eqv directive during tokenizing, the processed line, a String, is
-			// not the same object as the original line.  Thus I can use != instead of !equals()
-			// This IF statement will replace original source with source modified by .eqv substitution.
-			// Not needed by assembler, but looks better in the Text Segment Display.
-			if (sourceLine.length() > 0 && sourceLine != currentLineTokens.getProcessedLine()) {
-				source.set(i, new SourceLine(currentLineTokens.getProcessedLine(), source.get(i).getMIPSprogram(),
-						source.get(i).getLineNumber()));
+		final TokenCache cache = MachineContext.current().getTokenCache();
+		final TokenCache.Entry previous = cache.take(p.getFilename());
+		ArrayList tokenList = previous == null ? null : reuseTokens(previous, p);
+		if (tokenList == null) {
+			tokenList = new ArrayList();
+			includes = new ArrayList<>();
+			includeHashes = new IdentityHashMap<>();
+			//ArrayList source = p.getSourceList();
+			final ArrayList<SourceLine> source = processIncludes(p, new HashMap<String, String>()); // DPS 9-Jan-2013
+			p.setSourceLineList(source);
+			for (int i = 0; i < source.size(); i++) {
+				final int included = tokenizeInclude(cache, source, i, tokenList);
+				if (included > 0) {
+					i += included - 1;
+				} else {
+					tokenList.add(tokenizeSourceLine(source, i));
+				}
 			}
 		}
 		if (errors.errorsOccurred()) { throw new ProcessingException(errors); }
+		cache.put(p.getFilename(), new TokenCache.Entry(p, tokenList, equivalents, includes));
 		return tokenList;
 	}
 
+	/**
+	 * Returns the names of the files included, directly or indirectly, by the
+	 * program last tokenized.
+	 *
+	 * @return the file names, in the order they are included
+	 */
+	public ArrayList<String> getIncludedFilenames() {
+		final ArrayList<String> filenames = new ArrayList<>();
+		for (final MIPSprogram included : includes) {
+			filenames.add(included.getFilename());
+		}
+		return filenames;
+	}
+
+	// Hands the tokens of the file's previous tokenizing over to its new program.
+	// If lines changed, they are tokenized as tokenize() would, first looking for
+	// .include directives and then for good, so errors are reported the same.
+	// Returns null if the file must be tokenized from scratch instead.
+	private ArrayList reuseTokens(final TokenCache.Entry previous, final MIPSprogram p) {
+		final ArrayList source = p.getSourceList();
+		ArrayList<Integer> changedLines = null;
+		if (!source.equals(previous.source) || !includesUnchanged(previous.includes)) {
+			// Lines can be tokenized one by one only if nothing moved and no .eqv
+			// or .include directive affects other lines.
+			if (source.size() != previous.source.size() || !previous.includes.isEmpty() || !previous.equivalents
+					.isEmpty()) {
+				return null;
+			}
+			changedLines = new ArrayList<>();
+			for (int i = 0; i < source.size(); i++) {
+				final String line = (String) source.get(i);
+				if (!line.equals(previous.source.get(i))) {
+					if (containsIgnoreCase(line, Directives.INCLUDE.getName()) || containsIgnoreCase(line,
+							Directives.EQV.getName())) {
+						return null;
+					}
+					changedLines.add(i);
+				}
+			}
+		}
+		final ArrayList<SourceLine> sourceLines = new ArrayList<>(previous.sourceLines.size());
+		for (final SourceLine line : previous.sourceLines) {
+			sourceLines.add(line.getMIPSprogram() == previous.program ? new SourceLine(line.getSource(), p, line
+					.getLineNumber()) : line);
+		}
+		p.setSourceLineList(sourceLines);
+		for (int i = 0; i < previous.tokens.size(); i++) {
+			final TokenList line = (TokenList) previous.tokens.get(i);
+			for (int j = 0; j < line.size(); j++) {
+				line.get(j).rebind(previous.program, p);
+			}
+		}
+		equivalents = previous.equivalents;
+		includes = previous.includes;
+		if (changedLines != null) {
+			for (final int i : changedLines) {
+				tokenizeLine(p, i + 1, (String) source.get(i), false);
+			}
+			for (final int i : changedLines) {
+				sourceLines.set(i, new SourceLine((String) source.get(i), p, i + 1));
+				previous.tokens.set(i, tokenizeLine(i + 1, (String) source.get(i)));
+			}
+		}
+		return previous.tokens;
+	}
+
+	private TokenList tokenizeSourceLine(final ArrayList<SourceLine> source, final int i) {
+		final TokenList tokens = tokenizeLine(i + 1, source.get(i).getSource());
+		showProcessedLine(source, i, tokens);
+		return tokens;
+	}
+
+	private static void showProcessedLine(final ArrayList<SourceLine> source, final int i, final TokenList tokens) {
+		final String sourceLine = source.get(i).getSource();
+		// DPS 03-Jan-2013. Related to 11-July-2012. If source code substitution was made
+		// based on .eqv directive during tokenizing, the processed line, a String, is
+		// not the same object as the original line.  Thus I can use != instead of !equals()
+		// This IF statement will replace original source with source modified by .eqv substitution.
+		// Not needed by assembler, but looks better in the Text Segment Display.
+		if (sourceLine.length() > 0 && sourceLine != tokens.getProcessedLine()) {
+			source.set(i, new SourceLine(tokens.getProcessedLine(), source.get(i).getMIPSprogram(), source.get(i)
+					.getLineNumber()));
+		}
+	}
+
+	// If the source line at the given index is the first of an included file that
+	// includes no files itself, tokenizes all lines of that file, taking their
+	// tokens from the cache's directory if it keeps them and leaving them there
+	// otherwise.  Returns the number of lines tokenized, 0 if there is no such file
+	// or no directory.
+	private int tokenizeInclude(final TokenCache cache, final ArrayList<SourceLine> source, final int first,
+			final ArrayList tokenList) {
+		final MIPSprogram included = source.get(first).getMIPSprogram();
+		if (included == sourceMIPSprogram || source.get(first).getLineNumber() != 1) { return 0; }
+		final ArrayList lines = included.getSourceList();
+		if (first + lines.size() > source.size()) { return 0; }
+		for (int i = 0; i < lines.size(); i++) {
+			final SourceLine line = source.get(first + i);
+			if (line.getMIPSprogram() != included || line.getLineNumber() != i + 1) { return 0; }
+		}
+		final byte[] linesHash = includeHashes.get(included);
+		if (linesHash == null) { return 0; }
+		final ArrayList tokens = cache.loadInclude(linesHash, lines, sourceMIPSprogram, first + 1, equivalents);
+		if (tokens != null) {
+			for (int i = 0; i < tokens.size(); i++) {
+				showProcessedLine(source, first + i, (TokenList) tokens.get(i));
+			}
+			tokenList.addAll(tokens);
+			return tokens.size();
+		}
+		final int messages = errors.getErrorMessages().size();
+		final int start = tokenList.size();
+		final HashMap<String, String> equivalentsBefore = new HashMap<>(equivalents);
+		for (int i = 0; i < lines.size(); i++) {
+			tokenList.add(tokenizeSourceLine(source, first + i));
+		}
+		if (errors.getErrorMessages().size() == messages) {
+			cache.saveInclude(linesHash, equivalentsBefore, lines, tokenList.subList(start, tokenList.size()),
+					equivalents);
+		}
+		return lines.size();
+	}
+
+	// Whether the files included last time still hold what they did.
+	private static boolean includesUnchanged(final ArrayList<MIPSprogram> included) {
+		for (final MIPSprogram program : included) {
+			final MIPSprogram now = new MIPSprogram();
+			try {
+				now.readSource(program.getFilename());
+			} catch (final ProcessingException e) {
+				return false;
+			}
+			if (!now.getSourceList().equals(program.getSourceList())) { return false; }
+		}
+		return true;
+	}
+
+	private static boolean containsIgnoreCase(final String line, final String word) {
+		for (int i = 0; i + word.length() <= line.length(); i++) {
+			if (line.regionMatches(true, i, word, 0, word.length())) { return true; }
+		}
+		return false;
+	}
+
 	// pre-pre-processing pass through source code to process any ".include" directives.
 	// When one is encountered, the contents of the included file are inserted at that
 	// point.  If no .include statements, the return value is a new array list but
@@ -164,8 +313,20 @@ public class Tokenizer {
 								"Error reading include file " + filename));
 						throw new ProcessingException(errors);
 					}
-					final ArrayList<SourceLine> allLines = processIncludes(incl, inclFiles);
-					result.addAll(allLines);
+					includes.add(incl);
+					final TokenCache cache = MachineContext.current().getTokenCache();
+					final byte[] linesHash = cache.hashLines(incl.getSourceList());
+					if (linesHash != null) { includeHashes.put(incl, linesHash); }
+					if (cache.isPlainInclude(linesHash)) {
+						// known to include nothing, so there is nothing to look for
+						final ArrayList lines = incl.getSourceList();
+						for (int k = 0; k < lines.size(); k++) {
+							result.add(new SourceLine((String) lines.get(k), incl, k + 1));
+						}
+					} else {
+						final ArrayList<SourceLine> allLines = processIncludes(incl, inclFiles);
+						result.addAll(allLines);
+					}
 					hasInclude = true;
 					break;
 				}
@@ -31,7 +31,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 
-import mars.Globals;
 import mars.mips.hardware.AddressErrorException;
 import mars.mips.hardware.Memory;
 import mars.util.Binary;
@@ -82,7 +81,7 @@ public class AsciiTextDumpFormat extends AbstractDumpFormat {
 		final PrintStream out = new PrintStream(new FileOutputStream(file));
 		try {
 			for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-				final Integer temp = Globals.memory.getRawWordOrNull(address);
+				final Integer temp = Memory.getInstance().getRawWordOrNull(address);
 				if (temp == null) { break; }
 				out.println(Binary.intToAscii(temp));
 			}
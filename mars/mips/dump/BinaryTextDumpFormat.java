@@ -31,7 +31,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 
-import mars.Globals;
 import mars.mips.hardware.AddressErrorException;
 import mars.mips.hardware.Memory;
 
@@ -76,7 +75,7 @@ public class BinaryTextDumpFormat extends AbstractDumpFormat {
 		String string = null;
 		try {
 			for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-				final Integer temp = Globals.memory.getRawWordOrNull(address);
+				final Integer temp = Memory.getInstance().getRawWordOrNull(address);
 				if (temp == null) { break; }
 				string = Integer.toBinaryString(temp);
 				while (string.length() < 32) {
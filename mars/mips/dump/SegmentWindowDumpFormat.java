@@ -99,7 +99,7 @@ public class SegmentWindowDumpFormat extends AbstractDumpFormat {
 								: Binary.unsignedIntToIntString(address)) + "    ";
 					}
 					offset++;
-					final Integer temp = Globals.memory.getRawWordOrNull(address);
+					final Integer temp = Memory.getInstance().getRawWordOrNull(address);
 					if (temp == null) { break; }
 					string += (hexValues ? Binary.intToHexString(temp)
 							: ("           " + temp).substring(temp.toString().length())) + " ";
@@ -125,11 +125,11 @@ public class SegmentWindowDumpFormat extends AbstractDumpFormat {
 			for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
 				string = (hexAddresses ? Binary.intToHexString(address) : Binary.unsignedIntToIntString(address))
 						+ "  ";
-				final Integer temp = Globals.memory.getRawWordOrNull(address);
+				final Integer temp = Memory.getInstance().getRawWordOrNull(address);
 				if (temp == null) { break; }
 				string += Binary.intToHexString(temp) + "  ";
 				try {
-					final ProgramStatement ps = Globals.memory.getStatement(address);
+					final ProgramStatement ps = Memory.getInstance().getStatement(address);
 					string += (ps.getPrintableBasicAssemblyStatement() + "                      ").substring(0, 22);
 					string += ((ps.getSource() == "" ? "" : new Integer(ps.getSourceLine()).toString()) + "     ")
 							.substring(0, 5);
@@ -84,7 +84,8 @@ public abstract class AccessNotice {
 	 *         otherwise
 	 */
 	// Thread to execute the MIPS program is instantiated in SwingWorker.java.
-	// There it is given the name "MIPS" to replace the default "Thread-x".
+	// There it is given the name "MIPS" to replace the default "Thread-x"; an
+	// executor's thread carries that name while it runs the program.
 	public boolean accessIsFromMIPS() {
 		return thread.getName().startsWith("MIPS");
 	}
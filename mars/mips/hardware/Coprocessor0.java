@@ -3,6 +3,7 @@ package mars.mips.hardware;
 import java.util.Observer;
 
 import mars.Globals;
+import mars.MachineContext;
 
 /*
  * Copyright (c) 2003-2009, Pete Sanderson and Kenneth Vollmar
@@ -53,14 +54,22 @@ public class Coprocessor0 {
 	// bit 1 (exception level) not set, bit 0 (interrupt enable) set.
 	public static final int DEFAULT_STATUS_VALUE = 0x0000FF11;
 
-	private static Register[] registers = { new Register("$8 (vaddr)", 8, 0), new Register("$12 (status)", 12,
-			DEFAULT_STATUS_VALUE), new Register("$13 (cause)", 13, 0), new Register("$14 (epc)", 14, 0) };
+	/**
+	 * The coprocessor 0 registers of one machine. The methods of Coprocessor0 work
+	 * on those of the calling thread's machine (see MachineContext).
+	 */
+	public static final class State {
+
+		private final Register[] registers = { new Register("$8 (vaddr)", 8, 0), new Register("$12 (status)", 12,
+				DEFAULT_STATUS_VALUE), new Register("$13 (cause)", 13, 0), new Register("$14 (epc)", 14, 0) };
+	}
 
 	/**
 	 * Method for displaying the register values for debugging.
 	 **/
 
 	public static void showRegisters() {
+		final Register[] registers = MachineContext.current().getCoprocessor0().registers;
 		for (int i = 0; i < registers.length; i++) {
 			System.out.println("Name: " + registers[i].getName());
 			System.out.println("Number: " + registers[i].getNumber());
@@ -78,6 +87,7 @@ public class Coprocessor0 {
 	 **/
 
 	public static int updateRegister(final String n, final int val) {
+		final Register[] registers = MachineContext.current().getCoprocessor0().registers;
 		int oldValue = 0;
 		for (int i = 0; i < registers.length; i++) {
 			if (("$" + registers[i].getNumber()).equals(n) || registers[i].getName().equals(n)) {
@@ -97,6 +107,7 @@ public class Coprocessor0 {
 	 * @return old value in register prior to update
 	 **/
 	public static int updateRegister(final int num, final int val) {
+		final Register[] registers = MachineContext.current().getCoprocessor0().registers;
 		int old = 0;
 		for (int i = 0; i < registers.length; i++) {
 			if (registers[i].getNumber() == num) {
@@ -116,6 +127,7 @@ public class Coprocessor0 {
 	 **/
 
 	public static int getValue(final int num) {
+		final Register[] registers = MachineContext.current().getCoprocessor0().registers;
 		for (int i = 0; i < registers.length; i++) {
 			if (registers[i].getNumber() == num) { return registers[i].getValue(); }
 		}
@@ -130,6 +142,7 @@ public class Coprocessor0 {
 	 **/
 
 	public static int getNumber(final String n) {
+		final Register[] registers = MachineContext.current().getCoprocessor0().registers;
 		for (int i = 0; i < registers.length; i++) {
 			if (("$" + registers[i].getNumber()).equals(n) || registers[i].getName().equals(n)) {
 				return registers[i].getNumber();
@@ -144,7 +157,7 @@ public class Coprocessor0 {
 	 * @return The set of registers.
 	 **/
 
-	public static Register[] getRegisters() { return registers; }
+	public static Register[] getRegisters() { return MachineContext.current().getCoprocessor0().registers; }
 
 	/**
 	 * Coprocessor0 implements only selected registers, so the register number (8,
@@ -156,6 +169,7 @@ public class Coprocessor0 {
 	 **/
 
 	public static int getRegisterPosition(final Register r) {
+		final Register[] registers = MachineContext.current().getCoprocessor0().registers;
 		for (int i = 0; i < registers.length; i++) {
 			if (registers[i] == r) { return i; }
 		}
@@ -170,6 +184,7 @@ public class Coprocessor0 {
 	 **/
 
 	public static Register getRegister(final String rname) {
+		final Register[] registers = MachineContext.current().getCoprocessor0().registers;
 		for (int i = 0; i < registers.length; i++) {
 			if (("$" + registers[i].getNumber()).equals(rname) || registers[i].getName().equals(rname)) {
 				return registers[i];
@@ -183,16 +198,31 @@ public class Coprocessor0 {
 	 **/
 
 	public static void resetRegisters() {
+		final Register[] registers = MachineContext.current().getCoprocessor0().registers;
 		for (int i = 0; i < registers.length; i++) {
 			registers[i].resetValue();
 		}
 	}
 
+	/**
+	 * Tells whether any register has an observer.
+	 *
+	 * @return true if some register is observed
+	 */
+	public static boolean isObserved() {
+		final Register[] registers = MachineContext.current().getCoprocessor0().registers;
+		for (int i = 0; i < registers.length; i++) {
+			if (registers[i].countObservers() > 0) { return true; }
+		}
+		return false;
+	}
+
 	/**
 	 * Each individual register is a separate object and Observable. This handy
 	 * method will add the given Observer to each one.
 	 */
 	public static void addRegistersObserver(final Observer observer) {
+		final Register[] registers = MachineContext.current().getCoprocessor0().registers;
 		for (int i = 0; i < registers.length; i++) {
 			registers[i].addObserver(observer);
 		}
@@ -203,6 +233,7 @@ public class Coprocessor0 {
 	 * method will delete the given Observer from each one.
 	 */
 	public static void deleteRegistersObserver(final Observer observer) {
+		final Register[] registers = MachineContext.current().getCoprocessor0().registers;
 		for (int i = 0; i < registers.length; i++) {
 			registers[i].deleteObserver(observer);
 		}
@@ -3,6 +3,7 @@ package mars.mips.hardware;
 import java.util.Observer;
 
 import mars.Globals;
+import mars.MachineContext;
 import mars.util.Binary;
 
 /*
@@ -51,18 +52,27 @@ import mars.util.Binary;
 
 public class Coprocessor1 {
 
-	private static Register[] registers = { new Register("$f0", 0, 0), new Register("$f1", 1, 0), new Register("$f2", 2,
-			0), new Register("$f3", 3, 0), new Register("$f4", 4, 0), new Register("$f5", 5, 0), new Register("$f6", 6,
-					0), new Register("$f7", 7, 0), new Register("$f8", 8, 0), new Register("$f9", 9, 0), new Register(
-							"$f10", 10, 0), new Register("$f11", 11, 0), new Register("$f12", 12, 0), new Register(
-									"$f13", 13, 0), new Register("$f14", 14, 0), new Register("$f15", 15, 0),
-			new Register("$f16", 16, 0), new Register("$f17", 17, 0), new Register("$f18", 18, 0), new Register("$f19",
-					19, 0), new Register("$f20", 20, 0), new Register("$f21", 21, 0), new Register("$f22", 22, 0),
-			new Register("$f23", 23, 0), new Register("$f24", 24, 0), new Register("$f25", 25, 0), new Register("$f26",
-					26, 0), new Register("$f27", 27, 0), new Register("$f28", 28, 0), new Register("$f29", 29, 0),
-			new Register("$f30", 30, 0), new Register("$f31", 31, 0) };
-	// The 8 condition flags will be stored in bits 0-7 for flags 0-7.
-	private static Register condition = new Register("cf", 32, 0);
+	/**
+	 * The floating point registers and condition flags of one machine. The methods
+	 * of Coprocessor1 work on those of the calling thread's machine (see
+	 * MachineContext).
+	 */
+	public static final class State {
+
+		private final Register[] registers = { new Register("$f0", 0, 0), new Register("$f1", 1, 0), new Register("$f2", 2,
+				0), new Register("$f3", 3, 0), new Register("$f4", 4, 0), new Register("$f5", 5, 0), new Register("$f6", 6,
+						0), new Register("$f7", 7, 0), new Register("$f8", 8, 0), new Register("$f9", 9, 0), new Register(
+								"$f10", 10, 0), new Register("$f11", 11, 0), new Register("$f12", 12, 0), new Register(
+										"$f13", 13, 0), new Register("$f14", 14, 0), new Register("$f15", 15, 0),
+				new Register("$f16", 16, 0), new Register("$f17", 17, 0), new Register("$f18", 18, 0), new Register("$f19",
+						19, 0), new Register("$f20", 20, 0), new Register("$f21", 21, 0), new Register("$f22", 22, 0),
+				new Register("$f23", 23, 0), new Register("$f24", 24, 0), new Register("$f25", 25, 0), new Register("$f26",
+						26, 0), new Register("$f27", 27, 0), new Register("$f28", 28, 0), new Register("$f29", 29, 0),
+				new Register("$f30", 30, 0), new Register("$f31", 31, 0) };
+		// The 8 condition flags will be stored in bits 0-7 for flags 0-7.
+		private final Register condition = new Register("cf", 32, 0);
+	}
+
 	private static int numConditionFlags = 8;
 
 	/**
@@ -70,6 +80,7 @@ public class Coprocessor1 {
 	 **/
 
 	public static void showRegisters() {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		for (int i = 0; i < registers.length; i++) {
 
 			System.out.println("Name: " + registers[i].getName());
@@ -98,6 +109,7 @@ public class Coprocessor1 {
 	 **/
 
 	public static void setRegisterToFloat(final int reg, final float val) {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		if (reg >= 0 && reg < registers.length) { registers[reg].setValue(Float.floatToRawIntBits(val)); }
 	}
 
@@ -122,6 +134,7 @@ public class Coprocessor1 {
 	 **/
 
 	public static void setRegisterToInt(final int reg, final int val) {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		if (reg >= 0 && reg < registers.length) { registers[reg].setValue(val); }
 	}
 
@@ -138,6 +151,7 @@ public class Coprocessor1 {
 	 **/
 
 	public static void setRegisterPairToDouble(final int reg, final double val) throws InvalidRegisterAccessException {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		if (reg % 2 != 0) { throw new InvalidRegisterAccessException(); }
 		final long bits = Double.doubleToRawLongBits(val);
 		registers[reg + 1].setValue(Binary.highOrderLongToInt(bits));  // high order 32 bits
@@ -174,6 +188,7 @@ public class Coprocessor1 {
 	 **/
 
 	public static void setRegisterPairToLong(final int reg, final long val) throws InvalidRegisterAccessException {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		if (reg % 2 != 0) { throw new InvalidRegisterAccessException(); }
 		registers[reg + 1].setValue(Binary.highOrderLongToInt(val));  // high order 32 bits
 		registers[reg].setValue(Binary.lowOrderLongToInt(val)); // low order 32 bits
@@ -204,6 +219,7 @@ public class Coprocessor1 {
 	 **/
 
 	public static float getFloatFromRegister(final int reg) {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		float result = 0F;
 		if (reg >= 0 && reg < registers.length) { result = Float.intBitsToFloat(registers[reg].getValue()); }
 		return result;
@@ -228,6 +244,7 @@ public class Coprocessor1 {
 	 **/
 
 	public static int getIntFromRegister(final int reg) {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		int result = 0;
 		if (reg >= 0 && reg < registers.length) { result = registers[reg].getValue(); }
 		return result;
@@ -255,6 +272,7 @@ public class Coprocessor1 {
 	 **/
 
 	public static double getDoubleFromRegisterPair(final int reg) throws InvalidRegisterAccessException {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		if (reg % 2 != 0) { throw new InvalidRegisterAccessException(); }
 		final long bits = Binary.twoIntsToLong(registers[reg + 1].getValue(), registers[reg].getValue());
 		return Double.longBitsToDouble(bits);
@@ -285,6 +303,7 @@ public class Coprocessor1 {
 	 **/
 
 	public static long getLongFromRegisterPair(final int reg) throws InvalidRegisterAccessException {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		if (reg % 2 != 0) { throw new InvalidRegisterAccessException(); }
 		return Binary.twoIntsToLong(registers[reg + 1].getValue(), registers[reg].getValue());
 	}
@@ -313,6 +332,7 @@ public class Coprocessor1 {
 	 **/
 
 	public static int updateRegister(final int num, final int val) {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		int old = 0;
 		for (int i = 0; i < registers.length; i++) {
 			if (registers[i].getNumber() == num) {
@@ -334,6 +354,7 @@ public class Coprocessor1 {
 	 **/
 
 	public static int getValue(final int num) {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		return registers[num].getValue();
 	}
 
@@ -345,6 +366,7 @@ public class Coprocessor1 {
 	 **/
 
 	public static int getRegisterNumber(final String n) {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		int j = -1;
 		for (int i = 0; i < registers.length; i++) {
 			if (registers[i].getName().equals(n)) {
@@ -361,7 +383,7 @@ public class Coprocessor1 {
 	 * @return The set of registers.
 	 **/
 
-	public static Register[] getRegisters() { return registers; }
+	public static Register[] getRegisters() { return MachineContext.current().getCoprocessor1().registers; }
 
 	/**
 	 * Get register object corresponding to given name. If no match, return null.
@@ -371,6 +393,7 @@ public class Coprocessor1 {
 	 **/
 
 	public static Register getRegister(final String rName) {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		Register reg = null;
 		if (rName.charAt(0) == '$' && rName.length() > 1 && rName.charAt(1) == 'f') {
 			try {
@@ -389,17 +412,32 @@ public class Coprocessor1 {
 	 **/
 
 	public static void resetRegisters() {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		for (int i = 0; i < registers.length; i++) {
 			registers[i].resetValue();
 		}
 		clearConditionFlags();
 	}
 
+	/**
+	 * Tells whether any register has an observer.
+	 *
+	 * @return true if some register is observed
+	 */
+	public static boolean isObserved() {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
+		for (int i = 0; i < registers.length; i++) {
+			if (registers[i].countObservers() > 0) { return true; }
+		}
+		return false;
+	}
+
 	/**
 	 * Each individual register is a separate object and Observable. This handy
 	 * method will add the given Observer to each one.
 	 */
 	public static void addRegistersObserver(final Observer observer) {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		for (int i = 0; i < registers.length; i++) {
 			registers[i].addObserver(observer);
 		}
@@ -410,6 +448,7 @@ public class Coprocessor1 {
 	 * method will delete the given Observer from each one.
 	 */
 	public static void deleteRegistersObserver(final Observer observer) {
+		final Register[] registers = MachineContext.current().getCoprocessor1().registers;
 		for (int i = 0; i < registers.length; i++) {
 			registers[i].deleteObserver(observer);
 		}
@@ -422,6 +461,7 @@ public class Coprocessor1 {
 	 * @return previous flag setting (0 or 1)
 	 */
 	public static int setConditionFlag(final int flag) {
+		final Register condition = MachineContext.current().getCoprocessor1().condition;
 		int old = 0;
 		if (flag >= 0 && flag < numConditionFlags) {
 			old = getConditionFlag(flag);
@@ -444,6 +484,7 @@ public class Coprocessor1 {
 	 * @return previous flag setting (0 or 1)
 	 */
 	public static int clearConditionFlag(final int flag) {
+		final Register condition = MachineContext.current().getCoprocessor1().condition;
 		int old = 0;
 		if (flag >= 0 && flag < numConditionFlags) {
 			old = getConditionFlag(flag);
@@ -466,6 +507,7 @@ public class Coprocessor1 {
 	 * @return 0 if condition is false, 1 if condition is true
 	 */
 	public static int getConditionFlag(int flag) {
+		final Register condition = MachineContext.current().getCoprocessor1().condition;
 		if (flag < 0 || flag >= numConditionFlags) { flag = 0; }
 		return Binary.bitValue(condition.getValue(), flag);
 	}
@@ -475,12 +517,13 @@ public class Coprocessor1 {
 	 *
 	 * @return array of int condition flags
 	 */
-	public static int getConditionFlags() { return condition.getValue(); }
+	public static int getConditionFlags() { return MachineContext.current().getCoprocessor1().condition.getValue(); }
 
 	/**
 	 * Clear all condition flags (0-7).
 	 */
 	public static void clearConditionFlags() {
+		final Register condition = MachineContext.current().getCoprocessor1().condition;
 		condition.setValue(0);  // sets all 32 bits to 0.
 	}
 
@@ -488,6 +531,7 @@ public class Coprocessor1 {
 	 * Set all condition flags (0-7).
 	 */
 	public static void setConditionFlags() {
+		final Register condition = MachineContext.current().getCoprocessor1().condition;
 		condition.setValue(-1);  // sets all 32 bits to 1.
 	}
 
@@ -0,0 +1,82 @@
+package mars.mips.hardware;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * The default memory backend: each region is a table of int arrays, one per
+ * page, allocated on first write. This is how Memory stored its segments before
+ * backends were introduced.
+ */
+
+public class HeapMemoryBackend implements MemoryBackend {
+
+	private static final int PAGE_SHIFT = 10; // log2(PAGE_LENGTH_WORDS)
+
+	@Override
+	public Region createRegion(final String name, final int lengthWords) {
+		return new HeapRegion(lengthWords / PAGE_LENGTH_WORDS);
+	}
+
+	private static class HeapRegion implements Region {
+
+		private final int[][] pages;
+
+		private HeapRegion(final int pageCount) {
+			pages = new int[pageCount][]; // array of null int[] references
+		}
+
+		@Override
+		public int getWord(final int index) {
+			final int[] page = pages[index >> PAGE_SHIFT];
+			// first reference to an address in this page.  Assume initialized to 0.
+			return page == null ? 0 : page[index & PAGE_LENGTH_WORDS - 1];
+		}
+
+		@Override
+		public int setWord(final int index, final int value) {
+			int[] page = pages[index >> PAGE_SHIFT];
+			if (page == null) { page = allocate(index >> PAGE_SHIFT); }
+			final int offset = index & PAGE_LENGTH_WORDS - 1;
+			final int oldValue = page[offset];
+			page[offset] = value;
+			return oldValue;
+		}
+
+		@Override
+		public boolean isAllocated(final int index) {
+			return pages[index >> PAGE_SHIFT] != null;
+		}
+
+		// First time writing to this page, so allocate the space.  Synchronized so two
+		// writers cannot both allocate, and one lose its store.
+		private synchronized int[] allocate(final int page) {
+			if (pages[page] == null) { pages[page] = new int[PAGE_LENGTH_WORDS]; }
+			return pages[page];
+		}
+	}
+}
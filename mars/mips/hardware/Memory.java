@@ -1,12 +1,15 @@
 package mars.mips.hardware;
 
-import java.util.Collection;
-import java.util.Iterator;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
-import java.util.Vector;
+import java.util.StringTokenizer;
 
 import mars.Globals;
+import mars.MachineContext;
 import mars.ProgramStatement;
 import mars.Settings;
 import mars.mips.instructions.Instruction;
@@ -107,7 +110,7 @@ public class Memory extends Observable {
 	/** Current setting for endian (default LITTLE_ENDIAN) **/
 	private static boolean byteOrder = LITTLE_ENDIAN;
 
-	public static int heapAddress;
+	private int heapAddress;
 
 	// Memory will maintain a collection of observables.  Each one is associated
 	// with a specific memory address or address range, and each will have at least
@@ -120,8 +123,15 @@ public class Memory extends Observable {
 	// key for insertion into the tree would be based on Comparable using both low
 	// and high end of address range, but retrieval from the tree has to be based
 	// on target address being ANYWHERE IN THE RANGE (not an exact key match).
+	//
+	// So instead the observables are kept in an array sorted by low address, along
+	// with the highest address covered by each prefix of it.  Two binary searches
+	// narrow an access down to the observables whose range could contain it, so
+	// observers of other addresses cost (almost) nothing.  Registrations are rare and
+	// accesses frequent, so the index is rebuilt (copy-on-write) on every change and
+	// accesses read it without locking.
 
-	Collection observables = getNewMemoryObserversCollection();
+	private volatile ObserverIndex observables = new ObserverIndex(new MemoryObservable[0]);
 
 	// The data segment is allocated in blocks of 1024 ints (4096 bytes).  Each block is
 	// referenced by a "block table" entry, and the table has 1024 entries.  The capacity
@@ -149,8 +159,8 @@ public class Memory extends Observable {
 
 	private static final int BLOCK_LENGTH_WORDS = 1024;  // allocated blocksize 1024 ints == 4K bytes
 	private static final int BLOCK_TABLE_LENGTH = 1024; // Each entry of table points to a block.
-	private int[][] dataBlockTable;
-	private int[][] kernelDataBlockTable;
+	private MemoryBackend.Region dataRegion;
+	private MemoryBackend.Region kernelDataRegion;
 
 	// The stack is modeled similarly to the data segment.  It cannot share the same
 	// data structure because the stack base address is very large.  To store it in the
@@ -167,7 +177,7 @@ public class Memory extends Observable {
 	// Everything else works the same, so it shares some private helper methods with
 	// data segment algorithms.
 
-	private int[][] stackBlockTable;
+	private MemoryBackend.Region stackRegion;
 
 	// Memory mapped I/O is simulated with a separate table using the same structure and
 	// logic as data segment.  Memory is allocated in 4K byte blocks.  But since MMIO
@@ -180,7 +190,17 @@ public class Memory extends Observable {
 	// into a table offset, this is of no concern.
 
 	private static final int MMIO_TABLE_LENGTH = 16; // Each entry of table points to a 4K block.
-	private int[][] memoryMapBlockTable;
+	private MemoryBackend.Region memoryMapRegion;
+
+	// The word storage behind the four tables above is provided by a MemoryBackend,
+	// on the Java heap by default.  The tables are still laid out as described.
+	private MemoryBackend backend;
+
+	// For the simulator's execution history, each table can be wrapped so as to know
+	// which of its pages have been written since they were last collected.  A page
+	// number handed out names the table (data, kernel data, stack, MMIO, in that
+	// order) and the page within it: table * BLOCK_TABLE_LENGTH + page.
+	private boolean pageTracking = false;
 
 	// I use a similar scheme for storing instructions.  MIPS text segment ranges from
 	// 0x00400000 all the way to data segment (0x10000000) a range of about 250 MB!  So
@@ -193,6 +213,20 @@ public class Memory extends Observable {
 	private ProgramStatement[][] textBlockTable;
 	private ProgramStatement[][] kernelTextBlockTable;
 
+	// Breakpoints are marked beside the statements, one bit per word of each text block,
+	// so the simulator can tell whether to stop at an address with a table lookup.  A
+	// block gets its bits when its first breakpoint is marked.
+	private static final int MARK_WORDS_PER_BLOCK = TEXT_BLOCK_LENGTH_WORDS / Long.SIZE;
+	private long[][] textBreakpointMarks;
+	private long[][] kernelTextBreakpointMarks;
+
+	// Watchpoints are trapped a page at a time: a table with any watchpoint is wrapped,
+	// and the wrapper looks up the word only on pages holding one.  Indexed like
+	// getRegions(), then by page; each page has the access bits of its words, or is
+	// null if none of them is watched.  The simulator is told through the listener.
+	private static final int REGION_COUNT = 4;
+	private byte[][][] watchedPages;
+
 	// Set "top" address boundary to go with each "base" address.  This determines permissable
 	// address range for user program.  Currently limit is 4MB, or 1024 * 1024 * 4 bytes based
 	// on the table structures described above (except memory mapped IO, limited to 64KB by range).
@@ -209,25 +243,76 @@ public class Memory extends Observable {
 			* WORD_LENGTH_BYTES;
 	public static int memoryMapLimitAddress = memoryMapBaseAddress + BLOCK_LENGTH_WORDS * MMIO_TABLE_LENGTH
 			* WORD_LENGTH_BYTES;
-	// This will be a Singleton class, only one instance is ever created.  Since I know the
-	// Memory object is always needed, I'll go ahead and create it at the time of class loading.
-	// (greedy rather than lazy instantiation).  The constructor is private and getInstance()
-	// always returns this instance.
-
-	private static Memory uniqueMemoryInstance = new Memory();
-
 	/*
 	 * Private constructor for Memory.  Separate data structures for text and data segments.
 	 **/
-	private Memory() {
+	private Memory(final MemoryBackend backend) {
+		this.backend = backend;
 		initialize();
 	}
 
 	/**
-	 * Returns the unique Memory instance, which becomes in essence global.
+	 * Creates the memory of a machine, using the backend described in
+	 * Config.properties. Only the default machine maps its segments to files; the
+	 * others would overwrite them, so they keep theirs off the heap instead.
+	 *
+	 * @param defaultMachine true for the memory of the default machine
+	 * @return the new memory, cleared
+	 * @see mars.MachineContext
+	 */
+	public static Memory newInstance(final boolean defaultMachine) {
+		return new Memory(createBackend(Globals.memoryBackend, defaultMachine));
+	}
+
+	// Create backend from its Config.properties description: "heap", "offheap", or
+	// "mapped" followed by a directory name.  Anything unrecognized means heap.
+	private static MemoryBackend createBackend(final String description, final boolean mayMap) {
+		final StringTokenizer st = new StringTokenizer(description);
+		final String kind = st.hasMoreTokens() ? st.nextToken().toLowerCase() : "heap";
+		if (kind.equals("offheap")) { return new OffHeapMemoryBackend(); }
+		if (kind.equals("mapped") && st.hasMoreTokens()) {
+			return mayMap ? new OffHeapMemoryBackend(new File(st.nextToken())) : new OffHeapMemoryBackend();
+		}
+		return new HeapMemoryBackend();
+	}
+
+	/**
+	 * Set the backend providing storage for the data, kernel data, stack and
+	 * memory mapped I/O segments. Takes effect the next time memory is cleared.
+	 *
+	 * @param backend the new backend
+	 */
+	public void setBackend(final MemoryBackend backend) { this.backend = backend; }
+
+	/**
+	 * Get the backend providing storage for the data, kernel data, stack and memory
+	 * mapped I/O segments.
+	 *
+	 * @return the backend
+	 */
+	public MemoryBackend getBackend() { return backend; }
+
+	/**
+	 * Returns the memory of the calling thread's machine, which becomes in essence
+	 * global.
+	 */
+
+	public static Memory getInstance() { return MachineContext.current().getMemory(); }
+
+	/**
+	 * Returns the next address to be allocated from the heap.
+	 *
+	 * @return the current top of the heap
 	 */
+	public int getHeapAddress() { return heapAddress; }
 
-	public static Memory getInstance() { return uniqueMemoryInstance; }
+	/**
+	 * Sets the next address to be allocated from the heap, as when undoing an
+	 * allocation.
+	 *
+	 * @param address the new top of the heap
+	 */
+	public void setHeapAddress(final int address) { heapAddress = address; }
 
 	/**
 	 * Explicitly clear the contents of memory. Typically done at start of assembly.
@@ -296,11 +381,15 @@ public class Memory extends Observable {
 	private void initialize() {
 		heapAddress = heapBaseAddress;
 		textBlockTable = new ProgramStatement[TEXT_BLOCK_TABLE_LENGTH][];
-		dataBlockTable = new int[BLOCK_TABLE_LENGTH][]; // array of null int[] references
+		dataRegion = backend.createRegion("data", BLOCK_LENGTH_WORDS * BLOCK_TABLE_LENGTH);
 		kernelTextBlockTable = new ProgramStatement[TEXT_BLOCK_TABLE_LENGTH][];
-		kernelDataBlockTable = new int[BLOCK_TABLE_LENGTH][];
-		stackBlockTable = new int[BLOCK_TABLE_LENGTH][];
-		memoryMapBlockTable = new int[MMIO_TABLE_LENGTH][];
+		kernelDataRegion = backend.createRegion("kdata", BLOCK_LENGTH_WORDS * BLOCK_TABLE_LENGTH);
+		stackRegion = backend.createRegion("stack", BLOCK_LENGTH_WORDS * BLOCK_TABLE_LENGTH);
+		memoryMapRegion = backend.createRegion("mmio", BLOCK_LENGTH_WORDS * MMIO_TABLE_LENGTH);
+		textBreakpointMarks = new long[TEXT_BLOCK_TABLE_LENGTH][];
+		kernelTextBreakpointMarks = new long[TEXT_BLOCK_TABLE_LENGTH][];
+		watchedPages = new byte[REGION_COUNT][][];
+		trackPages();
 		System.gc(); // call garbage collector on any Table memory just deallocated. 	  
 	}
 
@@ -367,12 +456,12 @@ public class Memory extends Observable {
 		if (inDataSegment(address)) {
 			// in data segment.  Will write one byte at a time, w/o regard to boundaries.
 			relativeByteAddress = address - dataSegmentBaseAddress; // relative to data segment start, in bytes
-			oldValue = storeBytesInTable(dataBlockTable, relativeByteAddress, length, value);
+			oldValue = storeBytesInTable(dataRegion, relativeByteAddress, length, value);
 		} else if (address > stackLimitAddress && address <= stackBaseAddress) {
 			// in stack.  Handle similarly to data segment write, except relative byte
 			// address calculated "backward" because stack addresses grow down from base.
 			relativeByteAddress = stackBaseAddress - address;
-			oldValue = storeBytesInTable(stackBlockTable, relativeByteAddress, length, value);
+			oldValue = storeBytesInTable(stackRegion, relativeByteAddress, length, value);
 		} else if (inTextSegment(address)) {
 			// Burch Mod (Jan 2013): replace throw with call to setStatement
 			// DPS adaptation 5-Jul-2013: either throw or call, depending on setting
@@ -388,11 +477,11 @@ public class Memory extends Observable {
 		} else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
 			// memory mapped I/O.
 			relativeByteAddress = address - memoryMapBaseAddress;
-			oldValue = storeBytesInTable(memoryMapBlockTable, relativeByteAddress, length, value);
+			oldValue = storeBytesInTable(memoryMapRegion, relativeByteAddress, length, value);
 		} else if (inKernelDataSegment(address)) {
 			// in kernel data segment.  Will write one byte at a time, w/o regard to boundaries.
 			relativeByteAddress = address - kernelDataBaseAddress; // relative to data segment start, in bytes
-			oldValue = storeBytesInTable(kernelDataBlockTable, relativeByteAddress, length, value);
+			oldValue = storeBytesInTable(kernelDataRegion, relativeByteAddress, length, value);
 		} else if (inKernelTextSegment(address)) {
 			// DEVELOPER: PLEASE USE setStatement() TO WRITE TO KERNEL TEXT SEGMENT...
 			throw new AddressErrorException("DEVELOPER: You must use setStatement() to write to kernel text segment!",
@@ -402,6 +491,7 @@ public class Memory extends Observable {
 			throw new AddressErrorException("address out of range ", Exceptions.ADDRESS_EXCEPTION_STORE, address);
 		}
 		notifyAnyObservers(AccessNotice.WRITE, address, length, value);
+		if (storeListener != null) { storeListener.valueStored(address, length, value); }
 		return oldValue;
 	}
 
@@ -425,12 +515,12 @@ public class Memory extends Observable {
 		if (inDataSegment(address)) {
 			// in data segment
 			relative = address - dataSegmentBaseAddress >> 2; // convert byte address to words
-			oldValue = storeWordInTable(dataBlockTable, relative, value);
+			oldValue = storeWordInTable(dataRegion, relative, value);
 		} else if (address > stackLimitAddress && address <= stackBaseAddress) {
 			// in stack.  Handle similarly to data segment write, except relative
 			// address calculated "backward" because stack addresses grow down from base.
 			relative = stackBaseAddress - address >> 2; // convert byte address to words
-			oldValue = storeWordInTable(stackBlockTable, relative, value);
+			oldValue = storeWordInTable(stackRegion, relative, value);
 		} else if (inTextSegment(address)) {
 			// Burch Mod (Jan 2013): replace throw with call to setStatement
 			// DPS adaptation 5-Jul-2013: either throw or call, depending on setting
@@ -445,11 +535,11 @@ public class Memory extends Observable {
 		} else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
 			// memory mapped I/O.
 			relative = address - memoryMapBaseAddress >> 2; // convert byte address to word
-			oldValue = storeWordInTable(memoryMapBlockTable, relative, value);
+			oldValue = storeWordInTable(memoryMapRegion, relative, value);
 		} else if (inKernelDataSegment(address)) {
 			// in data segment
 			relative = address - kernelDataBaseAddress >> 2; // convert byte address to words
-			oldValue = storeWordInTable(kernelDataBlockTable, relative, value);
+			oldValue = storeWordInTable(kernelDataRegion, relative, value);
 		} else if (inKernelTextSegment(address)) {
 			// DEVELOPER: PLEASE USE setStatement() TO WRITE TO KERNEL TEXT SEGMENT...
 			throw new AddressErrorException("DEVELOPER: You must use setStatement() to write to kernel text segment!",
@@ -459,6 +549,7 @@ public class Memory extends Observable {
 			throw new AddressErrorException("store address out of range ", Exceptions.ADDRESS_EXCEPTION_STORE, address);
 		}
 		notifyAnyObservers(AccessNotice.WRITE, address, WORD_LENGTH_BYTES, value);
+		if (storeListener != null) { storeListener.valueStored(address, WORD_LENGTH_BYTES, value); }
 		if (Globals.getSettings().getBackSteppingEnabled()) {
 			Globals.program.getBackStepper().addMemoryRestoreRawWord(address, oldValue);
 		}
@@ -563,6 +654,368 @@ public class Memory extends Observable {
 		} else {
 			storeProgramStatement(address, statement, kernelTextBaseAddress, kernelTextBlockTable);
 		}
+		if (statementListener != null) { statementListener.statementStored(address); }
+	}
+
+	/**
+	 * Interface for those who keep their own copy of text segment contents (e.g.
+	 * the simulator's pre-decoded statement table) and need to be told when a
+	 * statement is stored, such as by self-modifying code.
+	 */
+	public interface StatementListener {
+
+		void statementStored(int address);
+	}
+
+	private volatile StatementListener statementListener = null;
+
+	/**
+	 * Set the listener to be told about every subsequent setStatement(). There is
+	 * at most one; use null to remove it.
+	 *
+	 * @param listener the listener, or null for none
+	 */
+	public void setStatementListener(final StatementListener listener) { statementListener = listener; }
+
+	/**
+	 * Interface for those who need to be told about every value stored in the
+	 * data, kernel data, stack or memory mapped I/O segment, by whoever stores it
+	 * (e.g. the simulator's execution history, which records values stored by
+	 * devices and by syscalls).
+	 */
+	public interface StoreListener {
+
+		void valueStored(int address, int length, int value);
+	}
+
+	private volatile StoreListener storeListener = null;
+
+	/**
+	 * Set the listener to be told about every subsequent store, except into the
+	 * text segment. There is at most one; use null to remove it.
+	 *
+	 * @param listener the listener, or null for none
+	 */
+	public void setStoreListener(final StoreListener listener) { storeListener = listener; }
+
+	/**
+	 * Start or stop keeping track of the pages of data, kernel data, stack and
+	 * memory mapped I/O memory that are written. When started, every page already
+	 * allocated counts as written.
+	 *
+	 * @param enabled true to start, false to stop
+	 */
+	public synchronized void setPageTracking(final boolean enabled) {
+		pageTracking = enabled;
+		trackPages();
+	}
+
+	/**
+	 * Copy the pages written since the previous call (or since page tracking
+	 * started) and forget they were written. Does nothing unless page tracking is
+	 * on.
+	 *
+	 * @param pages receives the copies, keyed by page number
+	 */
+	public synchronized void collectWrittenPages(final Map<Integer, int[]> pages) {
+		final MemoryBackend.Region[] regions = getRegions();
+		for (int table = 0; table < regions.length; table++) {
+			if (!(regions[table] instanceof TrackedRegion)) { continue; }
+			final TrackedRegion region = (TrackedRegion) regions[table];
+			for (int page = 0; page < region.written.length; page++) {
+				if (region.written[page]) {
+					final int[] words = new int[BLOCK_LENGTH_WORDS];
+					for (int i = 0; i < BLOCK_LENGTH_WORDS; i++) {
+						words[i] = region.region.getWord(page * BLOCK_LENGTH_WORDS + i);
+					}
+					pages.put(table * BLOCK_TABLE_LENGTH + page, words);
+					region.written[page] = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copy every allocated page of data, kernel data, stack and memory mapped I/O
+	 * memory, such as those holding the data of a program just assembled. Unlike
+	 * collectWrittenPages() this does not need page tracking.
+	 *
+	 * @param pages receives the copies, keyed by page number as for restorePage()
+	 */
+	public synchronized void collectAllocatedPages(final Map<Integer, int[]> pages) {
+		final MemoryBackend.Region[] regions = getRegions();
+		for (int table = 0; table < regions.length; table++) {
+			final int pageCount = table == regions.length - 1 ? MMIO_TABLE_LENGTH : BLOCK_TABLE_LENGTH;
+			for (int page = 0; page < pageCount; page++) {
+				if (regions[table].isAllocated(page * BLOCK_LENGTH_WORDS)) {
+					final int[] words = new int[BLOCK_LENGTH_WORDS];
+					for (int i = 0; i < BLOCK_LENGTH_WORDS; i++) {
+						words[i] = regions[table].getWord(page * BLOCK_LENGTH_WORDS + i);
+					}
+					pages.put(table * BLOCK_TABLE_LENGTH + page, words);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Overwrite a page collected earlier with its copy, without notifying
+	 * observers. The page then counts as written.
+	 *
+	 * @param page  page number, as given to collectWrittenPages()
+	 * @param words the page copy, or null to clear the page
+	 */
+	public synchronized void restorePage(final int page, final int[] words) {
+		final MemoryBackend.Region region = getRegions()[page / BLOCK_TABLE_LENGTH];
+		final int first = page % BLOCK_TABLE_LENGTH * BLOCK_LENGTH_WORDS;
+		if (words == null && !region.isAllocated(first)) { return; } // never written, still zero
+		for (int i = 0; i < BLOCK_LENGTH_WORDS; i++) {
+			region.setWord(first + i, words == null ? 0 : words[i]);
+		}
+	}
+
+	// Wrap or unwrap the tables according to pageTracking and the watchpoints.  The
+	// watchpoint trap goes outside, so written pages are still marked underneath.
+	private void trackPages() {
+		dataRegion = trap(track(untrapped(dataRegion), BLOCK_TABLE_LENGTH), 0);
+		kernelDataRegion = trap(track(untrapped(kernelDataRegion), BLOCK_TABLE_LENGTH), 1);
+		stackRegion = trap(track(untrapped(stackRegion), BLOCK_TABLE_LENGTH), 2);
+		memoryMapRegion = trap(track(untrapped(memoryMapRegion), MMIO_TABLE_LENGTH), 3);
+	}
+
+	private MemoryBackend.Region track(final MemoryBackend.Region region, final int pageCount) {
+		if (region instanceof TrackedRegion) { return pageTracking ? region : ((TrackedRegion) region).region; }
+		return pageTracking ? new TrackedRegion(region, pageCount) : region;
+	}
+
+	private MemoryBackend.Region trap(final MemoryBackend.Region region, final int table) {
+		return watchedPages[table] == null ? region : new TrappedRegion(region, table, watchedPages[table]);
+	}
+
+	private static MemoryBackend.Region untrapped(final MemoryBackend.Region region) {
+		return region instanceof TrappedRegion ? ((TrappedRegion) region).region : region;
+	}
+
+	// The tables, without their watchpoint traps.
+	private MemoryBackend.Region[] getRegions() {
+		return new MemoryBackend.Region[] { untrapped(dataRegion), untrapped(kernelDataRegion), untrapped(stackRegion),
+				untrapped(memoryMapRegion) };
+	}
+
+	// A table whose written pages are marked.
+	private static class TrackedRegion implements MemoryBackend.Region {
+
+		private final MemoryBackend.Region region;
+		private final boolean[] written;
+
+		private TrackedRegion(final MemoryBackend.Region region, final int pageCount) {
+			this.region = region;
+			written = new boolean[pageCount];
+			for (int page = 0; page < pageCount; page++) {
+				written[page] = region.isAllocated(page * BLOCK_LENGTH_WORDS);
+			}
+		}
+
+		@Override
+		public int getWord(final int index) { return region.getWord(index); }
+
+		@Override
+		public int setWord(final int index, final int value) {
+			written[index / BLOCK_LENGTH_WORDS] = true;
+			return region.setWord(index, value);
+		}
+
+		@Override
+		public boolean isAllocated(final int index) { return region.isAllocated(index); }
+	}
+
+	// A table some of whose words are watched.
+	private class TrappedRegion implements MemoryBackend.Region {
+
+		private final MemoryBackend.Region region;
+		private final int table;
+		private final byte[][] watched;
+
+		private TrappedRegion(final MemoryBackend.Region region, final int table, final byte[][] watched) {
+			this.region = region;
+			this.table = table;
+			this.watched = watched;
+		}
+
+		@Override
+		public int getWord(final int index) {
+			final byte[] page = watched[index / BLOCK_LENGTH_WORDS];
+			if (page != null && (page[index % BLOCK_LENGTH_WORDS] & WATCH_READ) != 0) { trip(index, WATCH_READ); }
+			return region.getWord(index);
+		}
+
+		@Override
+		public int setWord(final int index, final int value) {
+			final int oldValue = region.setWord(index, value);
+			final byte[] page = watched[index / BLOCK_LENGTH_WORDS];
+			if (page != null && (page[index % BLOCK_LENGTH_WORDS] & WATCH_WRITE) != 0) { trip(index, WATCH_WRITE); }
+			return oldValue;
+		}
+
+		@Override
+		public boolean isAllocated(final int index) { return region.isAllocated(index); }
+
+		private void trip(final int index, final int access) {
+			final WatchListener listener = watchListener;
+			if (listener != null) { listener.watchTripped(wordAddress(table, index), access); }
+		}
+	}
+
+	/**
+	 * Mark or unmark the statement at the given address as a breakpoint. The
+	 * simulator checks the mark with isBreakpointMarked() before each statement it
+	 * is given breakpoints for. Assembling a program clears all marks.
+	 *
+	 * @param address address in the text or kernel text segment
+	 * @param marked  true to mark, false to unmark
+	 * @throws AddressErrorException if the address is not word aligned or outside
+	 *                               the text segments
+	 */
+	public synchronized void setBreakpointMark(final int address, final boolean marked) throws AddressErrorException {
+		if (!wordAligned(address) || !(inTextSegment(address) || inKernelTextSegment(address))) {
+			throw new AddressErrorException("breakpoint address out of text segment or not aligned to word boundary ",
+					Exceptions.ADDRESS_EXCEPTION_LOAD, address);
+		}
+		final long[][] marks = inTextSegment(address) ? textBreakpointMarks : kernelTextBreakpointMarks;
+		final int relative = address - (inTextSegment(address) ? textBaseAddress : kernelTextBaseAddress) >> 2;
+		final int block = relative / TEXT_BLOCK_LENGTH_WORDS;
+		if (marks[block] == null) {
+			if (!marked) { return; }
+			marks[block] = new long[MARK_WORDS_PER_BLOCK];
+		}
+		final int word = relative % TEXT_BLOCK_LENGTH_WORDS / Long.SIZE;
+		if (marked) {
+			marks[block][word] |= 1L << relative;
+		} else {
+			marks[block][word] &= ~(1L << relative);
+		}
+	}
+
+	/**
+	 * Tell whether the statement at the given address is marked as a breakpoint.
+	 *
+	 * @param address address of the statement
+	 * @return true if marked, false if not or if there can be no statement there
+	 */
+	public boolean isBreakpointMarked(final int address) {
+		final long[][] marks;
+		final int relative;
+		if (inTextSegment(address)) {
+			marks = textBreakpointMarks;
+			relative = address - textBaseAddress >> 2;
+		} else if (inKernelTextSegment(address)) {
+			marks = kernelTextBreakpointMarks;
+			relative = address - kernelTextBaseAddress >> 2;
+		} else {
+			return false;
+		}
+		final long[] block = marks[relative / TEXT_BLOCK_LENGTH_WORDS];
+		return block != null && (block[relative % TEXT_BLOCK_LENGTH_WORDS / Long.SIZE] & 1L << relative) != 0;
+	}
+
+	/**
+	 * Unmark all breakpoints.
+	 */
+	public synchronized void clearBreakpointMarks() {
+		textBreakpointMarks = new long[TEXT_BLOCK_TABLE_LENGTH][];
+		kernelTextBreakpointMarks = new long[TEXT_BLOCK_TABLE_LENGTH][];
+	}
+
+	/** Watchpoint access: the word is read. */
+	public static final int WATCH_READ = 1;
+	/** Watchpoint access: the word is written. */
+	public static final int WATCH_WRITE = 2;
+
+	/**
+	 * Interface for those who need to be told when a watched word is accessed
+	 * (e.g. the simulator's breakpoints). Unlike an Observer, it costs nothing on
+	 * pages holding no watched word.
+	 */
+	public interface WatchListener {
+
+		void watchTripped(int address, int access);
+	}
+
+	private volatile WatchListener watchListener = null;
+
+	/**
+	 * Set the listener to be told about every access to a watched word. There is
+	 * at most one; use null to remove it.
+	 *
+	 * @param listener the listener, or null for none
+	 */
+	public void setWatchListener(final WatchListener listener) { watchListener = listener; }
+
+	/**
+	 * Watch the word holding the given address in the data, kernel data, stack or
+	 * memory mapped I/O segment. Watching is by word: any access to the word trips
+	 * it, whatever the address and length. Byte and halfword stores read the word
+	 * they change, so they also trip a read watchpoint on it. Assembling a program
+	 * clears all watchpoints.
+	 *
+	 * @param address address of the word
+	 * @param access  WATCH_READ, WATCH_WRITE or both OR-ed together; 0 to stop
+	 *                watching the word
+	 * @throws AddressErrorException if the address is outside those segments
+	 */
+	public synchronized void setWatchpoint(final int address, final int access) throws AddressErrorException {
+		final int table, index;
+		if (inDataSegment(address)) {
+			table = 0;
+			index = address - dataSegmentBaseAddress >> 2;
+		} else if (inKernelDataSegment(address)) {
+			table = 1;
+			index = address - kernelDataBaseAddress >> 2;
+		} else if (address > stackLimitAddress && address <= stackBaseAddress) {
+			// stack words are numbered "backward" from the base, see wordAddress()
+			table = 2;
+			index = stackBaseAddress - address + WORD_LENGTH_BYTES - 1 >> 2;
+		} else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
+			table = 3;
+			index = address - memoryMapBaseAddress >> 2;
+		} else {
+			throw new AddressErrorException("watchpoint address out of data segments ",
+					Exceptions.ADDRESS_EXCEPTION_LOAD, address);
+		}
+		if (watchedPages[table] == null) {
+			if (access == 0) { return; }
+			watchedPages[table] = new byte[table == 3 ? MMIO_TABLE_LENGTH : BLOCK_TABLE_LENGTH][];
+		}
+		final byte[][] pages = watchedPages[table];
+		final int page = index / BLOCK_LENGTH_WORDS;
+		if (pages[page] == null) {
+			if (access == 0) { return; }
+			pages[page] = new byte[BLOCK_LENGTH_WORDS];
+		}
+		pages[page][index % BLOCK_LENGTH_WORDS] = (byte) (access & (WATCH_READ | WATCH_WRITE));
+		trackPages();
+	}
+
+	/**
+	 * Stop watching all words.
+	 */
+	public synchronized void clearWatchpoints() {
+		watchedPages = new byte[REGION_COUNT][][];
+		trackPages();
+	}
+
+	// Address of the word with the given index in the given table, see getRegions().
+	private static int wordAddress(final int table, final int index) {
+		switch (table) {
+		case 0:
+			return dataSegmentBaseAddress + (index << 2);
+		case 1:
+			return kernelDataBaseAddress + (index << 2);
+		case 2:
+			return stackBaseAddress - (index << 2);
+		default:
+			return memoryMapBaseAddress + (index << 2);
+		}
 	}
 
 	/********************************
@@ -592,17 +1045,17 @@ public class Memory extends Observable {
 		if (inDataSegment(address)) {
 			// in data segment.  Will read one byte at a time, w/o regard to boundaries.
 			relativeByteAddress = address - dataSegmentBaseAddress; // relative to data segment start, in bytes
-			value = fetchBytesFromTable(dataBlockTable, relativeByteAddress, length);
+			value = fetchBytesFromTable(dataRegion, relativeByteAddress, length);
 		} else if (address > stackLimitAddress && address <= stackBaseAddress) {
 			// in stack. Similar to data, except relative address computed "backward"
 			relativeByteAddress = stackBaseAddress - address;
-			value = fetchBytesFromTable(stackBlockTable, relativeByteAddress, length);
+			value = fetchBytesFromTable(stackRegion, relativeByteAddress, length);
 		}
 
 		else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
 			// memory mapped I/O.
 			relativeByteAddress = address - memoryMapBaseAddress;
-			value = fetchBytesFromTable(memoryMapBlockTable, relativeByteAddress, length);
+			value = fetchBytesFromTable(memoryMapRegion, relativeByteAddress, length);
 		} else if (inTextSegment(address)) {
 			// Burch Mod (Jan 2013): replace throw with calls to getStatementNoNotify & getBinaryStatement
 			// DPS adaptation 5-Jul-2013: either throw or call, depending on setting
@@ -616,7 +1069,7 @@ public class Memory extends Observable {
 		} else if (inKernelDataSegment(address)) {
 			// in kernel data segment.  Will read one byte at a time, w/o regard to boundaries.
 			relativeByteAddress = address - kernelDataBaseAddress; // relative to data segment start, in bytes
-			value = fetchBytesFromTable(kernelDataBlockTable, relativeByteAddress, length);
+			value = fetchBytesFromTable(kernelDataRegion, relativeByteAddress, length);
 		} else if (inKernelTextSegment(address)) {
 			// DEVELOPER: PLEASE USE getStatement() TO READ FROM KERNEL TEXT SEGMENT...
 			throw new AddressErrorException("DEVELOPER: You must use getStatement() to read from kernel text segment!",
@@ -655,15 +1108,15 @@ public class Memory extends Observable {
 		if (inDataSegment(address)) {
 			// in data segment
 			relative = address - dataSegmentBaseAddress >> 2; // convert byte address to words
-			value = fetchWordFromTable(dataBlockTable, relative);
+			value = fetchWordFromTable(dataRegion, relative);
 		} else if (address > stackLimitAddress && address <= stackBaseAddress) {
 			// in stack. Similar to data, except relative address computed "backward"
 			relative = stackBaseAddress - address >> 2; // convert byte address to words
-			value = fetchWordFromTable(stackBlockTable, relative);
+			value = fetchWordFromTable(stackRegion, relative);
 		} else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
 			// memory mapped I/O.
 			relative = address - memoryMapBaseAddress >> 2;
-			value = fetchWordFromTable(memoryMapBlockTable, relative);
+			value = fetchWordFromTable(memoryMapRegion, relative);
 		} else if (inTextSegment(address)) {
 			// Burch Mod (Jan 2013): replace throw with calls to getStatementNoNotify & getBinaryStatement
 			// DPS adaptation 5-Jul-2013: either throw or call, depending on setting
@@ -677,7 +1130,7 @@ public class Memory extends Observable {
 		} else if (inKernelDataSegment(address)) {
 			// in kernel data segment
 			relative = address - kernelDataBaseAddress >> 2; // convert byte address to words
-			value = fetchWordFromTable(kernelDataBlockTable, relative);
+			value = fetchWordFromTable(kernelDataRegion, relative);
 		} else if (inKernelTextSegment(address)) {
 			// DEVELOPER: PLEASE USE getStatement() TO READ FROM KERNEL TEXT SEGMENT...
 			throw new AddressErrorException("DEVELOPER: You must use getStatement() to read from kernel text segment!",
@@ -720,11 +1173,11 @@ public class Memory extends Observable {
 		if (inDataSegment(address)) {
 			// in data segment
 			relative = address - dataSegmentBaseAddress >> 2; // convert byte address to words
-			value = fetchWordOrNullFromTable(dataBlockTable, relative);
+			value = fetchWordOrNullFromTable(dataRegion, relative);
 		} else if (address > stackLimitAddress && address <= stackBaseAddress) {
 			// in stack. Similar to data, except relative address computed "backward"
 			relative = stackBaseAddress - address >> 2; // convert byte address to words
-			value = fetchWordOrNullFromTable(stackBlockTable, relative);
+			value = fetchWordOrNullFromTable(stackRegion, relative);
 		} else if (inTextSegment(address) || inKernelTextSegment(address)) {
 			try {
 				value = getStatementNoNotify(address) == null ? null
@@ -735,7 +1188,7 @@ public class Memory extends Observable {
 		} else if (inKernelDataSegment(address)) {
 			// in kernel data segment
 			relative = address - kernelDataBaseAddress >> 2; // convert byte address to words
-			value = fetchWordOrNullFromTable(kernelDataBlockTable, relative);
+			value = fetchWordOrNullFromTable(kernelDataRegion, relative);
 		} else {
 			// falls outside Mars addressing range
 			throw new AddressErrorException("address out of range ", Exceptions.ADDRESS_EXCEPTION_LOAD, address);
@@ -1087,7 +1540,9 @@ public class Memory extends Observable {
 			throw new AddressErrorException("end address of range < start address of range ",
 					Exceptions.ADDRESS_EXCEPTION_LOAD, startAddr);
 		}
-		observables.add(new MemoryObservable(obs, startAddr, endAddr));
+		synchronized (this) {
+			observables = observables.with(new MemoryObservable(obs, startAddr, endAddr));
+		}
 	}
 
 	/**
@@ -1104,20 +1559,17 @@ public class Memory extends Observable {
 	 * @param obs Observer to be removed
 	 */
 	@Override
-	public void deleteObserver(final Observer obs) {
-		final Iterator it = observables.iterator();
-		while (it.hasNext()) {
-			((MemoryObservable) it.next()).deleteObserver(obs);
-		}
+	public synchronized void deleteObserver(final Observer obs) {
+		observables = observables.without(obs);
 	}
 
 	/**
 	 * Remove all memory observers
 	 */
 	@Override
-	public void deleteObservers() {
+	public synchronized void deleteObservers() {
 		// just drop the collection
-		observables = getNewMemoryObserversCollection();
+		observables = new ObserverIndex(new MemoryObservable[0]);
 	}
 
 	/**
@@ -1142,8 +1594,78 @@ public class Memory extends Observable {
 		throw new UnsupportedOperationException();
 	}
 
-	private Collection getNewMemoryObserversCollection() {
-		return new Vector();  // Vectors are thread-safe
+	/////////////////////////////////////////////////////////////////////////
+	// Private class holding an immutable snapshot of the memory observables, sorted
+	// by low address (then by high address, then in order of registration) for fast
+	// lookup of the ones whose range includes a given address.  Addresses compare as
+	// signed ints, same as in MemoryObservable.match(); no range crosses 0x80000000.
+	private static class ObserverIndex {
+
+		private final MemoryObservable[] sorted;
+		private final int[] reach; // reach[i] is highest byte address covered by sorted[0..i]
+
+		private ObserverIndex(final MemoryObservable[] observables) {
+			sorted = observables;
+			Arrays.sort(sorted); // stable, so registration order kept among equal ranges
+			reach = new int[sorted.length];
+			for (int i = 0; i < sorted.length; i++) {
+				final int last = sorted[i].highAddress - 1 + WORD_LENGTH_BYTES;
+				reach[i] = i == 0 || last > reach[i - 1] ? last : reach[i - 1];
+			}
+		}
+
+		private int size() { return sorted.length; }
+
+		// Copy of this index with one more observable.
+		private ObserverIndex with(final MemoryObservable mo) {
+			final MemoryObservable[] observables = Arrays.copyOf(sorted, sorted.length + 1);
+			observables[sorted.length] = mo;
+			return new ObserverIndex(observables);
+		}
+
+		// Copy of this index without the given observer.  Observables left with no
+		// observers are dropped.
+		private ObserverIndex without(final Observer obs) {
+			final ArrayList remaining = new ArrayList();
+			for (int i = 0; i < sorted.length; i++) {
+				sorted[i].deleteObserver(obs);
+				if (sorted[i].countObservers() > 0) { remaining.add(sorted[i]); }
+			}
+			return new ObserverIndex((MemoryObservable[]) remaining.toArray(new MemoryObservable[0]));
+		}
+
+		// Send one notice, shared by all, to the observables whose range includes address.
+		private void notify(final int type, final int address, final int length, final int value) {
+			// sorted[0..end) are the observables starting at or below address...
+			int low = 0, high = sorted.length;
+			while (low < high) {
+				final int mid = low + high >>> 1;
+				if (sorted[mid].lowAddress <= address) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			final int end = low;
+			// ...and sorted[0..start) all end below it.
+			low = 0;
+			high = end;
+			while (low < high) {
+				final int mid = low + high >>> 1;
+				if (reach[mid] < address) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			MemoryAccessNotice notice = null;
+			for (int i = low; i < end; i++) {
+				if (sorted[i].match(address)) {
+					if (notice == null) { notice = new MemoryAccessNotice(type, address, length, value); }
+					sorted[i].notifyObserver(notice);
+				}
+			}
+		}
 	}
 
 	/////////////////////////////////////////////////////////////////////////
@@ -1168,8 +1690,7 @@ public class Memory extends Observable {
 			this.notifyObservers(notice);
 		}
 
-		// Useful to have for future refactoring, if it actually becomes worthwhile to sort
-		// these or put 'em in a tree (rather than sequential search through list).
+		// Used to sort these for the ObserverIndex (rather than sequential search through list).
 		@Override
 		public int compareTo(final Object obj) {
 			if (!(obj instanceof MemoryObservable)) { throw new ClassCastException(); }
@@ -1178,7 +1699,7 @@ public class Memory extends Observable {
 				return -1;
 			}
 			if (lowAddress > mo.lowAddress || lowAddress == mo.lowAddress && highAddress > mo.highAddress) {
-				return -1;
+				return 1;
 			}
 			return 0;  // they have to be equal at this point.
 		}
@@ -1195,13 +1716,9 @@ public class Memory extends Observable {
 	// The "|| Globals.getGui()==null" is a hack added 19 July 2012 DPS.  IF MIPS simulation
 	// is from command mode, Globals.program is null but still want ability to observe.
 	private void notifyAnyObservers(final int type, final int address, final int length, final int value) {
-		if ((Globals.program != null || Globals.getGui() == null) && observables.size() > 0) {
-			final Iterator it = observables.iterator();
-			MemoryObservable mo;
-			while (it.hasNext()) {
-				mo = (MemoryObservable) it.next();
-				if (mo.match(address)) { mo.notifyObserver(new MemoryAccessNotice(type, address, length, value)); }
-			}
+		final ObserverIndex index = observables;
+		if ((Globals.program != null || Globals.getGui() == null) && index.size() > 0) {
+			index.notify(type, address, length, value);
 		}
 	}
 
@@ -1216,8 +1733,11 @@ public class Memory extends Observable {
 	private static final boolean STORE = true;
 	private static final boolean FETCH = false;
 
-	private int storeBytesInTable(final int[][] blockTable, final int relativeByteAddress, final int length,
+	private int storeBytesInTable(final MemoryBackend.Region blockTable, final int relativeByteAddress, final int length,
 			final int value) {
+		if (isAlignedAccess(relativeByteAddress, length)) {
+			return storeAlignedInTable(blockTable, relativeByteAddress, length, value);
+		}
 		return storeOrFetchBytesInTable(blockTable, relativeByteAddress, length, value, STORE);
 	}
 
@@ -1229,10 +1749,59 @@ public class Memory extends Observable {
 	// and block size.
 	//
 
-	private int fetchBytesFromTable(final int[][] blockTable, final int relativeByteAddress, final int length) {
+	private int fetchBytesFromTable(final MemoryBackend.Region blockTable, final int relativeByteAddress, final int length) {
+		if (isAlignedAccess(relativeByteAddress, length)) {
+			return fetchAlignedFromTable(blockTable, relativeByteAddress, length);
+		}
 		return storeOrFetchBytesInTable(blockTable, relativeByteAddress, length, 0, FETCH);
 	}
 
+	////////////////////////////////////////////////////////////////////////////////
+	//
+	// Fast paths for the common case: a little-endian byte, halfword or word access on
+	// its natural boundary (which is what lb/lh/lw/sb/sh/sw always are). The containing
+	// word is read once, and the bytes are extracted or replaced together using shifts
+	// and masks instead of one at a time.  Stack relative addresses are "backward", but
+	// a naturally aligned access is aligned in either direction.
+	//
+	// No monitor is taken here (backends take one only to allocate a new page).  Other
+	// threads (tools, GUI) that write MIPS memory do so inside the same
+	// Globals.memoryAndRegistersLock block the simulator uses, and when the simulator
+	// runs outside that lock nobody else is attached, so the simulator is the single
+	// writer.  A word store is a single int store and is atomic regardless.  Big-endian
+	// keeps using the general-purpose method below.
+	//
+	private boolean isAlignedAccess(final int relativeByteAddress, final int length) {
+		return byteOrder == LITTLE_ENDIAN && (length == 4 || length == 2 || length == 1) && (relativeByteAddress
+				& length - 1) == 0;
+	}
+
+	private int storeAlignedInTable(final MemoryBackend.Region blockTable, int relativeByteAddress, final int length,
+			final int value) {
+		if (blockTable == stackRegion) { relativeByteAddress = forwardStackAddress(relativeByteAddress); }
+		final int relativeWordAddress = relativeByteAddress >> 2;
+		if (length == WORD_LENGTH_BYTES) { return blockTable.setWord(relativeWordAddress, value); }
+		final int shift = (relativeByteAddress & 3) << 3;
+		final int mask = length == 1 ? 0xFF : 0xFFFF;
+		final int oldWord = blockTable.getWord(relativeWordAddress);
+		blockTable.setWord(relativeWordAddress, oldWord & ~(mask << shift) | (value & mask) << shift);
+		return oldWord >>> shift & mask;
+	}
+
+	private int fetchAlignedFromTable(final MemoryBackend.Region blockTable, int relativeByteAddress, final int length) {
+		if (blockTable == stackRegion) { relativeByteAddress = forwardStackAddress(relativeByteAddress); }
+		final int word = blockTable.getWord(relativeByteAddress >> 2);
+		if (length == WORD_LENGTH_BYTES) { return word; }
+		return word >>> ((relativeByteAddress & 3) << 3) & (length == 1 ? 0xFF : 0xFFFF);
+	}
+
+	// Turns a "backward" stack relative byte address into one that counts bytes upward
+	// within each word, like the other tables.  See the Saul Spatz fix below.
+	private int forwardStackAddress(final int relativeByteAddress) {
+		final int delta = relativeByteAddress & 3;
+		return delta == 0 ? relativeByteAddress : relativeByteAddress + (4 - delta << 1);
+	}
+
 	////////////////////////////////////////////////////////////////////////////////
 	//
 	// The helper's helper.  Works for either storing or fetching, little or big endian.
@@ -1241,9 +1810,9 @@ public class Memory extends Observable {
 	// client using STORE or FETCH in last arg.
 	// Modified 29 Dec 2005 to return old value of replaced bytes, for STORE.
 	//
-	private synchronized int storeOrFetchBytesInTable(final int[][] blockTable, int relativeByteAddress,
+	private synchronized int storeOrFetchBytesInTable(final MemoryBackend.Region blockTable, int relativeByteAddress,
 			final int length, int value, final boolean op) {
-		int relativeWordAddress, block, offset, bytePositionInMemory, bytePositionInValue;
+		int relativeWordAddress, word, bytePositionInMemory, bytePositionInValue;
 		int oldValue = 0; // for STORE, return old values of replaced bytes
 		final int loopStopper = 3 - length;
 		// IF added DPS 22-Dec-2008. NOTE: has NOT been tested with Big-Endian.
@@ -1253,29 +1822,22 @@ public class Memory extends Observable {
 		// address actually passed in is stackBaseAddress - (4k + m), so we
 		// need to add 2m.  Because of the change in sign, we get the
 		// expression 4-delta below in place of m.
-		if (blockTable == stackBlockTable) {
+		if (blockTable == stackRegion) {
 			final int delta = relativeByteAddress % 4;
 			if (delta != 0) { relativeByteAddress += 4 - delta << 1; }
 		}
 		for (bytePositionInValue = 3; bytePositionInValue > loopStopper; bytePositionInValue--) {
 			bytePositionInMemory = relativeByteAddress % 4;
 			relativeWordAddress = relativeByteAddress >> 2;
-			block = relativeWordAddress / BLOCK_LENGTH_WORDS;  // Block number
-			offset = relativeWordAddress % BLOCK_LENGTH_WORDS; // Word within that block
-			if (blockTable[block] == null) {
-				if (op == STORE) {
-					blockTable[block] = new int[BLOCK_LENGTH_WORDS];
-				} else {
-					return 0;
-				}
-			}
+			if (op == FETCH && !blockTable.isAllocated(relativeWordAddress)) { return 0; }
 			if (byteOrder == LITTLE_ENDIAN) { bytePositionInMemory = 3 - bytePositionInMemory; }
+			word = blockTable.getWord(relativeWordAddress);
 			if (op == STORE) {
-				oldValue = replaceByte(blockTable[block][offset], bytePositionInMemory, oldValue, bytePositionInValue);
-				blockTable[block][offset] = replaceByte(value, bytePositionInValue, blockTable[block][offset],
-						bytePositionInMemory);
+				oldValue = replaceByte(word, bytePositionInMemory, oldValue, bytePositionInValue);
+				blockTable.setWord(relativeWordAddress, replaceByte(value, bytePositionInValue, word,
+						bytePositionInMemory));
 			} else {// op == FETCH
-				value = replaceByte(blockTable[block][offset], bytePositionInMemory, value, bytePositionInValue);
+				value = replaceByte(word, bytePositionInMemory, value, bytePositionInValue);
 			}
 			relativeByteAddress++;
 		}
@@ -1290,17 +1852,8 @@ public class Memory extends Observable {
 	// and block size.  Assumes address is word aligned, no endian processing.
 	// Modified 29 Dec 2005 to return overwritten value.
 
-	private synchronized int storeWordInTable(final int[][] blockTable, final int relative, final int value) {
-		int block, offset, oldValue;
-		block = relative / BLOCK_LENGTH_WORDS;
-		offset = relative % BLOCK_LENGTH_WORDS;
-		if (blockTable[block] == null) {
-			// First time writing to this block, so allocate the space.
-			blockTable[block] = new int[BLOCK_LENGTH_WORDS];
-		}
-		oldValue = blockTable[block][offset];
-		blockTable[block][offset] = value;
-		return oldValue;
+	private int storeWordInTable(final MemoryBackend.Region blockTable, final int relative, final int value) {
+		return blockTable.setWord(relative, value);
 	}
 
 	////////////////////////////////////////////////////////////////////////////////
@@ -1311,18 +1864,9 @@ public class Memory extends Observable {
 	// and block size.  Assumes word alignment, no endian processing.
 	//
 
-	private synchronized int fetchWordFromTable(final int[][] blockTable, final int relative) {
-		int value = 0;
-		int block, offset;
-		block = relative / BLOCK_LENGTH_WORDS;
-		offset = relative % BLOCK_LENGTH_WORDS;
-		if (blockTable[block] == null) {
-			// first reference to an address in this block.  Assume initialized to 0.
-			value = 0;
-		} else {
-			value = blockTable[block][offset];
-		}
-		return value;
+	private int fetchWordFromTable(final MemoryBackend.Region blockTable, final int relative) {
+		// first reference to an address in this block reads as 0.
+		return blockTable.getWord(relative);
 	}
 
 	////////////////////////////////////////////////////////////////////////////////
@@ -1337,18 +1881,12 @@ public class Memory extends Observable {
 	// by Greg Gibeling of UC Berkeley, fall 2007.
 	//
 
-	private synchronized Integer fetchWordOrNullFromTable(final int[][] blockTable, final int relative) {
-		int value = 0;
-		int block, offset;
-		block = relative / BLOCK_LENGTH_WORDS;
-		offset = relative % BLOCK_LENGTH_WORDS;
-		if (blockTable[block] == null) {
+	private Integer fetchWordOrNullFromTable(final MemoryBackend.Region blockTable, final int relative) {
+		if (!blockTable.isAllocated(relative)) {
 			// first reference to an address in this block.  Assume initialized to 0.
 			return null;
-		} else {
-			value = blockTable[block][offset];
 		}
-		return new Integer(value);
+		return new Integer(blockTable.getWord(relative));
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////
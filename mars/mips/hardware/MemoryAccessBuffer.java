@@ -0,0 +1,155 @@
+package mars.mips.hardware;
+
+import java.util.Observable;
+import java.util.Observer;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Memory observer that records MIPS memory accesses in a ring buffer instead of
+ * acting on them, so the simulator is not held up by the consumer. Records are
+ * four ints (type, address, length, value) held in parallel arrays; adding one
+ * allocates nothing. Another thread, typically a tool's Swing timer, takes them
+ * out in batches with drain().
+ * <p>
+ * The buffer is lock-free for one producer and one consumer, which is the case
+ * for the simulator thread and the Swing event thread. Only accesses made by
+ * the executing MIPS program are recorded. If the buffer fills up, the producer
+ * waits a little while for the consumer to make room. Records that still do not
+ * fit are dropped and counted, rather than risk a deadlock with a consumer that
+ * is itself waiting for the simulator (e.g. for Globals.memoryAndRegistersLock).
+ */
+
+public class MemoryAccessBuffer implements Observer {
+
+	/**
+	 * Receives the records taken out by drain().
+	 */
+	public interface Consumer {
+
+		/**
+		 * Process one recorded access.
+		 *
+		 * @param type    AccessNotice.READ or AccessNotice.WRITE
+		 * @param address the memory address accessed
+		 * @param length  length in bytes of the access (4, 2 or 1)
+		 * @param value   the value read or written
+		 */
+		void access(int type, int address, int length, int value);
+	}
+
+	private static final long MAX_WAIT_NANOS = 100000000L; // 0.1 second
+
+	private final int mask;
+	private final int[] types, addresses, lengths, values;
+	// Next record to write (producer only) and next record to read (consumer only).
+	// Each is read by the other side to tell how full the buffer is.
+	private volatile long tail = 0, head = 0;
+	private volatile boolean closed = false;
+	private volatile long dropped = 0;
+
+	/**
+	 * Create a buffer.
+	 *
+	 * @param capacity maximum number of records held; rounded up to a power of 2
+	 */
+	public MemoryAccessBuffer(final int capacity) {
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		mask = size - 1;
+		types = new int[size];
+		addresses = new int[size];
+		lengths = new int[size];
+		values = new int[size];
+	}
+
+	/**
+	 * Record an access. Called by Memory; the notice must be a MemoryAccessNotice.
+	 *
+	 * @param resource     the memory
+	 * @param accessNotice the MemoryAccessNotice describing the access
+	 */
+	@Override
+	public void update(final Observable resource, final Object accessNotice) {
+		final MemoryAccessNotice notice = (MemoryAccessNotice) accessNotice;
+		if (!notice.accessIsFromMIPS()) { return; }
+		final long t = tail;
+		if (t - head > mask) { // full
+			final long deadline = System.nanoTime() + MAX_WAIT_NANOS;
+			while (t - head > mask) {
+				if (closed || System.nanoTime() - deadline > 0) {
+					dropped++;
+					return;
+				}
+				Thread.yield();
+			}
+		}
+		final int i = (int) t & mask;
+		types[i] = notice.getAccessType();
+		addresses[i] = notice.getAddress();
+		lengths[i] = notice.getLength();
+		values[i] = notice.getValue();
+		tail = t + 1; // publishes the record
+	}
+
+	/**
+	 * Take out all records currently in the buffer, in the order recorded.
+	 *
+	 * @param consumer receives each record
+	 * @return the number of records taken out
+	 */
+	public int drain(final Consumer consumer) {
+		final long h = head, t = tail;
+		for (long r = h; r < t; r++) {
+			final int i = (int) r & mask;
+			consumer.access(types[i], addresses[i], lengths[i], values[i]);
+		}
+		head = t; // makes room for the producer
+		return (int) (t - h);
+	}
+
+	/**
+	 * Get the number of records dropped so far because the buffer was full.
+	 *
+	 * @return number of records dropped
+	 */
+	public long getDroppedCount() { return dropped; }
+
+	/**
+	 * Stop waiting for room when full; records that do not fit are dropped at once
+	 * from now on. Use when the consumer will not drain any more.
+	 */
+	public void close() { closed = true; }
+
+	/**
+	 * Wait for room again when full. A new buffer is open.
+	 */
+	public void open() { closed = false; }
+}
@@ -42,10 +42,10 @@ public class MemoryAccessNotice extends AccessNotice {
 	private final int value;
 
 	/**
-	 * Constructor will be called only within this package, so assume address and
-	 * length are in valid ranges.
+	 * Constructor will be called only within this package or for notices recorded
+	 * by a MemoryAccessBuffer, so assume address and length are in valid ranges.
 	 */
-	MemoryAccessNotice(final int type, final int address, final int length, final int value) {
+	public MemoryAccessNotice(final int type, final int address, final int length, final int value) {
 		super(type);
 		this.address = address;
 		this.length = length;
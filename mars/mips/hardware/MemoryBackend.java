@@ -0,0 +1,91 @@
+package mars.mips.hardware;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Storage behind the simulated MIPS data, kernel data, stack and memory mapped
+ * I/O segments. Memory handles addresses, alignment and byte order; a backend
+ * only has to store words. Each segment is a Region of words numbered from 0,
+ * initially all zero. Regions are created afresh whenever Memory is cleared.
+ * <p>
+ * The backend to use is named by the MemoryBackend entry in Config.properties
+ * and can be replaced by Memory.setBackend().
+ *
+ * @see HeapMemoryBackend
+ * @see OffHeapMemoryBackend
+ */
+
+public interface MemoryBackend {
+
+	/**
+	 * Number of words in a page. Regions are expected to allocate storage in pages
+	 * of this size as they are first written.
+	 */
+	int PAGE_LENGTH_WORDS = 1024;
+
+	/**
+	 * Create a region to hold one memory segment.
+	 *
+	 * @param name        short name of the segment, e.g. "data" or "stack"
+	 * @param lengthWords capacity of the region, a multiple of PAGE_LENGTH_WORDS
+	 * @return the new region, with all words zero
+	 */
+	Region createRegion(String name, int lengthWords);
+
+	/**
+	 * A segment's worth of word storage.
+	 */
+	interface Region {
+
+		/**
+		 * Read a word.
+		 *
+		 * @param index word number within the region
+		 * @return the word, or 0 if its page has never been written
+		 */
+		int getWord(int index);
+
+		/**
+		 * Write a word, allocating its page if necessary.
+		 *
+		 * @param index word number within the region
+		 * @param value the new value
+		 * @return the value replaced
+		 */
+		int setWord(int index, int value);
+
+		/**
+		 * Tell whether the page holding a word has ever been written. The memory
+		 * dump uses this to find the end of the data in a segment.
+		 *
+		 * @param index word number within the region
+		 * @return true if the page has been allocated, false otherwise
+		 */
+		boolean isAllocated(int index);
+	}
+}
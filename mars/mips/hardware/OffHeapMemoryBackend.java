@@ -0,0 +1,201 @@
+package mars.mips.hardware;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Memory backend that keeps simulated memory outside the Java heap, so large
+ * memory footprints add nothing to garbage collection work. There are two
+ * modes:
+ * <ul>
+ * <li>anonymous: each page is a direct ByteBuffer, allocated on first
+ * write.</li>
+ * <li>mapped: each region is a (sparse) file in a given directory, mapped into
+ * memory in one piece. Segment contents can then be inspected or saved from
+ * outside MARS. The files are emptied whenever memory is cleared: each file is
+ * mapped once per run of MARS and zeroed in place from then on, as truncating a
+ * file that is still mapped would fault on the old mapping or fail.</li>
+ * </ul>
+ * Words are stored in native byte order; this is independent of the simulated
+ * MIPS byte order, which Memory deals with.
+ */
+
+public class OffHeapMemoryBackend implements MemoryBackend {
+
+	private static final int PAGE_SHIFT = 10; // log2(PAGE_LENGTH_WORDS)
+	private static final int PAGE_LENGTH_BYTES = PAGE_LENGTH_WORDS * Memory.WORD_LENGTH_BYTES;
+
+	private final File directory;
+	// Mapped regions by file, shared by all backends so that no file is mapped twice.
+	private static final HashMap<File, MappedRegion> mappedRegions = new HashMap<>();
+
+	/**
+	 * Create a backend whose pages are anonymous direct buffers.
+	 */
+	public OffHeapMemoryBackend() {
+		this(null);
+	}
+
+	/**
+	 * Create a backend whose regions are memory-mapped files.
+	 *
+	 * @param directory directory to hold one file per region, named after the
+	 *                  region with extension ".mem". If null, use anonymous direct
+	 *                  buffers instead.
+	 */
+	public OffHeapMemoryBackend(final File directory) {
+		this.directory = directory;
+	}
+
+	@Override
+	public Region createRegion(final String name, final int lengthWords) {
+		if (directory != null) {
+			try {
+				return mappedRegion(new File(directory, name + ".mem").getAbsoluteFile(), lengthWords);
+			} catch (final IOException e) {
+				// Not program output, which may be captured.
+				System.err.println("MARS System error: unable to map " + name + " segment to a file in "
+						+ directory + ": " + e + ".  Using direct buffers instead.");
+			}
+		}
+		return new DirectRegion(lengthWords / PAGE_LENGTH_WORDS);
+	}
+
+	// The region mapped from the given file, zeroed.  Mapped the first time only.
+	private static MappedRegion mappedRegion(final File file, final int lengthWords) throws IOException {
+		synchronized (mappedRegions) {
+			MappedRegion region = mappedRegions.get(file);
+			if (region == null) {
+				region = new MappedRegion(file, lengthWords);
+				mappedRegions.put(file, region);
+			} else if (region.allocated.length != lengthWords / PAGE_LENGTH_WORDS) {
+				throw new IOException("already mapped with another length");
+			} else {
+				region.clear();
+			}
+			return region;
+		}
+	}
+
+	// One direct buffer per page, allocated on first write.
+	private static class DirectRegion implements Region {
+
+		private final ByteBuffer[] pages;
+
+		private DirectRegion(final int pageCount) {
+			pages = new ByteBuffer[pageCount];
+		}
+
+		@Override
+		public int getWord(final int index) {
+			final ByteBuffer page = pages[index >> PAGE_SHIFT];
+			return page == null ? 0 : page.getInt((index & PAGE_LENGTH_WORDS - 1) << 2);
+		}
+
+		@Override
+		public int setWord(final int index, final int value) {
+			ByteBuffer page = pages[index >> PAGE_SHIFT];
+			if (page == null) { page = allocate(index >> PAGE_SHIFT); }
+			final int offset = (index & PAGE_LENGTH_WORDS - 1) << 2;
+			final int oldValue = page.getInt(offset);
+			page.putInt(offset, value);
+			return oldValue;
+		}
+
+		@Override
+		public boolean isAllocated(final int index) {
+			return pages[index >> PAGE_SHIFT] != null;
+		}
+
+		private synchronized ByteBuffer allocate(final int page) {
+			if (pages[page] == null) {
+				pages[page] = ByteBuffer.allocateDirect(PAGE_LENGTH_BYTES).order(ByteOrder.nativeOrder());
+			}
+			return pages[page];
+		}
+	}
+
+	// Whole region mapped from a file.  The operating system allocates file and
+	// memory pages as they are touched; "allocated" is tracked here only to answer
+	// isAllocated() the same way as the other regions.
+	private static class MappedRegion implements Region {
+
+		private static final byte[] ZERO_PAGE = new byte[PAGE_LENGTH_BYTES];
+
+		private final MappedByteBuffer buffer;
+		private final boolean[] allocated;
+
+		private MappedRegion(final File file, final int lengthWords) throws IOException {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(0); // discard contents of any earlier run
+				raf.setLength((long) lengthWords * Memory.WORD_LENGTH_BYTES);
+				buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+			}
+			buffer.order(ByteOrder.nativeOrder());
+			allocated = new boolean[lengthWords / PAGE_LENGTH_WORDS];
+		}
+
+		// Zero the pages written since the file was mapped or last cleared.
+		private void clear() {
+			final ByteBuffer view = buffer.duplicate();
+			for (int page = 0; page < allocated.length; page++) {
+				if (allocated[page]) {
+					view.position(page * PAGE_LENGTH_BYTES);
+					view.put(ZERO_PAGE);
+					allocated[page] = false;
+				}
+			}
+		}
+
+		@Override
+		public int getWord(final int index) {
+			return buffer.getInt(index << 2);
+		}
+
+		@Override
+		public int setWord(final int index, final int value) {
+			allocated[index >> PAGE_SHIFT] = true;
+			final int oldValue = buffer.getInt(index << 2);
+			buffer.putInt(index << 2, value);
+			return oldValue;
+		}
+
+		@Override
+		public boolean isAllocated(final int index) {
+			return allocated[index >> PAGE_SHIFT];
+		}
+	}
+}
@@ -142,8 +142,9 @@ public class Register extends Observable {
 
 	//
 	// Method to notify any observers of register operation that has just occurred.
+	// Protected so subclasses storing their value elsewhere can use it.
 	//
-	private void notifyAnyObservers(final int type) {
+	protected void notifyAnyObservers(final int type) {
 		if (countObservers() > 0) {// && Globals.program != null) && Globals.program.inSteppedExecution()) {
 			setChanged();
 			this.notifyObservers(new RegisterAccessNotice(type, name));
@@ -3,6 +3,7 @@ package mars.mips.hardware;
 import java.util.Observer;
 
 import mars.Globals;
+import mars.MachineContext;
 import mars.assembler.SymbolTable;
 import mars.mips.instructions.Instruction;
 import mars.util.Binary;
@@ -45,28 +46,66 @@ public class RegisterFile {
 
 	public static final int GLOBAL_POINTER_REGISTER = 28;
 	public static final int STACK_POINTER_REGISTER = 29;
+	private static final int PROGRAM_COUNTER = 32;
+	private static final int HI = 33;
+	private static final int LO = 34;
 
-	private static Register[] regFile = { new Register("$zero", 0, 0), new Register("$at", 1, 0), new Register("$v0", 2,
-			0), new Register("$v1", 3, 0), new Register("$a0", 4, 0), new Register("$a1", 5, 0), new Register("$a2", 6,
-					0), new Register("$a3", 7, 0), new Register("$t0", 8, 0), new Register("$t1", 9, 0), new Register(
-							"$t2", 10, 0), new Register("$t3", 11, 0), new Register("$t4", 12, 0), new Register("$t5",
-									13, 0), new Register("$t6", 14, 0), new Register("$t7", 15, 0), new Register("$s0",
-											16, 0), new Register("$s1", 17, 0), new Register("$s2", 18, 0),
-			new Register("$s3", 19, 0), new Register("$s4", 20, 0), new Register("$s5", 21, 0), new Register("$s6", 22,
-					0), new Register("$s7", 23, 0), new Register("$t8", 24, 0), new Register("$t9", 25, 0),
-			new Register("$k0", 26, 0), new Register("$k1", 27, 0), new Register("$gp", GLOBAL_POINTER_REGISTER,
-					Memory.globalPointer), new Register("$sp", STACK_POINTER_REGISTER, Memory.stackPointer),
-			new Register("$fp", 30, 0), new Register("$ra", 31, 0) };
-
-	private static Register programCounter = new Register("pc", 32, Memory.textBaseAddress);
-	private static Register hi = new Register("hi", 33, 0);//this is an internal register with arbitrary number
-	private static Register lo = new Register("lo", 34, 0);// this is an internal register with arbitrary number
+	/**
+	 * The registers of one machine. The methods of RegisterFile work on those of
+	 * the calling thread's machine (see MachineContext).
+	 */
+	public static final class State {
+
+		// Register contents live in this array, indexed by register number: 0-31 are the
+		// general purpose registers, followed by pc, hi and lo.  The Register objects below
+		// are views onto it, so the simulator can read and write a register with a plain
+		// array access.  Observers and backstepping cost extra only when actually in use.
+		private final int[] values = new int[LO + 1];
+		private final ArrayRegister[] views = new ArrayRegister[LO + 1];
+		private volatile boolean observed = false; // does any register have observers?
+
+		private final Register[] regFile = { new ArrayRegister(this, "$zero", 0, 0), new ArrayRegister(this, "$at", 1, 0),
+				new ArrayRegister(this, "$v0", 2, 0), new ArrayRegister(this, "$v1", 3, 0), new ArrayRegister(this, "$a0",
+						4, 0), new ArrayRegister(this, "$a1", 5, 0), new ArrayRegister(this, "$a2", 6, 0),
+				new ArrayRegister(this, "$a3", 7, 0), new ArrayRegister(this, "$t0", 8, 0), new ArrayRegister(this, "$t1",
+						9, 0), new ArrayRegister(this, "$t2", 10, 0), new ArrayRegister(this, "$t3", 11, 0),
+				new ArrayRegister(this, "$t4", 12, 0), new ArrayRegister(this, "$t5", 13, 0), new ArrayRegister(this,
+						"$t6", 14, 0), new ArrayRegister(this, "$t7", 15, 0), new ArrayRegister(this, "$s0", 16, 0),
+				new ArrayRegister(this, "$s1", 17, 0), new ArrayRegister(this, "$s2", 18, 0), new ArrayRegister(this,
+						"$s3", 19, 0), new ArrayRegister(this, "$s4", 20, 0), new ArrayRegister(this, "$s5", 21, 0),
+				new ArrayRegister(this, "$s6", 22, 0), new ArrayRegister(this, "$s7", 23, 0), new ArrayRegister(this,
+						"$t8", 24, 0), new ArrayRegister(this, "$t9", 25, 0), new ArrayRegister(this, "$k0", 26, 0),
+				new ArrayRegister(this, "$k1", 27, 0), new ArrayRegister(this, "$gp", GLOBAL_POINTER_REGISTER,
+						Memory.globalPointer), new ArrayRegister(this, "$sp", STACK_POINTER_REGISTER, Memory.stackPointer),
+				new ArrayRegister(this, "$fp", 30, 0), new ArrayRegister(this, "$ra", 31, 0) };
+
+		private final Register programCounter = new ArrayRegister(this, "pc", PROGRAM_COUNTER, Memory.textBaseAddress);
+		private final Register hi = new ArrayRegister(this, "hi", HI, 0);//this is an internal register with arbitrary number
+		private final Register lo = new ArrayRegister(this, "lo", LO, 0);// this is an internal register with arbitrary number
+
+		// Called whenever an observer is added to or removed from any register.
+		private void updateObserved() {
+			boolean any = false;
+			for (int i = 0; i < views.length; i++) {
+				if (views[i] != null && views[i].countObservers() > 0) {
+					any = true;
+					break;
+				}
+			}
+			observed = any;
+		}
+	}
+
+	private static State state() {
+		return MachineContext.current().getRegisterFile();
+	}
 
 	/**
 	 * Method for displaying the register values for debugging.
 	 **/
 
 	public static void showRegisters() {
+		final Register[] regFile = state().regFile;
 		for (int i = 0; i < regFile.length; i++) {
 			System.out.println("Name: " + regFile[i].getName());
 			System.out.println("Number: " + regFile[i].getNumber());
@@ -84,24 +123,16 @@ public class RegisterFile {
 	 **/
 
 	public static int updateRegister(final int num, final int val) {
-		int old = 0;
-		if (num == 0) {
+		if (num <= 0 || num == PROGRAM_COUNTER || num > LO) {
 			//System.out.println("You can not change the value of the zero register.");
-		} else {
-			for (int i = 0; i < regFile.length; i++) {
-				if (regFile[i].getNumber() == num) {
-					old = Globals.getSettings().getBackSteppingEnabled() ? Globals.program.getBackStepper()
-							.addRegisterFileRestore(num, regFile[i].setValue(val)) : regFile[i].setValue(val);
-					break;
-				}
-			}
+			return 0;
 		}
-		if (num == 33) {//updates the hi register
-			old = Globals.getSettings().getBackSteppingEnabled() ? Globals.program.getBackStepper()
-					.addRegisterFileRestore(num, hi.setValue(val)) : hi.setValue(val);
-		} else if (num == 34) {// updates the low register
-			old = Globals.getSettings().getBackSteppingEnabled() ? Globals.program.getBackStepper()
-					.addRegisterFileRestore(num, lo.setValue(val)) : lo.setValue(val);
+		final State state = state();
+		final int old = state.values[num];
+		state.values[num] = val;
+		if (state.observed) { state.views[num].notifyAnyObservers(AccessNotice.WRITE); }
+		if (Globals.getSettings().getBackSteppingEnabled()) {
+			Globals.program.getBackStepper().addRegisterFileRestore(num, old);
 		}
 		return old;
 	}
@@ -117,6 +148,7 @@ public class RegisterFile {
 		if (reg.equals("zero")) {
 			//System.out.println("You can not change the value of the zero register.");
 		} else {
+			final Register[] regFile = state().regFile;
 			for (int i = 0; i < regFile.length; i++) {
 				if (regFile[i].getName().equals(reg)) {
 					updateRegister(i, val);
@@ -134,16 +166,21 @@ public class RegisterFile {
 	 **/
 
 	public static int getValue(final int num) {
-		if (num == 33) {
-			return hi.getValue();
-		} else if (num == 34) {
-			return lo.getValue();
-		} else {
-			return regFile[num].getValue();
-		}
-
+		final State state = state();
+		if (state.observed) { state.views[num].notifyAnyObservers(AccessNotice.READ); }
+		return state.values[num];
 	}
 
+	/**
+	 * Returns the value of the register who's number is num, without notifying
+	 * observers.
+	 *
+	 * @param num The register number (33 for hi, 34 for lo).
+	 * @return The value of the given register.
+	 **/
+
+	public static int getValueNoNotify(final int num) { return state().values[num]; }
+
 	/**
 	 * For getting the number representation of the register.
 	 *
@@ -153,6 +190,7 @@ public class RegisterFile {
 	 **/
 
 	public static int getNumber(final String n) {
+		final Register[] regFile = state().regFile;
 		int j = -1;
 		for (int i = 0; i < regFile.length; i++) {
 			if (regFile[i].getName().equals(n)) {
@@ -169,7 +207,7 @@ public class RegisterFile {
 	 * @return The set of registers.
 	 **/
 
-	public static Register[] getRegisters() { return regFile; }
+	public static Register[] getRegisters() { return state().regFile; }
 
 	/**
 	 * Get register object corresponding to given name. If no match, return null.
@@ -179,6 +217,7 @@ public class RegisterFile {
 	 **/
 
 	public static Register getUserRegister(final String Rname) {
+		final Register[] regFile = state().regFile;
 		Register reg = null;
 		if (Rname.charAt(0) == '$') {
 			try {
@@ -209,7 +248,7 @@ public class RegisterFile {
 	 **/
 
 	public static void initializeProgramCounter(final int value) {
-		programCounter.setValue(value);
+		state().programCounter.setValue(value);
 	}
 
 	/**
@@ -224,12 +263,12 @@ public class RegisterFile {
 	 **/
 
 	public static void initializeProgramCounter(final boolean startAtMain) {
-		final int mainAddr = Globals.symbolTable.getAddress(SymbolTable.getStartLabel());
+		final int mainAddr = MachineContext.current().getSymbolTable().getAddress(SymbolTable.getStartLabel());
 		if (startAtMain && mainAddr != SymbolTable.NOT_FOUND && (Memory.inTextSegment(mainAddr) || Memory
 				.inKernelTextSegment(mainAddr))) {
 			initializeProgramCounter(mainAddr);
 		} else {
-			initializeProgramCounter(programCounter.getResetValue());
+			initializeProgramCounter(state().programCounter.getResetValue());
 		}
 	}
 
@@ -242,8 +281,9 @@ public class RegisterFile {
 	 **/
 
 	public static int setProgramCounter(final int value) {
-		final int old = programCounter.getValue();
-		programCounter.setValue(value);
+		final State state = state();
+		final int old = state.values[PROGRAM_COUNTER];
+		state.programCounter.setValue(value);
 		if (Globals.getSettings().getBackSteppingEnabled()) { Globals.program.getBackStepper().addPCRestore(old); }
 		return old;
 	}
@@ -254,14 +294,18 @@ public class RegisterFile {
 	 * @return The program counters value as an int.
 	 **/
 
-	public static int getProgramCounter() { return programCounter.getValue(); }
+	public static int getProgramCounter() {
+		final State state = state();
+		if (state.observed) { state.programCounter.notifyAnyObservers(AccessNotice.READ); }
+		return state.values[PROGRAM_COUNTER];
+	}
 
 	/**
 	 * Returns Register object for program counter. Use with caution.
 	 *
 	 * @return program counter's Register object.
 	 */
-	public static Register getProgramCounterRegister() { return programCounter; }
+	public static Register getProgramCounterRegister() { return state().programCounter; }
 
 	/**
 	 * For returning the program counter's initial (reset) value.
@@ -269,7 +313,7 @@ public class RegisterFile {
 	 * @return The program counter's initial value
 	 **/
 
-	public static int getInitialProgramCounter() { return programCounter.getResetValue(); }
+	public static int getInitialProgramCounter() { return state().programCounter.getResetValue(); }
 
 	/**
 	 * Method to reinitialize the values of the registers. <b>NOTE:</b> Should
@@ -280,12 +324,13 @@ public class RegisterFile {
 	 **/
 
 	public static void resetRegisters() {
-		for (int i = 0; i < regFile.length; i++) {
-			regFile[i].resetValue();
+		final State state = state();
+		for (int i = 0; i < state.regFile.length; i++) {
+			state.regFile[i].resetValue();
 		}
 		initializeProgramCounter(Globals.getSettings().getStartAtMain());// replaces "programCounter.resetValue()", DPS 3/3/09
-		hi.resetValue();
-		lo.resetValue();
+		state.hi.resetValue();
+		state.lo.resetValue();
 	}
 
 	/**
@@ -294,20 +339,33 @@ public class RegisterFile {
 	 **/
 
 	public static void incrementPC() {
-		programCounter.setValue(programCounter.getValue() + Instruction.INSTRUCTION_LENGTH);
+		final State state = state();
+		if (state.observed) {
+			state.programCounter.setValue(state.programCounter.getValue() + Instruction.INSTRUCTION_LENGTH);
+		} else {
+			state.values[PROGRAM_COUNTER] += Instruction.INSTRUCTION_LENGTH;
+		}
 	}
 
+	/**
+	 * Tells whether any register, including pc, hi and lo, has an observer.
+	 *
+	 * @return true if some register is observed
+	 */
+	public static boolean isObserved() { return state().observed; }
+
 	/**
 	 * Each individual register is a separate object and Observable. This handy
 	 * method will add the given Observer to each one. Currently does not apply to
 	 * Program Counter.
 	 */
 	public static void addRegistersObserver(final Observer observer) {
-		for (int i = 0; i < regFile.length; i++) {
-			regFile[i].addObserver(observer);
+		final State state = state();
+		for (int i = 0; i < state.regFile.length; i++) {
+			state.regFile[i].addObserver(observer);
 		}
-		hi.addObserver(observer);
-		lo.addObserver(observer);
+		state.hi.addObserver(observer);
+		state.lo.addObserver(observer);
 	}
 
 	/**
@@ -316,10 +374,67 @@ public class RegisterFile {
 	 * to Program Counter.
 	 */
 	public static void deleteRegistersObserver(final Observer observer) {
-		for (int i = 0; i < regFile.length; i++) {
-			regFile[i].deleteObserver(observer);
+		final State state = state();
+		for (int i = 0; i < state.regFile.length; i++) {
+			state.regFile[i].deleteObserver(observer);
+		}
+		state.hi.deleteObserver(observer);
+		state.lo.deleteObserver(observer);
+	}
+
+	/**
+	 * Register whose value is held in its register file's value array rather than
+	 * in the Register object itself. Behaves exactly like a Register otherwise.
+	 */
+	private static class ArrayRegister extends Register {
+
+		private final State state;
+
+		private ArrayRegister(final State state, final String n, final int num, final int val) {
+			super(n, num, val);
+			this.state = state;
+			state.values[num] = val;
+			state.views[num] = this;
+		}
+
+		@Override
+		public int getValue() {
+			notifyAnyObservers(AccessNotice.READ);
+			return state.values[getNumber()];
+		}
+
+		@Override
+		public int getValueNoNotify() { return state.values[getNumber()]; }
+
+		@Override
+		public int setValue(final int val) {
+			final int old = state.values[getNumber()];
+			state.values[getNumber()] = val;
+			notifyAnyObservers(AccessNotice.WRITE);
+			return old;
+		}
+
+		@Override
+		public void resetValue() {
+			state.values[getNumber()] = getResetValue();
+		}
+
+		@Override
+		public void addObserver(final Observer o) {
+			super.addObserver(o);
+			state.updateObserved();
+		}
+
+		@Override
+		public void deleteObserver(final Observer o) {
+			super.deleteObserver(o);
+			state.updateObserved();
+		}
+
+		@Override
+		public void deleteObservers() {
+			super.deleteObservers();
+			state.updateObserved();
 		}
-		hi.deleteObserver(observer);
-		lo.deleteObserver(observer);
 	}
 }
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.StringTokenizer;
@@ -20,6 +21,7 @@ import mars.mips.hardware.RegisterFile;
 import mars.mips.instructions.syscalls.Syscall;
 import mars.simulator.DelayedBranch;
 import mars.simulator.Exceptions;
+import mars.simulator.ExecutionHistory;
 import mars.util.Binary;
 
 /*
@@ -61,7 +63,13 @@ import mars.util.Binary;
 public class InstructionSet {
 
 	private final ArrayList instructionList;
-	private ArrayList opcodeMatchMaps;
+	private DecodeTable decodeTable;
+	// Mnemonic lookup, built by populate(): instructions by lower case mnemonic, and
+	// the mnemonics in sorted order for prefix matching, each with the position of
+	// its instruction in instructionList.
+	private HashMap<String, ArrayList<Instruction>> mnemonicIndex;
+	private String[] sortedMnemonics;
+	private int[] sortedPositions;
 	private SyscallLoader syscallLoader;
 
 	/**
@@ -398,7 +406,7 @@ public class InstructionSet {
 				"100011 ttttt fffff ssssssssssssssss", statement -> {
 					final int[] operands = statement.getOperands();
 					try {
-						RegisterFile.updateRegister(operands[0], Globals.memory.getWord(RegisterFile.getValue(
+						RegisterFile.updateRegister(operands[0], Memory.getInstance().getWord(RegisterFile.getValue(
 								operands[2]) + operands[1]));
 					} catch (final AddressErrorException e) {
 						throw new ProcessingException(statement, e);
@@ -409,7 +417,7 @@ public class InstructionSet {
 				BasicInstructionFormat.I_FORMAT, "110000 ttttt fffff ssssssssssssssss", statement -> {
 					final int[] operands = statement.getOperands();
 					try {
-						RegisterFile.updateRegister(operands[0], Globals.memory.getWord(RegisterFile.getValue(
+						RegisterFile.updateRegister(operands[0], Memory.getInstance().getWord(RegisterFile.getValue(
 								operands[2]) + operands[1]));
 					} catch (final AddressErrorException e) {
 						throw new ProcessingException(statement, e);
@@ -423,7 +431,7 @@ public class InstructionSet {
 						final int address = RegisterFile.getValue(operands[2]) + operands[1];
 						int result = RegisterFile.getValue(operands[0]);
 						for (int i = 0; i <= address % Memory.WORD_LENGTH_BYTES; i++) {
-							result = Binary.setByte(result, 3 - i, Globals.memory.getByte(address - i));
+							result = Binary.setByte(result, 3 - i, Memory.getInstance().getByte(address - i));
 						}
 						RegisterFile.updateRegister(operands[0], result);
 					} catch (final AddressErrorException e) {
@@ -438,7 +446,7 @@ public class InstructionSet {
 						final int address = RegisterFile.getValue(operands[2]) + operands[1];
 						int result = RegisterFile.getValue(operands[0]);
 						for (int i = 0; i <= 3 - address % Memory.WORD_LENGTH_BYTES; i++) {
-							result = Binary.setByte(result, i, Globals.memory.getByte(address + i));
+							result = Binary.setByte(result, i, Memory.getInstance().getByte(address + i));
 						}
 						RegisterFile.updateRegister(operands[0], result);
 					} catch (final AddressErrorException e) {
@@ -450,7 +458,7 @@ public class InstructionSet {
 				BasicInstructionFormat.I_FORMAT, "101011 ttttt fffff ssssssssssssssss", statement -> {
 					final int[] operands = statement.getOperands();
 					try {
-						Globals.memory.setWord(RegisterFile.getValue(operands[2]) + operands[1], RegisterFile.getValue(
+						Memory.getInstance().setWord(RegisterFile.getValue(operands[2]) + operands[1], RegisterFile.getValue(
 								operands[0]));
 					} catch (final AddressErrorException e) {
 						throw new ProcessingException(statement, e);
@@ -461,7 +469,7 @@ public class InstructionSet {
 				BasicInstructionFormat.I_FORMAT, "111000 ttttt fffff ssssssssssssssss", statement -> {
 					final int[] operands = statement.getOperands();
 					try {
-						Globals.memory.setWord(RegisterFile.getValue(operands[2]) + operands[1], RegisterFile.getValue(
+						Memory.getInstance().setWord(RegisterFile.getValue(operands[2]) + operands[1], RegisterFile.getValue(
 								operands[0]));
 					} catch (final AddressErrorException e) {
 						throw new ProcessingException(statement, e);
@@ -476,7 +484,7 @@ public class InstructionSet {
 						final int address = RegisterFile.getValue(operands[2]) + operands[1];
 						final int source = RegisterFile.getValue(operands[0]);
 						for (int i = 0; i <= address % Memory.WORD_LENGTH_BYTES; i++) {
-							Globals.memory.setByte(address - i, Binary.getByte(source, 3 - i));
+							Memory.getInstance().setByte(address - i, Binary.getByte(source, 3 - i));
 						}
 					} catch (final AddressErrorException e) {
 						throw new ProcessingException(statement, e);
@@ -490,7 +498,7 @@ public class InstructionSet {
 						final int address = RegisterFile.getValue(operands[2]) + operands[1];
 						final int source = RegisterFile.getValue(operands[0]);
 						for (int i = 0; i <= 3 - address % Memory.WORD_LENGTH_BYTES; i++) {
-							Globals.memory.setByte(address + i, Binary.getByte(source, i));
+							Memory.getInstance().setByte(address + i, Binary.getByte(source, i));
 						}
 					} catch (final AddressErrorException e) {
 						throw new ProcessingException(statement, e);
@@ -706,7 +714,7 @@ public class InstructionSet {
 				BasicInstructionFormat.I_FORMAT, "100000 ttttt fffff ssssssssssssssss", statement -> {
 					final int[] operands = statement.getOperands();
 					try {
-						RegisterFile.updateRegister(operands[0], Globals.memory.getByte(RegisterFile.getValue(
+						RegisterFile.updateRegister(operands[0], Memory.getInstance().getByte(RegisterFile.getValue(
 								operands[2]) + (operands[1] << 16 >> 16)) << 24 >> 24);
 					} catch (final AddressErrorException e) {
 						throw new ProcessingException(statement, e);
@@ -717,7 +725,7 @@ public class InstructionSet {
 				BasicInstructionFormat.I_FORMAT, "100001 ttttt fffff ssssssssssssssss", statement -> {
 					final int[] operands = statement.getOperands();
 					try {
-						RegisterFile.updateRegister(operands[0], Globals.memory.getHalf(RegisterFile.getValue(
+						RegisterFile.updateRegister(operands[0], Memory.getInstance().getHalf(RegisterFile.getValue(
 								operands[2]) + (operands[1] << 16 >> 16)) << 16 >> 16);
 					} catch (final AddressErrorException e) {
 						throw new ProcessingException(statement, e);
@@ -729,7 +737,7 @@ public class InstructionSet {
 					final int[] operands = statement.getOperands();
 					try {
 						// offset is sign-extended and loaded halfword value is zero-extended
-						RegisterFile.updateRegister(operands[0], Globals.memory.getHalf(RegisterFile.getValue(
+						RegisterFile.updateRegister(operands[0], Memory.getInstance().getHalf(RegisterFile.getValue(
 								operands[2]) + (operands[1] << 16 >> 16)) & 0x0000ffff);
 					} catch (final AddressErrorException e) {
 						throw new ProcessingException(statement, e);
@@ -740,7 +748,7 @@ public class InstructionSet {
 				BasicInstructionFormat.I_FORMAT, "100100 ttttt fffff ssssssssssssssss", statement -> {
 					final int[] operands = statement.getOperands();
 					try {
-						RegisterFile.updateRegister(operands[0], Globals.memory.getByte(RegisterFile.getValue(
+						RegisterFile.updateRegister(operands[0], Memory.getInstance().getByte(RegisterFile.getValue(
 								operands[2]) + (operands[1] << 16 >> 16)) & 0x000000ff);
 					} catch (final AddressErrorException e) {
 						throw new ProcessingException(statement, e);
@@ -751,7 +759,7 @@ public class InstructionSet {
 				BasicInstructionFormat.I_FORMAT, "101000 ttttt fffff ssssssssssssssss", statement -> {
 					final int[] operands = statement.getOperands();
 					try {
-						Globals.memory.setByte(RegisterFile.getValue(operands[2]) + (operands[1] << 16 >> 16),
+						Memory.getInstance().setByte(RegisterFile.getValue(operands[2]) + (operands[1] << 16 >> 16),
 								RegisterFile.getValue(operands[0]) & 0x000000ff);
 					} catch (final AddressErrorException e) {
 						throw new ProcessingException(statement, e);
@@ -762,7 +770,7 @@ public class InstructionSet {
 				BasicInstructionFormat.I_FORMAT, "101001 ttttt fffff ssssssssssssssss", statement -> {
 					final int[] operands = statement.getOperands();
 					try {
-						Globals.memory.setHalf(RegisterFile.getValue(operands[2]) + (operands[1] << 16 >> 16),
+						Memory.getInstance().setHalf(RegisterFile.getValue(operands[2]) + (operands[1] << 16 >> 16),
 								RegisterFile.getValue(operands[0]) & 0x0000ffff);
 					} catch (final AddressErrorException e) {
 						throw new ProcessingException(statement, e);
@@ -1601,7 +1609,7 @@ public class InstructionSet {
 				BasicInstructionFormat.I_FORMAT, "110001 ttttt fffff ssssssssssssssss", statement -> {
 					final int[] operands = statement.getOperands();
 					try {
-						Coprocessor1.updateRegister(operands[0], Globals.memory.getWord(RegisterFile.getValue(
+						Coprocessor1.updateRegister(operands[0], Memory.getInstance().getWord(RegisterFile.getValue(
 								operands[2]) + operands[1]));
 					} catch (final AddressErrorException e) {
 						throw new ProcessingException(statement, e);
@@ -1624,9 +1632,9 @@ public class InstructionSet {
 							}
 
 							try {
-								Coprocessor1.updateRegister(operands[0], Globals.memory.getWord(RegisterFile.getValue(
+								Coprocessor1.updateRegister(operands[0], Memory.getInstance().getWord(RegisterFile.getValue(
 										operands[2]) + operands[1]));
-								Coprocessor1.updateRegister(operands[0] + 1, Globals.memory.getWord(RegisterFile
+								Coprocessor1.updateRegister(operands[0] + 1, Memory.getInstance().getWord(RegisterFile
 										.getValue(operands[2]) + operands[1] + 4));
 							} catch (final AddressErrorException e) {
 								throw new ProcessingException(statement, e);
@@ -1637,7 +1645,7 @@ public class InstructionSet {
 				BasicInstructionFormat.I_FORMAT, "111001 ttttt fffff ssssssssssssssss", statement -> {
 					final int[] operands = statement.getOperands();
 					try {
-						Globals.memory.setWord(RegisterFile.getValue(operands[2]) + operands[1], Coprocessor1.getValue(
+						Memory.getInstance().setWord(RegisterFile.getValue(operands[2]) + operands[1], Coprocessor1.getValue(
 								operands[0]));
 					} catch (final AddressErrorException e) {
 						throw new ProcessingException(statement, e);
@@ -1659,9 +1667,9 @@ public class InstructionSet {
 												+ operands[1]));
 							}
 							try {
-								Globals.memory.setWord(RegisterFile.getValue(operands[2]) + operands[1], Coprocessor1
+								Memory.getInstance().setWord(RegisterFile.getValue(operands[2]) + operands[1], Coprocessor1
 										.getValue(operands[0]));
-								Globals.memory.setWord(RegisterFile.getValue(operands[2]) + operands[1] + 4,
+								Memory.getInstance().setWord(RegisterFile.getValue(operands[2]) + operands[1] + 4,
 										Coprocessor1.getValue(operands[0] + 1));
 							} catch (final AddressErrorException e) {
 								throw new ProcessingException(statement, e);
@@ -1785,6 +1793,8 @@ public class InstructionSet {
 				}));
 
 		////////////// READ PSEUDO-INSTRUCTION SPECS FROM DATA FILE AND ADD //////////////////////
+		// Tokenizing the templates looks up mnemonics, so index the basic ones first.
+		indexMnemonics();
 		addPseudoInstructions();
 
 		////////////// GET AND CREATE LIST OF SYSCALL FUNCTION OBJECTS ////////////////////
@@ -1816,17 +1826,47 @@ public class InstructionSet {
 			}
 		}
 		Collections.sort(matchMaps);
-		opcodeMatchMaps = matchMaps;
+		decodeTable = new DecodeTable(matchMaps);
+
+		indexMnemonicPrefixes();
 	}
 
-	public BasicInstruction findByBinaryCode(final int binaryInstr) {
-		final ArrayList matchMaps = opcodeMatchMaps;
-		for (int i = 0; i < matchMaps.size(); i++) {
-			final MatchMap map = (MatchMap) matchMaps.get(i);
-			final BasicInstruction ret = map.find(binaryInstr);
-			if (ret != null) { return ret; }
+	private void indexMnemonics() {
+		mnemonicIndex = new HashMap<>();
+		for (int i = 0; i < instructionList.size(); i++) {
+			indexMnemonic((Instruction) instructionList.get(i));
+		}
+	}
+
+	private void indexMnemonic(final Instruction inst) {
+		mnemonicIndex.computeIfAbsent(inst.getName().toLowerCase(), name -> new ArrayList<>()).add(inst);
+	}
+
+	private void indexMnemonicPrefixes() {
+		final Integer[] positions = new Integer[instructionList.size()];
+		final String[] names = new String[instructionList.size()];
+		for (int i = 0; i < instructionList.size(); i++) {
+			names[i] = ((Instruction) instructionList.get(i)).getName().toLowerCase();
+			positions[i] = i;
+		}
+		Arrays.sort(positions, (a, b) -> names[a].compareTo(names[b])); // stable: list order within a name
+		sortedMnemonics = new String[positions.length];
+		sortedPositions = new int[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			sortedMnemonics[i] = names[positions[i]];
+			sortedPositions[i] = positions[i];
 		}
-		return null;
+	}
+
+	/**
+	 * Find the basic instruction a binary machine instruction is an instance of.
+	 * Where several match, the one with the most specific opcode mask wins.
+	 *
+	 * @param binaryInstr the machine instruction
+	 * @return the instruction, or null if there is none
+	 */
+	public BasicInstruction findByBinaryCode(final int binaryInstr) {
+		return decodeTable.find(binaryInstr);
 	}
 
 	/*  METHOD TO ADD PSEUDO-INSTRUCTIONS
@@ -1874,6 +1914,7 @@ public class InstructionSet {
 					final ExtendedInstruction inst = firstTemplate == null ? new ExtendedInstruction(pseudoOp, template,
 							description) : new ExtendedInstruction(pseudoOp, firstTemplate, template, description);
 					instructionList.add(inst);
+					indexMnemonic(inst);
 					//if (firstTemplate != null) System.out.println("\npseudoOp: "+pseudoOp+"\ndefault template:\n"+firstTemplate+"\ncompact template:\n"+template);
 				}
 			}
@@ -1890,37 +1931,77 @@ public class InstructionSet {
 
 	/**
 	 * Given an operator mnemonic, will return the corresponding Instruction
-	 * object(s) from the instruction set. Uses straight linear search technique.
+	 * object(s) from the instruction set. Case-insensitive. Uses a hash table.
 	 *
 	 * @param name operator mnemonic (e.g. addi, sw,...)
 	 * @return list of corresponding Instruction object(s), or null if not found.
 	 */
 	public ArrayList matchOperator(final String name) {
-		ArrayList matchingInstructions = null;
-		// Linear search for now....
-		for (int i = 0; i < instructionList.size(); i++) {
-			if (((Instruction) instructionList.get(i)).getName().equalsIgnoreCase(name)) {
-				if (matchingInstructions == null) { matchingInstructions = new ArrayList(); }
-				matchingInstructions.add(instructionList.get(i));
-			}
-		}
-		return matchingInstructions;
+		if (mnemonicIndex == null) { return scanOperators(name, false); }
+		final ArrayList<Instruction> matchingInstructions = name == null ? null : mnemonicIndex.get(name
+				.toLowerCase());
+		return matchingInstructions == null ? null : new ArrayList(matchingInstructions);
+	}
+
+	/**
+	 * Tells whether the given string is an operator mnemonic of the instruction
+	 * set. Case-insensitive. Like matchOperator but without building a list.
+	 *
+	 * @param name candidate operator mnemonic
+	 * @return true if some instruction has this mnemonic
+	 */
+	public boolean isOperator(final String name) {
+		if (mnemonicIndex == null) { return scanOperators(name, false) != null; }
+		return name != null && mnemonicIndex.containsKey(name.toLowerCase());
 	}
 
 	/**
 	 * Given a string, will return the Instruction object(s) from the instruction
 	 * set whose operator mnemonic prefix matches it. Case-insensitive. For example
-	 * "s" will match "sw", "sh", "sb", etc. Uses straight linear search technique.
+	 * "s" will match "sw", "sh", "sb", etc. Uses binary search of the sorted
+	 * mnemonics. Matches are listed in instruction set order.
 	 *
 	 * @param name a string
 	 * @return list of matching Instruction object(s), or null if none match.
 	 */
 	public ArrayList prefixMatchOperator(final String name) {
+		if (name == null) { return null; }
+		if (sortedMnemonics == null) { return scanOperators(name, true); }
+		final String prefix = name.toLowerCase();
+		// first mnemonic not less than the prefix; those that match follow it
+		int low = 0, high = sortedMnemonics.length;
+		while (low < high) {
+			final int middle = low + high >>> 1;
+			if (sortedMnemonics[middle].compareTo(prefix) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		int end = low;
+		while (end < sortedMnemonics.length && sortedMnemonics[end].startsWith(prefix)) {
+			end++;
+		}
+		if (end == low) { return null; }
+		final int[] positions = Arrays.copyOfRange(sortedPositions, low, end);
+		Arrays.sort(positions);
+		final ArrayList matchingInstructions = new ArrayList(positions.length);
+		for (final int position : positions) {
+			matchingInstructions.add(instructionList.get(position));
+		}
+		return matchingInstructions;
+	}
+
+	/*
+	 * Linear search, used while populate() is still building the index.
+	 */
+	private ArrayList scanOperators(final String name, final boolean prefix) {
 		ArrayList matchingInstructions = null;
-		// Linear search for now....
 		if (name != null) {
+			final String lowerName = name.toLowerCase();
 			for (int i = 0; i < instructionList.size(); i++) {
-				if (((Instruction) instructionList.get(i)).getName().toLowerCase().startsWith(name.toLowerCase())) {
+				final String mnemonic = ((Instruction) instructionList.get(i)).getName().toLowerCase();
+				if (prefix ? mnemonic.startsWith(lowerName) : mnemonic.equals(lowerName)) {
 					if (matchingInstructions == null) { matchingInstructions = new ArrayList(); }
 					matchingInstructions.add(instructionList.get(i));
 				}
@@ -1938,7 +2019,14 @@ public class InstructionSet {
 	private void findAndSimulateSyscall(final int number, final ProgramStatement statement) throws ProcessingException {
 		final Syscall service = syscallLoader.findSyscall(number);
 		if (service != null) {
-			service.simulate(statement);
+			// Syscalls are where input comes from, so the execution history records them.
+			final ExecutionHistory history = Globals.getSettings().getBackSteppingEnabled() ? Globals.program
+					.getBackStepper().getExecutionHistory() : null;
+			if (history != null) {
+				history.simulateSyscall(service, statement);
+			} else {
+				service.simulate(statement);
+			}
 			return;
 		}
 		throw new ProcessingException(statement, "invalid or unimplemented syscall service: " + number + " ",
@@ -2037,10 +2125,128 @@ public class InstructionSet {
 			if (d == 0) { d = mask - o.mask; }
 			return d;
 		}
+	}
+
+	// Table for decoding binary instructions, built from the match maps once they are
+	// sorted, most specific mask first.  The first level is indexed by the primary
+	// opcode (bits 31-26).  For each opcode, the bits that all of its instructions fix
+	// (such as funct, or fmt and funct for coprocessor 1), up to MAX_KEY_BITS of them,
+	// make up a key indexing the second level.  A second level slot lists the
+	// instructions that may match, in match map order; there is rarely more than one.
+	private static class DecodeTable {
+
+		private static final int OPCODES = 64;
+		private static final int OPCODE_SHIFT = 26;
+		private static final int MAX_KEY_BITS = 12;
 
-		public BasicInstruction find(final int instr) {
-			final int match = instr & mask;
-			return (BasicInstruction) matchMap.get(match);
+		private final int[][] keyFields = new int[OPCODES][]; // per opcode: shift and width of each key field
+		private final int[][] slotStarts = new int[OPCODES][]; // per opcode: first candidate of each slot, then end
+		private final int[] masks;
+		private final int[] matches;
+		private final BasicInstruction[] instructions;
+
+		private DecodeTable(final ArrayList matchMaps) {
+			final ArrayList candidates = new ArrayList();
+			for (int i = 0; i < matchMaps.size(); i++) {
+				candidates.addAll(((MatchMap) matchMaps.get(i)).matchMap.values());
+			}
+			int[] masks = new int[candidates.size()];
+			int[] matches = new int[candidates.size()];
+			BasicInstruction[] instructions = new BasicInstruction[candidates.size()];
+			int count = 0;
+			for (int opcode = 0; opcode < OPCODES; opcode++) {
+				// Instructions for this opcode, and the bits they all fix.
+				final ArrayList forOpcode = new ArrayList();
+				int keyMask = -1 >>> 32 - OPCODE_SHIFT;
+				for (int i = 0; i < candidates.size(); i++) {
+					final BasicInstruction basic = (BasicInstruction) candidates.get(i);
+					final int opcodeMask = basic.getOpcodeMask() >>> OPCODE_SHIFT;
+					if ((opcode & opcodeMask) == (basic.getOpcodeMatch() >>> OPCODE_SHIFT & opcodeMask)) {
+						forOpcode.add(basic);
+						keyMask &= basic.getOpcodeMask();
+					}
+				}
+				if (forOpcode.isEmpty()) { keyMask = 0; }
+				keyFields[opcode] = findKeyFields(keyMask);
+				// Second level, slot by slot.
+				final int slots = 1 << keyWidth(keyFields[opcode]);
+				final int[] slotStart = new int[slots + 1];
+				for (int slot = 0; slot < slots; slot++) {
+					slotStart[slot] = count;
+					for (int i = 0; i < forOpcode.size(); i++) {
+						final BasicInstruction basic = (BasicInstruction) forOpcode.get(i);
+						if (key(keyFields[opcode], basic.getOpcodeMatch()) == slot) {
+							if (count == masks.length) {
+								masks = Arrays.copyOf(masks, 2 * count);
+								matches = Arrays.copyOf(matches, 2 * count);
+								instructions = Arrays.copyOf(instructions, 2 * count);
+							}
+							masks[count] = basic.getOpcodeMask();
+							matches[count] = basic.getOpcodeMatch();
+							instructions[count] = basic;
+							count++;
+						}
+					}
+				}
+				slotStart[slots] = count;
+				slotStarts[opcode] = slotStart;
+			}
+			this.masks = masks;
+			this.matches = matches;
+			this.instructions = instructions;
+		}
+
+		private BasicInstruction find(final int instr) {
+			final int opcode = instr >>> OPCODE_SHIFT;
+			final int[] slotStart = slotStarts[opcode];
+			final int slot = key(keyFields[opcode], instr);
+			for (int i = slotStart[slot]; i < slotStart[slot + 1]; i++) {
+				if ((instr & masks[i]) == matches[i]) { return instructions[i]; }
+			}
+			return null;
+		}
+
+		// Concatenate the key fields of an instruction, lowest first.
+		private static int key(final int[] fields, final int instr) {
+			int key = 0, width = 0;
+			for (int i = 0; i < fields.length; i += 2) {
+				key |= (instr >>> fields[i] & (1 << fields[i + 1]) - 1) << width;
+				width += fields[i + 1];
+			}
+			return key;
+		}
+
+		private static int keyWidth(final int[] fields) {
+			int width = 0;
+			for (int i = 1; i < fields.length; i += 2) {
+				width += fields[i];
+			}
+			return width;
+		}
+
+		// Runs of 1 bits in the mask, lowest first, as shift and width pairs, keeping
+		// at most MAX_KEY_BITS bits in all.
+		private static int[] findKeyFields(final int keyMask) {
+			final ArrayList fields = new ArrayList();
+			int bits = 0;
+			for (int shift = 0; shift < OPCODE_SHIFT && bits < MAX_KEY_BITS; shift++) {
+				if ((keyMask >>> shift & 1) != 0) {
+					int width = 1;
+					while (shift + width < OPCODE_SHIFT && (keyMask >>> shift + width & 1) != 0 && bits + width
+							< MAX_KEY_BITS) {
+						width++;
+					}
+					fields.add(new int[] { shift, width });
+					bits += width;
+					shift += width;
+				}
+			}
+			final int[] result = new int[2 * fields.size()];
+			for (int i = 0; i < fields.size(); i++) {
+				result[2 * i] = ((int[]) fields.get(i))[0];
+				result[2 * i + 1] = ((int[]) fields.get(i))[1];
+			}
+			return result;
 		}
 	}
 }
@@ -51,7 +51,13 @@ class SyscallLoader {
 	private static final String SYSCALL_ABSTRACT = "AbstractSyscall.class";
 	private static final String CLASS_EXTENSION = "class";
 
+	// Service numbers below this are looked up in an array, any others (which can
+	// only come from config file overrides) in a hash table.
+	private static final int MAXIMUM_TABLE_LENGTH = 4096;
+
 	private ArrayList syscallList;
+	private Syscall[] syscallTable;
+	private HashMap<Integer, Syscall> otherSyscalls;
 
 	/*
 	  *  Dynamically loads Syscalls into an ArrayList.  This method is adapted from
@@ -93,9 +99,30 @@ class SyscallLoader {
 			}
 		}
 		syscallList = processSyscallNumberOverrides(syscallList);
+		buildSyscallTable();
 		return;
 	}
 
+	// Index the services by their final numbers, once overrides have been applied.
+	private void buildSyscallTable() {
+		int length = 0;
+		otherSyscalls = new HashMap<>();
+		for (int i = 0; i < syscallList.size(); i++) {
+			final int number = ((Syscall) syscallList.get(i)).getNumber();
+			if (number >= 0 && number < MAXIMUM_TABLE_LENGTH) { length = Math.max(length, number + 1); }
+		}
+		final Syscall[] table = new Syscall[length];
+		for (int i = 0; i < syscallList.size(); i++) {
+			final Syscall syscall = (Syscall) syscallList.get(i);
+			if (syscall.getNumber() >= 0 && syscall.getNumber() < length) {
+				table[syscall.getNumber()] = syscall;
+			} else {
+				otherSyscalls.put(syscall.getNumber(), syscall);
+			}
+		}
+		syscallTable = table;
+	}
+
 	// Will get any syscall number override specifications from MARS config file and
 	// process them.  This will alter syscallList entry for affected names.
 	private ArrayList processSyscallNumberOverrides(final ArrayList syscallList) {
@@ -147,7 +174,13 @@ class SyscallLoader {
 	 * Returns null if no associated object found.
 	 */
 	Syscall findSyscall(final int number) {
-		// linear search is OK since number of syscalls is small.
+		if (syscallTable == null) { return searchSyscalls(number); }
+		if (number >= 0 && number < syscallTable.length) { return syscallTable[number]; }
+		return otherSyscalls.get(number);
+	}
+
+	// Linear search, used while the syscalls are still being loaded.
+	private Syscall searchSyscalls(final int number) {
 		Syscall service, match = null;
 		if (syscallList == null) { loadSyscalls(); }
 		for (int index = 0; index < syscallList.size(); index++) {
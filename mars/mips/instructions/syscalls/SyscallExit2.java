@@ -1,6 +1,7 @@
 package mars.mips.instructions.syscalls;
 
 import mars.Globals;
+import mars.MachineContext;
 import mars.ProcessingException;
 import mars.ProgramStatement;
 import mars.mips.hardware.RegisterFile;
@@ -54,7 +55,7 @@ public class SyscallExit2 extends AbstractSyscall {
 	 */
 	@Override
 	public void simulate(final ProgramStatement statement) throws ProcessingException {
-		if (Globals.getGui() == null) { Globals.exitCode = RegisterFile.getValue(4); }
+		if (Globals.getGui() == null) { MachineContext.current().setExitCode(RegisterFile.getValue(4)); }
 		throw new ProcessingException(); // empty error list
 	}
 }
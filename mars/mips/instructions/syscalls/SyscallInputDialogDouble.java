@@ -2,12 +2,12 @@ package mars.mips.instructions.syscalls;
 
 import javax.swing.JOptionPane;
 
-import mars.Globals;
 import mars.ProcessingException;
 import mars.ProgramStatement;
 import mars.mips.hardware.AddressErrorException;
 import mars.mips.hardware.Coprocessor1;
 import mars.mips.hardware.InvalidRegisterAccessException;
+import mars.mips.hardware.Memory;
 import mars.mips.hardware.RegisterFile;
 import mars.simulator.Exceptions;
 
@@ -69,12 +69,12 @@ public class SyscallInputDialogDouble extends AbstractSyscall {
 		int byteAddress = RegisterFile.getValue(4);
 		final char ch[] = { ' ' }; // Need an array to convert to String
 		try {
-			ch[0] = (char) Globals.memory.getByte(byteAddress);
+			ch[0] = (char) Memory.getInstance().getByte(byteAddress);
 			while (ch[0] != 0) // only uses single location ch[0]
 			{
 				message = message.concat(new String(ch)); // parameter to String constructor is a char[] array
 				byteAddress++;
-				ch[0] = (char) Globals.memory.getByte(byteAddress);
+				ch[0] = (char) Memory.getInstance().getByte(byteAddress);
 			}
 		} catch (final AddressErrorException e) {
 			throw new ProcessingException(statement, e);
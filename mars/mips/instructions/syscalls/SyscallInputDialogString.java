@@ -2,10 +2,10 @@ package mars.mips.instructions.syscalls;
 
 import javax.swing.JOptionPane;
 
-import mars.Globals;
 import mars.ProcessingException;
 import mars.ProgramStatement;
 import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Memory;
 import mars.mips.hardware.RegisterFile;
 
 /*
@@ -68,12 +68,12 @@ public class SyscallInputDialogString extends AbstractSyscall {
 		int byteAddress = RegisterFile.getValue(4); // byteAddress of string is in $a0
 		final char ch[] = { ' ' }; // Need an array to convert to String
 		try {
-			ch[0] = (char) Globals.memory.getByte(byteAddress);
+			ch[0] = (char) Memory.getInstance().getByte(byteAddress);
 			while (ch[0] != 0) // only uses single location ch[0]
 			{
 				message = message.concat(new String(ch)); // parameter to String constructor is a char[] array
 				byteAddress++;
-				ch[0] = (char) Globals.memory.getByte(byteAddress);
+				ch[0] = (char) Memory.getInstance().getByte(byteAddress);
 			}
 		} catch (final AddressErrorException e) {
 			throw new ProcessingException(statement, e);
@@ -99,12 +99,12 @@ public class SyscallInputDialogString extends AbstractSyscall {
 				// The buffer will contain characters, a '\n' character, and the null character
 				// Copy the input data to buffer as space permits
 				for (int index = 0; index < inputString.length() && index < maxLength - 1; index++) {
-					Globals.memory.setByte(byteAddress + index, inputString.charAt(index));
+					Memory.getInstance().setByte(byteAddress + index, inputString.charAt(index));
 				}
 				if (inputString.length() < maxLength - 1) {
-					Globals.memory.setByte(byteAddress + Math.min(inputString.length(), maxLength - 2), '\n');  // newline at string end
+					Memory.getInstance().setByte(byteAddress + Math.min(inputString.length(), maxLength - 2), '\n');  // newline at string end
 				}
-				Globals.memory.setByte(byteAddress + Math.min(inputString.length() + 1, maxLength - 1), 0);  // null char to end string
+				Memory.getInstance().setByte(byteAddress + Math.min(inputString.length() + 1, maxLength - 1), 0);  // null char to end string
 
 				if (inputString.length() > maxLength - 1) {
 					//  length of the input string exceeded the specified maximum
@@ -1,9 +1,9 @@
 package mars.mips.instructions.syscalls;
 
-import mars.Globals;
 import mars.ProcessingException;
 import mars.ProgramStatement;
 import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Memory;
 import mars.mips.hardware.RegisterFile;
 import mars.util.SystemIO;
 
@@ -56,12 +56,12 @@ public class SyscallPrintString extends AbstractSyscall {
 		int byteAddress = RegisterFile.getValue(4);
 		char ch = 0;
 		try {
-			ch = (char) Globals.memory.getByte(byteAddress);
+			ch = (char) Memory.getInstance().getByte(byteAddress);
 			// won't stop until NULL byte reached!
 			while (ch != 0) {
 				SystemIO.printString(new Character(ch).toString());
 				byteAddress++;
-				ch = (char) Globals.memory.getByte(byteAddress);
+				ch = (char) Memory.getInstance().getByte(byteAddress);
 			}
 		} catch (final AddressErrorException e) {
 			throw new ProcessingException(statement, e);
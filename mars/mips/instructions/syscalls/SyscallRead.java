@@ -1,9 +1,9 @@
 package mars.mips.instructions.syscalls;
 
-import mars.Globals;
 import mars.ProcessingException;
 import mars.ProgramStatement;
 import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Memory;
 import mars.mips.hardware.RegisterFile;
 import mars.util.SystemIO;
 
@@ -82,7 +82,7 @@ public class SyscallRead extends AbstractSyscall {
 		// copy bytes from returned buffer into MARS memory
 		try {
 			while (index < retLength) {
-				Globals.memory.setByte(byteAddress++, myBuffer[index++]);
+				Memory.getInstance().setByte(byteAddress++, myBuffer[index++]);
 			}
 		} catch (final AddressErrorException e) {
 			throw new ProcessingException(statement, e);
@@ -1,9 +1,9 @@
 package mars.mips.instructions.syscalls;
 
-import mars.Globals;
 import mars.ProcessingException;
 import mars.ProgramStatement;
 import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Memory;
 import mars.mips.hardware.RegisterFile;
 import mars.util.SystemIO;
 
@@ -70,13 +70,13 @@ public class SyscallReadString extends AbstractSyscall {
 		int stringLength = Math.min(maxLength, inputString.length());
 		try {
 			for (int index = 0; index < stringLength; index++) {
-				Globals.memory.setByte(buf + index, inputString.charAt(index));
+				Memory.getInstance().setByte(buf + index, inputString.charAt(index));
 			}
 			if (stringLength < maxLength) {
-				Globals.memory.setByte(buf + stringLength, '\n');
+				Memory.getInstance().setByte(buf + stringLength, '\n');
 				stringLength++;
 			}
-			if (addNullByte) { Globals.memory.setByte(buf + stringLength, 0); }
+			if (addNullByte) { Memory.getInstance().setByte(buf + stringLength, 0); }
 		} catch (final AddressErrorException e) {
 			throw new ProcessingException(statement, e);
 		}
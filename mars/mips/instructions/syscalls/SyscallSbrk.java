@@ -1,8 +1,8 @@
 package mars.mips.instructions.syscalls;
 
-import mars.Globals;
 import mars.ProcessingException;
 import mars.ProgramStatement;
+import mars.mips.hardware.Memory;
 import mars.mips.hardware.RegisterFile;
 import mars.simulator.Exceptions;
 
@@ -56,7 +56,7 @@ public class SyscallSbrk extends AbstractSyscall {
 	public void simulate(final ProgramStatement statement) throws ProcessingException {
 		int address = 0;
 		try {
-			address = Globals.memory.allocateBytesFromHeap(RegisterFile.getValue(4));
+			address = Memory.getInstance().allocateBytesFromHeap(RegisterFile.getValue(4));
 		} catch (final IllegalArgumentException iae) {
 			throw new ProcessingException(statement, iae.getMessage() + " (syscall " + getNumber() + ")",
 					Exceptions.SYSCALL_EXCEPTION);
@@ -1,9 +1,9 @@
 package mars.mips.instructions.syscalls;
 
-import mars.Globals;
 import mars.ProcessingException;
 import mars.ProgramStatement;
 import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Memory;
 import mars.mips.hardware.RegisterFile;
 import mars.util.SystemIO;
 
@@ -64,13 +64,13 @@ public class SyscallWrite extends AbstractSyscall {
 		int index = 0;
 		final byte myBuffer[] = new byte[RegisterFile.getValue(6) + 1]; // specified length plus null termination
 		try {
-			b = (byte) Globals.memory.getByte(byteAddress);
+			b = (byte) Memory.getInstance().getByte(byteAddress);
 			while (index < reqLength) // Stop at requested length. Null bytes are included.
 			// while (index < reqLength && b != 0) // Stop at requested length OR null byte
 			{
 				myBuffer[index++] = b;
 				byteAddress++;
-				b = (byte) Globals.memory.getByte(byteAddress);
+				b = (byte) Memory.getInstance().getByte(byteAddress);
 			}
 
 			myBuffer[index] = 0; // Add string termination
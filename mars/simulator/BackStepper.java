@@ -1,9 +1,9 @@
 package mars.simulator;
 
 import mars.Globals;
-import mars.ProgramStatement;
 import mars.mips.hardware.Coprocessor0;
 import mars.mips.hardware.Coprocessor1;
+import mars.mips.hardware.Memory;
 import mars.mips.hardware.RegisterFile;
 import mars.mips.instructions.Instruction;
 
@@ -44,7 +44,7 @@ import mars.mips.instructions.Instruction;
 public class BackStepper {
 
 	// The types of "undo" actions.  Under 1.5, these would be enumerated type.
-	// These fit better in the BackStep class below but inner classes cannot have static members.
+	// These fit better in the BackstepStack class below but inner classes cannot have static members.
 	private static final int MEMORY_RESTORE_RAW_WORD = 0;
 	private static final int MEMORY_RESTORE_WORD = 1;
 	private static final int MEMORY_RESTORE_HALF = 2;
@@ -57,19 +57,22 @@ public class BackStepper {
 	private static final int COPROC1_CONDITION_SET = 9;
 	private static final int DO_NOTHING = 10;  // instruction does not write anything.
 
-	// Flag to mark BackStep object as prepresenting specific situation: user manipulates
+	// Flag to mark backstep as representing specific situation: user manipulates
 	// memory/register value via GUI after assembling program but before running it.
 	private static final int NOT_PC_VALUE = -1;
 
 	private boolean engaged;
 	private final BackstepStack backSteps;
-
-	// One can argue using java.util.Stack, given its clumsy implementation.
-	// A homegrown linked implementation will be more streamlined, but
-	// I anticipate that backstepping will only be used during timed
-	// (currently max 30 instructions/second) or stepped execution, where
-	// performance is not an issue.  Its Vector implementation may result
-	// in quicker garbage collection than a pure linked list implementation.
+	// Instructions are numbered as they start, from 1, and each backstep records the
+	// number of the instruction it belongs to.  Instructions that change nothing but
+	// the PC's normal increment (a "gap") record nothing at all; backStep() recognizes
+	// them because the latest backstep belongs to an earlier instruction.
+	private int executed;
+	// Number of the latest instruction whose backsteps may have been overwritten;
+	// can't step back past it.
+	private int floor;
+	// Checkpoints and recorded input for going back further, if configured.
+	private final ExecutionHistory history;
 
 	/**
 	 * Create a fresh BackStepper. It is enabled, which means all subsequent
@@ -78,8 +81,20 @@ public class BackStepper {
 	public BackStepper() {
 		engaged = true;
 		backSteps = new BackstepStack(Globals.maximumBacksteps);
+		executed = 0;
+		floor = 0;
+		history = Globals.checkpointInterval > 0 ? new ExecutionHistory(this, Globals.checkpointInterval) : null;
 	}
 
+	/**
+	 * Get the execution history kept along with the backsteps, which allows going
+	 * back to any earlier instruction.
+	 *
+	 * @return the execution history, or null if there is none (CheckpointInterval
+	 *         is 0)
+	 */
+	public ExecutionHistory getExecutionHistory() { return history; }
+
 	/**
 	 * Determine whether execution "undo" steps are currently being recorded.
 	 *
@@ -103,7 +118,7 @@ public class BackStepper {
 	 * @return true if there are no steps to be undone, false otherwise.
 	 */
 	public boolean empty() {
-		return backSteps.empty();
+		return backSteps.empty() && executed - floor <= 0;
 	}
 
 	/**
@@ -115,7 +130,7 @@ public class BackStepper {
 	 */
 	// Added 25 June 2007
 	public boolean inDelaySlot() {
-		return !empty() && backSteps.peek().inDelaySlot;
+		return !backSteps.empty() && backSteps.peekInstruction() == executed && backSteps.peekInDelaySlot();
 	}
 
 	/**
@@ -128,61 +143,67 @@ public class BackStepper {
 	// all store their result in register pairs which results in two store operations.
 	// Both must be undone transparently, so we need to detect that multiple steps happen
 	// together and carry out all of them here.
-	// Use a do-while loop based on the backstep's program statement reference.
+	// Use a do-while loop based on the number of the instruction each backstep belongs to.
+	// If the latest instruction recorded nothing, all it did was advance the PC by one
+	// instruction, so undo that.
 
 	public void backStep() {
-		if (engaged && !backSteps.empty()) {
-			final ProgramStatement statement = backSteps.peek().ps;
+		if (engaged && !empty()) {
 			engaged = false; // GOTTA DO THIS SO METHOD CALL IN SWITCH WILL NOT RESULT IN NEW ACTION ON STACK!
-			do {
-				final BackStep step = backSteps.pop();
-				/*
-					System.out.println("backstep POP: action "+step.action+" pc "+mars.util.Binary.intToHexString(step.pc)+
-					                   " source "+((step.ps==null)? "none":step.ps.getSource())+
-											 " parm1 "+step.param1+" parm2 "+step.param2);
-				*/
-				if (step.pc != NOT_PC_VALUE) { RegisterFile.setProgramCounter(step.pc); }
-				try {
-					switch (step.action) {
-					case MEMORY_RESTORE_RAW_WORD:
-						Globals.memory.setRawWord(step.param1, step.param2);
-						break;
-					case MEMORY_RESTORE_WORD:
-						Globals.memory.setWord(step.param1, step.param2);
-						break;
-					case MEMORY_RESTORE_HALF:
-						Globals.memory.setHalf(step.param1, step.param2);
-						break;
-					case MEMORY_RESTORE_BYTE:
-						Globals.memory.setByte(step.param1, step.param2);
-						break;
-					case REGISTER_RESTORE:
-						RegisterFile.updateRegister(step.param1, step.param2);
-						break;
-					case PC_RESTORE:
-						RegisterFile.setProgramCounter(step.param1);
-						break;
-					case COPROC0_REGISTER_RESTORE:
-						Coprocessor0.updateRegister(step.param1, step.param2);
-						break;
-					case COPROC1_REGISTER_RESTORE:
-						Coprocessor1.updateRegister(step.param1, step.param2);
-						break;
-					case COPROC1_CONDITION_CLEAR:
-						Coprocessor1.clearConditionFlag(step.param1);
-						break;
-					case COPROC1_CONDITION_SET:
-						Coprocessor1.setConditionFlag(step.param1);
-						break;
-					case DO_NOTHING:
-						break;
+			if (!backSteps.empty() && (backSteps.peekInstruction() == executed || executed - floor <= 0)) {
+				final int instruction = backSteps.peekInstruction();
+				do {
+					final int slot = backSteps.pop();
+					final int pc = backSteps.pc[slot], param1 = backSteps.param1[slot], param2 = backSteps.param2[slot];
+					if (pc != NOT_PC_VALUE) { RegisterFile.setProgramCounter(pc); }
+					try {
+						switch (backSteps.action[slot] & ACTION_MASK) {
+						case MEMORY_RESTORE_RAW_WORD:
+							Globals.memory.setRawWord(param1, param2);
+							break;
+						case MEMORY_RESTORE_WORD:
+							Globals.memory.setWord(param1, param2);
+							break;
+						case MEMORY_RESTORE_HALF:
+							Globals.memory.setHalf(param1, param2);
+							break;
+						case MEMORY_RESTORE_BYTE:
+							Globals.memory.setByte(param1, param2);
+							break;
+						case REGISTER_RESTORE:
+							RegisterFile.updateRegister(param1, param2);
+							break;
+						case PC_RESTORE:
+							RegisterFile.setProgramCounter(param1);
+							break;
+						case COPROC0_REGISTER_RESTORE:
+							Coprocessor0.updateRegister(param1, param2);
+							break;
+						case COPROC1_REGISTER_RESTORE:
+							Coprocessor1.updateRegister(param1, param2);
+							break;
+						case COPROC1_CONDITION_CLEAR:
+							Coprocessor1.clearConditionFlag(param1);
+							break;
+						case COPROC1_CONDITION_SET:
+							Coprocessor1.setConditionFlag(param1);
+							break;
+						case DO_NOTHING:
+							break;
+						}
+					} catch (final Exception e) {
+						// if the original action did not cause an exception this will not either.
+						System.out.println("Internal MARS error: address exception while back-stepping.");
+						System.exit(0);
 					}
-				} catch (final Exception e) {
-					// if the original action did not cause an exception this will not either.
-					System.out.println("Internal MARS error: address exception while back-stepping.");
-					System.exit(0);
-				}
-			} while (!backSteps.empty() && statement == backSteps.peek().ps);
+				} while (!backSteps.empty() && backSteps.peekInstruction() == instruction);
+			} else {
+				RegisterFile.setProgramCounter(RegisterFile.getProgramCounter() - Instruction.INSTRUCTION_LENGTH);
+			}
+			if (executed - floor > 0) {
+				executed--;
+				if (history != null) { history.stepBack(); }
+			}
 			engaged = true;  // RESET IT (was disabled at top of loop -- see comment)
 		}
 	}
@@ -328,57 +349,26 @@ public class BackStepper {
 	}
 
 	/**
-	 * Add a new "back step" (the undo action) to the stack. The action here is to
-	 * do nothing! This is just a place holder so when user is backstepping through
-	 * the program no instructions will be skipped. Cosmetic. If the top of the
-	 * stack has the same PC counter, the do-nothing action will not be added.
+	 * Note that the instruction at the given address is about to be simulated, so
+	 * that subsequent "back steps" are grouped with it. Instructions that record no
+	 * back step of their own need no further attention: backStep() will still undo
+	 * them one at a time, so none are skipped. The exception is an instruction
+	 * executed in a delay slot, for which a "do nothing" back step is recorded to
+	 * remember that fact.
 	 *
-	 * @return 0
+	 * @param pc address of the instruction
 	 */
-	public int addDoNothing(final int pc) {
-		if (backSteps.empty() || backSteps.peek().pc != pc) { backSteps.push(DO_NOTHING, pc); }
-		return 0;
+	public void startInstruction(final int pc) {
+		if (history != null) { history.startInstruction(pc); }
+		executed++;
+		if (Simulator.inDelaySlot()) { backSteps.push(DO_NOTHING, pc); }
 	}
 
-	// Represents a "back step" (undo action) on the stack.
-	private class BackStep {
-
-		private int action;  // what do do MEMORY_RESTORE_WORD, etc
-		private int pc;      // program counter value when original step occurred
-		private ProgramStatement ps;   // statement whose action is being "undone" here
-		private int param1;  // first parameter required by that action
-		private int param2;  // optional second parameter required by that action
-		private boolean inDelaySlot; // true if instruction executed in "delay slot" (delayed branching enabled)
-
-		// it is critical that BackStep object get its values by calling this method
-		// rather than assigning to individual members, because of the technique used
-		// to set its ps member (and possibly pc).
-		private void assign(final int act, final int programCounter, final int parm1, final int parm2) {
-			action = act;
-			pc = programCounter;
-			try {
-				// Client does not have direct access to program statement, and rather than making all
-				// of them go through the methods below to obtain it, we will do it here.
-				// Want the program statement but do not want observers notified.
-				ps = Globals.memory.getStatementNoNotify(programCounter);
-			} catch (final Exception e) {
-				// The only situation causing this so far: user modifies memory or register
-				// contents through direct manipulation on the GUI, after assembling the program but
-				// before starting to run it (or after backstepping all the way to the start).
-				// The action will not be associated with any instruction, but will be carried out
-				// when popped.
-				ps = null;
-				pc = NOT_PC_VALUE; // Backstep method above will see this as flag to not set PC
-			}
-			param1 = parm1;
-			param2 = parm2;
-			inDelaySlot = Simulator.inDelaySlot(); // ADDED 25 June 2007
-			/*
-			System.out.println("backstep PUSH: action "+action+" pc "+mars.util.Binary.intToHexString(pc)+
-					                   " source "+((ps==null)? "none":ps.getSource())+
-											 " parm1 "+param1+" parm2 "+param2);
-			*/
-		}
+	// Forget all backsteps, because the execution history has put back an earlier
+	// state.  Backstepping can't go further back than that.
+	void forget() {
+		backSteps.clear();
+		floor = executed;
 	}
 
 	// *****************************************************************************
@@ -387,51 +377,97 @@ public class BackStepper {
 	// newly-pushed item overwrites the oldest item, with circular top!  All operations
 	// are constant time.  It's synchronized too, to be safe (is used by both the
 	// simulation thread and the GUI thread for the back-step button).
-	// Upon construction, it is filled with newly-created empty BackStep objects which
-	// will exist for the life of the stack.  Push does not create a BackStep object
-	// but instead overwrites the contents of the existing one.  Thus during MIPS
-	// program (simulated) execution, BackStep objects are never created or junked
-	// regardless of how many steps are executed.  This will speed things up a bit
-	// and make life easier for the garbage collector.
+	// A "back step" (undo action) is not an object but a slot in parallel primitive
+	// arrays: what to do, PC when the original step occurred, up to two parameters,
+	// the number of its instruction.  So pushing never creates objects or looks up
+	// the statement, and deep stacks cost about 17 bytes per entry.  The arrays start
+	// small and double as needed, up to the capacity.
+
+	private static final int ACTION_MASK = 0x7F;
+	private static final int IN_DELAY_SLOT = 0x80; // flag in action: instruction executed in "delay slot"
+	private static final int INITIAL_LENGTH = 1024;
 
 	private class BackstepStack {
 
 		private final int capacity;
 		private int size;
 		private int top;
-		private final BackStep[] stack;
+		private byte[] action;    // what do do MEMORY_RESTORE_WORD, etc, plus IN_DELAY_SLOT
+		private int[] pc;         // program counter value when original step occurred
+		private int[] param1;     // first parameter required by that action
+		private int[] param2;     // optional second parameter required by that action
+		private int[] instruction; // number of the instruction whose action is being "undone" here
 
-		// Stack is created upon successful assembly or reset.  The one-time overhead of
-		// creating all the BackStep objects will not be noticed by the user, and enhances
-		// runtime performance by not having to create or recycle them during MIPS
-		// program execution.
+		// Stack is created upon successful assembly or reset.
 		private BackstepStack(final int capacity) {
 			this.capacity = capacity;
 			size = 0;
 			top = -1;
-			stack = new BackStep[capacity];
-			for (int i = 0; i < capacity; i++) {
-				stack[i] = new BackStep();
+			allocate(Math.min(capacity, INITIAL_LENGTH));
+		}
+
+		private void allocate(final int length) {
+			action = new byte[length];
+			pc = new int[length];
+			param1 = new int[length];
+			param2 = new int[length];
+			instruction = new int[length];
+		}
+
+		// Double the length of the arrays, unrolling the circle so the oldest is at 0.
+		private void grow() {
+			final byte[] oldAction = action;
+			final int[] oldPC = pc, oldParam1 = param1, oldParam2 = param2, oldInstruction = instruction;
+			final int oldLength = oldAction.length;
+			final int first = (top + 1) % oldLength;
+			allocate(Math.min(capacity, 2 * oldLength));
+			for (int i = 0; i < oldLength; i++) {
+				final int from = (first + i) % oldLength;
+				action[i] = oldAction[from];
+				pc[i] = oldPC[from];
+				param1[i] = oldParam1[from];
+				param2[i] = oldParam2[from];
+				instruction[i] = oldInstruction[from];
 			}
+			top = oldLength - 1;
+		}
+
+		private synchronized void clear() {
+			size = 0;
+			top = -1;
 		}
 
 		private synchronized boolean empty() {
 			return size == 0;
 		}
 
-		private synchronized void push(final int act, final int programCounter, final int parm1, final int parm2) {
+		private synchronized void push(final int act, int programCounter, final int parm1, final int parm2) {
+			if (size == action.length && size < capacity) { grow(); }
+			final int length = action.length;
 			if (size == 0) {
 				top = 0;
 				size++;
-			} else if (size < capacity) {
-				top = (top + 1) % capacity;
+			} else if (size < length) {
+				top = (top + 1) % length;
 				size++;
 			} else { // size == capacity.  The top moves up one, replacing oldest entry (goodbye!)
-				top = (top + 1) % capacity;
+				top = (top + 1) % length;
+				floor = instruction[top];
+			}
+			// The only situation causing an invalid PC so far: user modifies memory or register
+			// contents through direct manipulation on the GUI, after assembling the program but
+			// before starting to run it (or after backstepping all the way to the start).
+			// The action will not be associated with any instruction, but will be carried out
+			// when popped.
+			if ((programCounter & 3) != 0 || !(Memory.inTextSegment(programCounter) || Memory.inKernelTextSegment(
+					programCounter))) {
+				programCounter = NOT_PC_VALUE; // Backstep method above will see this as flag to not set PC
 			}
-			// We'll re-use existing objects rather than create/discard each time.
-			// Must use assign() method rather than series of assignment statements!
-			stack[top].assign(act, programCounter, parm1, parm2);
+			action[top] = (byte) (Simulator.inDelaySlot() ? act | IN_DELAY_SLOT : act);
+			pc[top] = programCounter;
+			param1[top] = parm1;
+			param2[top] = parm2;
+			instruction[top] = executed;
 		}
 
 		private synchronized void push(final int act, final int programCounter, final int parm1) {
@@ -443,23 +479,27 @@ public class BackStepper {
 		}
 
 		// NO PROTECTION.  This class is used only within this file so there is no excuse
-		// for trying to pop from empty stack.
-		private synchronized BackStep pop() {
-			BackStep bs;
-			bs = stack[top];
+		// for trying to pop from empty stack.  Returns the slot popped; its contents stay
+		// valid until the next push.
+		private synchronized int pop() {
+			final int slot = top;
 			if (size == 1) {
 				top = -1;
 			} else {
-				top = (top + capacity - 1) % capacity;
+				top = (top + action.length - 1) % action.length;
 			}
 			size--;
-			return bs;
+			return slot;
 		}
 
 		// NO PROTECTION.  This class is used only within this file so there is no excuse
 		// for trying to peek from empty stack.
-		private synchronized BackStep peek() {
-			return stack[top];
+		private synchronized int peekInstruction() {
+			return instruction[top];
+		}
+
+		private synchronized boolean peekInDelaySlot() {
+			return (action[top] & IN_DELAY_SLOT) != 0;
 		}
 
 	}
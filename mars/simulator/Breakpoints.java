@@ -0,0 +1,362 @@
+package mars.simulator;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import mars.MachineContext;
+import mars.assembler.SymbolTable;
+import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Coprocessor1;
+import mars.mips.hardware.Memory;
+import mars.mips.hardware.Register;
+import mars.mips.hardware.RegisterFile;
+import mars.util.Binary;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * The breakpoints and watchpoints of a machine's simulator. A breakpoint stops
+ * the simulation before the statement at its address, if its condition (if it
+ * has one) holds. A watchpoint stops it after the statement that reads or
+ * writes the watched word.
+ * <p>
+ * For each simulation they are installed in the machine's Memory: breakpoints
+ * as marks beside the statements of the text segment, watchpoints as traps on
+ * the pages holding the watched words. The simulator then tests a mark after
+ * each statement, and evaluates a condition only at a marked address, so
+ * statements without a breakpoint cost next to nothing, as do memory accesses
+ * to pages without a watchpoint. Conditions are compiled when the breakpoint is
+ * set. A condition compares two operands with ==, !=, &lt;, &lt;=, &gt; or
+ * &gt;=; an operand is a register ($t0, $8, $f2), an address (a number, or a
+ * label possibly plus or minus a number), or the memory word at an address or
+ * register plus or minus a number in brackets ([$sp], [$sp+8], [array-4],
+ * [0x10010000]).
+ */
+public class Breakpoints implements Memory.WatchListener {
+
+	private static final String[] OPERATORS = { "==", "!=", "<=", ">=", "<", ">" };
+
+	private final Map<Integer, Condition> breakpoints = new TreeMap<>(); // null condition: always stop
+	private final Map<Integer, Integer> watchpoints = new TreeMap<>();
+
+	// Set while installed in memory for a simulation.
+	private Memory memory;
+	private Thread simulator;
+	private int[] extraBreakpoints;
+	private boolean evaluating; // reading memory for a condition trips no watchpoints
+	private boolean tripped;
+	private int trippedAddress, trippedAccess;
+	private String lastStop;
+
+	/**
+	 * Set a breakpoint, replacing any at the same address. Registers in the
+	 * condition are those of the calling thread's machine.
+	 *
+	 * @param address   address of the statement to stop at
+	 * @param condition condition for stopping, or null to always stop
+	 * @param labels    symbol table for labels in the condition, see
+	 *                  parseAddress()
+	 * @throws IllegalArgumentException if the address is outside the text
+	 *                                  segments or the condition is not valid
+	 */
+	public synchronized void setBreakpoint(final int address, final String condition, final SymbolTable labels) {
+		if (!Memory.wordAligned(address) || !(Memory.inTextSegment(address) || Memory.inKernelTextSegment(address))) {
+			throw new IllegalArgumentException("no statement can be at " + Binary.intToHexString(address));
+		}
+		breakpoints.put(address, condition == null || condition.trim().length() == 0 ? null : compile(condition
+				.trim(), labels));
+	}
+
+	/**
+	 * Remove the breakpoint at the given address, if there is one.
+	 *
+	 * @param address address of the statement
+	 */
+	public synchronized void removeBreakpoint(final int address) { breakpoints.remove(address); }
+
+	/**
+	 * Set a watchpoint on the word holding the given address, or remove it.
+	 *
+	 * @param address address in the data, kernel data, stack or memory mapped I/O
+	 *                segment
+	 * @param access  Memory.WATCH_READ, Memory.WATCH_WRITE or both OR-ed together;
+	 *                0 to remove the watchpoint
+	 * @throws IllegalArgumentException if the address is outside those segments
+	 */
+	public synchronized void setWatchpoint(final int address, final int access) {
+		if (!Memory.inDataSegment(address) && !Memory.inKernelDataSegment(address) && !(address
+				> Memory.stackLimitAddress && address <= Memory.stackBaseAddress) && !(address
+						>= Memory.memoryMapBaseAddress && address < Memory.memoryMapLimitAddress)) {
+			throw new IllegalArgumentException("no data can be at " + Binary.intToHexString(address));
+		}
+		if (access == 0) {
+			watchpoints.remove(address);
+		} else {
+			watchpoints.put(address, access);
+		}
+	}
+
+	/**
+	 * Remove all breakpoints and watchpoints.
+	 */
+	public synchronized void clear() {
+		breakpoints.clear();
+		watchpoints.clear();
+	}
+
+	/**
+	 * Tell why the latest simulation stopped at a breakpoint or watchpoint.
+	 *
+	 * @return description of the breakpoint or watchpoint, or null if the latest
+	 *         simulation did not stop at one
+	 */
+	public synchronized String getLastStop() { return lastStop; }
+
+	/**
+	 * Get the address given by a number, or by a label possibly plus or minus a
+	 * number.
+	 *
+	 * @param text   the address
+	 * @param labels the symbol table to look labels up in, then in the global
+	 *               one of the calling thread's machine; null for the global
+	 *               one only
+	 * @return the address
+	 * @throws IllegalArgumentException if it is no address
+	 */
+	public static int parseAddress(final String text, final SymbolTable labels) {
+		final int split = Math.max(text.lastIndexOf('+'), text.lastIndexOf('-'));
+		try {
+			if (split <= 0) { return Binary.stringToInt(text); }
+			return parseAddress(text.substring(0, split).trim(), labels) + Binary.stringToInt(text.substring(
+					text.charAt(split) == '+' ? split + 1 : split).trim());
+		} catch (final NumberFormatException e) {
+			final int address = labels == null ? MachineContext.current().getSymbolTable().getAddress(text)
+					: labels.getAddressLocalOrGlobal(text);
+			if (address == SymbolTable.NOT_FOUND) {
+				throw new IllegalArgumentException("\"" + text + "\" is no address");
+			}
+			return address;
+		}
+	}
+
+	/**
+	 * Install the breakpoints and watchpoints in the given memory, for a
+	 * simulation on the calling thread.
+	 *
+	 * @param memory the memory of the machine simulated
+	 * @param extra  addresses of more breakpoints for this simulation only, as
+	 *               set in the IDE; null if none
+	 * @return false if there is nothing to install, so the simulation need not
+	 *         check for breakpoints at all
+	 */
+	synchronized boolean install(final Memory memory, final int[] extra) {
+		lastStop = null;
+		tripped = false;
+		if (breakpoints.isEmpty() && watchpoints.isEmpty() && (extra == null || extra.length == 0)) { return false; }
+		this.memory = memory;
+		simulator = Thread.currentThread();
+		extraBreakpoints = extra;
+		for (final int address : breakpoints.keySet()) {
+			mark(address, true);
+		}
+		if (extra != null) {
+			for (final int address : extra) {
+				mark(address, true);
+			}
+		}
+		for (final Map.Entry<Integer, Integer> watchpoint : watchpoints.entrySet()) {
+			try {
+				memory.setWatchpoint(watchpoint.getKey(), watchpoint.getValue());
+			} catch (final AddressErrorException e) {} // never trips
+		}
+		if (!watchpoints.isEmpty()) { memory.setWatchListener(this); }
+		return true;
+	}
+
+	/**
+	 * Remove what install() put in memory.
+	 */
+	synchronized void uninstall() {
+		if (memory == null) { return; }
+		for (final int address : breakpoints.keySet()) {
+			mark(address, false);
+		}
+		if (extraBreakpoints != null) {
+			for (final int address : extraBreakpoints) {
+				mark(address, false);
+			}
+		}
+		if (!watchpoints.isEmpty()) {
+			memory.setWatchListener(null);
+			memory.clearWatchpoints();
+		}
+		memory = null;
+		simulator = null;
+		extraBreakpoints = null;
+	}
+
+	private void mark(final int address, final boolean marked) {
+		try {
+			memory.setBreakpointMark(address, marked);
+		} catch (final AddressErrorException e) {} // there can be no statement to stop at
+	}
+
+	/**
+	 * Tell whether there are watchpoints installed. They trip in the middle of
+	 * a statement, so the simulator has to check after every single one.
+	 *
+	 * @return true if there are
+	 */
+	synchronized boolean hasWatchpoints() { return !watchpoints.isEmpty(); }
+
+	/**
+	 * Tell whether the simulation is to stop before the statement at the given
+	 * address, because of a breakpoint there or a watchpoint tripped by the
+	 * statement just simulated.
+	 *
+	 * @param address the program counter
+	 * @return true to stop
+	 */
+	boolean stopsAt(final int address) {
+		if (tripped) {
+			tripped = false;
+			stop((trippedAccess == Memory.WATCH_READ ? "read" : "write") + " watchpoint at " + Binary.intToHexString(
+					trippedAddress));
+			return true;
+		}
+		return memory.isBreakpointMarked(address) && breakpointHolds(address);
+	}
+
+	private synchronized boolean breakpointHolds(final int address) {
+		final Condition condition = breakpoints.get(address);
+		if (condition != null && !condition.holds()) { return false; }
+		stop("breakpoint at " + Binary.intToHexString(address));
+		return true;
+	}
+
+	private synchronized void stop(final String description) { lastStop = description; }
+
+	@Override
+	public void watchTripped(final int address, final int access) {
+		// Others (the IDE, tools) may read memory too, but only the simulator trips.
+		if (!evaluating && Thread.currentThread() == simulator) {
+			// a statement that both reads and writes the word is reported as writing it
+			if (!tripped || access == Memory.WATCH_WRITE) {
+				trippedAddress = address;
+				trippedAccess = access;
+			}
+			tripped = true;
+		}
+	}
+
+	private interface Operand {
+
+		int value() throws AddressErrorException;
+	}
+
+	// Condition of a breakpoint, compiled.
+	private class Condition {
+
+		private final Operand left, right;
+		private final String operator;
+
+		private Condition(final Operand left, final String operator, final Operand right) {
+			this.left = left;
+			this.operator = operator;
+			this.right = right;
+		}
+
+		private boolean holds() {
+			final int a, b;
+			evaluating = true;
+			try {
+				a = left.value();
+				b = right.value();
+			} catch (final AddressErrorException e) {
+				return false;
+			} finally {
+				evaluating = false;
+			}
+			switch (operator) {
+			case "==":
+				return a == b;
+			case "!=":
+				return a != b;
+			case "<=":
+				return a <= b;
+			case ">=":
+				return a >= b;
+			case "<":
+				return a < b;
+			default:
+				return a > b;
+			}
+		}
+	}
+
+	private Condition compile(final String condition, final SymbolTable labels) {
+		for (final String operator : OPERATORS) {
+			final int at = condition.indexOf(operator);
+			if (at > 0) {
+				return new Condition(operand(condition.substring(0, at).trim(), labels), operator, operand(condition
+						.substring(at + operator.length()).trim(), labels));
+			}
+		}
+		throw new IllegalArgumentException("condition \"" + condition + "\" compares nothing");
+	}
+
+	private Operand operand(final String text, final SymbolTable labels) {
+		if (text.isEmpty()) { throw new IllegalArgumentException("missing operand in condition"); }
+		if (text.startsWith("[") && text.endsWith("]")) {
+			final String address = text.substring(1, text.length() - 1).trim();
+			if (address.isEmpty()) { throw new IllegalArgumentException("missing address in condition"); }
+			if (!address.startsWith("$")) {
+				final int constant = parseAddress(address, labels);
+				return () -> memory.getWordNoNotify(constant);
+			}
+			int split = Math.max(address.lastIndexOf('+'), address.lastIndexOf('-'));
+			if (split <= 0) { split = address.length(); }
+			final Operand base = operand(address.substring(0, split).trim(), labels);
+			final int offset = split == address.length() ? 0 : parseAddress(address.substring(split).replace("+", "")
+					.trim(), null);
+			return () -> memory.getWordNoNotify(base.value() + offset);
+		}
+		if (text.startsWith("$")) {
+			final Register register = RegisterFile.getUserRegister(text);
+			if (register != null) { return register::getValueNoNotify; }
+			final int number = Coprocessor1.getRegisterNumber(text);
+			if (number >= 0) {
+				final Register floating = Coprocessor1.getRegisters()[number];
+				return floating::getValueNoNotify;
+			}
+			throw new IllegalArgumentException("unknown register " + text);
+		}
+		final int constant = parseAddress(text, labels);
+		return () -> constant;
+	}
+}
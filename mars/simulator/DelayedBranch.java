@@ -1,5 +1,7 @@
 package mars.simulator;
 
+import mars.MachineContext;
+
 /*
  * Copyright (c) 2003-2007, Pete Sanderson and Kenneth Vollmar
  *
@@ -46,8 +48,9 @@ package mars.simulator;
  * the original one (as one would hope) but in the meantime the first statement
  * following the sequence of successful branches will constitute the delay slot
  * and will be executed! Since only one pending delayed branch can be taken at a
- * time, everything here is done with statics. The class itself represents the
- * potential branch.
+ * time, everything here is done with statics, on the delayed branch of the
+ * calling thread's machine (see MachineContext). The class itself represents
+ * the potential branch.
  *
  * @author Pete Sanderson
  * @version June 2007
@@ -60,10 +63,16 @@ public class DelayedBranch {
 	private static final int REGISTERED = 1;
 	private static final int TRIGGERED = 2;
 
-	// Initially nothing is happening.
+	/**
+	 * The pending delayed branch of one machine.
+	 */
+	public static final class State {
 
-	private static int state = CLEARED;
-	private static int branchTargetAddress = 0;
+		// Initially nothing is happening.
+
+		private int state = CLEARED;
+		private int branchTargetAddress = 0;
+	}
 
 	/**
 	 * Register the fact that a successful branch is to occur. This is called in the
@@ -78,13 +87,14 @@ public class DelayedBranch {
 	 *                      instruction
 	 */
 	public static void register(final int targetAddress) {
+		final State delayed = MachineContext.current().getDelayedBranch();
 		// About as clean as a switch statement can be!
-		switch (state) {
+		switch (delayed.state) {
 		case CLEARED:
-			branchTargetAddress = targetAddress;
+			delayed.branchTargetAddress = targetAddress;
 		case REGISTERED:
 		case TRIGGERED:
-			state = REGISTERED;
+			delayed.state = REGISTERED;
 		}
 	}
 
@@ -98,11 +108,12 @@ public class DelayedBranch {
 	 * !DelayedBranch.isRegistered()
 	 */
 	static void trigger() {
+		final State delayed = MachineContext.current().getDelayedBranch();
 		// About as clean as a switch statement can be!
-		switch (state) {
+		switch (delayed.state) {
 		case REGISTERED:
 		case TRIGGERED:
-			state = TRIGGERED;
+			delayed.state = TRIGGERED;
 		case CLEARED:
 		}
 	}
@@ -112,8 +123,9 @@ public class DelayedBranch {
 	 * program counter to the target address. This method has package visibility.
 	 */
 	static void clear() {
-		state = CLEARED;
-		branchTargetAddress = 0;
+		final State delayed = MachineContext.current().getDelayedBranch();
+		delayed.state = CLEARED;
+		delayed.branchTargetAddress = 0;
 	}
 
 	/**
@@ -124,7 +136,7 @@ public class DelayedBranch {
 	 * @return true if branch is registered but not triggered, false otherwise.
 	 */
 
-	static boolean isRegistered() { return state == REGISTERED; }
+	static boolean isRegistered() { return MachineContext.current().getDelayedBranch().state == REGISTERED; }
 
 	/**
 	 * Return trigger status. Is false initially, true after trigger() is called but
@@ -133,7 +145,7 @@ public class DelayedBranch {
 	 * @return true if branch is registered but not triggered, false otherwise.
 	 */
 
-	static boolean isTriggered() { return state == TRIGGERED; }
+	static boolean isTriggered() { return MachineContext.current().getDelayedBranch().state == TRIGGERED; }
 
 	/**
 	 * Return branch target address. This should be retrieved only to set the
@@ -142,6 +154,6 @@ public class DelayedBranch {
 	 *
 	 * @return Target address of the delayed branch.
 	 */
-	static int getBranchTargetAddress() { return branchTargetAddress; }
+	static int getBranchTargetAddress() { return MachineContext.current().getDelayedBranch().branchTargetAddress; }
 
 }  // DelayedBranch
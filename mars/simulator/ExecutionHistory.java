@@ -0,0 +1,506 @@
+package mars.simulator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import mars.Globals;
+import mars.ProcessingException;
+import mars.ProgramStatement;
+import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Coprocessor0;
+import mars.mips.hardware.Coprocessor1;
+import mars.mips.hardware.Memory;
+import mars.mips.hardware.Register;
+import mars.mips.hardware.RegisterFile;
+import mars.mips.instructions.syscalls.Syscall;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Record of a program's execution that allows going back to any instruction
+ * executed so far, however long ago. Every so many instructions
+ * (CheckpointInterval in Config.properties) a checkpoint is taken of the
+ * registers, Coprocessors 0 and 1, the heap pointer and the memory pages
+ * written since the previous checkpoint. What the program could not work out
+ * for itself is recorded as it happens: the effects of each syscall (input,
+ * random numbers, time, files), values stored in memory by devices, tools or
+ * the GUI while the program runs or is paused (e.g. the keyboard's MMIO
+ * registers) and external interrupts.
+ * <p>
+ * Going to instruction K restores the latest checkpoint at or before K and
+ * simulates forward from there. Up to the latest instruction ever reached, the
+ * recorded syscall effects are applied instead of performing the syscall (so
+ * nothing is printed, read or written twice), recorded stores are repeated and
+ * recorded interrupts raised again, so the outcome is the same as the first
+ * time. Memory used is bounded: when there are too many checkpoints, every
+ * other one is dropped and the interval doubles.
+ * <p>
+ * The history is kept by the BackStepper and only while backstepping is
+ * enabled. Not part of it: registers changed by hand in the GUI, stores made
+ * while going back over recorded history, and the text segment (self-modifying
+ * code).
+ */
+
+public class ExecutionHistory implements Memory.StoreListener {
+
+	private static final int MAXIMUM_CHECKPOINTS = 32;
+
+	private final BackStepper backStepper;
+	private long interval;
+	private final ArrayList<Checkpoint> checkpoints = new ArrayList<>();
+	private final ArrayList<SyscallEffect> syscalls = new ArrayList<>();
+	private final ArrayList<Event> stores = new ArrayList<>();     // made by other threads
+	private final ArrayList<Event> interrupts = new ArrayList<>(); // value is the device
+	// Replay positions in the three lists above.  While recording, they are at the end.
+	private int nextSyscall, nextStore, nextInterrupt;
+	private long instruction;  // number of instructions started so far
+	private long latest;       // highest instruction number ever reached
+	private boolean replaying; // is the current instruction one reached before?
+	private boolean complete;  // false once instructions have run without being recorded
+	private boolean seeking;   // in goTo()
+	private volatile Thread simulationThread;
+	private SyscallEffect syscall; // effects of the syscall being recorded, if any
+
+	/**
+	 * Create an empty history.
+	 *
+	 * @param backStepper the BackStepper keeping this history
+	 * @param interval    number of instructions between checkpoints
+	 */
+	ExecutionHistory(final BackStepper backStepper, final int interval) {
+		this.backStepper = backStepper;
+		this.interval = interval;
+		complete = true;
+	}
+
+	/**
+	 * Get the number of instructions executed to arrive at the current state.
+	 *
+	 * @return the instruction count
+	 */
+	public long getInstructionCount() { return instruction; }
+
+	/**
+	 * Get the highest instruction count reached so far, the furthest one can go
+	 * with goTo().
+	 *
+	 * @return the highest instruction count
+	 */
+	public long getLatestInstruction() { return latest; }
+
+	/**
+	 * Determine whether goTo() can be used: the program has started, and all of it
+	 * has run with backstepping enabled.
+	 *
+	 * @return true if goTo() can be used, false otherwise
+	 */
+	public boolean isAvailable() { return complete && !checkpoints.isEmpty(); }
+
+	/**
+	 * Determine whether goTo() is simulating its way to the requested instruction.
+	 * The simulator runs at full speed without updating the GUI meanwhile.
+	 *
+	 * @return true if in goTo(), false otherwise
+	 */
+	public boolean isSeeking() { return seeking; }
+
+	/**
+	 * Return to the state after the given number of instructions: restore the
+	 * latest checkpoint at or before it, then simulate the remaining instructions
+	 * using the recording. Backsteps recorded so far are forgotten. Must not be
+	 * called while the simulator is running.
+	 *
+	 * @param target instruction count to return to, from 0 to
+	 *               getLatestInstruction()
+	 * @return true if the program terminated on the way (as it did the first time),
+	 *         false otherwise
+	 * @throws ProcessingException      if it terminated with a runtime error
+	 * @throws IllegalArgumentException if the history is not available or the
+	 *                                  target is out of range
+	 */
+	public boolean goTo(final long target) throws ProcessingException {
+		if (!isAvailable() || target < 0 || target > latest) {
+			throw new IllegalArgumentException("cannot go to instruction " + target);
+		}
+		int index = 0;
+		while (index + 1 < checkpoints.size() && checkpoints.get(index + 1).instruction <= target) {
+			index++;
+		}
+		restore(index);
+		seeking = true;
+		try {
+			while (instruction < target) {
+				final int steps = (int) Math.min(target - instruction, Integer.MAX_VALUE);
+				if (Simulator.getInstance().simulate(Globals.program, RegisterFile.getProgramCounter(), steps, null,
+						null)) {
+					return true;
+				}
+			}
+		} finally {
+			seeking = false;
+		}
+		return false;
+	}
+
+	/**
+	 * Called by the simulator as it starts running, before the first instruction.
+	 */
+	void startRun() {
+		simulationThread = Thread.currentThread();
+		if (complete && checkpoints.isEmpty()) {
+			Globals.memory.setPageTracking(true);
+			Globals.memory.setStoreListener(this);
+		}
+	}
+
+	/**
+	 * Called by the simulator as it starts running with backstepping disabled. The
+	 * history now has a hole in it, so it is given up.
+	 */
+	void discard() {
+		if (complete && !checkpoints.isEmpty()) {
+			Globals.memory.setStoreListener(null);
+			Globals.memory.setPageTracking(false);
+		}
+		complete = false;
+		checkpoints.clear();
+		syscalls.clear();
+		stores.clear();
+		interrupts.clear();
+	}
+
+	/**
+	 * Called by the BackStepper when an instruction is about to be simulated,
+	 * before the instruction is counted. Takes a checkpoint if one is due or,
+	 * when going over recorded history, repeats the stores recorded before this
+	 * instruction.
+	 *
+	 * @param pc address of the instruction
+	 */
+	void startInstruction(final int pc) {
+		if (!complete) { return; }
+		replaying = instruction < latest;
+		if (replaying) {
+			synchronized (stores) {
+				while (nextStore < stores.size() && stores.get(nextStore).instruction <= instruction) {
+					final Event store = stores.get(nextStore++);
+					try {
+						Globals.memory.set(store.address, store.value, store.length);
+					} catch (final AddressErrorException e) {} // did not happen the first time either
+				}
+			}
+		} else {
+			if ((checkpoints.isEmpty() || instruction >= checkpoints.get(checkpoints.size() - 1).instruction
+					+ interval) && !DelayedBranch.isRegistered() && !DelayedBranch.isTriggered()) {
+				takeCheckpoint(pc);
+			}
+			latest++;
+		}
+		instruction++;
+	}
+
+	/**
+	 * Called by the BackStepper when it has undone an instruction.
+	 */
+	void stepBack() {
+		if (!complete || instruction == 0) { return; }
+		instruction--;
+		// what was recorded for the instruction undone (and afterwards) is to be replayed
+		while (nextSyscall > 0 && syscalls.get(nextSyscall - 1).instruction > instruction) {
+			nextSyscall--;
+		}
+		while (nextInterrupt > 0 && interrupts.get(nextInterrupt - 1).instruction > instruction) {
+			nextInterrupt--;
+		}
+		synchronized (stores) {
+			while (nextStore > 0 && stores.get(nextStore - 1).instruction > instruction) {
+				nextStore--;
+			}
+		}
+	}
+
+	/**
+	 * Called by the simulator to find out whether the current instruction is to be
+	 * interrupted by a device. When going over recorded history, only recorded
+	 * interrupts happen.
+	 *
+	 * @return the interrupting device, or Simulator.NO_DEVICE if none
+	 */
+	int takeExternalInterrupt() {
+		if (replaying) {
+			return nextInterrupt < interrupts.size() && interrupts.get(nextInterrupt).instruction == instruction
+					? interrupts.get(nextInterrupt++).value : Simulator.NO_DEVICE;
+		}
+		final int device = Simulator.getInstance().takeExternalInterrupt();
+		if (device != Simulator.NO_DEVICE && complete) {
+			interrupts.add(new Event(instruction, 0, 0, device));
+			nextInterrupt = interrupts.size();
+		}
+		return device;
+	}
+
+	/**
+	 * Simulate a syscall, recording its effects. When going over recorded history,
+	 * the recorded effects are applied instead.
+	 *
+	 * @param service   the syscall
+	 * @param statement the syscall statement
+	 * @throws ProcessingException if the syscall throws one (or did, the first
+	 *                             time)
+	 */
+	public void simulateSyscall(final Syscall service, final ProgramStatement statement) throws ProcessingException {
+		if (replaying && nextSyscall < syscalls.size() && syscalls.get(nextSyscall).instruction == instruction) {
+			final SyscallEffect effect = syscalls.get(nextSyscall++);
+			effect.apply();
+			if (effect.exception != null) { throw effect.exception; }
+			return;
+		}
+		if (replaying || !complete) {
+			service.simulate(statement);
+			return;
+		}
+		final SyscallEffect effect = new SyscallEffect(instruction);
+		syscall = effect;
+		try {
+			service.simulate(statement);
+		} catch (final ProcessingException pe) {
+			effect.exception = pe;
+			throw pe;
+		} finally {
+			syscall = null;
+			effect.finish();
+			syscalls.add(effect);
+			nextSyscall = syscalls.size();
+		}
+	}
+
+	/**
+	 * Records values stored by syscalls, and by threads other than the simulator's
+	 * (devices, tools, GUI) as long as they are not going over recorded history.
+	 * Stores made while backstepping are not recorded.
+	 */
+	@Override
+	public void valueStored(final int address, final int length, final int value) {
+		if (Thread.currentThread() == simulationThread) {
+			if (syscall != null) { syscall.stores.add(new Event(instruction, address, length, value)); }
+		} else if (complete && !seeking && instruction == latest && backStepper.enabled()) {
+			synchronized (stores) {
+				stores.add(new Event(instruction, address, length, value));
+				nextStore = stores.size();
+			}
+		}
+	}
+
+	private void takeCheckpoint(final int pc) {
+		final Checkpoint checkpoint = new Checkpoint(instruction, pc);
+		Globals.memory.collectWrittenPages(checkpoint.pages);
+		checkpoints.add(checkpoint);
+		if (checkpoints.size() > MAXIMUM_CHECKPOINTS) {
+			// Drop every other checkpoint, except the first and the last.  The pages of a
+			// dropped one still hold for the next one, unless it has its own copy.
+			final ArrayList<Checkpoint> kept = new ArrayList<>();
+			for (int i = 0; i < checkpoints.size(); i++) {
+				if (i % 2 == 1 && i < checkpoints.size() - 1) {
+					final Map<Integer, int[]> next = checkpoints.get(i + 1).pages;
+					for (final Map.Entry<Integer, int[]> page : checkpoints.get(i).pages.entrySet()) {
+						next.putIfAbsent(page.getKey(), page.getValue());
+					}
+				} else {
+					kept.add(checkpoints.get(i));
+				}
+			}
+			checkpoints.clear();
+			checkpoints.addAll(kept);
+			interval *= 2;
+		}
+	}
+
+	private void restore(final int index) {
+		final Checkpoint checkpoint = checkpoints.get(index);
+		backStepper.setEnabled(false); // the restore itself is not to be backstepped
+		// Pages written since the checkpoint (those in later checkpoints or written since
+		// the last one) are restored to their latest copy at or before it.
+		final Map<Integer, int[]> written = new HashMap<>();
+		Globals.memory.collectWrittenPages(written);
+		final Set<Integer> pages = new HashSet<>(written.keySet());
+		for (int i = index + 1; i < checkpoints.size(); i++) {
+			pages.addAll(checkpoints.get(i).pages.keySet());
+		}
+		for (final Integer page : pages) {
+			int[] words = null;
+			for (int i = index; i >= 0 && words == null; i--) {
+				words = checkpoints.get(i).pages.get(page);
+			}
+			Globals.memory.restorePage(page, words);
+		}
+		checkpoint.restoreRegisters();
+		DelayedBranch.clear();
+		instruction = checkpoint.instruction;
+		nextSyscall = checkpoint.nextSyscall;
+		nextInterrupt = checkpoint.nextInterrupt;
+		synchronized (stores) {
+			nextStore = checkpoint.nextStore;
+		}
+		backStepper.forget();
+		backStepper.setEnabled(true);
+	}
+
+	// The state at the start of an instruction, except for memory pages other than
+	// those written since the previous checkpoint.
+	private class Checkpoint {
+
+		private final long instruction;
+		private final int pc, heapAddress, conditionFlags;
+		private final int[] registers = new int[35];
+		private final int[] coprocessor0 = new int[Coprocessor0.getRegisters().length];
+		private final int[] coprocessor1 = new int[Coprocessor1.getRegisters().length];
+		private final Map<Integer, int[]> pages = new HashMap<>();
+		private final int nextSyscall, nextInterrupt, nextStore;
+
+		private Checkpoint(final long instruction, final int pc) {
+			this.instruction = instruction;
+			this.pc = pc;
+			heapAddress = Memory.getInstance().getHeapAddress();
+			conditionFlags = Coprocessor1.getConditionFlags();
+			for (int i = 0; i < registers.length; i++) {
+				registers[i] = RegisterFile.getValueNoNotify(i);
+			}
+			final Register[] cp0 = Coprocessor0.getRegisters(), cp1 = Coprocessor1.getRegisters();
+			for (int i = 0; i < cp0.length; i++) {
+				coprocessor0[i] = cp0[i].getValueNoNotify();
+			}
+			for (int i = 0; i < cp1.length; i++) {
+				coprocessor1[i] = cp1[i].getValueNoNotify();
+			}
+			nextSyscall = ExecutionHistory.this.nextSyscall;
+			nextInterrupt = ExecutionHistory.this.nextInterrupt;
+			nextStore = ExecutionHistory.this.nextStore;
+		}
+
+		private void restoreRegisters() {
+			for (int i = 1; i < registers.length; i++) {
+				RegisterFile.updateRegister(i, registers[i]); // ignores the pc, number 32
+			}
+			RegisterFile.setProgramCounter(pc);
+			final Register[] cp0 = Coprocessor0.getRegisters(), cp1 = Coprocessor1.getRegisters();
+			for (int i = 0; i < cp0.length; i++) {
+				Coprocessor0.updateRegister(cp0[i].getNumber(), coprocessor0[i]);
+			}
+			for (int i = 0; i < cp1.length; i++) {
+				Coprocessor1.updateRegister(cp1[i].getNumber(), coprocessor1[i]);
+			}
+			for (int flag = 0; flag < Coprocessor1.getConditionFlagCount(); flag++) {
+				if ((conditionFlags >> flag & 1) != 0) {
+					Coprocessor1.setConditionFlag(flag);
+				} else {
+					Coprocessor1.clearConditionFlag(flag);
+				}
+			}
+			Memory.getInstance().setHeapAddress(heapAddress);
+		}
+	}
+
+	// What a syscall did: the registers it changed, the values it stored, the heap
+	// pointer after it and the exception it threw, if any.
+	private static class SyscallEffect {
+
+		private final long instruction;
+		private int[] before = new int[67]; // general purpose (with hi, lo), then FPU registers
+		private int[] changed;             // pairs of register index (as in "before") and value
+		private final ArrayList<Event> stores = new ArrayList<>();
+		private int heapAddress;
+		private ProcessingException exception;
+
+		private SyscallEffect(final long instruction) {
+			this.instruction = instruction;
+			readRegisters(before);
+		}
+
+		private void finish() {
+			final int[] after = new int[before.length];
+			readRegisters(after);
+			int count = 0;
+			for (int i = 0; i < after.length; i++) {
+				if (after[i] != before[i]) { count++; }
+			}
+			changed = new int[2 * count];
+			count = 0;
+			for (int i = 0; i < after.length; i++) {
+				if (after[i] != before[i]) {
+					changed[count++] = i;
+					changed[count++] = after[i];
+				}
+			}
+			before = null;
+			heapAddress = Memory.getInstance().getHeapAddress();
+		}
+
+		private void apply() {
+			for (int i = 0; i < changed.length; i += 2) {
+				if (changed[i] < 35) {
+					RegisterFile.updateRegister(changed[i], changed[i + 1]);
+				} else {
+					Coprocessor1.updateRegister(changed[i] - 35, changed[i + 1]);
+				}
+			}
+			for (final Event store : stores) {
+				try {
+					Globals.memory.set(store.address, store.value, store.length);
+				} catch (final AddressErrorException e) {} // did not happen the first time either
+			}
+			Memory.getInstance().setHeapAddress(heapAddress);
+		}
+
+		private static void readRegisters(final int[] values) {
+			for (int i = 0; i < 35; i++) {
+				values[i] = RegisterFile.getValueNoNotify(i);
+			}
+			for (int i = 35; i < values.length; i++) {
+				values[i] = Coprocessor1.getRegisters()[i - 35].getValueNoNotify();
+			}
+		}
+	}
+
+	// Something that happened at a given instruction count.  A store, or an interrupt
+	// from the device given by the value.
+	private static class Event {
+
+		private final long instruction;
+		private final int address, length, value;
+
+		private Event(final long instruction, final int address, final int length, final int value) {
+			this.instruction = instruction;
+			this.address = address;
+			this.length = length;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package mars.simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+import mars.MIPSprogram;
+import mars.MachineContext;
+import mars.ProgramStatement;
+import mars.assembler.Symbol;
+import mars.mips.hardware.Memory;
+import mars.mips.instructions.BasicInstruction;
+import mars.mips.instructions.BasicInstructionFormat;
+import mars.util.Binary;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Execution profile of the program simulated on a machine: how many times each
+ * statement was executed. The simulator counts every statement it simulates
+ * while profiling is on (see Simulator.setProfiling()), by incrementing a
+ * counter in an array indexed by the statement's word offset in the text
+ * segment, which takes no allocation and no observer. Counts add up over all
+ * runs of a program, and start over when another program is assembled or on
+ * reset().
+ * <p>
+ * The report gives the total, the totals by instruction format, the statements
+ * executed most often and the totals by label (each statement counting for the
+ * nearest text label at or before it).
+ */
+public class ExecutionProfile {
+
+	private long[] counts = new long[0]; // by word offset from textBase
+	private long[] kernelCounts = new long[0]; // by word offset from kernelTextBase
+	private long elsewhere; // statements executed outside the text segments (self-modifying code)
+	private int textBase = Memory.textBaseAddress;
+	private int kernelTextBase = Memory.kernelTextBaseAddress;
+	private ArrayList program; // machine list of the program counted
+
+	/**
+	 * Forget all counts.
+	 */
+	public synchronized void reset() {
+		counts = new long[0];
+		kernelCounts = new long[0];
+		elsewhere = 0;
+		textBase = Memory.textBaseAddress;
+		kernelTextBase = Memory.kernelTextBaseAddress;
+	}
+
+	/**
+	 * Prepare to count statements of the given program. Counts for a different
+	 * program are forgotten first. The counters are allocated here for all
+	 * statements of the program, so that count() need not.
+	 *
+	 * @param machineList ArrayList of ProgramStatement, as produced by the
+	 *                    assembler
+	 */
+	synchronized void startRun(final ArrayList machineList) {
+		if (machineList != program) {
+			reset();
+			program = machineList;
+		}
+		if (machineList != null) {
+			for (int i = 0; i < machineList.size(); i++) {
+				grow(((ProgramStatement) machineList.get(i)).getAddress());
+			}
+		}
+	}
+
+	/**
+	 * Count one execution of the statement at the given address.
+	 *
+	 * @param address address of the statement
+	 */
+	void count(final int address) {
+		final int index = address - textBase >> 2;
+		if (index >= 0 && index < counts.length) {
+			counts[index]++;
+		} else {
+			countElsewhere(address);
+		}
+	}
+
+	private void countElsewhere(final int address) {
+		grow(address);
+		final int index = address - textBase >> 2;
+		final int kernelIndex = address - kernelTextBase >> 2;
+		if (Memory.inTextSegment(address) && index >= 0 && index < counts.length) {
+			counts[index]++;
+		} else if (Memory.inKernelTextSegment(address) && kernelIndex >= 0 && kernelIndex < kernelCounts.length) {
+			kernelCounts[kernelIndex]++;
+		} else {
+			elsewhere++;
+		}
+	}
+
+	// Make room for the counter of the given address, if it is in a text segment.
+	private void grow(final int address) {
+		if (Memory.inTextSegment(address)) {
+			final int index = address - textBase >> 2;
+			if (index >= counts.length) { counts = Arrays.copyOf(counts, index + 1); }
+		} else if (Memory.inKernelTextSegment(address)) {
+			final int index = address - kernelTextBase >> 2;
+			if (index >= kernelCounts.length) { kernelCounts = Arrays.copyOf(kernelCounts, index + 1); }
+		}
+	}
+
+	/**
+	 * Get the number of times the statement at the given address was executed.
+	 *
+	 * @param address address of the statement
+	 * @return the count
+	 */
+	public synchronized long getCount(final int address) {
+		final int index = address - textBase >> 2;
+		if (Memory.inTextSegment(address) && index >= 0 && index < counts.length) { return counts[index]; }
+		final int kernelIndex = address - kernelTextBase >> 2;
+		if (Memory.inKernelTextSegment(address) && kernelIndex >= 0 && kernelIndex < kernelCounts.length) {
+			return kernelCounts[kernelIndex];
+		}
+		return 0;
+	}
+
+	/**
+	 * Get the number of statements executed.
+	 *
+	 * @return the total of all counts
+	 */
+	public synchronized long getTotal() {
+		long total = elsewhere;
+		for (final long count : counts) {
+			total += count;
+		}
+		for (final long count : kernelCounts) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Get the number of statements executed in the user text segment, leaving out
+	 * exception handlers in the kernel text segment and code run from elsewhere.
+	 * This is what the ic option has always counted.
+	 *
+	 * @return the total of the user text segment counts
+	 */
+	public synchronized long getUserTextTotal() {
+		long total = 0;
+		for (final long count : counts) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Produce the report on the profile: total statements executed, totals by
+	 * instruction format, the statements executed most often and totals by label.
+	 * Statements are looked up in the memory of the calling thread's machine.
+	 *
+	 * @param hottest number of statements to list
+	 * @return the report, as lines of text
+	 */
+	public synchronized String report(final int hottest) {
+		final long total = getTotal();
+		final Map<Integer, Long> executed = new TreeMap<>(); // address to count, for statements executed
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] != 0) { executed.put(textBase + (i << 2), counts[i]); }
+		}
+		for (int i = 0; i < kernelCounts.length; i++) {
+			if (kernelCounts[i] != 0) { executed.put(kernelTextBase + (i << 2), kernelCounts[i]); }
+		}
+		final StringBuilder report = new StringBuilder();
+		report.append("Instructions executed: ").append(total).append('\n');
+
+		// By instruction format.
+		final Map<String, Long> formats = new TreeMap<>();
+		for (final Map.Entry<Integer, Long> entry : executed.entrySet()) {
+			final String format = formatOf(statementAt(entry.getKey()));
+			final Long sum = formats.get(format);
+			formats.put(format, sum == null ? entry.getValue() : sum + entry.getValue());
+		}
+		if (elsewhere != 0) { formats.put("outside text segment", elsewhere); }
+		report.append("\nBy instruction format:\n");
+		for (final Map.Entry<String, Long> entry : formats.entrySet()) {
+			line(report, entry.getValue(), total, entry.getKey());
+		}
+
+		// Hottest statements.
+		final Map.Entry<Integer, Long>[] hot = executed.entrySet().toArray(new Map.Entry[0]);
+		Arrays.sort(hot, (a, b) -> Long.compare(b.getValue(), a.getValue())); // stable, so by address among equals
+		report.append("\nMost executed statements:\n");
+		for (int i = 0; i < hot.length && i < hottest; i++) {
+			final ProgramStatement statement = statementAt(hot[i].getKey());
+			line(report, hot[i].getValue(), total, Binary.intToHexString(hot[i].getKey()) + "  " + (statement == null
+					? "" : statement.getPrintableBasicAssemblyStatement()));
+		}
+
+		// By label.
+		final TreeMap<Integer, String> labels = textLabels();
+		final Map<String, Long> byLabel = new HashMap<>();
+		final ArrayList<String> labelOrder = new ArrayList<>();
+		for (final Map.Entry<Integer, Long> entry : executed.entrySet()) {
+			final Map.Entry<Integer, String> label = labels.floorEntry(entry.getKey());
+			final String name = label == null || Memory.inTextSegment(label.getKey()) != Memory.inTextSegment(entry
+					.getKey()) ? "(no label)" : label.getValue();
+			final Long sum = byLabel.get(name);
+			if (sum == null) { labelOrder.add(name); }
+			byLabel.put(name, sum == null ? entry.getValue() : sum + entry.getValue());
+		}
+		report.append("\nBy label:\n");
+		for (final String name : labelOrder) {
+			line(report, byLabel.get(name), total, name);
+		}
+		return report.toString();
+	}
+
+	private static void line(final StringBuilder report, final long count, final long total, final String what) {
+		report.append(String.format("%14d %6.2f%%  %s%n", count, total == 0 ? 0.0 : count * 100.0 / total, what));
+	}
+
+	private static ProgramStatement statementAt(final int address) {
+		try {
+			return Memory.getInstance().getStatementNoNotify(address);
+		} catch (final Exception e) {
+			return null;
+		}
+	}
+
+	private static String formatOf(final ProgramStatement statement) {
+		if (statement == null || !(statement.getInstruction() instanceof BasicInstruction)) { return "unknown"; }
+		final BasicInstructionFormat format = ((BasicInstruction) statement.getInstruction()).getInstructionFormat();
+		if (format == BasicInstructionFormat.R_FORMAT) { return "R-type"; }
+		if (format == BasicInstructionFormat.J_FORMAT) { return "J-type"; }
+		return "I-type";
+	}
+
+	// Text labels of the program counted and global ones, by address.  The first
+	// label found names an address that has several.
+	private TreeMap<Integer, String> textLabels() {
+		final TreeMap<Integer, String> labels = new TreeMap<>();
+		final ArrayList symbols = new ArrayList(MachineContext.current().getSymbolTable().getTextSymbols());
+		if (program != null) {
+			final HashSet<MIPSprogram> sources = new HashSet<>();
+			for (int i = 0; i < program.size(); i++) {
+				final MIPSprogram source = ((ProgramStatement) program.get(i)).getSourceMIPSprogram();
+				if (source != null && source.getLocalSymbolTable() != null && sources.add(source)) {
+					symbols.addAll(source.getLocalSymbolTable().getTextSymbols());
+				}
+			}
+		}
+		for (int i = 0; i < symbols.size(); i++) {
+			final Symbol symbol = (Symbol) symbols.get(i);
+			if (!labels.containsKey(symbol.getAddress())) { labels.put(symbol.getAddress(), symbol.getName()); }
+		}
+		return labels;
+	}
+}
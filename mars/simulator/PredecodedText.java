@@ -0,0 +1,151 @@
+package mars.simulator;
+
+import java.util.ArrayList;
+
+import mars.ProgramStatement;
+import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Memory;
+import mars.mips.instructions.BasicInstruction;
+import mars.mips.instructions.SimulationCode;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Pre-decoded copy of the user text segment, used by the simulator in turbo
+ * mode. Each word of the assembled program gets a slot holding its
+ * ProgramStatement and the SimulationCode of its basic instruction, so the
+ * fetch-execute loop is reduced to an array index instead of going through
+ * Memory.getStatement() (segment range checks, block table lookup, observer
+ * notification) and the instruction lookup and cast for every step.
+ * <p>
+ * Memory tells us about every statement stored into the text segment (self
+ * modifying code) and the affected slot is cleared. A cleared or unmapped slot
+ * is simply fetched from Memory the slow way, and re-cached if it lies in the
+ * table.
+ */
+
+class PredecodedText implements Memory.StatementListener {
+
+	private final Memory memory;
+	private final int baseAddress;
+	private final ProgramStatement[] statements;
+	private final SimulationCode[] handlers;
+
+	/**
+	 * Decode the user text segment words spanned by the given machine
+	 * statements. The statements themselves are read back from memory so that
+	 * any modifications made since assembly are honored.
+	 *
+	 * @param memory      the MIPS memory holding the program
+	 * @param machineList ArrayList of ProgramStatement, as produced by the
+	 *                    assembler
+	 */
+	PredecodedText(final Memory memory, final ArrayList machineList) {
+		this.memory = memory;
+		int low = Memory.textLimitAddress;
+		int high = Memory.textBaseAddress - Memory.WORD_LENGTH_BYTES;
+		if (machineList != null) {
+			for (int i = 0; i < machineList.size(); i++) {
+				final int address = ((ProgramStatement) machineList.get(i)).getAddress();
+				if (Memory.inTextSegment(address)) {
+					if (address < low) { low = address; }
+					if (address > high) { high = address; }
+				}
+			}
+		}
+		baseAddress = low;
+		final int length = high < low ? 0 : (high - low >> 2) + 1;
+		statements = new ProgramStatement[length];
+		handlers = new SimulationCode[length];
+		for (int i = 0; i < length; i++) {
+			try {
+				decode(i, memory.getStatementNoNotify(baseAddress + (i << 2)));
+			} catch (final AddressErrorException aee) {} // slot stays empty, will be fetched from memory
+		}
+	}
+
+	/**
+	 * Gets the statement at the given address. Served from the table when
+	 * possible, otherwise from Memory.
+	 *
+	 * @param address address of the statement
+	 * @return the ProgramStatement there, or null if none
+	 * @throws AddressErrorException as for Memory.getStatement()
+	 */
+	ProgramStatement getStatement(final int address) throws AddressErrorException {
+		final int index = slot(address);
+		if (index >= 0) {
+			final ProgramStatement statement = statements[index];
+			if (statement != null) { return statement; }
+			return decode(index, memory.getStatement(address));
+		}
+		return memory.getStatement(address);
+	}
+
+	/**
+	 * Gets the pre-resolved simulation code for the statement at the given
+	 * address, which was just returned by getStatement().
+	 *
+	 * @param address address of the statement
+	 * @return its SimulationCode, or null if not known (caller has to resolve it)
+	 */
+	SimulationCode getHandler(final int address) {
+		final int index = slot(address);
+		return index >= 0 ? handlers[index] : null;
+	}
+
+	/**
+	 * Invalidates the slot for a statement that was just stored into the text
+	 * segment.
+	 *
+	 * @param address address of the stored statement
+	 */
+	@Override
+	public void statementStored(final int address) {
+		final int index = slot(address);
+		if (index >= 0) {
+			statements[index] = null;
+			handlers[index] = null;
+		}
+	}
+
+	// Table index for given address, or -1 if it is not covered by the table.
+	private int slot(final int address) {
+		if ((address & 3) != 0) { return -1; }
+		final int index = address - baseAddress >> 2;
+		return index >= 0 && index < statements.length ? index : -1;
+	}
+
+	// Fill the slot with the statement and the simulation code of its instruction.
+	private ProgramStatement decode(final int index, final ProgramStatement statement) {
+		statements[index] = statement;
+		handlers[index] = statement != null && statement.getInstruction() instanceof BasicInstruction
+				? ((BasicInstruction) statement.getInstruction()).getSimulationCode() : null;
+		return statement;
+	}
+}
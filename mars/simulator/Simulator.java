@@ -1,8 +1,9 @@
 package mars.simulator;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Observable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -11,14 +12,17 @@ import javax.swing.SwingUtilities;
 import mars.ErrorList;
 import mars.ErrorMessage;
 import mars.Globals;
+import mars.MachineContext;
 import mars.MIPSprogram;
 import mars.ProcessingException;
 import mars.ProgramStatement;
 import mars.mips.hardware.AddressErrorException;
 import mars.mips.hardware.Coprocessor0;
+import mars.mips.hardware.Coprocessor1;
 import mars.mips.hardware.Memory;
 import mars.mips.hardware.RegisterFile;
 import mars.mips.instructions.BasicInstruction;
+import mars.mips.instructions.SimulationCode;
 import mars.util.Binary;
 import mars.util.SystemIO;
 import mars.venus.RunGoAction;
@@ -62,14 +66,16 @@ import mars.venus.RunStepAction;
 public class Simulator extends Observable {
 
 	private SimThread simulatorThread;
-	private static Simulator simulator = null;  // Singleton object
-	private static Runnable interactiveGUIUpdater = null;
-	// Others can set this true to indicate external interrupt.  Initially used
+	private Runnable interactiveGUIUpdater = null;
+	private final Breakpoints breakpoints = new Breakpoints();
+	private final ExecutionProfile profile = new ExecutionProfile();
+	private volatile boolean profiling = false;
+	// Others can set this to indicate external interrupt, see interrupt().  Initially used
 	// to simulate keyboard and display interrupts.  The device is identified
 	// by the address of its MMIO control register.  keyboard 0xFFFF0000 and
 	// display 0xFFFF0008.  DPS 23 July 2008.
 	public static final int NO_DEVICE = 0;
-	public static volatile int externalInterruptingDevice = NO_DEVICE;
+	private volatile int externalInterruptingDevice = NO_DEVICE;
 	/** various reasons for simulate to end... */
 	public static final int BREAKPOINT = 1;
 	public static final int EXCEPTION = 2;
@@ -77,19 +83,35 @@ public class Simulator extends Observable {
 	public static final int NORMAL_TERMINATION = 4;
 	public static final int CLIFF_TERMINATION = 5; // run off bottom of program
 	public static final int PAUSE_OR_STOP = 6;
+	/**
+	 * In turbo mode (see SimThread), number of instructions simulated between
+	 * checks of the stop flag and of turbo eligibility.
+	 */
+	private static final int TURBO_CHECK_INTERVAL = 1024;
+	/** Runs simulations, if set; see setExecutor(). */
+	private static volatile Executor executor = null;
+	/** One virtual thread per simulation, null if the Java runtime has none. */
+	private static final Executor virtualThreads = createVirtualThreadExecutor();
 
 	/**
-	 * Returns the Simulator object
+	 * Returns the Simulator object of the calling thread's machine
 	 *
 	 * @return the Simulator object in use
 	 */
-	public static Simulator getInstance() {
-		// Do NOT change this to create the Simulator at load time (in declaration above)!
+	public static Simulator getInstance() { return MachineContext.current().getSimulator(); }
+
+	/**
+	 * Creates the Simulator object of a machine. Used by MachineContext, which
+	 * does so on first use.
+	 *
+	 * @return a new Simulator object
+	 */
+	public static Simulator newInstance() {
+		// Do NOT change this to create the Simulator at load time!
 		// Its constructor looks for the GUI, which at load time is not created yet,
 		// and incorrectly leaves interactiveGUIUpdater null!  This causes runtime
 		// exceptions while running in timed mode.
-		if (simulator == null) { simulator = new Simulator(); }
-		return simulator;
+		return new Simulator();
 	}
 
 	private Simulator() {
@@ -97,6 +119,37 @@ public class Simulator extends Observable {
 		if (Globals.getGui() != null) { interactiveGUIUpdater = new UpdateGUI(); }
 	}
 
+	/**
+	 * Returns the breakpoints and watchpoints in force for every simulation on
+	 * this machine, in addition to those given to simulate().
+	 *
+	 * @return the breakpoints
+	 */
+	public Breakpoints getBreakpoints() { return breakpoints; }
+
+	/**
+	 * Returns the execution profile of the program simulated on this machine,
+	 * kept while profiling is on.
+	 *
+	 * @return the profile
+	 */
+	public ExecutionProfile getProfile() { return profile; }
+
+	/**
+	 * Turn profiling on or off. While on, each statement simulated is counted in
+	 * the execution profile. Takes effect at the next simulation.
+	 *
+	 * @param enabled true to profile, false not to
+	 */
+	public void setProfiling(final boolean enabled) { profiling = enabled; }
+
+	/**
+	 * Tell whether profiling is on.
+	 *
+	 * @return true if statements simulated are counted
+	 */
+	public boolean isProfiling() { return profiling; }
+
 	/**
 	 * Determine whether or not the next instruction to be executed is in a "delay
 	 * slot". This means delayed branching is enabled, the branch condition has
@@ -111,6 +164,50 @@ public class Simulator extends Observable {
 		return DelayedBranch.isTriggered();
 	}
 
+	/**
+	 * Signal an external interrupt from a device, to be taken before the next
+	 * instruction this machine simulates. Used by the MMIO device tools.
+	 *
+	 * @param device the interrupting device, for example
+	 *               Exceptions.EXTERNAL_INTERRUPT_KEYBOARD
+	 */
+	public void interrupt(final int device) { externalInterruptingDevice = device; }
+
+	// Get the external interrupt signalled, if any, and clear it.
+	int takeExternalInterrupt() {
+		final int device = externalInterruptingDevice;
+		if (device != NO_DEVICE) { externalInterruptingDevice = NO_DEVICE; }
+		return device;
+	}
+
+	/**
+	 * Set the executor that runs simulations, for example a thread pool shared by
+	 * many machines (see MachineContext). By default the GUI starts a thread for
+	 * each Go or Step. Simulations without GUI run on virtual threads where the
+	 * Java runtime has them (Java 21 and later), so that blocked ones, as when
+	 * reading input or sleeping, hold no platform thread; otherwise they too
+	 * start a thread of their own.
+	 *
+	 * @param newExecutor the executor, or null for the default
+	 */
+	public static void setExecutor(final Executor newExecutor) { executor = newExecutor; }
+
+	// Executor for the next simulation, null to start a thread of its own.
+	private static Executor getExecutor() {
+		final Executor chosen = executor;
+		if (chosen != null) { return chosen; }
+		return Globals.getGui() == null ? virtualThreads : null;
+	}
+
+	// Looked up by name so MARS still builds and runs on Java versions before 21.
+	private static Executor createVirtualThreadExecutor() {
+		try {
+			return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
 	/**
 	 * Simulate execution of given MIPS program. It must have already been
 	 * assembled.
@@ -130,15 +227,16 @@ public class Simulator extends Observable {
 
 	public boolean simulate(final MIPSprogram p, final int pc, final int maxSteps, final int[] breakPoints,
 			final AbstractAction actor) throws ProcessingException {
-		simulatorThread = new SimThread(p, pc, maxSteps, breakPoints, actor);
-		simulatorThread.start();
+		// Kept in a local since another thread may stop the run and clear the field.
+		final SimThread thread = simulatorThread = new SimThread(p, pc, maxSteps, breakPoints, actor);
+		thread.start();
 
 		// Condition should only be true if run from command-line instead of GUI.
 		// If so, just stick around until execution thread is finished.
 		if (actor == null) {
-			simulatorThread.get();
-			final ProcessingException pe = simulatorThread.pe;
-			final boolean done = simulatorThread.done;
+			thread.get();
+			final ProcessingException pe = thread.pe;
+			final boolean done = thread.done;
 			if (done) {
 				SystemIO.resetFiles(); // close any files opened in MIPS progra
 			}
@@ -217,13 +315,16 @@ public class Simulator extends Observable {
 
 		private final MIPSprogram p;
 		private final int pc, maxSteps;
-		private int[] breakPoints;
+		private final int[] breakPoints;
+		private Breakpoints stops; // null unless there are breakpoints or watchpoints
+		private ExecutionProfile counts; // null unless profiling
 		private boolean done;
 		private ProcessingException pe;
 		private volatile boolean stop = false;
 		private volatile AbstractAction stopper;
 		private final AbstractAction starter;
 		private int constructReturnReason;
+		private ExecutionHistory history; // null unless recording or replaying
 
 		/**
 		 * SimThread constructor. Receives all the information it needs to simulate
@@ -240,7 +341,7 @@ public class Simulator extends Observable {
 		 */
 		SimThread(final MIPSprogram p, final int pc, final int maxSteps, final int[] breakPoints,
 				final AbstractAction starter) {
-			super(Globals.getGui() != null);
+			super(Globals.getGui() != null, getExecutor());
 			this.p = p;
 			this.pc = pc;
 			this.maxSteps = maxSteps;
@@ -273,6 +374,17 @@ public class Simulator extends Observable {
 
 		@Override
 		public Object construct() {
+			try {
+				return simulateProgram();
+			} finally {
+				// stop tracking text segment stores for the pre-decoded table, if one was used.
+				Memory.getInstance().setStatementListener(null);
+				if (stops != null) { stops.uninstall(); }
+			}
+		}
+
+		// Body of construct(), see above.
+		private Object simulateProgram() {
 			// The next two statements are necessary for GUI to be consistently updated
 			// before the simulation gets underway.  Without them, this happens only intermittently,
 			// with a consequence that some simulations are interruptable using PAUSE/STOP and others
@@ -280,18 +392,28 @@ public class Simulator extends Observable {
 			Thread.currentThread().setPriority(Thread.NORM_PRIORITY - 1);
 			Thread.yield();  // let the main thread run a bit to finish updating the GUI
 
-			if (breakPoints == null || breakPoints.length == 0) {
-				breakPoints = null;
-			} else {
-				Arrays.sort(breakPoints);  // must be pre-sorted for binary search
-			}
+			// Breakpoints are marked in the text segment, to be tested with a table lookup.
+			stops = breakpoints.install(Memory.getInstance(), breakPoints) ? breakpoints : null;
+			counts = profiling ? profile : null;
+			if (counts != null) { counts.startRun(p.getMachineList()); }
 
 			Simulator.getInstance().notifyObserversOfExecutionStart(maxSteps, pc);
 
+			// The execution history goes along with backstepping; without it, the history
+			// would have a hole.
+			final ExecutionHistory recorded = p.getBackStepper() == null ? null : p.getBackStepper()
+					.getExecutionHistory();
+			if (recorded != null && Globals.getSettings().getBackSteppingEnabled()) {
+				history = recorded;
+				history.startRun();
+			} else if (recorded != null) {
+				recorded.discard();
+			}
+
 			RegisterFile.initializeProgramCounter(pc);
 			ProgramStatement statement = null;
 			try {
-				statement = Globals.memory.getStatement(RegisterFile.getProgramCounter());
+				statement = Memory.getInstance().getStatement(RegisterFile.getProgramCounter());
 			} catch (final AddressErrorException e) {
 				final ErrorList el = new ErrorList();
 				el.add(new ErrorMessage((MIPSprogram) null, 0, 0, "invalid program counter value: " + Binary
@@ -338,66 +460,45 @@ public class Simulator extends Observable {
 			// begins with one or more such instructions ("nop" and branches not taken),
 			// the backstep button is not enabled until a "real" instruction is executed.
 			// This is noticeable in stepped mode.
+			//
+			// Now the BackStepper numbers the instructions as they start and tags each
+			// entry with its instruction's number, so such gaps are recognized without
+			// guesswork: an instruction with no entries of its own only advanced the PC.
+			// The IF statement at the top of simulateStatement() tells the BackStepper
+			// an instruction is starting; no entry is pushed (except for a delay slot,
+			// which needs remembering).  An external interrupt counts as an instruction
+			// of its own.
 			// *********************************************************************
 
 			int pc = 0;  // added: 7/26/06 (explanation above)
 
+			// Turbo mode: nobody is watching (no GUI, no observers, no backstepping) so
+			// the instruction can be simulated outside the synchronized block and the stop
+			// flag need only be polled every so often.  Eligibility is re-checked at each
+			// poll so we drop back to the normal loop once an observer shows up.
+			boolean turbo = turboEligible();
+			int turboCountdown = TURBO_CHECK_INTERVAL;
+			// In turbo mode, statements are fetched from a pre-decoded copy of the text
+			// segment, which Memory keeps current when self-modifying code stores into it.
+			final PredecodedText decoded = turbo ? new PredecodedText(Memory.getInstance(), p.getMachineList()) : null;
+			if (decoded != null) { Memory.getInstance().setStatementListener(decoded); }
+
 			while (statement != null) {
 				pc = RegisterFile.getProgramCounter(); // added: 7/26/06 (explanation above)
 				RegisterFile.incrementPC();
-				// Perform the MIPS instruction in synchronized block.  If external threads agree
-				// to access MIPS memory and registers only through synchronized blocks on same
-				// lock variable, then full (albeit heavy-handed) protection of MIPS memory and
-				// registers is assured.  Not as critical for reading from those resources.
-				synchronized (Globals.memoryAndRegistersLock) {
-					try {
-						if (Simulator.externalInterruptingDevice != NO_DEVICE) {
-							final int deviceInterruptCode = externalInterruptingDevice;
-							Simulator.externalInterruptingDevice = NO_DEVICE;
-							throw new ProcessingException(statement, "External Interrupt", deviceInterruptCode);
-						}
-						final BasicInstruction instruction = (BasicInstruction) statement.getInstruction();
-						if (instruction == null) {
-							throw new ProcessingException(statement, "undefined instruction (" + Binary.intToHexString(
-									statement.getBinaryStatement()) + ")", Exceptions.RESERVED_INSTRUCTION_EXCEPTION);
-						}
-						// THIS IS WHERE THE INSTRUCTION EXECUTION IS ACTUALLY SIMULATED!
-						instruction.getSimulationCode().simulate(statement);
-
-						// IF statement added 7/26/06 (explanation above)
-						if (Globals.getSettings().getBackSteppingEnabled()) {
-							Globals.program.getBackStepper().addDoNothing(pc);
-						}
-					} catch (final ProcessingException pe) {
-						if (pe.errors() == null) {
-							constructReturnReason = NORMAL_TERMINATION;
-							done = true;
-							SystemIO.resetFiles(); // close any files opened in MIPS program
-							Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-							return new Boolean(done); // execution completed without error.
-						} else {
-							// See if an exception handler is present.  Assume this is the case
-							// if and only if memory location Memory.exceptionHandlerAddress
-							// (e.g. 0x80000180) contains an instruction.  If so, then set the
-							// program counter there and continue.  Otherwise terminate the
-							// MIPS program with appropriate error message.
-							ProgramStatement exceptionHandler = null;
-							try {
-								exceptionHandler = Globals.memory.getStatement(Memory.exceptionHandlerAddress);
-							} catch (final AddressErrorException aee) {} // will not occur with this well-known addres
-							if (exceptionHandler != null) {
-								RegisterFile.setProgramCounter(Memory.exceptionHandlerAddress);
-							} else {
-								constructReturnReason = EXCEPTION;
-								this.pe = pe;
-								done = true;
-								SystemIO.resetFiles(); // close any files opened in MIPS program
-								Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-								return new Boolean(done);
-							}
-						}
+				Boolean result;
+				if (turbo) {
+					result = simulateStatement(statement, decoded.getHandler(pc), pc);
+				} else {
+					// Perform the MIPS instruction in synchronized block.  If external threads agree
+					// to access MIPS memory and registers only through synchronized blocks on same
+					// lock variable, then full (albeit heavy-handed) protection of MIPS memory and
+					// registers is assured.  Not as critical for reading from those resources.
+					synchronized (Globals.memoryAndRegistersLock) {
+						result = simulateStatement(statement, null, pc);
 					}
-				}// end synchronized block
+				}
+				if (result != null) { return result; }
 
 				///////// DPS 15 June 2007.  Handle delayed branching if it occurs./////
 				if (DelayedBranch.isTriggered()) {
@@ -405,16 +506,22 @@ public class Simulator extends Observable {
 					DelayedBranch.clear();
 				} else if (DelayedBranch.isRegistered()) { DelayedBranch.trigger(); }//////////////////////////////////////////////////////////////////////
 
-				// Volatile variable initialized false but can be set true by the main thread.
-				// Used to stop or pause a running MIPS program.  See stopSimulation() above.
-				if (stop == true) {
-					constructReturnReason = PAUSE_OR_STOP;
-					done = false;
-					Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-					return new Boolean(done);
+				if (!turbo || --turboCountdown == 0) {
+					// Volatile variable initialized false but can be set true by the main thread.
+					// Used to stop or pause a running MIPS program.  See stopSimulation() above.
+					if (stop == true) {
+						constructReturnReason = PAUSE_OR_STOP;
+						done = false;
+						Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
+						return new Boolean(done);
+					}
+					if (turbo) {
+						turboCountdown = TURBO_CHECK_INTERVAL;
+						turbo = turboEligible();
+					}
 				}
-				//	Return if we've reached a breakpoint.
-				if (breakPoints != null && Arrays.binarySearch(breakPoints, RegisterFile.getProgramCounter()) >= 0) {
+				//	Return if we've reached a breakpoint or tripped a watchpoint.
+				if (stops != null && stops.stopsAt(RegisterFile.getProgramCounter())) {
 					constructReturnReason = BREAKPOINT;
 					done = false;
 					Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
@@ -431,26 +538,29 @@ public class Simulator extends Observable {
 					}
 				}
 
-				// schedule GUI update only if: there is in fact a GUI! AND
-				//                              using Run,  not Step (maxSteps > 1) AND
-				//                              running slowly enough for GUI to keep up
-				//if (Globals.getGui() != null && maxSteps != 1 &&
-				if (interactiveGUIUpdater != null && maxSteps != 1 && RunSpeedPanel.getInstance()
-						.getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED) {
-					SwingUtilities.invokeLater(interactiveGUIUpdater);
-				}
-				if (Globals.getGui() != null || Globals.runSpeedPanelExists) { // OR added by DPS 24 July 2008 to enable speed control by stand-alone tool
-					if (maxSteps != 1 && RunSpeedPanel.getInstance().getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED) {
-						try {
-							Thread.sleep((int) (1000 / RunSpeedPanel.getInstance().getRunSpeed())); // make sure it's never zero!
-						} catch (final InterruptedException e) {}
+				if (!turbo && (history == null || !history.isSeeking())) {
+					// schedule GUI update only if: there is in fact a GUI! AND
+					//                              using Run,  not Step (maxSteps > 1) AND
+					//                              running slowly enough for GUI to keep up
+					//if (Globals.getGui() != null && maxSteps != 1 &&
+					if (interactiveGUIUpdater != null && maxSteps != 1 && RunSpeedPanel.getInstance()
+							.getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED) {
+						SwingUtilities.invokeLater(interactiveGUIUpdater);
+					}
+					if (Globals.getGui() != null || Globals.runSpeedPanelExists) { // OR added by DPS 24 July 2008 to enable speed control by stand-alone tool
+						if (maxSteps != 1 && RunSpeedPanel.getInstance().getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED) {
+							try {
+								Thread.sleep((int) (1000 / RunSpeedPanel.getInstance().getRunSpeed())); // make sure it's never zero!
+							} catch (final InterruptedException e) {}
+						}
 					}
 				}
 
 				// Get next instruction in preparation for next iteration.
 
 				try {
-					statement = Globals.memory.getStatement(RegisterFile.getProgramCounter());
+					statement = turbo ? decoded.getStatement(RegisterFile.getProgramCounter())
+							: Memory.getInstance().getStatement(RegisterFile.getProgramCounter());
 				} catch (final AddressErrorException e) {
 					final ErrorList el = new ErrorList();
 					el.add(new ErrorMessage((MIPSprogram) null, 0, 0, "invalid program counter value: " + Binary
@@ -483,6 +593,104 @@ public class Simulator extends Observable {
 			return new Boolean(done); // true;  // execution completed
 		}
 
+		/**
+		 * Simulates a single MIPS statement, including the run-time exception
+		 * handling. The caller decides whether this happens inside a block
+		 * synchronized on <code>Globals.memoryAndRegistersLock</code>.
+		 *
+		 * @param statement the statement to be simulated
+		 * @param code      the statement's simulation code if already resolved
+		 *                  (pre-decoded), null to obtain it from its instruction
+		 * @param pc        address of the statement; program counter has already
+		 *                  been incremented past it
+		 * @return null if execution is to continue, otherwise the value to be
+		 *         returned by construct()
+		 */
+		private Boolean simulateStatement(final ProgramStatement statement, SimulationCode code, final int pc) {
+			try {
+				if (counts != null) { counts.count(pc); }
+				// IF statement added 7/26/06 (explanation above)
+				if (Globals.getSettings().getBackSteppingEnabled()) {
+					Globals.program.getBackStepper().startInstruction(pc);
+				}
+				final int deviceInterruptCode = history == null ? takeExternalInterrupt()
+						: history.takeExternalInterrupt();
+				if (deviceInterruptCode != NO_DEVICE) {
+					throw new ProcessingException(statement, "External Interrupt", deviceInterruptCode);
+				}
+				if (code == null) {
+					final BasicInstruction instruction = (BasicInstruction) statement.getInstruction();
+					if (instruction == null) {
+						throw new ProcessingException(statement, "undefined instruction (" + Binary.intToHexString(
+								statement.getBinaryStatement()) + ")", Exceptions.RESERVED_INSTRUCTION_EXCEPTION);
+					}
+					code = instruction.getSimulationCode();
+				}
+				// THIS IS WHERE THE INSTRUCTION EXECUTION IS ACTUALLY SIMULATED!
+				code.simulate(statement);
+			} catch (final ProcessingException pe) {
+				return handleProcessingException(pe, pc);
+			}
+			return null;
+		}
+
+		/**
+		 * Deals with the exception thrown by simulation of a statement: normal
+		 * termination, transfer to the exception handler if there is one, or
+		 * termination with error.
+		 *
+		 * @param pe the exception
+		 * @param pc address of the statement that threw it
+		 * @return null if execution is to continue, otherwise the value to be
+		 *         returned by construct()
+		 */
+		private Boolean handleProcessingException(final ProcessingException pe, final int pc) {
+			if (pe.errors() == null) {
+				constructReturnReason = NORMAL_TERMINATION;
+				done = true;
+				SystemIO.resetFiles(); // close any files opened in MIPS program
+				Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
+				return new Boolean(done); // execution completed without error.
+			} else {
+				// See if an exception handler is present.  Assume this is the case
+				// if and only if memory location Memory.exceptionHandlerAddress
+				// (e.g. 0x80000180) contains an instruction.  If so, then set the
+				// program counter there and continue.  Otherwise terminate the
+				// MIPS program with appropriate error message.
+				ProgramStatement exceptionHandler = null;
+				try {
+					exceptionHandler = Memory.getInstance().getStatement(Memory.exceptionHandlerAddress);
+				} catch (final AddressErrorException aee) {} // will not occur with this well-known addres
+				if (exceptionHandler != null) {
+					RegisterFile.setProgramCounter(Memory.exceptionHandlerAddress);
+				} else {
+					constructReturnReason = EXCEPTION;
+					this.pe = pe;
+					done = true;
+					SystemIO.resetFiles(); // close any files opened in MIPS program
+					Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
+					return new Boolean(done);
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Determine whether the statements can be simulated in turbo mode: outside the
+		 * synchronized block, polling the stop flag only every TURBO_CHECK_INTERVAL
+		 * instructions. This is the case only when nothing can observe the machine
+		 * state while it runs: no GUI or stand-alone tool speed control, no single
+		 * stepping, no backstepping and no memory or register observers. Breakpoints
+		 * and watchpoints are checked after each statement either way.
+		 *
+		 * @return true if turbo mode may be used, false otherwise
+		 */
+		private boolean turboEligible() {
+			return Globals.getGui() == null && !Globals.runSpeedPanelExists && maxSteps != 1
+					&& !Globals.getSettings().getBackSteppingEnabled() && Memory.getInstance().countObservers() == 0
+					&& !RegisterFile.isObserved() && !Coprocessor0.isObserved() && !Coprocessor1.isObserved();
+		}
+
 		/**
 		 * This method is invoked by the SwingWorker when the "construct" method
 		 * returns. It will update the GUI appropriately. According to Sun's
@@ -495,7 +703,7 @@ public class Simulator extends Observable {
 		@Override
 		public void finished() {
 			// If running from the command-line, then there is no GUI to update.
-			if (Globals.getGui() == null) { return; }
+			if (Globals.getGui() == null || starter == null) { return; }
 			final String starterName = (String) starter.getValue(Action.NAME);
 			if (starterName.equals("Step")) { ((RunStepAction) starter).stepped(done, constructReturnReason, pe); }
 			if (starterName.equals("Go")) {
@@ -1,7 +1,12 @@
 package mars.simulator;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
 import javax.swing.SwingUtilities;
 
+import mars.MachineContext;
+
 /*-----------------------------------------------------
  * This file downloaded from the Sun Microsystems URL given below.
  *
@@ -15,7 +20,8 @@ import javax.swing.SwingUtilities;
  * thread. For instructions on and examples of using this class, see:
  * http://java.sun.com/docs/books/tutorial/uiswing/misc/threads.html Note that
  * the API changed slightly in the 3rd version: You must now invoke start() on
- * the SwingWorker after creating it.
+ * the SwingWorker after creating it. The work may also be handed to an
+ * executor instead of a thread of its own.
  */
 public abstract class SwingWorker {
 
@@ -37,12 +43,25 @@ public abstract class SwingWorker {
 			return thread;
 		}
 
+		synchronized void set(final Thread t) {
+			thread = t;
+		}
+
 		synchronized void clear() {
 			thread = null;
 		}
+
+		// Interrupt the thread only while it still works for us; a pooled thread moves on.
+		synchronized void interrupt() {
+			if (thread != null) { thread.interrupt(); }
+			thread = null;
+		}
 	}
 
 	private ThreadVar threadVar;
+	private final Executor executor;
+	private final Runnable task; // what start() hands to the executor
+	private final CountDownLatch constructed = new CountDownLatch(1);
 
 	/**
 	 * Get the value produced by the worker thread, or null if it hasn't been
@@ -71,9 +90,7 @@ public abstract class SwingWorker {
 	 * worker to stop what it's doing.
 	 */
 	public void interrupt() {
-		final Thread t = threadVar.get();
-		if (t != null) { t.interrupt(); }
-		threadVar.clear();
+		threadVar.interrupt();
 	}
 
 	/**
@@ -84,16 +101,13 @@ public abstract class SwingWorker {
 	 * @return the value created by the <code>construct</code> method
 	 */
 	public Object get() {
-		while (true) {
-			final Thread t = threadVar.get();
-			if (t == null) { return getValue(); }
-			try {
-				t.join();
-			} catch (final InterruptedException e) {
-				Thread.currentThread().interrupt(); // propagate
-				return null;
-			}
+		try {
+			constructed.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt(); // propagate
+			return null;
 		}
+		return getValue();
 	}
 
 	/**
@@ -103,6 +117,17 @@ public abstract class SwingWorker {
 	 * @param useSwing Set true if MARS is running from GUI, false otherwise.
 	 */
 	public SwingWorker(final boolean useSwing) {
+		this(useSwing, null);
+	}
+
+	/**
+	 * Prepare to call the <code>construct</code> method on a thread of the given
+	 * executor, inside the machine of the caller (see MachineContext).
+	 *
+	 * @param useSwing Set true if MARS is running from GUI, false otherwise.
+	 * @param executor the executor, or null to start a thread of its own
+	 */
+	public SwingWorker(final boolean useSwing, final Executor executor) {
 		final Runnable doFinished = () -> finished();
 
 		final Runnable doConstruct = () -> {
@@ -110,6 +135,7 @@ public abstract class SwingWorker {
 				setValue(construct());
 			} finally {
 				threadVar.clear();
+				constructed.countDown();
 			}
 
 			if (useSwing) {
@@ -119,18 +145,46 @@ public abstract class SwingWorker {
 			}
 		};
 
-		// Thread that represents executing MIPS program...
-		final Thread t = new Thread(doConstruct, "MIPS");
-
-		//t.setPriority(Thread.NORM_PRIORITY-1);//******************
-
-		threadVar = new ThreadVar(t);
+		final MachineContext machine = MachineContext.current();
+		this.executor = executor;
+		if (executor == null) {
+			// Thread that represents executing MIPS program, on the machine of the caller...
+			final Thread t = machine.newThread(doConstruct, "MIPS");
+
+			//t.setPriority(Thread.NORM_PRIORITY-1);//******************
+
+			threadVar = new ThreadVar(t);
+			task = null;
+		} else {
+			threadVar = new ThreadVar(null);
+			task = () -> {
+				final Thread current = Thread.currentThread();
+				threadVar.set(current);
+				// Accesses are told to come from the MIPS program by the name of their
+				// thread (see AccessNotice), so the executor's thread takes it meanwhile.
+				final String name = current.getName();
+				current.setName("MIPS");
+				try {
+					if (machine.isDefault()) {
+						doConstruct.run();
+					} else {
+						machine.run(doConstruct);
+					}
+				} finally {
+					current.setName(name);
+				}
+			};
+		}
 	}
 
 	/**
 	 * Start the worker thread.
 	 */
 	public void start() {
+		if (executor != null) {
+			executor.execute(task);
+			return;
+		}
 		final Thread t = threadVar.get();
 		if (t != null) { t.start(); }
 	}
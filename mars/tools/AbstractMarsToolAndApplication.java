@@ -29,6 +29,7 @@ import javax.swing.JPanel;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
 import javax.swing.filechooser.FileFilter;
@@ -40,6 +41,8 @@ import mars.mips.hardware.AddressErrorException;
 import mars.mips.hardware.Coprocessor0;
 import mars.mips.hardware.Coprocessor1;
 import mars.mips.hardware.Memory;
+import mars.mips.hardware.MemoryAccessBuffer;
+import mars.mips.hardware.MemoryAccessNotice;
 import mars.mips.hardware.Register;
 import mars.mips.hardware.RegisterFile;
 import mars.util.FilenameFinder;
@@ -122,6 +125,16 @@ public abstract class AbstractMarsToolAndApplication extends JFrame implements M
 	// Structure required for MarsTool use only (not stand-alone use). Want subclasses to have access.
 	protected ConnectButton connectButton;
 
+	// Batched delivery of memory access notices; both null unless setBatchedUpdates() called.
+	private static final int BATCH_CAPACITY = 1 << 16;
+	private MemoryAccessBuffer accessBuffer = null;
+	private Timer batchTimer = null;
+	private long reportedDrops = 0; // accesses the buffer had dropped at the last batch
+
+	// Timed display refresh for tools that see every access; null unless setTimedDisplay() called.
+	private Timer displayTimer = null;
+	private volatile boolean displayStale = false;
+
 	/**
 	 * Simple constructor
 	 *
@@ -478,7 +491,11 @@ public abstract class AbstractMarsToolAndApplication extends JFrame implements M
 	public void update(final Observable resource, final Object accessNotice) {
 		if (((AccessNotice) accessNotice).accessIsFromMIPS()) {
 			processMIPSUpdate(resource, (AccessNotice) accessNotice);
-			updateDisplay();
+			if (displayTimer == null) {
+				updateDisplay();
+			} else {
+				displayStale = true;
+			}
 		}
 	}
 
@@ -491,6 +508,71 @@ public abstract class AbstractMarsToolAndApplication extends JFrame implements M
 	 */
 	protected void processMIPSUpdate(final Observable resource, final AccessNotice notice) {}
 
+	/**
+	 * Opt in to batched delivery of memory access notices. Normally
+	 * processMIPSUpdate() and updateDisplay() are called on the simulator thread
+	 * for every access, which makes the simulation wait for the tool. With batched
+	 * delivery the accesses are only recorded, and are delivered on the Swing event
+	 * thread the given number of times per second: processMIPSUpdate() for each
+	 * access in order, then updateDisplay() once. If the tool falls far enough
+	 * behind, accesses are dropped rather than stall the simulation, so this is
+	 * only for tools that display accesses, such as the Bitmap Display. Tools that
+	 * count or otherwise need every access should use setTimedDisplay() instead.
+	 * Call it from the constructor or initializePreGUI(). Applies to memory
+	 * observed through addAsObserver(int, int); register notices are still
+	 * delivered as they occur. The notices delivered come from the Swing event
+	 * thread, so do not check accessIsFromMIPS() on them; only MIPS accesses are
+	 * recorded anyway.
+	 *
+	 * @param framesPerSecond number of batches to deliver per second
+	 */
+	protected void setBatchedUpdates(final int framesPerSecond) {
+		accessBuffer = new MemoryAccessBuffer(BATCH_CAPACITY);
+		batchTimer = new Timer(1000 / Math.max(1, framesPerSecond), e -> deliverBatch());
+	}
+
+	/**
+	 * Opt in to a timed display refresh. processMIPSUpdate() is still called on the
+	 * simulator thread for every access, so nothing is missed, but updateDisplay()
+	 * is called on the Swing event thread the given number of times per second,
+	 * and only if an access arrived since the last refresh. Suits tools that count
+	 * accesses, whose processing is cheap but whose display is not. Call it from
+	 * the constructor or initializePreGUI().
+	 *
+	 * @param framesPerSecond number of display refreshes per second
+	 */
+	protected void setTimedDisplay(final int framesPerSecond) {
+		displayTimer = new Timer(1000 / Math.max(1, framesPerSecond), e -> refreshDisplay());
+	}
+
+	// Redraw the display if accesses arrived since the last refresh.  Runs on the Swing event thread.
+	private void refreshDisplay() {
+		if (displayStale) {
+			displayStale = false;
+			updateDisplay();
+		}
+	}
+
+	// Deliver accesses recorded since the last batch.  Runs on the Swing event thread.
+	// Accesses the buffer had to drop are reported where errors are, since the
+	// tool's figures no longer cover the whole run.
+	private void deliverBatch() {
+		if (accessBuffer.drain((type, address, length, value) -> processMIPSUpdate(Globals.memory,
+				new MemoryAccessNotice(type, address, length, value))) > 0) {
+			updateDisplay();
+		}
+		final long dropped = accessBuffer.getDroppedCount();
+		if (dropped != reportedDrops) {
+			reportedDrops = dropped;
+			final String message = dropped + " memory accesses dropped: the tool could not keep up";
+			if (isBeingUsedAsAMarsTool) {
+				headingLabel.setText(message);
+			} else {
+				operationStatusMessages.displayNonTerminatingMessage(message);
+			}
+		}
+	}
+
 	/**
 	 * This method is called when tool/app is exited either through the close/exit
 	 * button or the window's X box. Override it to perform any special
@@ -530,7 +612,14 @@ public abstract class AbstractMarsToolAndApplication extends JFrame implements M
 	protected void addAsObserver(final int lowEnd, final int highEnd) {
 		final String errorMessage = "Error connecting to MIPS memory";
 		try {
-			Globals.memory.addObserver(thisMarsApp, lowEnd, highEnd);
+			if (accessBuffer == null) {
+				Globals.memory.addObserver(thisMarsApp, lowEnd, highEnd);
+				if (displayTimer != null) { displayTimer.start(); }
+			} else {
+				Globals.memory.addObserver(accessBuffer, lowEnd, highEnd);
+				accessBuffer.open();
+				batchTimer.start();
+			}
 		} catch (final AddressErrorException aee) {
 			if (isBeingUsedAsAMarsTool) {
 				headingLabel.setText(errorMessage);
@@ -558,6 +647,16 @@ public abstract class AbstractMarsToolAndApplication extends JFrame implements M
 
 	protected void deleteAsObserver() {
 		Globals.memory.deleteObserver(thisMarsApp);
+		if (accessBuffer != null) {
+			Globals.memory.deleteObserver(accessBuffer);
+			accessBuffer.close();
+			batchTimer.stop();
+			SwingUtilities.invokeLater(() -> deliverBatch()); // whatever is left
+		}
+		if (displayTimer != null) {
+			displayTimer.stop();
+			SwingUtilities.invokeLater(() -> refreshDisplay()); // show the final figures
+		}
 	}
 
 	/**
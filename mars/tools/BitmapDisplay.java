@@ -202,6 +202,7 @@ public class BitmapDisplay extends AbstractMarsToolAndApplication {
 	 */
 	@Override
 	protected void initializePreGUI() {
+		setBatchedUpdates(30); // repaint at most 30 times a second, not after every store
 		initializeDisplayBaseChoices();
 		// NOTE: Can't call "createNewGrid()" here because it uses settings from
 		//       several combo boxes that have not been created yet.  But a default grid
@@ -103,7 +103,7 @@ public class DigitalLabSim extends AbstractMarsToolAndApplication {
 			} else {
 				CounterValue = CounterValueMax;
 				if ((Coprocessor0.getValue(Coprocessor0.STATUS) & 2) == 0) {
-					mars.simulator.Simulator.externalInterruptingDevice = /*Exceptions.*/EXTERNAL_INTERRUPT_TIMER;
+					mars.simulator.Simulator.getInstance().interrupt(/*Exceptions.*/EXTERNAL_INTERRUPT_TIMER);
 				}
 			}
 		}
@@ -391,7 +391,7 @@ public class DigitalLabSim extends AbstractMarsToolAndApplication {
 					KeyBoardValueButtonClick = buttonValue;
 					button[KeyBoardValueButtonClick].setBackground(Color.GREEN);
 					if (KeyboardInterruptOnOff && (Coprocessor0.getValue(Coprocessor0.STATUS) & 2) == 0) {
-						mars.simulator.Simulator.externalInterruptingDevice = /*Exceptions.*/EXTERNAL_INTERRUPT_HEXA_KEYBOARD;
+						mars.simulator.Simulator.getInstance().interrupt(/*Exceptions.*/EXTERNAL_INTERRUPT_HEXA_KEYBOARD);
 					}
 				}
 			}
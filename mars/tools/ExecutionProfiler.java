@@ -0,0 +1,129 @@
+package mars.tools;
+
+import java.awt.Font;
+import java.util.Observable;
+import java.util.Observer;
+
+import javax.swing.JComponent;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+
+import mars.simulator.Simulator;
+import mars.simulator.SimulatorNotice;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Execution profile tool. While connected, the simulator counts every statement
+ * it executes (see mars.simulator.ExecutionProfile); each time the program
+ * stops, the tool displays how many instructions were executed by format and
+ * by label, and which statements were executed most often. Unlike a memory
+ * observer, profiling does not slow the simulation down noticeably.
+ */
+public class ExecutionProfiler extends AbstractMarsToolAndApplication {
+
+	private static final long serialVersionUID = -3197364420547820631L;
+	private static String name = "Execution Profile";
+	private static String version = "Version 1.0";
+	private static String heading = "Where the program spends its instructions";
+	private static final int STATEMENTS_LISTED = 50;
+
+	private JTextArea report;
+
+	// Refreshes the report when the simulation stops.
+	private final Observer simulatorObserver = new Observer() {
+
+		@Override
+		public void update(final Observable simulator, final Object notice) {
+			if (((SimulatorNotice) notice).getAction() == SimulatorNotice.SIMULATOR_STOP) {
+				SwingUtilities.invokeLater(() -> updateDisplay());
+			}
+		}
+	};
+
+	/**
+	 * Simple constructor, likely used to run a stand-alone execution profiler.
+	 *
+	 * @param title   String containing title for title bar
+	 * @param heading String containing text for heading shown in upper part of
+	 *                window.
+	 */
+	public ExecutionProfiler(final String title, final String heading) {
+		super(title, heading);
+	}
+
+	/**
+	 * Simple constructor, likely used by the MARS Tools menu mechanism.
+	 */
+	public ExecutionProfiler() {
+		super(name + ", " + version, heading);
+	}
+
+	/**
+	 * Main provided for pure stand-alone use.
+	 */
+	public static void main(final String[] args) {
+		new ExecutionProfiler(name + ", " + version, heading).go();
+	}
+
+	@Override
+	public String getName() { return name; }
+
+	@Override
+	protected JComponent buildMainDisplayArea() {
+		report = new JTextArea(24, 72);
+		report.setEditable(false);
+		report.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+		return new JScrollPane(report);
+	}
+
+	@Override
+	protected void addAsObserver() {
+		Simulator.getInstance().setProfiling(true);
+		Simulator.getInstance().addObserver(simulatorObserver);
+	}
+
+	@Override
+	protected void deleteAsObserver() {
+		Simulator.getInstance().setProfiling(false);
+		Simulator.getInstance().deleteObserver(simulatorObserver);
+	}
+
+	@Override
+	protected void reset() {
+		Simulator.getInstance().getProfile().reset();
+		updateDisplay();
+	}
+
+	@Override
+	protected void updateDisplay() {
+		report.setText(Simulator.getInstance().getProfile().report(STATEMENTS_LISTED));
+		report.setCaretPosition(0);
+	}
+}
@@ -272,8 +272,8 @@ public class InstructionStatistics extends AbstractMarsToolAndApplication {
 	 * Before an instruction is executed by the simulator, the instruction is
 	 * fetched from the program memory. This memory access is observed and the
 	 * corresponding instruction is decoded and categorized by the tool. According
-	 * to the category the counter values are increased and the display gets
-	 * updated.
+	 * to the category the counter values are increased. The display is refreshed
+	 * on a timer rather than for every instruction.
 	 *
 	 * @param resource the observed resource
 	 * @param notice   signals the type of access (memory, register etc.)
@@ -306,7 +306,6 @@ public class InstructionStatistics extends AbstractMarsToolAndApplication {
 
 					m_totalCounter++;
 					m_counters[category]++;
-					updateDisplay();
 				}
 			} catch (final AddressErrorException e) {
 				// silently ignore these exceptions
@@ -319,6 +318,7 @@ public class InstructionStatistics extends AbstractMarsToolAndApplication {
 	 */
 	@Override
 	protected void initializePreGUI() {
+		setTimedDisplay(10); // every access is counted, but the display need not keep up
 		m_totalCounter = 0;
 		lastAddress = -1; // from Felipe Lessa's instruction counter tool
 		for (int i = 0; i < InstructionStatistics.MAX_CATEGORY; i++) {
@@ -313,7 +313,7 @@ public class KeyboardAndDisplaySimulator extends AbstractMarsToolAndApplication
 						&& (Coprocessor0.getValue(Coprocessor0.STATUS) & 1) == 1) {
 					// interrupt-enabled bit is set in both Tranmitter Control and in
 					// Coprocessor0 Status register, and Interrupt Level Bit is 0, so trigger external interrupt.
-					mars.simulator.Simulator.externalInterruptingDevice = Exceptions.EXTERNAL_INTERRUPT_DISPLAY;
+					mars.simulator.Simulator.getInstance().interrupt(Exceptions.EXTERNAL_INTERRUPT_DISPLAY);
 				}
 			}
 		}
@@ -803,7 +803,7 @@ public class KeyboardAndDisplaySimulator extends AbstractMarsToolAndApplication
 					&& (Coprocessor0.getValue(Coprocessor0.STATUS) & 1) == 1) {
 				// interrupt-enabled bit is set in both Receiver Control and in
 				// Coprocessor0 Status register, and Interrupt Level Bit is 0, so trigger external interrupt.
-				mars.simulator.Simulator.externalInterruptingDevice = Exceptions.EXTERNAL_INTERRUPT_KEYBOARD;
+				mars.simulator.Simulator.getInstance().interrupt(Exceptions.EXTERNAL_INTERRUPT_KEYBOARD);
 			}
 		}
 
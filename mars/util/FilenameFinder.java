@@ -1,9 +1,14 @@
 package mars.util;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.StringTokenizer;
@@ -54,6 +59,13 @@ public class FilenameFinder {
 	private static final String JAR_URI_PREFIX = "jar:";
 	private static final boolean NO_DIRECTORIES = false;
 	public static String MATCH_ALL_EXTENSIONS = "*";
+	/**
+	 * Name of the file listing the contents of a directory inside a JAR file. When
+	 * present, it is read instead of searching the JAR's entries. CreateMarsJar
+	 * writes one for each directory that MARS searches at startup, by running the
+	 * main method of this class.
+	 */
+	public static final String DIRECTORY_INDEX = "DirectoryIndex.txt";
 
 	/**
 	 * Locate files and return list of file names. Given a known relative directory
@@ -102,7 +114,8 @@ public class FilenameFinder {
 			final Enumeration urls = classLoader.getResources(directoryPath);
 
 			while (urls.hasMoreElements()) {
-				uri = new URI(urls.nextElement().toString());
+				final URL url = (URL) urls.nextElement();
+				uri = new URI(url.toString());
 				if (uri.toString().indexOf(JAR_URI_PREFIX) == 0) {
 					uri = new URI(uri.toString().substring(JAR_URI_PREFIX.length()));
 				}
@@ -113,8 +126,9 @@ public class FilenameFinder {
 					if (f.toString().toLowerCase().indexOf(JAR_EXTENSION) > 0) {
 						// Must be running from a JAR file. Use ZipFile to find files and create list.
 						// Modified 12/28/09 by DPS to add results to existing filenameList instead of overwriting it.
-						filenameList.addAll(getListFromJar(extractJarFilename(f.toString()), directoryPath,
-								fileExtension));
+						final ArrayList indexedList = getListFromIndex(url, fileExtension);
+						filenameList.addAll(indexedList != null ? indexedList : getListFromJar(extractJarFilename(f
+								.toString()), directoryPath, fileExtension));
 					}
 				} else {  // have array of File objects; convert to names and add to list
 					final FileFilter filter = getFileFilter(fileExtension, "", NO_DIRECTORIES);
@@ -431,6 +445,59 @@ public class FilenameFinder {
 		return nameList;
 	}
 
+	// Return list of file names in the index of specified folder inside JAR, or null
+	// if the JAR has no index for it.
+	private static ArrayList getListFromIndex(final URL directoryUrl, String fileExtension) {
+		fileExtension = checkFileExtension(fileExtension);
+		final ArrayList nameList = new ArrayList();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new URL(directoryUrl + "/" + DIRECTORY_INDEX)
+				.openStream()))) {
+			String name;
+			while ((name = in.readLine()) != null) {
+				if (name.length() > 0 && fileExtensionMatch(name, fileExtension)) { nameList.add(name); }
+			}
+		} catch (final FileNotFoundException e) {
+			return null;
+		} catch (final IOException e) {
+			return null;
+		}
+		return nameList;
+	}
+
+	/**
+	 * Writes the directory index of each directory named on the command line, for
+	 * inclusion in the MARS JAR file. Each index lists the names of all files in
+	 * and below its directory, as searching the JAR file would find them.
+	 *
+	 * @param args directory paths, relative to the current directory, using "/"
+	 *             as separator (e.g. mars/tools)
+	 */
+	public static void main(final String[] args) {
+		for (final String directoryPath : args) {
+			final ArrayList nameList = new ArrayList();
+			listFilesBelow(new File(directoryPath), nameList);
+			try (PrintStream out = new PrintStream(new File(directoryPath, DIRECTORY_INDEX))) {
+				for (int i = 0; i < nameList.size(); i++) {
+					out.println(nameList.get(i));
+				}
+			} catch (final FileNotFoundException e) {
+				System.out.println("Error writing directory index for " + directoryPath + ": " + e);
+			}
+		}
+	}
+
+	private static void listFilesBelow(final File directory, final ArrayList nameList) {
+		final File[] files = directory.listFiles();
+		if (files == null) { return; }
+		for (int i = 0; i < files.length; i++) {
+			if (files[i].isDirectory()) {
+				listFilesBelow(files[i], nameList);
+			} else if (!files[i].getName().equals(DIRECTORY_INDEX)) {
+				nameList.add(files[i].getName());
+			}
+		}
+	}
+
 	// Given pathname, extract and return JAR file name (must be only element containing ".jar")
 	// 5 Dec 2007 DPS: Modified to return file path of JAR file, not just its name.  This was
 	//                 by request of Zachary Kurmas of Grant Valley State, who got errors trying
@@ -3,7 +3,6 @@ package mars.util;
 import java.util.ArrayList;
 import java.util.HashMap;
 
-import mars.Globals;
 import mars.mips.hardware.AddressErrorException;
 import mars.mips.hardware.Memory;
 
@@ -122,7 +121,7 @@ public class MemoryDump {
 			throws AddressErrorException {
 		int address = baseAddress;
 		for (; address < limitAddress; address += Memory.WORD_LENGTH_BYTES) {
-			if (Globals.memory.getRawWordOrNull(address) == null) { break; }
+			if (Memory.getInstance().getRawWordOrNull(address) == null) { break; }
 		}
 		return address;
 	}
@@ -8,8 +8,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.PrintStream;
 
 import mars.Globals;
+import mars.MachineContext;
 import mars.Settings;
 
 /*
@@ -43,7 +45,9 @@ import mars.Settings;
  * Provides standard i/o services needed to simulate the MIPS syscall routines.
  * These methods will detect whether the simulator is being run from the command
  * line or through the GUI, then do I/O to System.in and System.out in the
- * former situation, and interact with the GUI in the latter.
+ * former situation, and interact with the GUI in the latter. Open files belong
+ * to the machine of the calling thread (see MachineContext), which may also
+ * have its own standard input and output.
  *
  * @author Pete Sanderson and Ken Vollmar
  * @version August 2003-2005
@@ -54,8 +58,6 @@ public class SystemIO {
 	public static final int SYSCALL_BUFSIZE = 128;
 	/** Maximum number of files that can be open */
 	public static final int SYSCALL_MAXFILES = 32;
-	/** String used for description of file error */
-	public static String fileErrorString = new String("File operation OK");
 
 	private static final int O_RDONLY = 0x00000000;
 	private static final int O_WRONLY = 0x00000001;
@@ -70,9 +72,37 @@ public class SystemIO {
 	private static final int STDOUT = 1;
 	private static final int STDERR = 2;
 
-	// Will use one buffered reader for all keyboard/redirected/piped input.
-	// Added by DPS 28 Feb 2008.  See getInputReader() below.
-	private static BufferedReader inputReader = null;
+	/**
+	 * The open files and standard input and output of one machine.
+	 */
+	public static final class State {
+
+		private final String[] fileNames = new String[SYSCALL_MAXFILES]; // The filenames in use. Null if file descriptor i is not in use.
+		private final int[] fileFlags = new int[SYSCALL_MAXFILES]; // The flags of this file, 0=READ, 1=WRITE. Invalid if this file descriptor is not in use.
+		private final Object[] streams = new Object[SYSCALL_MAXFILES]; // The streams in use, associated with the filenames
+		// String used for description of file error
+		private String fileErrorString = new String("File operation OK");
+		// Will use one buffered reader for all keyboard/redirected/piped input.
+		// Added by DPS 28 Feb 2008.  See getInputReader() below.
+		private BufferedReader inputReader = null;
+		private InputStream in = null; // null for System.in
+		private PrintStream out = null; // null for System.out
+
+		/**
+		 * Sets the standard input and output, taking effect at the next resetFiles().
+		 *
+		 * @param in  standard input, or null for System.in
+		 * @param out standard output, or null for System.out
+		 */
+		public void setStandardIO(final InputStream in, final PrintStream out) {
+			this.in = in;
+			this.out = out;
+		}
+
+		private InputStream in() { return in == null ? System.in : in; }
+
+		private PrintStream out() { return out == null ? System.out : out; }
+	}
 
 	/**
 	 * Implements syscall to read an integer value. Client is responsible for
@@ -157,7 +187,7 @@ public class SystemIO {
 	 */
 	public static void printString(final String string) {
 		if (Globals.getGui() == null) {
-			System.out.print(string);
+			MachineContext.current().getFiles().out().print(string);
 		} else {
 			Globals.getGui().getMessagesPane().postRunMessage(string);
 		}
@@ -240,6 +270,7 @@ public class SystemIO {
 	 */
 
 	public static int writeToFile(final int fd, final byte[] myBuffer, final int lengthRequested) {
+		final State files = MachineContext.current().getFiles();
 		/////////////// DPS 8-Jan-2013  ////////////////////////////////////////////////////
 		/// Write to STDOUT or STDERR file descriptor while using IDE - write to Messages pane.
 		if ((fd == STDOUT || fd == STDERR) && Globals.getGui() != null) {
@@ -252,7 +283,7 @@ public class SystemIO {
 
 		if (!FileIOData.fdInUse(fd, 1)) // Check the existence of the "write" fd
 		{
-			fileErrorString = new String("File descriptor " + fd + " is not open for writing");
+			files.fileErrorString = new String("File descriptor " + fd + " is not open for writing");
 			return -1;
 		}
 		// retrieve FileOutputStream from storage
@@ -275,10 +306,10 @@ public class SystemIO {
 			}
 			outputStream.flush();// DPS 7-Jan-2013
 		} catch (final IOException e) {
-			fileErrorString = new String("IO Exception on write of file with fd " + fd);
+			files.fileErrorString = new String("IO Exception on write of file with fd " + fd);
 			return -1;
 		} catch (final IndexOutOfBoundsException e) {
-			fileErrorString = new String("IndexOutOfBoundsException on write of file with fd" + fd);
+			files.fileErrorString = new String("IndexOutOfBoundsException on write of file with fd" + fd);
 			return -1;
 		}
 
@@ -295,6 +326,7 @@ public class SystemIO {
 	 * @return number of bytes read, 0 on EOF, or -1 on error
 	 */
 	public static int readFromFile(final int fd, final byte[] myBuffer, final int lengthRequested) {
+		final State files = MachineContext.current().getFiles();
 		int retValue = -1;
 		/////////////// DPS 8-Jan-2013  //////////////////////////////////////////////////
 		/// Read from STDIN file descriptor while using IDE - get input from Messages pane.
@@ -311,7 +343,7 @@ public class SystemIO {
 
 		if (!FileIOData.fdInUse(fd, 0)) // Check the existence of the "read" fd
 		{
-			fileErrorString = new String("File descriptor " + fd + " is not open for reading");
+			files.fileErrorString = new String("File descriptor " + fd + " is not open for reading");
 			return -1;
 		}
 		// retrieve FileInputStream from storage
@@ -323,10 +355,10 @@ public class SystemIO {
 			// value represents an error, so we return 0 for EOF.  DPS 10-July-2008.
 			if (retValue == -1) { retValue = 0; }
 		} catch (final IOException e) {
-			fileErrorString = new String("IO Exception on read of file with fd " + fd);
+			files.fileErrorString = new String("IO Exception on read of file with fd " + fd);
 			return -1;
 		} catch (final IndexOutOfBoundsException e) {
-			fileErrorString = new String("IndexOutOfBoundsException on read of file with fd" + fd);
+			files.fileErrorString = new String("IndexOutOfBoundsException on read of file with fd" + fd);
 			return -1;
 		}
 		return retValue;
@@ -343,6 +375,7 @@ public class SystemIO {
 	 * @author Ken Vollmar
 	 */
 	public static int openFile(final String filename, final int flags) {
+		final State files = MachineContext.current().getFiles();
 		// Internally, a "file descriptor" is an index into a table
 		// of the filename, flag, and the File???putStream associated with
 		// that file descriptor.
@@ -364,7 +397,7 @@ public class SystemIO {
 				inputStream = new FileInputStream(filename);
 				FileIOData.setStreamInUse(fdToUse, inputStream); // Save stream for later use
 			} catch (final FileNotFoundException e) {
-				fileErrorString = new String("File " + filename + " not found, open for input.");
+				files.fileErrorString = new String("File " + filename + " not found, open for input.");
 				retValue = -1;
 			}
 		} else if ((flags & O_WRONLY) != 0) // Open for writing only
@@ -374,7 +407,7 @@ public class SystemIO {
 				outputStream = new FileOutputStream(filename, (flags & O_APPEND) != 0);
 				FileIOData.setStreamInUse(fdToUse, outputStream); // Save stream for later use
 			} catch (final FileNotFoundException e) {
-				fileErrorString = new String("File " + filename + " not found, open for output.");
+				files.fileErrorString = new String("File " + filename + " not found, open for output.");
 				retValue = -1;
 			}
 		}
@@ -392,10 +425,13 @@ public class SystemIO {
 	}
 
 	/**
-	 * Reset all files -- clears out the file descriptor table.
+	 * Reset all files -- clears out the file descriptor table. Keyboard input is
+	 * read afresh from standard input, which the batch runner replaces for each
+	 * program.
 	 */
 	public static void resetFiles() {
 		FileIOData.resetFiles();
+		MachineContext.current().getFiles().inputReader = null;
 	}
 
 	/**
@@ -403,7 +439,7 @@ public class SystemIO {
 	 *
 	 * @return string containing message
 	 */
-	public static String getFileErrorMessage() { return fileErrorString; }
+	public static String getFileErrorMessage() { return MachineContext.current().getFiles().fileErrorString; }
 
 	///////////////////////////////////////////////////////////////////////
 	// Private method to simply return the BufferedReader used for
@@ -412,8 +448,9 @@ public class SystemIO {
 	// transparent to it.  Lazy instantiation.  DPS.  28 Feb 2008
 
 	private static BufferedReader getInputReader() {
-		if (inputReader == null) { inputReader = new BufferedReader(new InputStreamReader(System.in)); }
-		return inputReader;
+		final State files = MachineContext.current().getFiles();
+		if (files.inputReader == null) { files.inputReader = new BufferedReader(new InputStreamReader(files.in())); }
+		return files.inputReader;
 	}
 
 	// //////////////////////////////////////////////////////////////////////////////
@@ -422,10 +459,6 @@ public class SystemIO {
 
 	private static class FileIOData {
 
-		private static String[] fileNames = new String[SYSCALL_MAXFILES]; // The filenames in use. Null if file descriptor i is not in use.
-		private static int[] fileFlags = new int[SYSCALL_MAXFILES]; // The flags of this file, 0=READ, 1=WRITE. Invalid if this file descriptor is not in use.
-		private static Object[] streams = new Object[SYSCALL_MAXFILES]; // The streams in use, associated with the filenames
-
 		// Reset all file information. Closes any open files and resets the arrays
 		private static void resetFiles() {
 			for (int i = 0; i < SYSCALL_MAXFILES; i++) {
@@ -436,35 +469,39 @@ public class SystemIO {
 
 		// DPS 8-Jan-2013
 		private static void setupStdio() {
-			fileNames[STDIN] = "STDIN";
-			fileNames[STDOUT] = "STDOUT";
-			fileNames[STDERR] = "STDERR";
-			fileFlags[STDIN] = SystemIO.O_RDONLY;
-			fileFlags[STDOUT] = SystemIO.O_WRONLY;
-			fileFlags[STDERR] = SystemIO.O_WRONLY;
-			streams[STDIN] = System.in;
-			streams[STDOUT] = System.out;
-			streams[STDERR] = System.err;
-			System.out.flush();
+			final State files = MachineContext.current().getFiles();
+			files.fileNames[STDIN] = "STDIN";
+			files.fileNames[STDOUT] = "STDOUT";
+			files.fileNames[STDERR] = "STDERR";
+			files.fileFlags[STDIN] = SystemIO.O_RDONLY;
+			files.fileFlags[STDOUT] = SystemIO.O_WRONLY;
+			files.fileFlags[STDERR] = SystemIO.O_WRONLY;
+			files.streams[STDIN] = files.in();
+			files.streams[STDOUT] = files.out();
+			files.streams[STDERR] = System.err;
+			files.out().flush();
 			System.err.flush();
 		}
 
 		// Preserve a stream that is in use
 		private static void setStreamInUse(final int fd, final Object s) {
-			streams[fd] = s;
+			final State files = MachineContext.current().getFiles();
+			files.streams[fd] = s;
 
 		}
 
 		// Retrieve a stream for use
 		private static Object getStreamInUse(final int fd) {
-			return streams[fd];
+			final State files = MachineContext.current().getFiles();
+			return files.streams[fd];
 
 		}
 
 		// Determine whether a given filename is already in use.
 		private static boolean filenameInUse(final String requestedFilename) {
+			final State files = MachineContext.current().getFiles();
 			for (int i = 0; i < SYSCALL_MAXFILES; i++) {
-				if (fileNames[i] != null && fileNames[i].equals(requestedFilename)) {
+				if (files.fileNames[i] != null && files.fileNames[i].equals(requestedFilename)) {
 					// System.out.println("Mars.SystemIO.FileIOData.filenameInUse: rtng TRUE for " + requestedFilename);
 					return true;
 				}
@@ -477,11 +514,12 @@ public class SystemIO {
 
 		// Determine whether a given fd is already in use with the given flag.
 		private static boolean fdInUse(final int fd, final int flag) {
+			final State files = MachineContext.current().getFiles();
 			if (fd < 0 || fd >= SYSCALL_MAXFILES) {
 				return false;
-			} else if (fileNames[fd] != null && fileFlags[fd] == 0 && flag == 0) {  // O_RDONLY read-only
+			} else if (files.fileNames[fd] != null && files.fileFlags[fd] == 0 && flag == 0) {  // O_RDONLY read-only
 				return true;
-			} else if (fileNames[fd] != null && (fileFlags[fd] & flag & O_WRONLY) == O_WRONLY) {  // O_WRONLY write-only
+			} else if (files.fileNames[fd] != null && (files.fileFlags[fd] & flag & O_WRONLY) == O_WRONLY) {  // O_WRONLY write-only
 				return true;
 			}
 			return false;
@@ -491,16 +529,17 @@ public class SystemIO {
 		// Close the file with file descriptor fd. No errors are recoverable -- if the user's
 		// made an error in the call, it will come back to him.
 		private static void close(final int fd) {
+			final State files = MachineContext.current().getFiles();
 			// Can't close STDIN, STDOUT, STDERR, or invalid fd
 			if (fd <= STDERR || fd >= SYSCALL_MAXFILES) { return; }
 
-			fileNames[fd] = null;
+			files.fileNames[fd] = null;
 			// All this code will be executed only if the descriptor is open.
-			if (streams[fd] != null) {
-				final int keepFlag = fileFlags[fd];
-				final Object keepStream = streams[fd];
-				fileFlags[fd] = -1;
-				streams[fd] = null;
+			if (files.streams[fd] != null) {
+				final int keepFlag = files.fileFlags[fd];
+				final Object keepStream = files.streams[fd];
+				files.fileFlags[fd] = -1;
+				files.streams[fd] = null;
 				try {
 					if (keepFlag == O_RDONLY) {
 						((FileInputStream) keepStream).close();
@@ -511,7 +550,7 @@ public class SystemIO {
 					// not concerned with this exception
 				}
 			} else {
-				fileFlags[fd] = -1; // just to be sure... streams[fd] known to be null
+				files.fileFlags[fd] = -1; // just to be sure... streams[fd] known to be null
 			}
 		}
 
@@ -519,33 +558,34 @@ public class SystemIO {
 		// Check that filename is not in use, flag is reasonable, and there is an available file descriptor.
 		// Return: file descriptor in 0...(SYSCALL_MAXFILES-1), or -1 if error
 		private static int nowOpening(final String filename, final int flag) {
+			final State files = MachineContext.current().getFiles();
 			int i = 0;
 			if (filenameInUse(filename)) {
-				fileErrorString = new String("File name " + filename + " is already open.");
+				files.fileErrorString = new String("File name " + filename + " is already open.");
 				return -1;
 			}
 
 			if (flag != O_RDONLY && flag != O_WRONLY && flag != (O_WRONLY | O_APPEND)) // Only read and write are implemented
 			{
-				fileErrorString = new String("File name " + filename + " has unknown requested opening flag");
+				files.fileErrorString = new String("File name " + filename + " has unknown requested opening flag");
 				return -1;
 			}
 
-			while (fileNames[i] != null && i < SYSCALL_MAXFILES) {
+			while (files.fileNames[i] != null && i < SYSCALL_MAXFILES) {
 				i++;
 			} // Attempt to find available file descriptor
 
 			if (i >= SYSCALL_MAXFILES) // no available file descriptors
 			{
-				fileErrorString = new String("File name " + filename + " exceeds maximum open file limit of "
+				files.fileErrorString = new String("File name " + filename + " exceeds maximum open file limit of "
 						+ SYSCALL_MAXFILES);
 				return -1;
 			}
 
 			// Must be OK -- put filename in table
-			fileNames[i] = new String(filename); // our table has its own copy of filename
-			fileFlags[i] = flag;
-			fileErrorString = new String("File operation OK");
+			files.fileNames[i] = new String(filename); // our table has its own copy of filename
+			files.fileFlags[i] = flag;
+			files.fileErrorString = new String("File operation OK");
 			return i;
 
 		}
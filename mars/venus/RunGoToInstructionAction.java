@@ -0,0 +1,116 @@
+package mars.venus;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.Action;
+import javax.swing.Icon;
+import javax.swing.JOptionPane;
+import javax.swing.KeyStroke;
+
+import mars.Globals;
+import mars.ProcessingException;
+import mars.mips.hardware.RegisterFile;
+import mars.simulator.ExecutionHistory;
+
+/*
+ * Copyright (c) 2003-2014, Pete Sanderson and Kenneth Vollmar
+ *
+ * Developed by Pete Sanderson (psanderson@otterbein.edu) and Kenneth Vollmar
+ * (kenvollmar@missouristate.edu)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Action for the Run -> Go to Instruction menu item, which returns to the state
+ * after any number of instructions executed so far using the execution history.
+ */
+public class RunGoToInstructionAction extends GuiAction {
+
+	private static final long serialVersionUID = -2913870545472893651L;
+	String name;
+	ExecutePane executePane;
+
+	public RunGoToInstructionAction(final String name, final Icon icon, final String descrip,
+			final Integer mnemonic, final KeyStroke accel, final VenusUI gui) {
+		super(name, icon, descrip, mnemonic, accel, gui);
+	}
+
+	/**
+	 * Ask for the instruction number, then go there.
+	 */
+	@Override
+	public void actionPerformed(final ActionEvent e) {
+		name = getValue(Action.NAME).toString().replace("...", "");
+		executePane = mainUI.getMainPane().getExecutePane();
+		final ExecutionHistory history = Globals.getSettings().getBackSteppingEnabled() ? Globals.program
+				.getBackStepper().getExecutionHistory() : null;
+		if (!FileStatus.isAssembled() || history == null || !history.isAvailable()) {
+			// note: this should never occur since the action is only enabled when there is a history.
+			JOptionPane.showMessageDialog(mainUI, "There is no execution history to go back to.");
+			return;
+		}
+		final String answer = JOptionPane.showInputDialog(mainUI, "Instruction number (0 to " + history
+				.getLatestInstruction() + "):", Long.toString(history.getInstructionCount()));
+		if (answer == null) { return; }
+		final long target;
+		try {
+			target = Long.parseLong(answer.trim());
+		} catch (final NumberFormatException nfe) {
+			JOptionPane.showMessageDialog(mainUI, "\"" + answer + "\" is not an instruction number.");
+			return;
+		}
+		if (target < 0 || target > history.getLatestInstruction()) {
+			JOptionPane.showMessageDialog(mainUI, "The instruction number must be between 0 and " + history
+					.getLatestInstruction() + ".");
+			return;
+		}
+		VenusUI.setStarted(true);
+		ProcessingException pe = null;
+		boolean done;
+		try {
+			done = history.goTo(target);
+		} catch (final ProcessingException ev) {
+			pe = ev;
+			done = true;
+		}
+		executePane.getRegistersWindow().updateRegisters();
+		executePane.getCoprocessor1Window().updateRegisters();
+		executePane.getCoprocessor0Window().updateRegisters();
+		executePane.getDataSegmentWindow().updateValues();
+		executePane.getTextSegmentWindow().setCodeHighlighting(true);
+		if (done) {
+			RunGoAction.resetMaxSteps();
+			executePane.getTextSegmentWindow().unhighlightAllSteps();
+			if (pe != null) {
+				mainUI.getMessagesPane().postMarsMessage(pe.errors().generateErrorReport());
+				executePane.getTextSegmentWindow().highlightStepAtAddress(RegisterFile.getProgramCounter() - 4);
+			}
+			FileStatus.set(FileStatus.TERMINATED);
+		} else {
+			executePane.getTextSegmentWindow().highlightStepAtPC();
+			FileStatus.set(FileStatus.RUNNABLE);
+		}
+		mainUI.getMessagesPane().postMarsMessage(name + ": now after instruction " + target + (done
+				? ", where execution ended" : "") + ".\n");
+		VenusUI.setReset(false);
+	}
+}
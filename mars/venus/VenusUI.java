@@ -29,6 +29,7 @@ import javax.swing.WindowConstants;
 
 import mars.Globals;
 import mars.Settings;
+import mars.simulator.ExecutionHistory;
 
 /*
  * Copyright (c) 2003-2013, Pete Sanderson and Kenneth Vollmar
@@ -99,7 +100,7 @@ public class VenusUI extends JFrame {
 	private JMenuItem fileNew, fileOpen, fileClose, fileCloseAll, fileSave, fileSaveAs, fileSaveAll, fileDumpMemory,
 			filePrint, fileExit;
 	private JMenuItem editUndo, editRedo, editCut, editCopy, editPaste, editFindReplace, editSelectAll;
-	private JMenuItem runGo, runStep, runBackstep, runReset, runAssemble, runStop, runPause, runClearBreakpoints,
+	private JMenuItem runGo, runStep, runBackstep, runGoToInstruction, runReset, runAssemble, runStop, runPause, runClearBreakpoints,
 			runToggleBreakpoints;
 	private JCheckBoxMenuItem settingsLabel, settingsPopupInput, settingsValueDisplayBase, settingsAddressDisplayBase,
 			settingsExtended, settingsAssembleOnOpen, settingsAssembleAll, settingsWarningsAreErrors,
@@ -123,8 +124,8 @@ public class VenusUI extends JFrame {
 	EditUndoAction editUndoAction;
 	EditRedoAction editRedoAction;
 	private Action editCutAction, editCopyAction, editPasteAction, editFindReplaceAction, editSelectAllAction;
-	private Action runAssembleAction, runGoAction, runStepAction, runBackstepAction, runResetAction, runStopAction,
-			runPauseAction, runClearBreakpointsAction, runToggleBreakpointsAction;
+	private Action runAssembleAction, runGoAction, runStepAction, runBackstepAction, runGoToInstructionAction,
+			runResetAction, runStopAction, runPauseAction, runClearBreakpointsAction, runToggleBreakpointsAction;
 	private Action settingsLabelAction, settingsPopupInputAction, settingsValueDisplayBaseAction,
 			settingsAddressDisplayBaseAction, settingsExtendedAction, settingsAssembleOnOpenAction,
 			settingsAssembleAllAction, settingsWarningsAreErrorsAction, settingsStartAtMainAction,
@@ -480,6 +481,13 @@ public class VenusUI extends JFrame {
 					new Integer(KeyEvent.VK_B),
 					KeyStroke.getKeyStroke(KeyEvent.VK_F8, 0),
 					mainUI);
+			runGoToInstructionAction = new RunGoToInstructionAction(
+					"Go to Instruction...",
+					null,
+					"Return to any instruction executed so far, by number",
+					new Integer(KeyEvent.VK_I),
+					null,
+					mainUI);
 			runPauseAction = new RunPauseAction(
 					"Pause",
 					new ImageIcon(
@@ -864,6 +872,13 @@ public class VenusUI extends JFrame {
 						cs.getResource(
 							Globals.imagesPath
 								+ "StepBack16.png"))));//"MyStepBack16.gif"))));
+		runGoToInstruction = new JMenuItem(runGoToInstructionAction);
+		runGoToInstruction.setIcon(
+			new ImageIcon(
+					tk.getImage(
+						cs.getResource(
+							Globals.imagesPath
+								+ "MyBlank16.gif"))));
 		runReset = new JMenuItem(runResetAction);
 		runReset.setIcon(
 			new ImageIcon(
@@ -904,6 +919,7 @@ public class VenusUI extends JFrame {
 		run.add(runGo);
 		run.add(runStep);
 		run.add(runBackstep);
+		run.add(runGoToInstruction);
 		run.add(runPause);
 		run.add(runStop);
 		run.add(runReset);
@@ -1155,6 +1171,7 @@ public class VenusUI extends JFrame {
 		runGoAction.setEnabled(false);
 		runStepAction.setEnabled(false);
 		runBackstepAction.setEnabled(false);
+		runGoToInstructionAction.setEnabled(false);
 		runResetAction.setEnabled(false);
 		runStopAction.setEnabled(false);
 		runPauseAction.setEnabled(false);
@@ -1195,6 +1212,7 @@ public class VenusUI extends JFrame {
 			runGoAction.setEnabled(false);
 			runStepAction.setEnabled(false);
 			runBackstepAction.setEnabled(false);
+			runGoToInstructionAction.setEnabled(false);
 			runResetAction.setEnabled(false);
 			runStopAction.setEnabled(false);
 			runPauseAction.setEnabled(false);
@@ -1230,6 +1248,7 @@ public class VenusUI extends JFrame {
 		runGoAction.setEnabled(false);
 		runStepAction.setEnabled(false);
 		runBackstepAction.setEnabled(false);
+		runGoToInstructionAction.setEnabled(false);
 		runResetAction.setEnabled(false);
 		runStopAction.setEnabled(false);
 		runPauseAction.setEnabled(false);
@@ -1266,6 +1285,7 @@ public class VenusUI extends JFrame {
 		runGoAction.setEnabled(false);
 		runStepAction.setEnabled(false);
 		runBackstepAction.setEnabled(false);
+		runGoToInstructionAction.setEnabled(false);
 		runResetAction.setEnabled(false);
 		runStopAction.setEnabled(false);
 		runPauseAction.setEnabled(false);
@@ -1303,6 +1323,7 @@ public class VenusUI extends JFrame {
 		runStepAction.setEnabled(true);
 		runBackstepAction.setEnabled(
 			Globals.getSettings().getBackSteppingEnabled() && !Globals.program.getBackStepper().empty() ? true : false);
+		runGoToInstructionAction.setEnabled(executionHistoryAvailable());
 		runResetAction.setEnabled(true);
 		runStopAction.setEnabled(false);
 		runPauseAction.setEnabled(false);
@@ -1338,6 +1359,7 @@ public class VenusUI extends JFrame {
 		runGoAction.setEnabled(false);
 		runStepAction.setEnabled(false);
 		runBackstepAction.setEnabled(false);
+		runGoToInstructionAction.setEnabled(false);
 		runResetAction.setEnabled(false);
 		runStopAction.setEnabled(true);
 		runPauseAction.setEnabled(true);
@@ -1374,6 +1396,7 @@ public class VenusUI extends JFrame {
 		runStepAction.setEnabled(false);
 		runBackstepAction.setEnabled(
 			Globals.getSettings().getBackSteppingEnabled() && !Globals.program.getBackStepper().empty() ? true : false);
+		runGoToInstructionAction.setEnabled(executionHistoryAvailable());
 		runResetAction.setEnabled(true);
 		runStopAction.setEnabled(false);
 		runPauseAction.setEnabled(false);
@@ -1384,6 +1407,13 @@ public class VenusUI extends JFrame {
 		editRedoAction.updateRedoState();
 	}
 
+	// Can Run -> Go to Instruction be used?
+	private boolean executionHistoryAvailable() {
+		final ExecutionHistory history = Globals.getSettings().getBackSteppingEnabled() ? Globals.program
+				.getBackStepper().getExecutionHistory() : null;
+		return history != null && history.isAvailable();
+	}
+
 	/**
 	 * Get current menu state. State values are constants in FileStatus class. DPS
 	 * 23 July 2008